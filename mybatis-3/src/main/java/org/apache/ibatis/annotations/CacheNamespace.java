@@ -21,6 +21,8 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+import org.apache.ibatis.cache.CopyStrategy;
+import org.apache.ibatis.cache.copy.SerializationCopyStrategy;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 
@@ -44,6 +46,18 @@ public @interface CacheNamespace {
   
   boolean blocking() default false;
 
+  /**
+   * Coalesces concurrent loads of the same key into a single query. Takes precedence over {@link #blocking()}.
+   * @since 3.5.0
+   */
+  boolean singleFlight() default false;
+
+  /**
+   * Strategy used by a read/write cache to copy cached objects.
+   * @since 3.5.0
+   */
+  Class<? extends CopyStrategy> copyStrategy() default SerializationCopyStrategy.class;
+
   /**
    * Property values for a implementation object.
    * @since 3.4.2
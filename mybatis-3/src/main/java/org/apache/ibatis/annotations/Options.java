@@ -20,7 +20,9 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.Comparator;
 
+import org.apache.ibatis.mapping.DataSourceRoute;
 import org.apache.ibatis.mapping.ResultSetType;
 import org.apache.ibatis.mapping.StatementType;
 
@@ -63,4 +65,52 @@ public @interface Options {
   String keyColumn() default "";
   
   String resultSets() default "";
+
+  /**
+   * Milliseconds after which a second level cache entry of this statement expires once written.
+   * {@code 0} never expires, {@code -1} uses the default of the cache.
+   * @since 3.5.0
+   */
+  long expireAfterWrite() default -1;
+
+  /**
+   * Milliseconds after which a second level cache entry of this statement expires once last read.
+   * {@code 0} never expires, {@code -1} uses the default of the cache.
+   * @since 3.5.0
+   */
+  long expireAfterAccess() default -1;
+
+  /**
+   * Comma separated tables that the statement reads (select) or modifies (insert, update, delete),
+   * used when {@code tableCacheInvalidation} is enabled. Derived from the SQL when empty.
+   * @since 3.5.0
+   */
+  String tables() default "";
+
+  /**
+   * The route of the statement when the data source splits reads and writes.
+   * @since 3.5.0
+   */
+  DataSourceRoute dataSourceRoute() default DataSourceRoute.DEFAULT;
+
+  /**
+   * The parameter property that selects the shard when the data source is sharded.
+   * A query without a shard key runs on all shards.
+   * @since 3.5.0
+   */
+  String shardKey() default "";
+
+  /**
+   * The comparator used to merge the ordered results of a query that runs on all shards.
+   * {@link Comparator} itself means the results are concatenated.
+   * @since 3.5.0
+   */
+  @SuppressWarnings("rawtypes")
+  Class<? extends Comparator> shardComparator() default Comparator.class;
+
+  /**
+   * The pool partition used when the statement opens the connection of the session.
+   * @since 3.5.0
+   */
+  String connectionPartition() default "";
 }
@@ -16,6 +16,7 @@
 package org.apache.ibatis.builder;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -26,11 +27,14 @@ import java.util.Set;
 import java.util.StringTokenizer;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheExpiry;
+import org.apache.ibatis.cache.CopyStrategy;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.mapping.DataSourceRoute;
 import org.apache.ibatis.mapping.Discriminator;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMap;
@@ -164,6 +168,23 @@ public class MapperBuilderAssistant extends BaseBuilder {
                              boolean readWrite,
                              boolean blocking,
                              Properties props) {
+        return useNewCache(typeClass, evictionClass, flushInterval, size, readWrite, blocking, false, null, props);
+    }
+
+    /**
+     * @param singleFlight 是否合并同一个key的并发加载
+     * @param copyStrategyClass 读写缓存的复制策略，为空时使用Java序列化
+     * @since 3.5.0
+     */
+    public Cache useNewCache(Class<? extends Cache> typeClass,
+                             Class<? extends Cache> evictionClass,
+                             Long flushInterval,
+                             Integer size,
+                             boolean readWrite,
+                             boolean blocking,
+                             boolean singleFlight,
+                             Class<? extends CopyStrategy> copyStrategyClass,
+                             Properties props) {
         Cache cache = new CacheBuilder(currentNamespace)
                 // Cache实现
                 .implementation(valueOrDefault(typeClass, PerpetualCache.class))
@@ -173,6 +194,9 @@ public class MapperBuilderAssistant extends BaseBuilder {
                 .size(size)
                 .readWrite(readWrite)
                 .blocking(blocking)
+                .singleFlight(singleFlight)
+                .copyStrategy(newCopyStrategy(copyStrategyClass))
+                .statistics(configuration.isCacheStatisticsEnabled() ? configuration.newCacheStatistics(currentNamespace) : null)
                 .properties(props)
                 .build();
         //cache id与namespace一致
@@ -181,6 +205,22 @@ public class MapperBuilderAssistant extends BaseBuilder {
         return cache;
     }
 
+    // 优先使用以Configuration为参数的构造方法
+    private CopyStrategy newCopyStrategy(Class<? extends CopyStrategy> copyStrategyClass) {
+        if (copyStrategyClass == null) {
+            return null;
+        }
+        try {
+            try {
+                return copyStrategyClass.getConstructor(Configuration.class).newInstance(configuration);
+            } catch (NoSuchMethodException e) {
+                return copyStrategyClass.getConstructor().newInstance();
+            }
+        } catch (Exception e) {
+            throw new BuilderException("Error creating copy strategy (" + copyStrategyClass.getName() + ").  Cause: " + e, e);
+        }
+    }
+
     // 创建ParameterMap对象，并添加到环境上下文中
     public ParameterMap addParameterMap(String id, Class<?> parameterClass, List<ParameterMapping> parameterMappings) {
         id = applyCurrentNamespace(id, false);
@@ -388,6 +428,49 @@ public class MapperBuilderAssistant extends BaseBuilder {
             String databaseId,
             LanguageDriver lang,
             String resultSets) {
+        return addMappedStatement(
+                id, sqlSource, statementType, sqlCommandType, fetchSize, timeout,
+                parameterMap, parameterType, resultMap, resultType, resultSetType,
+                flushCache, useCache, resultOrdered, keyGenerator, keyProperty,
+                keyColumn, databaseId, lang, resultSets, null, null, null, null, null, null);
+    }
+
+    /**
+     * @param cacheExpiry 二级缓存条目的过期策略，为null时使用缓存的默认值
+     * @param tables 逗号分隔的读取或修改的表，为null时从SQL中识别
+     * @param dataSourceRoute 在读写分离数据源中的路由，为null时使用{@link DataSourceRoute#DEFAULT}
+     * @param shardKey 分片键
+     * @param shardComparator 合并各分片有序结果的比较器类型
+     * @param connectionPartition 获取连接时使用的连接池分区
+     * @since 3.5.0
+     */
+    public MappedStatement addMappedStatement(
+            String id,
+            SqlSource sqlSource,
+            StatementType statementType,
+            SqlCommandType sqlCommandType,
+            Integer fetchSize,
+            Integer timeout,
+            String parameterMap,
+            Class<?> parameterType,
+            String resultMap,
+            Class<?> resultType,
+            ResultSetType resultSetType,
+            boolean flushCache,
+            boolean useCache,
+            boolean resultOrdered,
+            KeyGenerator keyGenerator,
+            String keyProperty,
+            String keyColumn,
+            String databaseId,
+            LanguageDriver lang,
+            String resultSets,
+            CacheExpiry cacheExpiry,
+            String tables,
+            DataSourceRoute dataSourceRoute,
+            String shardKey,
+            Class<?> shardComparator,
+            String connectionPartition) {
 
         // 防止缓存还没解析就创建MappedStatement
         if (unresolvedCacheRef) {
@@ -414,6 +497,12 @@ public class MapperBuilderAssistant extends BaseBuilder {
                 .resultSetType(resultSetType)
                 .flushCacheRequired(valueOrDefault(flushCache, !isSelect))
                 .useCache(valueOrDefault(useCache, isSelect))
+                .cacheExpiry(cacheExpiry)
+                .tables(tables)
+                .dataSourceRoute(dataSourceRoute)
+                .shardKey(shardKey)
+                .shardComparator(createShardComparator(shardComparator))
+                .connectionPartition(connectionPartition)
                 .cache(currentCache);
 
         // 获取ParameterMap
@@ -427,6 +516,20 @@ public class MapperBuilderAssistant extends BaseBuilder {
         return statement;
     }
 
+    private Comparator<?> createShardComparator(Class<?> comparatorClass) {
+        if (comparatorClass == null) {
+            return null;
+        }
+        if (!Comparator.class.isAssignableFrom(comparatorClass)) {
+            throw new BuilderException("Shard comparator " + comparatorClass.getName() + " does not implement " + Comparator.class.getName());
+        }
+        try {
+            return (Comparator<?>) comparatorClass.getConstructor().newInstance();
+        } catch (Exception e) {
+            throw new BuilderException("Error creating shard comparator (" + comparatorClass.getName() + ").  Cause: " + e, e);
+        }
+    }
+
     // 备选值方案
     private <T> T valueOrDefault(T value, T defaultValue) {
         return value == null ? defaultValue : value;
@@ -48,4 +48,8 @@ public class StaticSqlSource implements SqlSource {
         return new BoundSql(configuration, sql, parameterMappings, parameterObject);
     }
 
+    public List<ParameterMapping> getParameterMappings() {
+        return parameterMappings;
+    }
+
 }
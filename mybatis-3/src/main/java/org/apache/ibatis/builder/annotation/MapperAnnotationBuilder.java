@@ -25,6 +25,7 @@ import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -65,12 +66,14 @@ import org.apache.ibatis.builder.BuilderException;
 import org.apache.ibatis.builder.IncompleteElementException;
 import org.apache.ibatis.builder.MapperBuilderAssistant;
 import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.cache.CacheExpiry;
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.executor.keygen.NoKeyGenerator;
 import org.apache.ibatis.executor.keygen.SelectKeyGenerator;
 import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.DataSourceRoute;
 import org.apache.ibatis.mapping.Discriminator;
 import org.apache.ibatis.mapping.FetchType;
 import org.apache.ibatis.mapping.MappedStatement;
@@ -209,7 +212,7 @@ public class MapperAnnotationBuilder {
             Integer size = cacheDomain.size() == 0 ? null : cacheDomain.size();
             Long flushInterval = cacheDomain.flushInterval() == 0 ? null : cacheDomain.flushInterval();
             Properties props = convertToProperties(cacheDomain.properties());
-            assistant.useNewCache(cacheDomain.implementation(), cacheDomain.eviction(), flushInterval, size, cacheDomain.readWrite(), cacheDomain.blocking(), props);
+            assistant.useNewCache(cacheDomain.implementation(), cacheDomain.eviction(), flushInterval, size, cacheDomain.readWrite(), cacheDomain.blocking(), cacheDomain.singleFlight(), cacheDomain.copyStrategy(), props);
         }
     }
 
@@ -327,6 +330,7 @@ public class MapperAnnotationBuilder {
             final String mappedStatementId = type.getName() + "." + method.getName();
             Integer fetchSize = null;
             Integer timeout = null;
+            CacheExpiry cacheExpiry = null;
             // 默认的处理类型为PREPARED
             StatementType statementType = StatementType.PREPARED;
             ResultSetType resultSetType = null;
@@ -377,6 +381,8 @@ public class MapperAnnotationBuilder {
                 timeout = options.timeout() > -1 ? options.timeout() : null;
                 statementType = options.statementType();
                 resultSetType = options.resultSetType();
+                cacheExpiry = CacheExpiry.of(options.expireAfterWrite() > -1 ? options.expireAfterWrite() : null,
+                        options.expireAfterAccess() > -1 ? options.expireAfterAccess() : null);
             }
 
             String resultMapId = null;
@@ -419,7 +425,13 @@ public class MapperAnnotationBuilder {
                     null,
                     languageDriver,
                     // ResultSets
-                    options != null ? nullOrEmpty(options.resultSets()) : null);
+                    options != null ? nullOrEmpty(options.resultSets()) : null,
+                    cacheExpiry,
+                    options != null ? nullOrEmpty(options.tables()) : null,
+                    options != null ? options.dataSourceRoute() : null,
+                    options != null ? nullOrEmpty(options.shardKey()) : null,
+                    options != null && options.shardComparator() != Comparator.class ? options.shardComparator() : null,
+                    options != null ? nullOrEmpty(options.connectionPartition()) : null);
         }
     }
 
@@ -741,7 +753,9 @@ public class MapperAnnotationBuilder {
 
         assistant.addMappedStatement(id, sqlSource, statementType, sqlCommandType, fetchSize, timeout, parameterMap, parameterTypeClass, resultMap, resultTypeClass, resultSetTypeEnum,
                 flushCache, useCache, false,
-                keyGenerator, keyProperty, keyColumn, null, languageDriver, null);
+                keyGenerator, keyProperty, keyColumn, null, languageDriver, null, null, null,
+                // 生成主键的语句需要在主库执行
+                DataSourceRoute.PRIMARY, null, null, null);
 
         id = assistant.applyCurrentNamespace(id, false);
         // 获取keyStatement，添加到配置类中
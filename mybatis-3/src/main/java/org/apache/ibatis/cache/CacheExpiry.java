@@ -0,0 +1,87 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * Per-statement expiry of second level cache entries, in milliseconds.
+ * A {@code null} value means the default of the cache, {@code 0} means the entry never expires.
+ * <p>
+ * Only honored by caches decorated with {@link org.apache.ibatis.cache.decorators.ExpiringCache}.
+ * <p>
+ * 缓存条目的过期策略
+ *
+ * @since 3.5.0
+ */
+public final class CacheExpiry {
+
+  // 写入缓存时的过期策略，装饰器链中的ExpiringCache在同一线程上读取
+  private static final ThreadLocal<CacheExpiry> CURRENT = new ThreadLocal<>();
+
+  private final Long expireAfterWrite;
+  private final Long expireAfterAccess;
+
+  private CacheExpiry(Long expireAfterWrite, Long expireAfterAccess) {
+    this.expireAfterWrite = expireAfterWrite;
+    this.expireAfterAccess = expireAfterAccess;
+  }
+
+  /**
+   * @return 两项都为null时返回null
+   */
+  public static CacheExpiry of(Long expireAfterWrite, Long expireAfterAccess) {
+    if (expireAfterWrite == null && expireAfterAccess == null) {
+      return null;
+    }
+    return new CacheExpiry(expireAfterWrite, expireAfterAccess);
+  }
+
+  public Long getExpireAfterWrite() {
+    return expireAfterWrite;
+  }
+
+  public Long getExpireAfterAccess() {
+    return expireAfterAccess;
+  }
+
+  /**
+   * 以指定的过期策略写入缓存
+   */
+  public static void putObject(Cache cache, Object key, Object value, CacheExpiry expiry) {
+    if (expiry == null) {
+      cache.putObject(key, value);
+      return;
+    }
+    CURRENT.set(expiry);
+    try {
+      cache.putObject(key, value);
+    } finally {
+      CURRENT.remove();
+    }
+  }
+
+  /**
+   * @return 当前线程正在写入的条目的过期策略，没有时返回null
+   */
+  public static CacheExpiry current() {
+    return CURRENT.get();
+  }
+
+  @Override
+  public String toString() {
+    return "CacheExpiry{expireAfterWrite=" + expireAfterWrite + ", expireAfterAccess=" + expireAfterAccess + "}";
+  }
+
+}
@@ -0,0 +1,367 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.beans.ConstructorProperties;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * 二级缓存的统计信息
+ * <p>
+ * 缓存级别的计数(命中、未命中、写入、淘汰等)由{@link org.apache.ibatis.cache.decorators.StatisticsCache}记录，
+ * 按语句的命中、加载次数和加载耗时由{@link org.apache.ibatis.executor.CachingExecutor}记录。
+ * 条目大小通过对写入的值抽样估算({@link ObjectSizeEstimator})，高频key通过对请求抽样、count-min sketch估算。
+ * 所有方法都是线程安全的。
+ *
+ * @see org.apache.ibatis.session.Configuration#getCacheStatistics(String)
+ * @since 3.5.0
+ */
+public class CacheStatistics implements CacheStatisticsMXBean {
+
+  // 每16次写入估算一次条目大小
+  private static final int SIZE_SAMPLE_INTERVAL = 16;
+  // 每8次请求记录一次key
+  private static final int KEY_SAMPLE_INTERVAL = 8;
+  private static final int TOP_KEYS = 20;
+
+  private final String cacheId;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder puts = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder removals = new LongAdder();
+  private final LongAdder clears = new LongAdder();
+  private final LongAdder loads = new LongAdder();
+  private final LongAdder loadTimeNanos = new LongAdder();
+  private final LongAdder sizeSamples = new LongAdder();
+  private final LongAdder sampledBytes = new LongAdder();
+  private final Map<String, StatementCounters> statements = new ConcurrentHashMap<>();
+  private final TopKeys topKeys = new TopKeys(TOP_KEYS);
+  private volatile IntSupplier size = () -> 0;
+  private volatile ObjectName objectName;
+
+  public CacheStatistics(String cacheId) {
+    this.cacheId = cacheId;
+  }
+
+  /**
+   * 设置缓存当前条目数的来源
+   */
+  public void setSizeSupplier(IntSupplier size) {
+    this.size = size;
+  }
+
+  public void recordHit(Object key) {
+    hits.increment();
+    sampleKey(key);
+  }
+
+  public void recordMiss(Object key) {
+    misses.increment();
+    sampleKey(key);
+  }
+
+  private void sampleKey(Object key) {
+    if (key != null && ThreadLocalRandom.current().nextInt(KEY_SAMPLE_INTERVAL) == 0) {
+      topKeys.add(key);
+    }
+  }
+
+  public void recordPut(Object value) {
+    puts.increment();
+    if (value != null && (sizeSamples.sum() == 0 || ThreadLocalRandom.current().nextInt(SIZE_SAMPLE_INTERVAL) == 0)) {
+      sampledBytes.add(ObjectSizeEstimator.estimate(value));
+      sizeSamples.increment();
+    }
+  }
+
+  public void recordEvictions(int count) {
+    evictions.add(count);
+  }
+
+  public void recordRemoval() {
+    removals.increment();
+  }
+
+  public void recordClear() {
+    clears.increment();
+  }
+
+  /**
+   * 语句的查询命中了缓存
+   */
+  public void recordStatementHit(String statementId) {
+    statement(statementId).hits.increment();
+  }
+
+  /**
+   * 语句的查询未命中缓存，从数据库加载
+   */
+  public void recordStatementLoad(String statementId, long nanos) {
+    loads.increment();
+    loadTimeNanos.add(nanos);
+    StatementCounters counters = statement(statementId);
+    counters.misses.increment();
+    counters.loadTimeNanos.add(nanos);
+  }
+
+  private StatementCounters statement(String statementId) {
+    StatementCounters counters = statements.get(statementId);
+    if (counters == null) {
+      counters = statements.computeIfAbsent(statementId, id -> new StatementCounters());
+    }
+    return counters;
+  }
+
+  @Override
+  public String getCacheId() {
+    return cacheId;
+  }
+
+  @Override
+  public long getRequests() {
+    return hits.sum() + misses.sum();
+  }
+
+  @Override
+  public long getHits() {
+    return hits.sum();
+  }
+
+  @Override
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  @Override
+  public double getHitRatio() {
+    long hitCount = hits.sum();
+    long requests = hitCount + misses.sum();
+    return requests == 0 ? 0 : (double) hitCount / requests;
+  }
+
+  @Override
+  public long getPuts() {
+    return puts.sum();
+  }
+
+  /**
+   * @return 写入时被缓存的淘汰策略移除的条目数(根据写入前后的条目数估算，覆盖已有的key也会计入)
+   */
+  @Override
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  @Override
+  public long getRemovals() {
+    return removals.sum();
+  }
+
+  @Override
+  public long getClears() {
+    return clears.sum();
+  }
+
+  @Override
+  public long getLoads() {
+    return loads.sum();
+  }
+
+  @Override
+  public long getTotalLoadTimeNanos() {
+    return loadTimeNanos.sum();
+  }
+
+  @Override
+  public double getAverageLoadTimeMillis() {
+    long loadCount = loads.sum();
+    return loadCount == 0 ? 0 : loadTimeNanos.sum() / 1_000_000.0 / loadCount;
+  }
+
+  @Override
+  public int getSize() {
+    return size.getAsInt();
+  }
+
+  /**
+   * @return 抽样估算的平均条目大小(字节)
+   */
+  @Override
+  public long getAverageEntryBytes() {
+    long samples = sizeSamples.sum();
+    return samples == 0 ? 0 : sampledBytes.sum() / samples;
+  }
+
+  /**
+   * @return 平均条目大小乘以条目数
+   */
+  @Override
+  public long getEstimatedBytes() {
+    return getAverageEntryBytes() * getSize();
+  }
+
+  /**
+   * @return 访问最频繁的key(字符串形式)到估算的访问次数，按次数从高到低排列
+   */
+  @Override
+  public Map<String, Long> getTopKeys() {
+    return getTopKeys(TOP_KEYS);
+  }
+
+  public Map<String, Long> getTopKeys(int n) {
+    return topKeys.top(n, KEY_SAMPLE_INTERVAL);
+  }
+
+  @Override
+  public List<StatementStatistics> getStatementStatistics() {
+    List<StatementStatistics> result = new ArrayList<>(statements.size());
+    for (Map.Entry<String, StatementCounters> entry : statements.entrySet()) {
+      StatementCounters counters = entry.getValue();
+      result.add(new StatementStatistics(entry.getKey(), counters.hits.sum(), counters.misses.sum(), counters.loadTimeNanos.sum()));
+    }
+    result.sort((a, b) -> Long.compare(b.getHits() + b.getMisses(), a.getHits() + a.getMisses()));
+    return result;
+  }
+
+  /**
+   * @return 语句的统计信息，语句没有访问过缓存时返回null
+   */
+  public StatementStatistics getStatementStatistics(String statementId) {
+    StatementCounters counters = statements.get(statementId);
+    return counters == null ? null
+        : new StatementStatistics(statementId, counters.hits.sum(), counters.misses.sum(), counters.loadTimeNanos.sum());
+  }
+
+  @Override
+  public void reset() {
+    hits.reset();
+    misses.reset();
+    puts.reset();
+    evictions.reset();
+    removals.reset();
+    clears.reset();
+    loads.reset();
+    loadTimeNanos.reset();
+    sizeSamples.reset();
+    sampledBytes.reset();
+    statements.clear();
+    topKeys.clear();
+  }
+
+  /**
+   * 注册到平台MBeanServer，名称为 {@code org.apache.ibatis:type=CacheStatistics,scope=<scope>,name=<cacheId>}
+   *
+   * @param scope 区分同一个JVM中的多个Configuration
+   */
+  public synchronized void registerMBean(String scope) {
+    if (objectName != null) {
+      return;
+    }
+    try {
+      ObjectName name = new ObjectName("org.apache.ibatis:type=CacheStatistics,scope=" + ObjectName.quote(scope)
+          + ",name=" + ObjectName.quote(cacheId));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+      objectName = name;
+    } catch (JMException e) {
+      throw new CacheException("Error registering statistics MBean of cache " + cacheId + ".  Cause: " + e, e);
+    }
+  }
+
+  public synchronized void unregisterMBean() {
+    if (objectName == null) {
+      return;
+    }
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if (server.isRegistered(objectName)) {
+        server.unregisterMBean(objectName);
+      }
+    } catch (JMException e) {
+      throw new CacheException("Error unregistering statistics MBean of cache " + cacheId + ".  Cause: " + e, e);
+    } finally {
+      objectName = null;
+    }
+  }
+
+  /**
+   * @return 注册到JMX时的名称，没有注册时返回null
+   */
+  public ObjectName getObjectName() {
+    return objectName;
+  }
+
+  private static final class StatementCounters {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadTimeNanos = new LongAdder();
+  }
+
+  /**
+   * 一个语句在缓存上的统计信息
+   */
+  public static final class StatementStatistics {
+
+    private final String statementId;
+    private final long hits;
+    private final long misses;
+    private final long loadTimeNanos;
+
+    @ConstructorProperties({"statementId", "hits", "misses", "loadTimeNanos"})
+    public StatementStatistics(String statementId, long hits, long misses, long loadTimeNanos) {
+      this.statementId = statementId;
+      this.hits = hits;
+      this.misses = misses;
+      this.loadTimeNanos = loadTimeNanos;
+    }
+
+    public String getStatementId() {
+      return statementId;
+    }
+
+    public long getHits() {
+      return hits;
+    }
+
+    /**
+     * @return 未命中并从数据库加载的次数
+     */
+    public long getMisses() {
+      return misses;
+    }
+
+    public long getLoadTimeNanos() {
+      return loadTimeNanos;
+    }
+
+    @Override
+    public String toString() {
+      return statementId + "[hits=" + hits + ", misses=" + misses + ", loadTimeNanos=" + loadTimeNanos + "]";
+    }
+  }
+
+}
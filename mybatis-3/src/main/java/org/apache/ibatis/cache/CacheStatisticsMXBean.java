@@ -0,0 +1,66 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JMX view of {@link CacheStatistics}.
+ * <p>
+ * 缓存统计信息的JMX接口
+ *
+ * @since 3.5.0
+ */
+public interface CacheStatisticsMXBean {
+
+  String getCacheId();
+
+  long getRequests();
+
+  long getHits();
+
+  long getMisses();
+
+  double getHitRatio();
+
+  long getPuts();
+
+  long getEvictions();
+
+  long getRemovals();
+
+  long getClears();
+
+  long getLoads();
+
+  long getTotalLoadTimeNanos();
+
+  double getAverageLoadTimeMillis();
+
+  int getSize();
+
+  long getAverageEntryBytes();
+
+  long getEstimatedBytes();
+
+  Map<String, Long> getTopKeys();
+
+  List<CacheStatistics.StatementStatistics> getStatementStatistics();
+
+  void reset();
+
+}
@@ -0,0 +1,46 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * SPI for the way a read/write cache copies the objects it stores.
+ * <p>
+ * {@link org.apache.ibatis.cache.decorators.SerializedCache} stores the result of
+ * {@link #copyOnWrite(Object)} and returns {@link #copyOnRead(Object)} of it on every hit,
+ * so callers can never modify the cached objects.
+ * <p>
+ * An implementation may have a constructor that takes a {@link org.apache.ibatis.session.Configuration},
+ * otherwise it must have a default constructor.
+ * <p>
+ * 读写缓存的复制策略
+ *
+ * @since 3.5.0
+ */
+public interface CopyStrategy {
+
+  /**
+   * @param value The result of a select, may be null
+   * @return The representation to store in the cache
+   */
+  Object copyOnWrite(Object value);
+
+  /**
+   * @param stored A representation previously returned by {@link #copyOnWrite(Object)}, never null
+   * @return A copy of the original value
+   */
+  Object copyOnRead(Object stored);
+
+}
@@ -0,0 +1,226 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ibatis.reflection.Reflector;
+
+/**
+ * 粗略估算对象图占用的堆内存
+ * <p>
+ * 按64位JVM开启压缩指针的布局计算(对象头12字节、引用4字节、8字节对齐)。
+ * 大集合只抽样其中的一部分元素再按数量推算；JDK中的类只计算浅层大小(集合、数组、字符串除外)，
+ * MyBatis自身的对象(例如延迟加载的代理持有的ResultLoaderMap)不计算在内。
+ * 结果只用于限制缓存的大小，不是精确值。
+ *
+ * @since 3.5.0
+ */
+public final class ObjectSizeEstimator {
+
+  private static final int HEADER = 12;
+  private static final int ARRAY_HEADER = 16;
+  private static final int REFERENCE = 4;
+  // 集合中每个元素的额外开销(HashMap.Node、LinkedList.Node等的平均值)
+  private static final int COLLECTION_ENTRY = 24;
+  // 大集合抽样的元素数
+  private static final int SAMPLE_SIZE = 16;
+  // 单次估算最多访问的对象数
+  private static final int MAX_OBJECTS = 10000;
+
+  private static final Map<Class<?>, ClassLayout> layouts = new ConcurrentHashMap<>();
+
+  private ObjectSizeEstimator() {
+    // Prevent Instantiation of Static Class
+  }
+
+  public static long estimate(Object object) {
+    if (object == null) {
+      return 0;
+    }
+    IdentityHashMap<Object, Boolean> visited = new IdentityHashMap<>();
+    Deque<Object> pending = new ArrayDeque<>();
+    pending.push(object);
+    long size = 0;
+    while (!pending.isEmpty() && visited.size() < MAX_OBJECTS) {
+      Object current = pending.pop();
+      if (visited.put(current, Boolean.TRUE) != null) {
+        continue;
+      }
+      size += sizeOf(current, pending);
+    }
+    return size;
+  }
+
+  private static long sizeOf(Object object, Deque<Object> pending) {
+    Class<?> type = object.getClass();
+    if (type == String.class) {
+      // String对象 + char[]
+      return align(HEADER + 3 * REFERENCE) + align(ARRAY_HEADER + 2L * ((String) object).length());
+    }
+    if (type.isArray()) {
+      return sizeOfArray(object, type.getComponentType(), pending);
+    }
+    if (object instanceof Collection) {
+      return sizeOfCollection((Collection<?>) object, pending);
+    }
+    if (object instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) object;
+      List<Object> entries = new ArrayList<>(2 * Math.min(map.size(), SAMPLE_SIZE));
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        if (entries.size() >= 2 * SAMPLE_SIZE) {
+          break;
+        }
+        entries.add(entry.getKey());
+        entries.add(entry.getValue());
+      }
+      return sampled(map.size(), entries, 2, pending) + align(HEADER + 6 * REFERENCE) + (long) map.size() * (COLLECTION_ENTRY + REFERENCE);
+    }
+    ClassLayout layout = layouts.computeIfAbsent(type, ClassLayout::new);
+    for (Field field : layout.references) {
+      try {
+        Object value = field.get(object);
+        if (value != null && isTraversable(value.getClass())) {
+          pending.push(value);
+        }
+      } catch (IllegalAccessException e) {
+        // ignore
+      }
+    }
+    return layout.shallowSize;
+  }
+
+  private static long sizeOfArray(Object array, Class<?> componentType, Deque<Object> pending) {
+    int length = Array.getLength(array);
+    if (componentType.isPrimitive()) {
+      return align(ARRAY_HEADER + (long) length * primitiveSize(componentType));
+    }
+    long size = align(ARRAY_HEADER + (long) length * REFERENCE);
+    List<Object> elements = new ArrayList<>(Math.min(length, SAMPLE_SIZE));
+    for (int i = 0; i < length && elements.size() < SAMPLE_SIZE; i++) {
+      Object element = Array.get(array, i);
+      if (element != null) {
+        elements.add(element);
+      }
+    }
+    return size + sampled(length, elements, 1, pending);
+  }
+
+  private static long sizeOfCollection(Collection<?> collection, Deque<Object> pending) {
+    int size = collection.size();
+    List<Object> elements = new ArrayList<>(Math.min(size, SAMPLE_SIZE));
+    Iterator<?> iterator = collection.iterator();
+    while (iterator.hasNext() && elements.size() < SAMPLE_SIZE) {
+      Object element = iterator.next();
+      if (element != null) {
+        elements.add(element);
+      }
+    }
+    return sampled(size, elements, 1, pending) + align(HEADER + 4 * REFERENCE) + (long) size * (COLLECTION_ENTRY / 2 + REFERENCE);
+  }
+
+  /**
+   * 小集合的元素交给调用方继续遍历；大集合直接估算抽样的元素，再按数量推算
+   */
+  private static long sampled(int count, List<Object> sample, int perElement, Deque<Object> pending) {
+    if (count <= SAMPLE_SIZE) {
+      for (Object element : sample) {
+        if (isTraversable(element.getClass())) {
+          pending.push(element);
+        }
+      }
+      return 0;
+    }
+    long sampleSize = 0;
+    for (Object element : sample) {
+      if (isTraversable(element.getClass())) {
+        sampleSize += estimate(element);
+      }
+    }
+    return sample.isEmpty() ? 0 : sampleSize * count * perElement / sample.size();
+  }
+
+  private static boolean isTraversable(Class<?> type) {
+    String name = type.getName();
+    return !name.startsWith("org.apache.ibatis.") && type != Class.class && !ClassLoader.class.isAssignableFrom(type)
+        && !Thread.class.isAssignableFrom(type);
+  }
+
+  private static int primitiveSize(Class<?> type) {
+    if (type == long.class || type == double.class) {
+      return 8;
+    } else if (type == int.class || type == float.class) {
+      return 4;
+    } else if (type == short.class || type == char.class) {
+      return 2;
+    }
+    return 1;
+  }
+
+  private static long align(long size) {
+    return (size + 7) & ~7L;
+  }
+
+  private static class ClassLayout {
+
+    private final long shallowSize;
+    // 需要继续遍历的引用字段，JDK中的类为空
+    private final List<Field> references = new ArrayList<>();
+
+    ClassLayout(Class<?> type) {
+      long size = HEADER;
+      boolean jdk = type.getName().startsWith("java.") || type.getName().startsWith("javax.");
+      for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+        for (Field field : c.getDeclaredFields()) {
+          if (Modifier.isStatic(field.getModifiers())) {
+            continue;
+          }
+          Class<?> fieldType = field.getType();
+          size += fieldType.isPrimitive() ? primitiveSize(fieldType) : REFERENCE;
+          if (!jdk && !fieldType.isPrimitive() && makeAccessible(field)) {
+            references.add(field);
+          }
+        }
+      }
+      this.shallowSize = align(size);
+    }
+
+    private static boolean makeAccessible(Field field) {
+      if (!Reflector.canControlMemberAccessible()) {
+        return false;
+      }
+      try {
+        field.setAccessible(true);
+        return true;
+      } catch (RuntimeException e) {
+        // SecurityException，或者Java 9+中无法访问的模块
+        return false;
+      }
+    }
+  }
+
+}
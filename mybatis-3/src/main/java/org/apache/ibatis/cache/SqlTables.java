@@ -0,0 +1,236 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 从SQL中提取读取和修改的表名
+ * <p>
+ * 只做词法层面的识别：FROM/JOIN之后的表是读取的表，INSERT INTO、UPDATE、DELETE FROM、MERGE INTO、TRUNCATE TABLE之后的表是修改的表。
+ * 表名统一取最后一段(去掉schema)并转为小写，多识别出的表只会导致多失效，不会读到旧数据。
+ * 视图、触发器、存储过程涉及的表无法识别，需要在语句上声明。
+ */
+final class SqlTables {
+
+  // 带引号的标识符的前缀，保证不会被当作关键字
+  private static final char QUOTE = '"';
+
+  // 出现在表名之后时不是别名的关键字
+  private static final Set<String> CLAUSE_KEYWORDS = new HashSet<>(Arrays.asList(
+      "where", "join", "inner", "left", "right", "full", "cross", "natural", "outer", "on", "using",
+      "group", "order", "having", "limit", "offset", "fetch", "union", "intersect", "except", "minus",
+      "for", "set", "values", "select", "window", "start", "connect", "returning", "default", "lateral",
+      "with", "into", "partition", "sample", "straight_join", "when", "then"));
+
+  private SqlTables() {
+    // Prevent Instantiation of Static Class
+  }
+
+  /**
+   * @return 读取的表，无法识别时返回null
+   */
+  static Set<String> readTables(String sql) {
+    List<String> tokens = tokenize(sql);
+    Set<String> tables = new TreeSet<>();
+    for (int i = 0; i < tokens.size(); i++) {
+      String token = tokens.get(i);
+      if ("from".equals(token)) {
+        int j = i + 1;
+        while (true) {
+          j = tableReference(tokens, j, tables);
+          if (j < tokens.size() && ",".equals(tokens.get(j))) {
+            j++;
+          } else {
+            break;
+          }
+        }
+      } else if ("join".equals(token)) {
+        tableReference(tokens, i + 1, tables);
+      }
+    }
+    return tables.isEmpty() ? null : tables;
+  }
+
+  /**
+   * @return 修改的表，无法识别时返回null
+   */
+  static Set<String> writtenTables(String sql) {
+    List<String> tokens = tokenize(sql);
+    Set<String> tables = new TreeSet<>();
+    for (int i = 0; i < tokens.size() - 1; i++) {
+      String token = tokens.get(i);
+      String next = tokens.get(i + 1);
+      String previous = i > 0 ? tokens.get(i - 1) : "";
+      if ("into".equals(token) && ("insert".equals(previous) || "replace".equals(previous) || "merge".equals(previous))) {
+        addTable(tables, next);
+      } else if ("update".equals(token) && !"key".equals(previous) && !"for".equals(previous)) {
+        // 排除 ON DUPLICATE KEY UPDATE 和 SELECT ... FOR UPDATE
+        addTable(tables, next);
+      } else if ("delete".equals(token)) {
+        addTable(tables, "from".equals(next) && i + 2 < tokens.size() ? tokens.get(i + 2) : next);
+      } else if ("truncate".equals(token)) {
+        addTable(tables, "table".equals(next) && i + 2 < tokens.size() ? tokens.get(i + 2) : next);
+      }
+    }
+    return tables.isEmpty() ? null : tables;
+  }
+
+  /**
+   * 按识别SQL时相同的规则处理声明的表名：去掉schema和引号，转为小写
+   */
+  static String normalize(String name) {
+    List<String> tokens = tokenize(name);
+    for (int i = tokens.size() - 1; i >= 0; i--) {
+      if (isIdentifier(tokens.get(i))) {
+        return tableName(tokens.get(i));
+      }
+    }
+    return name.trim().toLowerCase(Locale.ENGLISH);
+  }
+
+  private static int tableReference(List<String> tokens, int index, Set<String> tables) {
+    if (index >= tokens.size()) {
+      return index;
+    }
+    String token = tokens.get(index);
+    if (!isIdentifier(token) || CLAUSE_KEYWORDS.contains(token)) {
+      // 子查询中的表由外层循环识别
+      return index;
+    }
+    tables.add(tableName(token));
+    index++;
+    // 跳过别名
+    if (index < tokens.size() && "as".equals(tokens.get(index))) {
+      index++;
+    }
+    if (index < tokens.size() && isIdentifier(tokens.get(index)) && !CLAUSE_KEYWORDS.contains(tokens.get(index))) {
+      index++;
+    }
+    return index;
+  }
+
+  private static void addTable(Set<String> tables, String token) {
+    if (isIdentifier(token) && !CLAUSE_KEYWORDS.contains(token)) {
+      tables.add(tableName(token));
+    }
+  }
+
+  private static boolean isIdentifier(String token) {
+    char c = token.charAt(0);
+    return Character.isLetter(c) || c == '_' || c == '$' || c == '#' || c == QUOTE;
+  }
+
+  private static String tableName(String token) {
+    return token.charAt(0) == QUOTE ? token.substring(1) : token;
+  }
+
+  /**
+   * 拆分为标识符(小写，限定名只保留最后一段，带引号的以{@link #QUOTE}开头)以及 ( ) , ; 等符号，忽略注释、字符串和其他符号
+   */
+  static List<String> tokenize(String sql) {
+    List<String> tokens = new ArrayList<>();
+    int length = sql.length();
+    int i = 0;
+    String identifier = null;
+    boolean qualified = false;
+    while (i < length) {
+      char c = sql.charAt(i);
+      if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+        int end = sql.indexOf('\n', i);
+        i = end < 0 ? length : end + 1;
+        continue;
+      }
+      if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+        int end = sql.indexOf("*/", i + 2);
+        i = end < 0 ? length : end + 2;
+        continue;
+      }
+      if (c == '\'') {
+        i = skipQuoted(sql, i, '\'');
+        identifier = flush(tokens, identifier);
+        continue;
+      }
+      String part = null;
+      if (c == '"' || c == '`' || c == '[') {
+        char close = c == '[' ? ']' : c;
+        int end = sql.indexOf(close, i + 1);
+        end = end < 0 ? length : end;
+        part = QUOTE + sql.substring(i + 1, end);
+        i = end + 1;
+      } else if (Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#') {
+        int start = i;
+        while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_' || sql.charAt(i) == '$' || sql.charAt(i) == '#')) {
+          i++;
+        }
+        part = sql.substring(start, i);
+      }
+      if (part != null) {
+        if (identifier != null && qualified) {
+          // schema.table 只保留 table
+          identifier = part;
+        } else {
+          identifier = flush(tokens, identifier);
+          identifier = part;
+        }
+        qualified = false;
+        continue;
+      }
+      if (c == '.' && identifier != null) {
+        qualified = true;
+        i++;
+        continue;
+      }
+      identifier = flush(tokens, identifier);
+      qualified = false;
+      if (c == '(' || c == ')' || c == ',' || c == ';') {
+        tokens.add(String.valueOf(c));
+      }
+      i++;
+    }
+    flush(tokens, identifier);
+    return tokens;
+  }
+
+  private static String flush(List<String> tokens, String identifier) {
+    if (identifier != null) {
+      tokens.add(identifier.toLowerCase(Locale.ENGLISH));
+    }
+    return null;
+  }
+
+  private static int skipQuoted(String sql, int start, char quote) {
+    int i = start + 1;
+    while (i < sql.length()) {
+      if (sql.charAt(i) == quote) {
+        if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+          i += 2;
+          continue;
+        }
+        return i + 1;
+      }
+      i++;
+    }
+    return i;
+  }
+
+}
@@ -0,0 +1,154 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+
+/**
+ * 按表失效二级缓存
+ * <p>
+ * 每个表有一个版本号，写操作提交后增加它修改的表的版本号。
+ * 查询的缓存key中包含它读取的表当前的版本号，表被修改后旧的条目不会再被命中，最终由缓存的淘汰策略移除。
+ * 因此只有读取了被修改的表的条目失效，并且与命名空间无关。
+ * <p>
+ * 语句读取/修改的表优先使用声明的表({@link MappedStatement#getTables()})，否则从SQL中识别。
+ * 无法识别读取表的查询依赖于任何写操作，无法识别修改表的写操作使所有条目失效。
+ *
+ * @since 3.5.0
+ */
+public class TableVersions {
+
+  // 任何写操作都会增加它的版本号
+  private static final String ANY_TABLE = "*";
+  // 无法识别修改表的写操作会增加它的版本号，所有查询都依赖它
+  public static final String ALL_TABLES = "**";
+  private static final Set<String> UNKNOWN = Collections.singleton(ANY_TABLE);
+  private static final Set<String> ALL = Collections.singleton(ALL_TABLES);
+  private static final int MAX_CACHED_SQL = 1024;
+
+  private final ConcurrentHashMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+  // SQL -> 表，动态SQL的每种形式都会解析一次
+  private final ConcurrentHashMap<String, Set<String>> readTablesCache = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Set<String>> writtenTablesCache = new ConcurrentHashMap<>();
+
+  /**
+   * @return 查询读取的表，无法识别时只包含"*"
+   */
+  public Set<String> getReadTables(MappedStatement ms, BoundSql boundSql) {
+    return resolve(ms, boundSql, readTablesCache, SqlTables::readTables, UNKNOWN);
+  }
+
+  /**
+   * @return 写操作修改的表，无法识别时只包含{@link #ALL_TABLES}
+   */
+  public Set<String> getWrittenTables(MappedStatement ms, BoundSql boundSql) {
+    return resolve(ms, boundSql, writtenTablesCache, SqlTables::writtenTables, ALL);
+  }
+
+  /**
+   * @return 与从SQL中识别出的表名一致的形式(去掉schema和引号，小写)
+   */
+  public static String normalizeTableName(String name) {
+    return SqlTables.normalize(name);
+  }
+
+  private Set<String> resolve(MappedStatement ms, BoundSql boundSql, ConcurrentHashMap<String, Set<String>> cache,
+      Function<String, Set<String>> parser, Set<String> unknown) {
+    String[] declared = ms.getTables();
+    if (declared != null) {
+      return new TreeSet<>(Arrays.asList(declared));
+    }
+    String sql = boundSql.getSql();
+    Set<String> tables = cache.get(sql);
+    if (tables == null) {
+      tables = parser.apply(sql);
+      tables = tables == null ? unknown : Collections.unmodifiableSet(tables);
+      if (cache.size() >= MAX_CACHED_SQL) {
+        cache.clear();
+      }
+      cache.put(sql, tables);
+    }
+    return tables;
+  }
+
+  /**
+   * 在缓存key中加入读取的表当前的版本号
+   */
+  public CacheKey tag(CacheKey key, Set<String> readTables) {
+    CacheKey tagged;
+    try {
+      tagged = key.clone();
+    } catch (CloneNotSupportedException e) {
+      throw new CacheException("Could not clone cache key " + key, e);
+    }
+    tagged.update(getVersion(ALL_TABLES));
+    for (String table : readTables) {
+      tagged.update(getVersion(table));
+    }
+    return tagged;
+  }
+
+  /**
+   * @return 修改了这些表之后，读取readTables的查询结果是否可能变化
+   */
+  public static boolean isAffected(Set<String> readTables, Set<String> writtenTables) {
+    if (writtenTables.isEmpty()) {
+      return false;
+    }
+    if (writtenTables.contains(ALL_TABLES) || readTables.contains(ANY_TABLE)) {
+      return true;
+    }
+    for (String table : readTables) {
+      if (writtenTables.contains(table)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * 写操作提交后调用，使读取了这些表的条目失效
+   */
+  public void invalidate(Collection<String> writtenTables) {
+    if (writtenTables.isEmpty()) {
+      return;
+    }
+    for (String table : writtenTables) {
+      increment(table);
+    }
+    increment(ANY_TABLE);
+  }
+
+  public long getVersion(String table) {
+    AtomicLong version = versions.get(table);
+    return version == null ? 0 : version.get();
+  }
+
+  private void increment(String table) {
+    versions.computeIfAbsent(table, k -> new AtomicLong()).incrementAndGet();
+  }
+
+}
@@ -0,0 +1,105 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于count-min sketch的高频key采样
+ * <p>
+ * sketch估算每个key被采样的次数(只会高估)，同时保留估算次数最高的若干个候选key。
+ * 候选key的字符串形式在查询时才计算，候选集合很小，保留key对象的开销可以忽略。
+ */
+final class TopKeys {
+
+  private static final int DEPTH = 4;
+  private static final int WIDTH = 1024;
+  private static final int[] SEEDS = {0x7ED55D16, 0xC761C23C, 0x165667B1, 0xD3A2646C};
+  private static final int MAX_KEY_LENGTH = 200;
+
+  private final long[][] counts = new long[DEPTH][WIDTH];
+  private final int capacity;
+  private final Map<Object, Long> candidates = new HashMap<>();
+
+  TopKeys(int capacity) {
+    this.capacity = capacity;
+  }
+
+  synchronized void add(Object key) {
+    int hash = key.hashCode();
+    long estimate = Long.MAX_VALUE;
+    for (int i = 0; i < DEPTH; i++) {
+      long count = ++counts[i][indexFor(hash, i)];
+      estimate = Math.min(estimate, count);
+    }
+    if (candidates.containsKey(key) || candidates.size() < capacity) {
+      candidates.put(key, estimate);
+      return;
+    }
+    // 替换估算次数最少的候选key
+    Map.Entry<Object, Long> smallest = null;
+    for (Map.Entry<Object, Long> entry : candidates.entrySet()) {
+      if (smallest == null || entry.getValue() < smallest.getValue()) {
+        smallest = entry;
+      }
+    }
+    if (smallest != null && estimate > smallest.getValue()) {
+      candidates.remove(smallest.getKey());
+      candidates.put(key, estimate);
+    }
+  }
+
+  private static int indexFor(int hash, int row) {
+    int h = (hash ^ SEEDS[row]) * 0x9E3779B9;
+    h ^= h >>> 15;
+    return h & (WIDTH - 1);
+  }
+
+  /**
+   * @param scale 采样间隔，估算次数乘以它得到估算的访问次数
+   * @return key的字符串形式到估算访问次数，按次数从高到低排列
+   */
+  synchronized Map<String, Long> top(int n, long scale) {
+    List<Map.Entry<Object, Long>> entries = new ArrayList<>(candidates.entrySet());
+    entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+    Map<String, Long> top = new LinkedHashMap<>();
+    for (Map.Entry<Object, Long> entry : entries) {
+      if (top.size() >= n) {
+        break;
+      }
+      top.merge(describe(entry.getKey()), entry.getValue() * scale, Long::sum);
+    }
+    return top;
+  }
+
+  private static String describe(Object key) {
+    String string = String.valueOf(key);
+    return string.length() > MAX_KEY_LENGTH ? string.substring(0, MAX_KEY_LENGTH) + "..." : string;
+  }
+
+  synchronized void clear() {
+    for (long[] row : counts) {
+      Arrays.fill(row, 0);
+    }
+    candidates.clear();
+  }
+
+}
@@ -15,10 +15,15 @@
  */
 package org.apache.ibatis.cache;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.apache.ibatis.cache.decorators.SingleFlightCache;
 import org.apache.ibatis.cache.decorators.TransactionalCache;
+import org.apache.ibatis.cache.invalidation.CacheInvalidationPublisher;
+import org.apache.ibatis.cache.invalidation.Invalidation;
 
 /**
  *  事务缓存管理器
@@ -27,6 +32,19 @@ import org.apache.ibatis.cache.decorators.TransactionalCache;
 public class TransactionalCacheManager {
 
   private final Map<Cache, TransactionalCache> transactionalCaches = new HashMap<>();
+  // 提交后通知其他节点，可以为null
+  private final CacheInvalidationPublisher publisher;
+
+  public TransactionalCacheManager() {
+    this(null);
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public TransactionalCacheManager(CacheInvalidationPublisher publisher) {
+    this.publisher = publisher;
+  }
 
   public void clear(Cache cache) {
     getTransactionalCache(cache).clear();
@@ -36,14 +54,39 @@ public class TransactionalCacheManager {
     return getTransactionalCache(cache).getObject(key);
   }
   
+  /**
+   * @since 3.5.0
+   */
+  public <E extends Exception> Object getObject(Cache cache, CacheKey key, SingleFlightCache.Loader<E> loader) throws E {
+    return getTransactionalCache(cache).getObject(key, loader);
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public <E extends Exception> Object getObject(Cache cache, CacheKey key, CacheExpiry expiry, SingleFlightCache.Loader<E> loader) throws E {
+    return getTransactionalCache(cache).getObject(key, expiry, loader);
+  }
+
   public void putObject(Cache cache, CacheKey key, Object value) {
     getTransactionalCache(cache).putObject(key, value);
   }
 
   public void commit() {
-    for (TransactionalCache txCache : transactionalCaches.values()) {
+    List<Invalidation> invalidations = null;
+    for (Map.Entry<Cache, TransactionalCache> entry : transactionalCaches.entrySet()) {
+      TransactionalCache txCache = entry.getValue();
+      if (publisher != null && txCache.isClearOnCommit()) {
+        if (invalidations == null) {
+          invalidations = new ArrayList<>();
+        }
+        invalidations.add(Invalidation.namespace(entry.getKey().getId()));
+      }
       txCache.commit();
     }
+    if (invalidations != null) {
+      publisher.publish(invalidations);
+    }
   }
 
   public void rollback() {
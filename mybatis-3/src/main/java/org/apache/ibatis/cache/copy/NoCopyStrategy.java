@@ -0,0 +1,40 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.copy;
+
+import org.apache.ibatis.cache.CopyStrategy;
+
+/**
+ * 不复制，直接缓存结果对象本身
+ * <p>
+ * 所有调用方共享同一个对象，只适用于结果对象不可变(或者调用方保证不会修改)的场景，
+ * 效果与readOnly缓存相同，结果对象也不需要实现{@link java.io.Serializable}。
+ *
+ * @since 3.5.0
+ */
+public class NoCopyStrategy implements CopyStrategy {
+
+  @Override
+  public Object copyOnWrite(Object value) {
+    return value;
+  }
+
+  @Override
+  public Object copyOnRead(Object stored) {
+    return stored;
+  }
+
+}
@@ -0,0 +1,398 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.copy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.cache.copy.ResultSchema.TypeSchema;
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.reflection.factory.ObjectFactory;
+
+/**
+ * 基于{@link ResultSchema}的二进制编码
+ * <p>
+ * 每个值以一个字节的标记开头；结果对象只写类型序号和按固定顺序排列的属性值；
+ * 已经写过的对象、集合只写引用序号，保证共享引用和循环引用复制后依然成立。
+ * 不支持的值会抛出{@link UnsupportedValueException}，由调用方改用Java序列化。
+ */
+final class ResultCodec {
+
+  // 编码格式标记，Java序列化的数据以0xACED开头，不会与之冲突
+  static final byte FORMAT = 1;
+
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte INTEGER = 2;
+  private static final byte LONG = 3;
+  private static final byte SHORT = 4;
+  private static final byte BYTE = 5;
+  private static final byte BOOLEAN = 6;
+  private static final byte DOUBLE = 7;
+  private static final byte FLOAT = 8;
+  private static final byte CHARACTER = 9;
+  private static final byte BIG_DECIMAL = 10;
+  private static final byte BIG_INTEGER = 11;
+  private static final byte DATE = 12;
+  private static final byte SQL_DATE = 13;
+  private static final byte SQL_TIME = 14;
+  private static final byte TIMESTAMP = 15;
+  private static final byte BYTES = 16;
+  private static final byte ENUM = 17;
+  private static final byte OBJECT = 18;
+  private static final byte ARRAY_LIST = 19;
+  private static final byte HASH_MAP = 20;
+  private static final byte HASH_SET = 21;
+  private static final byte REFERENCE = 22;
+  private static final byte LOCAL_DATE = 23;
+  private static final byte LOCAL_DATE_TIME = 24;
+  private static final byte LOCAL_TIME = 25;
+  private static final byte INSTANT = 26;
+
+  private static final Object[] NO_ARGUMENTS = new Object[0];
+
+  private ResultCodec() {
+    // Prevent Instantiation of Static Class
+  }
+
+  static byte[] encode(ResultSchema schema, Object value) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(256);
+    DataOutputStream out = new DataOutputStream(bos);
+    out.writeByte(FORMAT);
+    new Encoder(schema, out).write(value, null);
+    out.flush();
+    return bos.toByteArray();
+  }
+
+  static Object decode(ResultSchema schema, ObjectFactory objectFactory, byte[] bytes) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1));
+    return new Decoder(schema, objectFactory, in).read(null);
+  }
+
+  private static final class Encoder {
+
+    private final ResultSchema schema;
+    private final DataOutputStream out;
+    // 已写过的对象及其引用序号
+    private final Map<Object, Integer> references = new IdentityHashMap<>();
+
+    Encoder(ResultSchema schema, DataOutputStream out) {
+      this.schema = schema;
+      this.out = out;
+    }
+
+    /**
+     * @param declaredType 属性的声明类型，枚举值只能在声明类型就是该枚举时编码
+     */
+    void write(Object value, Class<?> declaredType) throws IOException {
+      if (value == null) {
+        out.writeByte(NULL);
+        return;
+      }
+      Class<?> type = value.getClass();
+      if (type == String.class) {
+        out.writeByte(STRING);
+        writeBytes(((String) value).getBytes(StandardCharsets.UTF_8));
+      } else if (type == Integer.class) {
+        out.writeByte(INTEGER);
+        out.writeInt((Integer) value);
+      } else if (type == Long.class) {
+        out.writeByte(LONG);
+        out.writeLong((Long) value);
+      } else if (type == Short.class) {
+        out.writeByte(SHORT);
+        out.writeShort((Short) value);
+      } else if (type == Byte.class) {
+        out.writeByte(BYTE);
+        out.writeByte((Byte) value);
+      } else if (type == Boolean.class) {
+        out.writeByte(BOOLEAN);
+        out.writeBoolean((Boolean) value);
+      } else if (type == Double.class) {
+        out.writeByte(DOUBLE);
+        out.writeDouble((Double) value);
+      } else if (type == Float.class) {
+        out.writeByte(FLOAT);
+        out.writeFloat((Float) value);
+      } else if (type == Character.class) {
+        out.writeByte(CHARACTER);
+        out.writeChar((Character) value);
+      } else if (type == BigDecimal.class) {
+        out.writeByte(BIG_DECIMAL);
+        out.writeInt(((BigDecimal) value).scale());
+        writeBytes(((BigDecimal) value).unscaledValue().toByteArray());
+      } else if (type == BigInteger.class) {
+        out.writeByte(BIG_INTEGER);
+        writeBytes(((BigInteger) value).toByteArray());
+      } else if (type == Date.class) {
+        out.writeByte(DATE);
+        out.writeLong(((Date) value).getTime());
+      } else if (type == java.sql.Date.class) {
+        out.writeByte(SQL_DATE);
+        out.writeLong(((Date) value).getTime());
+      } else if (type == Time.class) {
+        out.writeByte(SQL_TIME);
+        out.writeLong(((Date) value).getTime());
+      } else if (type == Timestamp.class) {
+        out.writeByte(TIMESTAMP);
+        out.writeLong(((Timestamp) value).getTime());
+        out.writeInt(((Timestamp) value).getNanos());
+      } else if (type == byte[].class) {
+        out.writeByte(BYTES);
+        writeBytes((byte[]) value);
+      } else if (type == LocalDate.class) {
+        out.writeByte(LOCAL_DATE);
+        out.writeLong(((LocalDate) value).toEpochDay());
+      } else if (type == LocalDateTime.class) {
+        out.writeByte(LOCAL_DATE_TIME);
+        out.writeLong(((LocalDateTime) value).toLocalDate().toEpochDay());
+        out.writeLong(((LocalDateTime) value).toLocalTime().toNanoOfDay());
+      } else if (type == LocalTime.class) {
+        out.writeByte(LOCAL_TIME);
+        out.writeLong(((LocalTime) value).toNanoOfDay());
+      } else if (type == Instant.class) {
+        out.writeByte(INSTANT);
+        out.writeLong(((Instant) value).getEpochSecond());
+        out.writeInt(((Instant) value).getNano());
+      } else if (value instanceof Enum && ((Enum<?>) value).getDeclaringClass() == declaredType) {
+        out.writeByte(ENUM);
+        out.writeInt(((Enum<?>) value).ordinal());
+      } else {
+        writeReference(value, type);
+      }
+    }
+
+    private void writeReference(Object value, Class<?> type) throws IOException {
+      Integer reference = references.get(value);
+      if (reference != null) {
+        out.writeByte(REFERENCE);
+        out.writeInt(reference);
+        return;
+      }
+      if (type == ArrayList.class) {
+        references.put(value, references.size());
+        List<?> list = (List<?>) value;
+        out.writeByte(ARRAY_LIST);
+        out.writeInt(list.size());
+        for (Object element : list) {
+          write(element, null);
+        }
+      } else if (type == HashSet.class) {
+        references.put(value, references.size());
+        HashSet<?> set = (HashSet<?>) value;
+        out.writeByte(HASH_SET);
+        out.writeInt(set.size());
+        for (Object element : set) {
+          write(element, null);
+        }
+      } else if (type == HashMap.class) {
+        references.put(value, references.size());
+        Map<?, ?> map = (Map<?, ?>) value;
+        out.writeByte(HASH_MAP);
+        out.writeInt(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+          write(entry.getKey(), null);
+          write(entry.getValue(), null);
+        }
+      } else {
+        TypeSchema typeSchema = schema.getType(type);
+        if (typeSchema == null) {
+          throw UnsupportedValueException.INSTANCE;
+        }
+        references.put(value, references.size());
+        out.writeByte(OBJECT);
+        out.writeInt(typeSchema.getIndex());
+        for (int i = 0; i < typeSchema.getPropertyCount(); i++) {
+          write(invoke(typeSchema, i, value), typeSchema.getSetterType(i));
+        }
+      }
+    }
+
+    private Object invoke(TypeSchema typeSchema, int i, Object value) throws IOException {
+      try {
+        return typeSchema.getGetter(i).invoke(value, NO_ARGUMENTS);
+      } catch (Throwable t) {
+        throw new IOException("Could not read a property of " + typeSchema.getType(), ExceptionUtil.unwrapThrowable(t));
+      }
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  private static final class Decoder {
+
+    private final ResultSchema schema;
+    private final ObjectFactory objectFactory;
+    private final DataInputStream in;
+    private final List<Object> references = new ArrayList<>();
+
+    Decoder(ResultSchema schema, ObjectFactory objectFactory, DataInputStream in) {
+      this.schema = schema;
+      this.objectFactory = objectFactory;
+      this.in = in;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    Object read(Class<?> declaredType) throws IOException {
+      byte tag = in.readByte();
+      switch (tag) {
+        case NULL:
+          return null;
+        case STRING:
+          return new String(readBytes(), StandardCharsets.UTF_8);
+        case INTEGER:
+          return in.readInt();
+        case LONG:
+          return in.readLong();
+        case SHORT:
+          return in.readShort();
+        case BYTE:
+          return in.readByte();
+        case BOOLEAN:
+          return in.readBoolean();
+        case DOUBLE:
+          return in.readDouble();
+        case FLOAT:
+          return in.readFloat();
+        case CHARACTER:
+          return in.readChar();
+        case BIG_DECIMAL:
+          int scale = in.readInt();
+          return new BigDecimal(new BigInteger(readBytes()), scale);
+        case BIG_INTEGER:
+          return new BigInteger(readBytes());
+        case DATE:
+          return new Date(in.readLong());
+        case SQL_DATE:
+          return new java.sql.Date(in.readLong());
+        case SQL_TIME:
+          return new Time(in.readLong());
+        case TIMESTAMP:
+          Timestamp timestamp = new Timestamp(in.readLong());
+          timestamp.setNanos(in.readInt());
+          return timestamp;
+        case BYTES:
+          return readBytes();
+        case LOCAL_DATE:
+          return LocalDate.ofEpochDay(in.readLong());
+        case LOCAL_DATE_TIME:
+          LocalDate date = LocalDate.ofEpochDay(in.readLong());
+          return LocalDateTime.of(date, LocalTime.ofNanoOfDay(in.readLong()));
+        case LOCAL_TIME:
+          return LocalTime.ofNanoOfDay(in.readLong());
+        case INSTANT:
+          long seconds = in.readLong();
+          return Instant.ofEpochSecond(seconds, in.readInt());
+        case ENUM:
+          return ((Class<? extends Enum>) declaredType).getEnumConstants()[in.readInt()];
+        case REFERENCE:
+          return references.get(in.readInt());
+        case ARRAY_LIST:
+          int listSize = in.readInt();
+          List<Object> list = new ArrayList<>(listSize);
+          references.add(list);
+          for (int i = 0; i < listSize; i++) {
+            list.add(read(null));
+          }
+          return list;
+        case HASH_SET:
+          int setSize = in.readInt();
+          HashSet<Object> set = new HashSet<>();
+          references.add(set);
+          for (int i = 0; i < setSize; i++) {
+            set.add(read(null));
+          }
+          return set;
+        case HASH_MAP:
+          int mapSize = in.readInt();
+          Map<Object, Object> map = new HashMap<>();
+          references.add(map);
+          for (int i = 0; i < mapSize; i++) {
+            Object key = read(null);
+            map.put(key, read(null));
+          }
+          return map;
+        case OBJECT:
+          return readObject(schema.getType(in.readInt()));
+        default:
+          throw new IOException("Unknown tag " + tag + " in cached value.");
+      }
+    }
+
+    private Object readObject(TypeSchema typeSchema) throws IOException {
+      Object object = objectFactory.create(typeSchema.getType());
+      references.add(object);
+      Object[] args = new Object[1];
+      for (int i = 0; i < typeSchema.getPropertyCount(); i++) {
+        Class<?> setterType = typeSchema.getSetterType(i);
+        Object value = read(setterType);
+        if (value == null && setterType.isPrimitive()) {
+          continue;
+        }
+        args[0] = value;
+        try {
+          typeSchema.getSetter(i).invoke(object, args);
+        } catch (Throwable t) {
+          throw new IOException("Could not set a property of " + typeSchema.getType(), ExceptionUtil.unwrapThrowable(t));
+        }
+      }
+      return object;
+    }
+
+    private byte[] readBytes() throws IOException {
+      byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      return bytes;
+    }
+  }
+
+  /**
+   * 值不能按结构编码
+   */
+  static final class UnsupportedValueException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    static final UnsupportedValueException INSTANCE = new UnsupportedValueException();
+
+    private UnsupportedValueException() {
+      super(null, null, false, false);
+    }
+  }
+
+}
@@ -0,0 +1,88 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.copy;
+
+import java.io.IOException;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CopyStrategy;
+import org.apache.ibatis.cache.copy.ResultCodec.UnsupportedValueException;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * 根据ResultMap推导的结构复制缓存值
+ * <p>
+ * 结果对象按属性顺序编码成紧凑的二进制格式，不写类描述信息，复制时直接通过属性的Invoker读写，
+ * 比Java序列化快得多，结果对象也不需要实现{@link java.io.Serializable}。
+ * 只有类型正好是某个ResultMap的结果类型(不能是懒加载代理等子类)、并且有默认构造方法的对象才会按结构编码；
+ * 缓存值中只要有一个对象无法按结构编码，整个值就改用{@link SerializationCopyStrategy}复制。
+ *
+ * @since 3.5.0
+ */
+public class ResultMapCopyStrategy implements CopyStrategy {
+
+  private final Configuration configuration;
+  private final CopyStrategy fallback = new SerializationCopyStrategy();
+  private volatile ResultSchema schema;
+
+  public ResultMapCopyStrategy(Configuration configuration) {
+    this.configuration = configuration;
+  }
+
+  @Override
+  public Object copyOnWrite(Object value) {
+    if (value == null) {
+      return fallback.copyOnWrite(null);
+    }
+    ResultSchema current = getSchema();
+    try {
+      return ResultCodec.encode(current, value);
+    } catch (UnsupportedValueException e) {
+      return fallback.copyOnWrite(value);
+    } catch (IOException e) {
+      throw new CacheException("Error encoding object.  Cause: " + e, e);
+    }
+  }
+
+  @Override
+  public Object copyOnRead(Object stored) {
+    byte[] bytes = (byte[]) stored;
+    if (bytes.length == 0 || bytes[0] != ResultCodec.FORMAT) {
+      return fallback.copyOnRead(stored);
+    }
+    try {
+      return ResultCodec.decode(schema, configuration.getObjectFactory(), bytes);
+    } catch (IOException e) {
+      throw new CacheException("Error decoding object.  Cause: " + e, e);
+    }
+  }
+
+  private ResultSchema getSchema() {
+    ResultSchema current = schema;
+    // 之后又注册了新的语句(例如运行时添加Mapper)时重新生成
+    if (current == null || current.isStale(configuration)) {
+      synchronized (this) {
+        current = schema;
+        if (current == null || current.isStale(configuration)) {
+          current = ResultSchema.build(configuration, current);
+          schema = current;
+        }
+      }
+    }
+    return current;
+  }
+
+}
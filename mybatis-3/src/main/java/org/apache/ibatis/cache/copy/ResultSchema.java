@@ -0,0 +1,188 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.copy;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ibatis.mapping.Discriminator;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * 由ResultMap推导出的结果对象结构
+ * <p>
+ * 每个ResultMap的结果类型对应一个{@link TypeSchema}，编码时只写类型序号和按固定顺序排列的属性值，
+ * 不写类名、属性名等描述信息。
+ */
+final class ResultSchema {
+
+  private final List<TypeSchema> types;
+  private final Map<Class<?>, TypeSchema> typeMap;
+  // 生成此结构时已注册的语句名称数，用来判断是否需要重新生成
+  private final int statementCount;
+
+  private ResultSchema(List<TypeSchema> types, int statementCount) {
+    this.types = types;
+    this.typeMap = new IdentityHashMap<>();
+    for (TypeSchema type : types) {
+      typeMap.put(type.getType(), type);
+    }
+    this.statementCount = statementCount;
+  }
+
+  /**
+   * 收集所有语句用到的ResultMap(包括嵌套的ResultMap和鉴别器分支)的结果类型
+   * <p>
+   * 已有的类型保持原来的序号，新的类型追加在后面，之前编码的缓存值依然可以用新的结构解码。
+   *
+   * @param previous 之前生成的结构，可以为null
+   */
+  static ResultSchema build(Configuration configuration, ResultSchema previous) {
+    int statementCount = configuration.getMappedStatementNames().size();
+    Set<String> visited = new HashSet<>();
+    Set<Class<?>> candidates = new LinkedHashSet<>();
+    // StrictMap中同名的短名称对应的是Ambiguity对象，需要过滤
+    for (Object statement : configuration.getMappedStatements()) {
+      if (statement instanceof MappedStatement) {
+        for (ResultMap resultMap : ((MappedStatement) statement).getResultMaps()) {
+          collect(configuration, resultMap, visited, candidates);
+        }
+      }
+    }
+    List<TypeSchema> types = previous == null ? new ArrayList<>() : new ArrayList<>(previous.types);
+    for (Class<?> type : candidates) {
+      if ((previous == null || previous.getType(type) == null) && isBean(configuration, type)) {
+        types.add(new TypeSchema(types.size(), configuration.getReflectorFactory().findForClass(type)));
+      }
+    }
+    return new ResultSchema(types, statementCount);
+  }
+
+  private static void collect(Configuration configuration, ResultMap resultMap, Set<String> visited, Set<Class<?>> candidates) {
+    if (!visited.add(resultMap.getId())) {
+      return;
+    }
+    // 构造方法映射的结果对象无法通过默认构造方法重建
+    if (resultMap.getConstructorResultMappings().isEmpty()) {
+      candidates.add(resultMap.getType());
+    }
+    for (ResultMapping resultMapping : resultMap.getResultMappings()) {
+      if (resultMapping.getNestedResultMapId() != null) {
+        collect(configuration, configuration.getResultMap(resultMapping.getNestedResultMapId()), visited, candidates);
+      }
+    }
+    Discriminator discriminator = resultMap.getDiscriminator();
+    if (discriminator != null) {
+      for (String resultMapId : discriminator.getDiscriminatorMap().values()) {
+        collect(configuration, configuration.getResultMap(resultMapId), visited, candidates);
+      }
+    }
+  }
+
+  private static boolean isBean(Configuration configuration, Class<?> type) {
+    if (type.isInterface() || type.isArray() || type.isEnum() || type.isPrimitive()
+        || Modifier.isAbstract(type.getModifiers())
+        || Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)
+        || configuration.getTypeHandlerRegistry().hasTypeHandler(type)) {
+      return false;
+    }
+    return configuration.getReflectorFactory().findForClass(type).hasDefaultConstructor();
+  }
+
+  /**
+   * @return 生成此结构之后是否又注册了新的语句
+   */
+  boolean isStale(Configuration configuration) {
+    return statementCount != configuration.getMappedStatementNames().size();
+  }
+
+  /**
+   * @return 不在结构中时返回null
+   */
+  TypeSchema getType(Class<?> type) {
+    return typeMap.get(type);
+  }
+
+  TypeSchema getType(int index) {
+    return types.get(index);
+  }
+
+  static final class TypeSchema {
+
+    private final int index;
+    private final Class<?> type;
+    private final Invoker[] getters;
+    private final Invoker[] setters;
+    private final Class<?>[] setterTypes;
+
+    TypeSchema(int index, Reflector reflector) {
+      this.index = index;
+      this.type = reflector.getType();
+      // 可读写的属性按名称排序，作为编码顺序
+      List<String> properties = new ArrayList<>(Arrays.asList(reflector.getGetablePropertyNames()));
+      properties.retainAll(Arrays.asList(reflector.getSetablePropertyNames()));
+      properties.sort(null);
+      int size = properties.size();
+      this.getters = new Invoker[size];
+      this.setters = new Invoker[size];
+      this.setterTypes = new Class<?>[size];
+      for (int i = 0; i < size; i++) {
+        String property = properties.get(i);
+        getters[i] = reflector.getGetInvoker(property);
+        setters[i] = reflector.getSetInvoker(property);
+        setterTypes[i] = reflector.getSetterType(property);
+      }
+    }
+
+    int getIndex() {
+      return index;
+    }
+
+    Class<?> getType() {
+      return type;
+    }
+
+    int getPropertyCount() {
+      return getters.length;
+    }
+
+    Invoker getGetter(int i) {
+      return getters[i];
+    }
+
+    Invoker getSetter(int i) {
+      return setters[i];
+    }
+
+    Class<?> getSetterType(int i) {
+      return setterTypes[i];
+    }
+  }
+
+}
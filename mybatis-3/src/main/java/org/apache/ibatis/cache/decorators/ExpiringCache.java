@@ -0,0 +1,270 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheExpiry;
+
+/**
+ * 按条目过期的缓存装饰器
+ * <p>
+ * 与{@link ScheduledCache}定时清空整个缓存不同，每个条目按写入后(expireAfterWrite)或访问后(expireAfterAccess)的时间单独过期。
+ * 默认值在缓存上配置，也可以由语句通过{@link CacheExpiry}单独指定。到期的条目由{@link TimerWheel}在访问缓存时批量移除。
+ * <p>
+ * 设置了refreshAhead(0到1之间)时，条目的存活时间超过 expireAfterWrite * refreshAhead 后，
+ * 第一个读取者会得到一次未命中并重新加载，其他读取者在此期间仍然读取旧值，因此热点条目在过期之前就会被刷新。
+ * 重新加载失败(没有写回缓存)时，剩余存活时间过半后允许下一个读取者再次重新加载。
+ * <p>
+ * 被装饰的缓存(LRU等)淘汰的条目在写入时发现并移除，不会等到过期。
+ * <p>
+ * 本身不是线程安全的，需要由{@link SynchronizedCache}装饰。
+ *
+ * @since 3.5.0
+ */
+public class ExpiringCache implements Cache {
+
+  private final Cache delegate;
+  private final Map<Object, Entry> entries;
+  private TimerWheel wheel;
+  // 缓存默认的过期时间(毫秒)，0表示不过期
+  private long expireAfterWrite;
+  private long expireAfterAccess;
+  private double refreshAhead;
+  private long tickDuration = 1000;
+
+  public ExpiringCache(Cache delegate) {
+    this.delegate = delegate;
+    // 按访问顺序排列，与LRU的淘汰顺序一致，最先检查最可能已经被淘汰的条目
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    if (!entries.isEmpty()) {
+      expireEntries(now());
+    }
+    return delegate.getSize();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    delegate.putObject(key, value);
+    CacheExpiry expiry = CacheExpiry.current();
+    long write = expiry != null && expiry.getExpireAfterWrite() != null ? expiry.getExpireAfterWrite() : expireAfterWrite;
+    long access = expiry != null && expiry.getExpireAfterAccess() != null ? expiry.getExpireAfterAccess() : expireAfterAccess;
+    if (value == null || (write <= 0 && access <= 0)) {
+      Entry entry = entries.remove(key);
+      if (entry != null) {
+        wheel.cancel(entry);
+      }
+      purgeEvicted();
+      return;
+    }
+    long now = now();
+    expireEntries(now);
+    Entry entry = entries.computeIfAbsent(key, Entry::new);
+    entry.writeDeadline = write > 0 ? now + write : Long.MAX_VALUE;
+    entry.expireAfterAccess = access;
+    entry.deadline = access > 0 ? Math.min(entry.writeDeadline, now + access) : entry.writeDeadline;
+    entry.refreshAt = refreshAhead > 0 && write > 0 ? now + (long) (write * refreshAhead) : Long.MAX_VALUE;
+    wheel().schedule(entry);
+    purgeEvicted();
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    if (entries.isEmpty()) {
+      return delegate.getObject(key);
+    }
+    long now = now();
+    expireEntries(now);
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      return delegate.getObject(key);
+    }
+    if (entry.deadline <= now) {
+      // 时间轮的精度是一个tick
+      expire(entry);
+      return null;
+    }
+    Object value = delegate.getObject(key);
+    if (value == null) {
+      // 已经被LRU等装饰器淘汰
+      entries.remove(key);
+      wheel.cancel(entry);
+      return null;
+    }
+    if (entry.expireAfterAccess > 0) {
+      entry.deadline = Math.min(entry.writeDeadline, now + entry.expireAfterAccess);
+      wheel.schedule(entry);
+    }
+    if (now >= entry.refreshAt) {
+      // 只让一个读取者提前重新加载；加载失败时不会写回，剩余存活时间过半后再让下一个读取者重新加载
+      entry.refreshAt = now + Math.max(1, (entry.writeDeadline - now) / 2);
+      return null;
+    }
+    return value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    Entry entry = entries.remove(key);
+    if (entry != null) {
+      wheel.cancel(entry);
+    }
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    entries.clear();
+    if (wheel != null) {
+      wheel.clear();
+    }
+    delegate.clear();
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  @Override
+  public int hashCode() {
+    return delegate.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return delegate.equals(obj);
+  }
+
+  /**
+   * 当前时间(毫秒)
+   */
+  protected long now() {
+    return System.currentTimeMillis();
+  }
+
+  private void expireEntries(long now) {
+    if (wheel != null) {
+      wheel.advance(now, node -> expire((Entry) node));
+    }
+  }
+
+  /**
+   * 移除被装饰的缓存已经淘汰的条目。被装饰的缓存中的条目数少于有过期时间的条目数时，
+   * 从最久未访问的条目开始检查，直到两者一致。
+   */
+  private void purgeEvicted() {
+    if (entries.isEmpty()) {
+      return;
+    }
+    int size = delegate.getSize();
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (entries.size() > size && iterator.hasNext()) {
+      Entry entry = iterator.next();
+      if (delegate.getObject(entry.key) == null) {
+        iterator.remove();
+        wheel.cancel(entry);
+      }
+    }
+  }
+
+  private void expire(Entry entry) {
+    entries.remove(entry.key);
+    wheel.cancel(entry);
+    delegate.removeObject(entry.key);
+  }
+
+  private TimerWheel wheel() {
+    if (wheel == null) {
+      wheel = new TimerWheel(tickDuration, now());
+    }
+    return wheel;
+  }
+
+  /**
+   * @return 设置了过期时间的条目数
+   */
+  public int getExpiringSize() {
+    return entries.size();
+  }
+
+  public long getExpireAfterWrite() {
+    return expireAfterWrite;
+  }
+
+  public void setExpireAfterWrite(long expireAfterWrite) {
+    this.expireAfterWrite = expireAfterWrite;
+  }
+
+  public long getExpireAfterAccess() {
+    return expireAfterAccess;
+  }
+
+  public void setExpireAfterAccess(long expireAfterAccess) {
+    this.expireAfterAccess = expireAfterAccess;
+  }
+
+  public double getRefreshAhead() {
+    return refreshAhead;
+  }
+
+  public void setRefreshAhead(double refreshAhead) {
+    if (refreshAhead < 0 || refreshAhead >= 1) {
+      throw new CacheException("refreshAhead must be at least 0 and less than 1 but was " + refreshAhead);
+    }
+    this.refreshAhead = refreshAhead;
+  }
+
+  public long getTickDuration() {
+    return tickDuration;
+  }
+
+  public void setTickDuration(long tickDuration) {
+    if (tickDuration <= 0) {
+      throw new CacheException("tickDuration must be positive but was " + tickDuration);
+    }
+    if (wheel != null) {
+      throw new CacheException("tickDuration cannot be changed after entries have been added");
+    }
+    this.tickDuration = tickDuration;
+  }
+
+  private static final class Entry extends TimerWheel.Node {
+
+    long writeDeadline;
+    long expireAfterAccess;
+    long refreshAt;
+
+    Entry(Object key) {
+      super(key);
+    }
+  }
+
+}
@@ -15,30 +15,38 @@
  */
 package org.apache.ibatis.cache.decorators;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.ObjectStreamClass;
-import java.io.Serializable;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
-import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CopyStrategy;
+import org.apache.ibatis.cache.ImmutableCacheValue;
+import org.apache.ibatis.cache.copy.SerializationCopyStrategy;
 import org.apache.ibatis.io.Resources;
 
 /**
  *  序列化缓存，将缓存值以序列化的方式存储
+ *  复制的方式由{@link CopyStrategy}决定，默认使用Java序列化
  * @author Clinton Begin
  */
 public class SerializedCache implements Cache {
 
   private final Cache delegate;
+  private final CopyStrategy copyStrategy;
 
   public SerializedCache(Cache delegate) {
+    this(delegate, new SerializationCopyStrategy());
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public SerializedCache(Cache delegate, CopyStrategy copyStrategy) {
     this.delegate = delegate;
+    this.copyStrategy = copyStrategy;
   }
 
   @Override
@@ -53,17 +61,17 @@ public class SerializedCache implements Cache {
 
   @Override
   public void putObject(Object key, Object object) {
-    if (object == null || object instanceof Serializable) {
-      delegate.putObject(key, serialize((Serializable) object));
-    } else {
-      throw new CacheException("SharedCache failed to make a copy of a non-serializable object: " + object);
-    }
+    // 不可变的值直接保存，不需要复制
+    delegate.putObject(key, object instanceof ImmutableCacheValue ? object : copyStrategy.copyOnWrite(object));
   }
 
   @Override
   public Object getObject(Object key) {
     Object object = delegate.getObject(key);
-    return object == null ? null : deserialize((byte[]) object);
+    if (object == null || object instanceof ImmutableCacheValue) {
+      return object;
+    }
+    return copyStrategy.copyOnRead(object);
   }
 
   @Override
@@ -91,28 +99,6 @@ public class SerializedCache implements Cache {
     return delegate.equals(obj);
   }
 
-  private byte[] serialize(Serializable value) {
-    try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-         ObjectOutputStream oos = new ObjectOutputStream(bos)) {
-      oos.writeObject(value);
-      oos.flush();
-      return bos.toByteArray();
-    } catch (Exception e) {
-      throw new CacheException("Error serializing object.  Cause: " + e, e);
-    }
-  }
-
-  private Serializable deserialize(byte[] value) {
-    Serializable result;
-    try (ByteArrayInputStream bis = new ByteArrayInputStream(value);
-         ObjectInputStream ois = new CustomObjectInputStream(bis)) {
-      result = (Serializable) ois.readObject();
-    } catch (Exception e) {
-      throw new CacheException("Error deserializing object.  Cause: " + e, e);
-    }
-    return result;
-  }
-
   public static class CustomObjectInputStream extends ObjectInputStream {
 
     public CustomObjectInputStream(InputStream in) throws IOException {
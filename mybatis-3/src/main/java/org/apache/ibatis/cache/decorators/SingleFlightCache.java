@@ -0,0 +1,199 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+
+/**
+ * 合并并发加载的缓存装饰器(single-flight)
+ * <p>
+ * 同一个key并发未命中时，只有第一个线程执行加载，其余线程等待同一个{@link CompletableFuture}。
+ * 与{@link BlockingCache}相比：不使用与线程绑定的锁，任何线程都可以释放；进行中的加载数量有上限，超过上限时不再合并；
+ * 等待超时或者加载失败时，等待的线程自己加载，而不是抛出异常。
+ * <p>
+ * 等待的线程直到{@link #putObject(Object, Object)}(事务提交)或{@link #removeObject(Object)}(事务回滚)才被唤醒，
+ * 不会读到未提交的结果。唤醒后重新经过被装饰的缓存读取，每个线程得到各自的副本；回滚时重新竞争加载。
+ * 与{@link BlockingCache}一样，长事务会让等待的线程一直等待，可以通过timeout限制等待时间。
+ *
+ * @since 3.5.0
+ */
+public class SingleFlightCache implements Cache {
+
+  public static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+
+  private final Cache delegate;
+  private final ConcurrentHashMap<Object, Flight> inFlight;
+  private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+  private long timeout;
+
+  public SingleFlightCache(Cache delegate) {
+    this.delegate = delegate;
+    this.inFlight = new ConcurrentHashMap<>();
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    try {
+      delegate.putObject(key, value);
+    } finally {
+      release(key);
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    return delegate.getObject(key);
+  }
+
+  /**
+   * 获取缓存的值，未命中时通过loader加载。加载的值不会写入缓存，调用方需要在之后调用
+   * {@link #putObject(Object, Object)}或{@link #removeObject(Object)}来结束这次加载。
+   */
+  public <E extends Exception> Object getObject(Object key, Loader<E> loader) throws E {
+    Object value = delegate.getObject(key);
+    if (value != null) {
+      return value;
+    }
+    Flight flight = inFlight.get(key);
+    if (flight == null) {
+      if (inFlight.size() >= maxInFlight) {
+        // 进行中的加载过多，不再合并
+        return loader.load();
+      }
+      Flight created = new Flight();
+      flight = inFlight.putIfAbsent(key, created);
+      if (flight == null) {
+        return load(key, created, loader);
+      }
+    }
+    if (flight.leader == Thread.currentThread()) {
+      // 同一线程(嵌套加载或者同一线程的其他会话)在提交之前再次加载同一个key，等待自己会死锁
+      return loader.load();
+    }
+    return await(key, flight, loader);
+  }
+
+  private <E extends Exception> Object load(Object key, Flight flight, Loader<E> loader) throws E {
+    try {
+      // 加载成功时不唤醒等待的线程，直到提交或回滚
+      return loader.load();
+    } catch (Throwable t) {
+      inFlight.remove(key, flight);
+      flight.completeExceptionally(t);
+      throw t;
+    }
+  }
+
+  private <E extends Exception> Object await(Object key, Flight flight, Loader<E> loader) throws E {
+    try {
+      if (timeout > 0) {
+        flight.get(timeout, TimeUnit.MILLISECONDS);
+      } else {
+        flight.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CacheException("Got interrupted while waiting for the value of key " + key + " at the cache " + delegate.getId(), e);
+    } catch (ExecutionException | TimeoutException e) {
+      // 加载失败或者等待超时，由当前线程自己加载
+      return loader.load();
+    }
+    // 已提交的值重新从被装饰的缓存读取，回滚时重新竞争加载
+    return getObject(key, loader);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    // 与BlockingCache一样，只用于结束未写入缓存的加载
+    release(key);
+    return null;
+  }
+
+  private void release(Object key) {
+    Flight flight = inFlight.remove(key);
+    if (flight != null) {
+      flight.complete(null);
+    }
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+    for (Object key : inFlight.keySet()) {
+      release(key);
+    }
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  /**
+   * @return 进行中(包括已加载但未提交或回滚)的加载数量
+   */
+  public int getInFlightCount() {
+    return inFlight.size();
+  }
+
+  public int getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  public void setMaxInFlight(int maxInFlight) {
+    this.maxInFlight = maxInFlight;
+  }
+
+  public long getTimeout() {
+    return timeout;
+  }
+
+  public void setTimeout(long timeout) {
+    this.timeout = timeout;
+  }
+
+  /**
+   * 加载缓存值
+   */
+  @FunctionalInterface
+  public interface Loader<E extends Exception> {
+    Object load() throws E;
+  }
+
+  private static final class Flight extends CompletableFuture<Object> {
+
+    private final Thread leader = Thread.currentThread();
+  }
+
+}
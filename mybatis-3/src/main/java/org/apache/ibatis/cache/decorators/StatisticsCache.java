@@ -0,0 +1,109 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheStatistics;
+
+/**
+ * 统计缓存，记录命中、未命中、写入、淘汰、移除和清空的次数，以及抽样的条目大小和高频key
+ * <p>
+ * 淘汰次数根据写入前后的条目数以及key是否已经存在计算，因此需要放在淘汰策略装饰器(例如{@link LruCache})的外层。
+ *
+ * @since 3.5.0
+ */
+public class StatisticsCache implements Cache {
+
+  private final Cache delegate;
+  private final CacheStatistics statistics;
+
+  public StatisticsCache(Cache delegate, CacheStatistics statistics) {
+    this.delegate = delegate;
+    this.statistics = statistics;
+    statistics.setSizeSupplier(delegate::getSize);
+  }
+
+  public CacheStatistics getStatistics() {
+    return statistics;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public void putObject(Object key, Object object) {
+    // 覆盖已有的key不会增加条目数，不是淘汰
+    boolean exists = delegate.getObject(key) != null;
+    int before = delegate.getSize();
+    delegate.putObject(key, object);
+    int evicted = before + (exists ? 0 : 1) - delegate.getSize();
+    if (evicted > 0) {
+      statistics.recordEvictions(evicted);
+    }
+    statistics.recordPut(object);
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Object value = delegate.getObject(key);
+    if (value != null) {
+      statistics.recordHit(key);
+    } else {
+      statistics.recordMiss(key);
+    }
+    return value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    Object removed = delegate.removeObject(key);
+    if (removed != null) {
+      statistics.recordRemoval();
+    }
+    return removed;
+  }
+
+  @Override
+  public void clear() {
+    statistics.recordClear();
+    delegate.clear();
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  @Override
+  public int hashCode() {
+    return delegate.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return delegate.equals(obj);
+  }
+
+}
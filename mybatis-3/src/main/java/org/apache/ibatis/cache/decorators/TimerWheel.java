@@ -0,0 +1,192 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 分层时间轮
+ * <p>
+ * 共{@value #LEVELS}层，每层{@value #WHEEL_SIZE}个槽，第n层的一个槽跨度为 tick * 64^n。
+ * 定时项按到期时间放入对应层的槽(双向链表)，调度和取消都是O(1)。
+ * 时间轮没有后台线程，由调用方在每次访问时{@link #advance(long, Consumer)}推进，
+ * 推进到的槽中未到期的定时项会被重新放入更低的层。
+ */
+final class TimerWheel {
+
+  private static final int BITS = 6;
+  static final int WHEEL_SIZE = 1 << BITS;
+  private static final int MASK = WHEEL_SIZE - 1;
+  static final int LEVELS = 4;
+  // 一次推进超过这么多tick时，直接重新调度所有定时项，不再逐个tick推进
+  private static final long MAX_STEPS = WHEEL_SIZE * WHEEL_SIZE;
+
+  private final long tickDuration;
+  // 每个槽是一个带哨兵的环形链表
+  private final Node[][] buckets;
+  // 已经处理到的tick
+  private long currentTick;
+  private int size;
+
+  TimerWheel(long tickDuration, long now) {
+    this.tickDuration = tickDuration;
+    this.buckets = new Node[LEVELS][WHEEL_SIZE];
+    for (int level = 0; level < LEVELS; level++) {
+      for (int i = 0; i < WHEEL_SIZE; i++) {
+        buckets[level][i] = new Node(null);
+      }
+    }
+    this.currentTick = now / tickDuration;
+  }
+
+  /**
+   * 按node的deadline调度，已经调度过的node会先被取消
+   */
+  void schedule(Node node) {
+    if (node.isScheduled()) {
+      node.unlink();
+    } else {
+      size++;
+    }
+    // 向上取整，保证不会提前到期
+    long expireTick = (node.deadline + tickDuration - 1) / tickDuration;
+    long delta = Math.max(expireTick - currentTick, 1);
+    expireTick = currentTick + delta;
+    int level = 0;
+    while (level < LEVELS - 1 && delta >= 1L << (BITS * (level + 1))) {
+      level++;
+    }
+    Node bucket = buckets[level][(int) ((expireTick >>> (BITS * level)) & MASK)];
+    node.linkBefore(bucket);
+  }
+
+  void cancel(Node node) {
+    if (node.isScheduled()) {
+      node.unlink();
+      size--;
+    }
+  }
+
+  /**
+   * 推进到now，对到期的定时项调用expired
+   */
+  void advance(long now, Consumer<Node> expired) {
+    long targetTick = now / tickDuration;
+    if (targetTick <= currentTick) {
+      return;
+    }
+    if (targetTick - currentTick > MAX_STEPS) {
+      currentTick = targetTick;
+      List<Node> nodes = new ArrayList<>(size);
+      for (Node[] level : buckets) {
+        for (Node bucket : level) {
+          drain(bucket, nodes);
+        }
+      }
+      reschedule(nodes, now, expired);
+      return;
+    }
+    List<Node> nodes = new ArrayList<>();
+    while (currentTick < targetTick) {
+      currentTick++;
+      drain(buckets[0][(int) (currentTick & MASK)], nodes);
+      // 低层转完一圈，把高层当前槽中的定时项降级
+      for (int level = 1; level < LEVELS && (currentTick & ((1L << (BITS * level)) - 1)) == 0; level++) {
+        drain(buckets[level][(int) ((currentTick >>> (BITS * level)) & MASK)], nodes);
+      }
+    }
+    reschedule(nodes, now, expired);
+  }
+
+  private void reschedule(List<Node> nodes, long now, Consumer<Node> expired) {
+    for (Node node : nodes) {
+      if (node.deadline <= now) {
+        expired.accept(node);
+      } else {
+        schedule(node);
+      }
+    }
+  }
+
+  private void drain(Node bucket, List<Node> nodes) {
+    Node node = bucket.next;
+    while (node != bucket) {
+      Node next = node.next;
+      node.prev = null;
+      node.next = null;
+      size--;
+      nodes.add(node);
+      node = next;
+    }
+    bucket.prev = bucket;
+    bucket.next = bucket;
+  }
+
+  void clear() {
+    for (Node[] level : buckets) {
+      for (Node bucket : level) {
+        drain(bucket, new ArrayList<>());
+      }
+    }
+    size = 0;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * 定时项
+   */
+  static class Node {
+
+    final Object key;
+    // 到期时间(毫秒)
+    long deadline;
+    private Node prev;
+    private Node next;
+
+    Node(Object key) {
+      this.key = key;
+      if (key == null) {
+        // 哨兵
+        prev = this;
+        next = this;
+      }
+    }
+
+    boolean isScheduled() {
+      return next != null;
+    }
+
+    private void linkBefore(Node bucket) {
+      prev = bucket.prev;
+      next = bucket;
+      bucket.prev.next = this;
+      bucket.prev = this;
+    }
+
+    private void unlink() {
+      prev.next = next;
+      next.prev = prev;
+      prev = null;
+      next = null;
+    }
+  }
+
+}
@@ -22,6 +22,7 @@ import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheExpiry;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 
@@ -53,12 +54,15 @@ public class TransactionalCache implements Cache {
   private final Map<Object, Object> entriesToAddOnCommit;
   //记录不存在缓存中的条目（Key）
   private final Set<Object> entriesMissedInCache;
+  //记录需要提交的条目中单独指定了过期策略的条目
+  private final Map<Object, CacheExpiry> expiriesOnCommit;
 
   public TransactionalCache(Cache delegate) {
     this.delegate = delegate;
     this.clearOnCommit = false;
     this.entriesToAddOnCommit = new HashMap<>();
     this.entriesMissedInCache = new HashSet<>();
+    this.expiriesOnCommit = new HashMap<>();
   }
 
   @Override
@@ -86,6 +90,38 @@ public class TransactionalCache implements Cache {
     }
   }
 
+  /**
+   * 获取缓存的值，未命中时通过loader加载，加载的值在提交时写入缓存。
+   * 被装饰的缓存是{@link SingleFlightCache}时，不同会话对同一个key的并发加载会合并为一次。
+   *
+   * @since 3.5.0
+   */
+  public <E extends Exception> Object getObject(Object key, SingleFlightCache.Loader<E> loader) throws E {
+    return getObject(key, null, loader);
+  }
+
+  /**
+   * @param expiry 加载的值写入缓存时的过期策略，为null时使用缓存的默认值
+   * @since 3.5.0
+   */
+  public <E extends Exception> Object getObject(Object key, CacheExpiry expiry, SingleFlightCache.Loader<E> loader) throws E {
+    if (clearOnCommit || !(delegate instanceof SingleFlightCache)) {
+      Object object = getObject(key);
+      if (object == null) {
+        object = loader.load();
+        putObject(key, object, expiry);
+      }
+      return object;
+    }
+    return ((SingleFlightCache) delegate).<E>getObject(key, () -> {
+      // 只有真正执行加载的会话需要在提交/回滚时结束这次加载
+      entriesMissedInCache.add(key);
+      Object loaded = loader.load();
+      putObject(key, loaded, expiry);
+      return loaded;
+    });
+  }
+
   @Override
   public ReadWriteLock getReadWriteLock() {
     return null;
@@ -93,7 +129,16 @@ public class TransactionalCache implements Cache {
 
   @Override
   public void putObject(Object key, Object object) {
+    putObject(key, object, null);
+  }
+
+  private void putObject(Object key, Object object, CacheExpiry expiry) {
     entriesToAddOnCommit.put(key, object);
+    if (expiry != null) {
+      expiriesOnCommit.put(key, expiry);
+    } else {
+      expiriesOnCommit.remove(key);
+    }
   }
 
   @Override
@@ -105,6 +150,15 @@ public class TransactionalCache implements Cache {
   public void clear() {
     clearOnCommit = true;
     entriesToAddOnCommit.clear();
+    expiriesOnCommit.clear();
+  }
+
+  /**
+   * @return 提交时是否会清空缓存
+   * @since 3.5.0
+   */
+  public boolean isClearOnCommit() {
+    return clearOnCommit;
   }
 
   public void commit() {
@@ -124,11 +178,12 @@ public class TransactionalCache implements Cache {
     clearOnCommit = false;
     entriesToAddOnCommit.clear();
     entriesMissedInCache.clear();
+    expiriesOnCommit.clear();
   }
 
   private void flushPendingEntries() {
     for (Map.Entry<Object, Object> entry : entriesToAddOnCommit.entrySet()) {
-      delegate.putObject(entry.getKey(), entry.getValue());
+      CacheExpiry.putObject(delegate, entry.getKey(), entry.getValue(), expiriesOnCommit.get(entry.getKey()));
     }
     for (Object entry : entriesMissedInCache) {
       if (!entriesToAddOnCommit.containsKey(entry)) {
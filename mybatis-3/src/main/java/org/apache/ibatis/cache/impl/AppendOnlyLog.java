@@ -0,0 +1,292 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 内存映射的追加写日志，{@link DiskCache}的存储格式
+ * <p>
+ * 文件头: MAGIC(4) + 格式版本(4) + 指纹(8)。
+ * 每条记录: 长度(4) + [类型(1) + 写入时间(8) + key长度(4) + key + value长度(4) + value] + CRC32(4)，
+ * 最后一条记录之后写入长度0作为结束标记。
+ * 重放时遇到长度非法或者CRC不一致的记录(进程在写入途中退出)就停止，之后的内容被丢弃。
+ * 压缩时按偏移顺序把存活的记录向前移动，移动过程中退出只会丢失尚未移动的记录。
+ * 日志本身不是线程安全的，由{@link DiskCache}加锁访问。
+ */
+final class AppendOnlyLog implements Closeable {
+
+    static final byte PUT = 1;
+    static final byte REMOVE = 2;
+
+    private static final int MAGIC = 0x4D424443;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    // 长度 + 类型 + 时间 + key长度 + value长度 + CRC
+    private static final int RECORD_OVERHEAD = 4 + 1 + 8 + 4 + 4 + 4;
+    private static final int END_MARKER = 4;
+
+    private final int capacity;
+    private final long fingerprint;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final MappedByteBuffer buffer;
+    private int writePosition;
+    // 存活记录占用的字节数
+    private long liveBytes;
+
+    /**
+     * @throws IOException 文件已经被其他进程(或同一进程中的其他缓存)打开时也会抛出
+     */
+    AppendOnlyLog(Path file, int capacity, long fingerprint) throws IOException {
+        this.capacity = capacity;
+        this.fingerprint = fingerprint;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock fileLock;
+            try {
+                fileLock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                fileLock = null;
+            }
+            if (fileLock == null) {
+                throw new IOException("Cache file " + file + " is in use.");
+            }
+            this.lock = fileLock;
+            if (channel.size() > capacity) {
+                // 容量变小了，原有内容作废
+                channel.truncate(0);
+            }
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 回调日志中的每一条有效记录，文件头不匹配时清空日志
+     */
+    void replay(RecordVisitor visitor) {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getLong(8) != fingerprint) {
+            reset();
+            return;
+        }
+        int position = HEADER_SIZE;
+        while (position + 4 <= capacity) {
+            int bodyLength = buffer.getInt(position);
+            if (bodyLength < RECORD_OVERHEAD - 8 || (long) position + 8 + bodyLength > capacity) {
+                break;
+            }
+            byte[] body = read(position + 4, bodyLength);
+            if (buffer.getInt(position + 4 + bodyLength) != crc(body)) {
+                break;
+            }
+            int keyLength = readInt(body, 9);
+            int valueLengthAt = 13 + keyLength;
+            if (keyLength < 0 || valueLengthAt + 4 > bodyLength || readInt(body, valueLengthAt) != bodyLength - valueLengthAt - 4) {
+                break;
+            }
+            byte[] key = new byte[keyLength];
+            System.arraycopy(body, 13, key, 0, keyLength);
+            Record record = new Record(position, 8 + bodyLength, 4 + valueLengthAt + 4, bodyLength - valueLengthAt - 4, readLong(body, 1));
+            visitor.visit(body[0], key, record);
+            position += record.length;
+        }
+        writePosition = position;
+        writeEndMarker();
+    }
+
+    /**
+     * @return 空间不足时返回null
+     */
+    Record append(byte type, long timestamp, byte[] key, byte[] value) {
+        int length = RECORD_OVERHEAD + key.length + value.length;
+        if ((long) writePosition + length + END_MARKER > capacity) {
+            return null;
+        }
+        byte[] body = new byte[length - 8];
+        body[0] = type;
+        writeLong(body, 1, timestamp);
+        writeInt(body, 9, key.length);
+        System.arraycopy(key, 0, body, 13, key.length);
+        writeInt(body, 13 + key.length, value.length);
+        System.arraycopy(value, 0, body, 17 + key.length, value.length);
+        int position = writePosition;
+        // 先写内容和CRC，最后写长度，写入途中退出时旧的结束标记仍然有效
+        buffer.putInt(position + 4 + body.length, crc(body));
+        write(position + 4, body);
+        writePosition = position + length;
+        writeEndMarker();
+        buffer.putInt(position, body.length);
+        Record record = new Record(position, length, 4 + 17 + key.length, value.length, timestamp);
+        if (type == PUT) {
+            liveBytes += length;
+        }
+        return record;
+    }
+
+    /**
+     * @return 日志为空时能否放下这条记录
+     */
+    boolean fits(byte[] key, byte[] value) {
+        return (long) HEADER_SIZE + RECORD_OVERHEAD + key.length + value.length + END_MARKER <= capacity;
+    }
+
+    byte[] readValue(Record record) {
+        return read(record.offset + record.valueOffset, record.valueLength);
+    }
+
+    void recordReplayed(Record record) {
+        liveBytes += record.length;
+    }
+
+    void recordDead(Record record) {
+        liveBytes -= record.length;
+    }
+
+    /**
+     * 只保留给出的记录，按偏移排序，压缩后更新它们的偏移
+     */
+    void compact(List<Record> live) {
+        int position = HEADER_SIZE;
+        for (Record record : live) {
+            if (record.offset != position) {
+                write(position, read(record.offset, record.length));
+                record.offset = position;
+            }
+            position += record.length;
+        }
+        writePosition = position;
+        writeEndMarker();
+        liveBytes = position - HEADER_SIZE;
+    }
+
+    void reset() {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, fingerprint);
+        writePosition = HEADER_SIZE;
+        liveBytes = 0;
+        writeEndMarker();
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    int getUsedBytes() {
+        return writePosition;
+    }
+
+    long getDeadBytes() {
+        return writePosition - HEADER_SIZE - liveBytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            buffer.force();
+            lock.release();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeEndMarker() {
+        if (writePosition + END_MARKER <= capacity) {
+            buffer.putInt(writePosition, 0);
+        }
+    }
+
+    private byte[] read(int position, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        view.get(bytes);
+        return bytes;
+    }
+
+    private void write(int position, byte[] bytes) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        view.put(bytes);
+    }
+
+    private static int crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return (int) crc.getValue();
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16) | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        return ((long) readInt(bytes, offset) << 32) | (readInt(bytes, offset + 4) & 0xFFFFFFFFL);
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static void writeLong(byte[] bytes, int offset, long value) {
+        writeInt(bytes, offset, (int) (value >>> 32));
+        writeInt(bytes, offset + 4, (int) value);
+    }
+
+    interface RecordVisitor {
+        void visit(byte type, byte[] key, Record record);
+    }
+
+    /**
+     * 一条记录在日志中的位置
+     */
+    static final class Record {
+
+        int offset;
+        final int length;
+        // value相对于记录开头的偏移
+        final int valueOffset;
+        final int valueLength;
+        final long timestamp;
+
+        Record(int offset, int length, int valueOffset, int valueLength, long timestamp) {
+            this.offset = offset;
+            this.length = length;
+            this.valueOffset = valueOffset;
+            this.valueLength = valueLength;
+            this.timestamp = timestamp;
+        }
+    }
+
+}
@@ -0,0 +1,479 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.builder.InitializingObject;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CopyStrategy;
+import org.apache.ibatis.cache.copy.SerializationCopyStrategy;
+import org.apache.ibatis.cache.impl.AppendOnlyLog.Record;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * 持久化到本地磁盘的缓存，应用重启之后缓存仍然是热的
+ * <p>
+ * 条目序列化后追加写入内存映射的日志文件({@code directory}/缓存ID.log)，堆内保留 key -&gt; 记录位置 的索引，
+ * 最近使用的{@code memorySize}个条目的序列化内容同时保存在堆内，读取时先查内存再查磁盘。
+ * 启动时重放日志重建索引；日志头记录了由缓存ID和{@code fingerprint}属性计算出的指纹，不一致时(例如表结构或结果映射变化后
+ * 修改了fingerprint)丢弃原有内容。SQL变化时缓存键本身就不同，不需要修改指纹。
+ * 日志写满或者失效的记录超过{@code compactionRatio}时压缩日志，压缩后仍然放不下时清空。
+ * 数据库在应用停止期间可能被修改，需要通过{@code maxAge}(毫秒)限制条目的有效期。
+ * <p>
+ * 每次命中都会反序列化出新的对象，缓存值必须实现{@link java.io.Serializable}。
+ * 日志文件在同一时刻只能被一个缓存实例打开，无法打开时只使用内存层，并记录警告。
+ * <pre>
+ * &lt;cache type="org.apache.ibatis.cache.impl.DiskCache"&gt;
+ *   &lt;property name="directory" value="/var/cache/myapp"/&gt;
+ *   &lt;property name="fingerprint" value="schema-42"/&gt;
+ *   &lt;property name="maxAge" value="3600000"/&gt;
+ * &lt;/cache&gt;
+ * </pre>
+ *
+ * @since 3.5.0
+ */
+public class DiskCache implements Cache, InitializingObject, Closeable {
+
+    private static final Log log = LogFactory.getLog(DiskCache.class);
+
+    private final String id;
+
+    // 日志文件所在的目录
+    private String directory = Paths.get(System.getProperty("java.io.tmpdir"), "mybatis-cache").toString();
+    // 日志文件的最大字节数
+    private int maxFileSize = 64 * 1024 * 1024;
+    // 内存层的最大条目数，0表示不使用内存层
+    private int memorySize = 1024;
+    // 条目的有效期(毫秒)，0表示不过期
+    private long maxAge;
+    // 缓存内容对应的版本，变化时丢弃磁盘上的内容
+    private String fingerprint = "";
+    // 失效记录占已用空间的比例超过此值时压缩
+    private double compactionRatio = 0.5;
+
+    private final CopyStrategy serializer = new SerializationCopyStrategy();
+    private final Map<Object, Record> index = new HashMap<>();
+    private final LinkedHashMap<Object, MemoryEntry> memory = new LinkedHashMap<Object, MemoryEntry>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, MemoryEntry> eldest) {
+            return size() > memorySize;
+        }
+    };
+    private AppendOnlyLog appendLog;
+    private boolean opened;
+    private long memoryHitCount;
+    private long diskHitCount;
+    private long compactionCount;
+
+    public DiskCache(String id) {
+        this.id = id;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * 属性设置完成后打开日志文件并重建索引
+     */
+    @Override
+    public synchronized void initialize() {
+        if (maxFileSize < 1024 || memorySize < 0 || maxAge < 0 || compactionRatio <= 0 || compactionRatio > 1) {
+            throw new CacheException("Invalid disk cache configuration for '" + id + "': maxFileSize=" + maxFileSize
+                + ", memorySize=" + memorySize + ", maxAge=" + maxAge + ", compactionRatio=" + compactionRatio);
+        }
+        closeLog();
+        opened = false;
+        open();
+    }
+
+    private void open() {
+        if (opened) {
+            return;
+        }
+        opened = true;
+        index.clear();
+        memory.clear();
+        Path file = getFile();
+        try {
+            appendLog = new AppendOnlyLog(file, maxFileSize, fingerprint(id + '\n' + fingerprint));
+        } catch (IOException e) {
+            log.warn("Disk cache '" + id + "' could not open " + file + ", caching in memory only. Cause: " + e);
+            return;
+        }
+        long now = now();
+        appendLog.replay((type, keyBytes, record) -> {
+            Object key;
+            try {
+                key = serializer.copyOnRead(keyBytes);
+            } catch (CacheException e) {
+                // key的类已经不存在
+                return;
+            }
+            Record previous = index.remove(key);
+            if (previous != null) {
+                appendLog.recordDead(previous);
+            }
+            if (type == AppendOnlyLog.PUT && !isExpired(record.timestamp, now)) {
+                index.put(key, record);
+                appendLog.recordReplayed(record);
+            }
+        });
+    }
+
+    /**
+     * @return 日志文件
+     */
+    public Path getFile() {
+        return Paths.get(directory, id.replaceAll("[^A-Za-z0-9._-]", "_") + ".log");
+    }
+
+    @Override
+    public synchronized int getSize() {
+        open();
+        return appendLog == null ? memory.size() : index.size();
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        if (value == null) {
+            removeObject(key);
+            return;
+        }
+        // 序列化在锁外进行
+        byte[] bytes = (byte[]) serializer.copyOnWrite(value);
+        byte[] keyBytes = serializeKey(key);
+        synchronized (this) {
+            open();
+            long now = now();
+            memory.put(key, new MemoryEntry(bytes, now));
+            if (appendLog == null || keyBytes == null) {
+                return;
+            }
+            Record previous = index.remove(key);
+            if (previous != null) {
+                appendLog.recordDead(previous);
+            }
+            Record record = null;
+            if (appendLog.fits(keyBytes, bytes)) {
+                record = appendLog.append(AppendOnlyLog.PUT, now, keyBytes, bytes);
+                if (record == null) {
+                    compact();
+                    record = appendLog.append(AppendOnlyLog.PUT, now, keyBytes, bytes);
+                }
+            }
+            if (record == null) {
+                // 单个条目超过了日志大小，新值只保存在内存层；写入删除记录，避免重启后重放出旧值
+                if (previous != null && appendLog.append(AppendOnlyLog.REMOVE, now, keyBytes, new byte[0]) == null) {
+                    // 压缩会丢弃不在索引中的旧记录
+                    compact();
+                }
+                return;
+            }
+            index.put(key, record);
+            if (appendLog.getDeadBytes() > compactionRatio * appendLog.getUsedBytes() && appendLog.getUsedBytes() > appendLog.getCapacity() / 2) {
+                compact();
+            }
+        }
+    }
+
+    private byte[] serializeKey(Object key) {
+        try {
+            return (byte[]) serializer.copyOnWrite(key);
+        } catch (CacheException e) {
+            // 无法序列化的key只保存在内存层
+            return null;
+        }
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        byte[] bytes;
+        boolean fromDisk = false;
+        synchronized (this) {
+            open();
+            long now = now();
+            MemoryEntry cached = memory.get(key);
+            if (cached != null) {
+                if (isExpired(cached.timestamp, now)) {
+                    remove(key);
+                    return null;
+                }
+                bytes = cached.bytes;
+                memoryHitCount++;
+            } else if (appendLog != null) {
+                Record record = index.get(key);
+                if (record == null) {
+                    return null;
+                }
+                if (isExpired(record.timestamp, now)) {
+                    remove(key);
+                    return null;
+                }
+                bytes = appendLog.readValue(record);
+                memory.put(key, new MemoryEntry(bytes, record.timestamp));
+                diskHitCount++;
+                fromDisk = true;
+            } else {
+                return null;
+            }
+        }
+        // 反序列化在锁外进行
+        try {
+            return serializer.copyOnRead(bytes);
+        } catch (CacheException e) {
+            if (!fromDisk) {
+                throw e;
+            }
+            // 值的类在重启之后发生了不兼容的变化
+            log.warn("Disk cache '" + id + "' discarded an entry that can no longer be deserialized. Cause: " + e);
+            synchronized (this) {
+                remove(key);
+            }
+            return null;
+        }
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        byte[] bytes;
+        synchronized (this) {
+            open();
+            bytes = remove(key);
+        }
+        return bytes == null ? null : serializer.copyOnRead(bytes);
+    }
+
+    private byte[] remove(Object key) {
+        MemoryEntry cached = memory.remove(key);
+        byte[] bytes = cached == null ? null : cached.bytes;
+        if (appendLog == null) {
+            return bytes;
+        }
+        Record record = index.remove(key);
+        if (record == null) {
+            return bytes;
+        }
+        if (bytes == null) {
+            bytes = appendLog.readValue(record);
+        }
+        appendLog.recordDead(record);
+        byte[] keyBytes = serializeKey(key);
+        if (appendLog.append(AppendOnlyLog.REMOVE, now(), keyBytes, new byte[0]) == null) {
+            compact();
+        }
+        return bytes;
+    }
+
+    @Override
+    public synchronized void clear() {
+        open();
+        memory.clear();
+        index.clear();
+        if (appendLog != null) {
+            appendLog.reset();
+        }
+    }
+
+    /**
+     * 丢弃失效和过期的记录，把存活的记录移动到日志开头
+     */
+    public synchronized void compact() {
+        open();
+        if (appendLog == null) {
+            return;
+        }
+        long now = now();
+        Iterator<Record> iterator = index.values().iterator();
+        while (iterator.hasNext()) {
+            if (isExpired(iterator.next().timestamp, now)) {
+                iterator.remove();
+            }
+        }
+        List<Record> live = new ArrayList<>(index.values());
+        live.sort(Comparator.comparingInt(record -> record.offset));
+        appendLog.compact(live);
+        compactionCount++;
+    }
+
+    private boolean isExpired(long timestamp, long now) {
+        return maxAge > 0 && now - timestamp > maxAge;
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * 刷新并关闭日志文件，之后只使用内存层
+     */
+    @Override
+    public synchronized void close() {
+        closeLog();
+        index.clear();
+        opened = true;
+    }
+
+    private void closeLog() {
+        if (appendLog != null) {
+            try {
+                appendLog.close();
+            } catch (IOException e) {
+                log.warn("Disk cache '" + id + "' could not be closed. Cause: " + e);
+            }
+            appendLog = null;
+        }
+    }
+
+    @Override
+    public ReadWriteLock getReadWriteLock() {
+        return null;
+    }
+
+    private static long fingerprint(String value) {
+        // FNV-1a
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public int getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    public void setMaxFileSize(int maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+
+    public int getMemorySize() {
+        return memorySize;
+    }
+
+    public void setMemorySize(int memorySize) {
+        this.memorySize = memorySize;
+    }
+
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    public void setMaxAge(long maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public double getCompactionRatio() {
+        return compactionRatio;
+    }
+
+    public void setCompactionRatio(double compactionRatio) {
+        this.compactionRatio = compactionRatio;
+    }
+
+    /**
+     * @return 日志文件已经使用的字节数
+     */
+    public synchronized long getUsedBytes() {
+        return appendLog == null ? 0 : appendLog.getUsedBytes();
+    }
+
+    public synchronized long getMemoryHitCount() {
+        return memoryHitCount;
+    }
+
+    public synchronized long getDiskHitCount() {
+        return diskHitCount;
+    }
+
+    public synchronized long getCompactionCount() {
+        return compactionCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (getId() == null) {
+            throw new CacheException("Cache instances require an ID.");
+        }
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Cache)) {
+            return false;
+        }
+
+        Cache otherCache = (Cache) o;
+        return getId().equals(otherCache.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        if (getId() == null) {
+            throw new CacheException("Cache instances require an ID.");
+        }
+        return getId().hashCode();
+    }
+
+    /**
+     * 内存层的条目
+     */
+    private static final class MemoryEntry {
+
+        private final byte[] bytes;
+        private final long timestamp;
+
+        MemoryEntry(byte[] bytes, long timestamp) {
+            this.bytes = bytes;
+            this.timestamp = timestamp;
+        }
+    }
+
+}
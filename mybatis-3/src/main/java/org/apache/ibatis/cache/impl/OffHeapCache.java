@@ -0,0 +1,333 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.builder.InitializingObject;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CopyStrategy;
+import org.apache.ibatis.cache.copy.SerializationCopyStrategy;
+import org.apache.ibatis.cache.impl.SlabAllocator.Chunk;
+import org.apache.ibatis.cache.impl.SlabAllocator.Page;
+import org.apache.ibatis.cache.impl.SlabAllocator.SizeClass;
+
+/**
+ * 堆外缓存，缓存值序列化后存放在堆外内存(direct ByteBuffer)中
+ * <p>
+ * 堆内只保留 key -> 条目位置 的索引，大量只读数据不会占用老年代，也不会增加GC停顿。
+ * 内存由{@link SlabAllocator}按页分配，总量不超过capacity；空间不足时淘汰同一块大小级别中最久未使用的条目，
+ * 或者把其他级别的一整页让出来。超过一页大小的值不会被缓存。
+ * 每次命中都会反序列化出新的对象，缓存值必须实现{@link java.io.Serializable}。
+ * <p>
+ * 自定义缓存不会被添加标准装饰器，所以此实现自身是线程安全的。可以通过属性配置:
+ * <pre>
+ * &lt;cache type="org.apache.ibatis.cache.impl.OffHeapCache"&gt;
+ *   &lt;property name="capacity" value="268435456"/&gt;
+ *   &lt;property name="pageSize" value="1048576"/&gt;
+ * &lt;/cache&gt;
+ * </pre>
+ *
+ * @since 3.5.0
+ */
+public class OffHeapCache implements Cache, InitializingObject {
+
+    private final String id;
+
+    // 堆外内存总量(字节)
+    private long capacity = 64L * 1024 * 1024;
+    // 每页大小(字节)，也是单个缓存值的最大长度
+    private int pageSize = 1024 * 1024;
+    // 最小的块大小(字节)
+    private int minChunkSize = 64;
+    // 相邻块大小级别的增长因子
+    private double growthFactor = 1.25;
+
+    private final CopyStrategy serializer = new SerializationCopyStrategy();
+    private final Map<Object, Entry> index = new HashMap<>();
+    private SlabAllocator allocator;
+    private long usedBytes;
+    private long evictionCount;
+
+    public OffHeapCache(String id) {
+        this.id = id;
+        this.allocator = newAllocator();
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * 属性设置完成后按新的配置重新创建分配器
+     */
+    @Override
+    public synchronized void initialize() {
+        if (pageSize <= 0 || minChunkSize <= 0 || minChunkSize > pageSize || growthFactor <= 1 || capacity < pageSize) {
+            throw new CacheException("Invalid off-heap cache configuration for '" + id + "': capacity=" + capacity
+                + ", pageSize=" + pageSize + ", minChunkSize=" + minChunkSize + ", growthFactor=" + growthFactor);
+        }
+        index.clear();
+        usedBytes = 0;
+        allocator = newAllocator();
+    }
+
+    private SlabAllocator newAllocator() {
+        return new SlabAllocator(pageSize, (int) Math.min(Integer.MAX_VALUE, capacity / pageSize), minChunkSize, growthFactor);
+    }
+
+    @Override
+    public synchronized int getSize() {
+        return index.size();
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        if (value == null) {
+            removeObject(key);
+            return;
+        }
+        // 序列化在锁外进行
+        byte[] bytes = (byte[]) serializer.copyOnWrite(value);
+        synchronized (this) {
+            remove(index.remove(key));
+            SizeClass sizeClass = allocator.sizeClassFor(bytes.length);
+            if (sizeClass == null) {
+                return;
+            }
+            Chunk chunk = allocate(sizeClass);
+            if (chunk == null) {
+                return;
+            }
+            chunk.write(bytes);
+            Entry entry = new Entry(key, chunk, bytes.length);
+            chunk.page.owners[chunk.index] = entry;
+            linkFirst(sizeClass, entry);
+            index.put(key, entry);
+            usedBytes += bytes.length;
+        }
+    }
+
+    private Chunk allocate(SizeClass sizeClass) {
+        while (true) {
+            Chunk chunk = allocator.allocate(sizeClass);
+            if (chunk != null) {
+                return chunk;
+            }
+            if (sizeClass.tail != null) {
+                // 淘汰同一级别中最久未使用的条目
+                evict(sizeClass.tail);
+                continue;
+            }
+            // 此级别没有任何页，从页数最多的级别中让出一页
+            Page victim = allocator.victimPage(sizeClass);
+            if (victim == null) {
+                return null;
+            }
+            for (Entry owner : victim.owners) {
+                if (owner != null) {
+                    evict(owner);
+                }
+            }
+            allocator.reclaim(victim, sizeClass);
+        }
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        byte[] bytes;
+        synchronized (this) {
+            Entry entry = index.get(key);
+            if (entry == null) {
+                return null;
+            }
+            SizeClass sizeClass = entry.chunk.page.sizeClass;
+            unlink(sizeClass, entry);
+            linkFirst(sizeClass, entry);
+            bytes = entry.chunk.read(entry.length);
+        }
+        // 反序列化在锁外进行
+        return serializer.copyOnRead(bytes);
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        byte[] bytes;
+        synchronized (this) {
+            Entry entry = index.remove(key);
+            if (entry == null) {
+                return null;
+            }
+            bytes = entry.chunk.read(entry.length);
+            remove(entry);
+        }
+        return serializer.copyOnRead(bytes);
+    }
+
+    @Override
+    public synchronized void clear() {
+        index.clear();
+        usedBytes = 0;
+        allocator.clear();
+    }
+
+    @Override
+    public ReadWriteLock getReadWriteLock() {
+        return null;
+    }
+
+    private void evict(Entry entry) {
+        index.remove(entry.key);
+        remove(entry);
+        evictionCount++;
+    }
+
+    private void remove(Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        unlink(entry.chunk.page.sizeClass, entry);
+        allocator.free(entry.chunk);
+        usedBytes -= entry.length;
+    }
+
+    private void linkFirst(SizeClass sizeClass, Entry entry) {
+        entry.prev = null;
+        entry.next = sizeClass.head;
+        if (sizeClass.head != null) {
+            sizeClass.head.prev = entry;
+        }
+        sizeClass.head = entry;
+        if (sizeClass.tail == null) {
+            sizeClass.tail = entry;
+        }
+    }
+
+    private void unlink(SizeClass sizeClass, Entry entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            sizeClass.head = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        } else {
+            sizeClass.tail = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(long capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public int getMinChunkSize() {
+        return minChunkSize;
+    }
+
+    public void setMinChunkSize(int minChunkSize) {
+        this.minChunkSize = minChunkSize;
+    }
+
+    public double getGrowthFactor() {
+        return growthFactor;
+    }
+
+    public void setGrowthFactor(double growthFactor) {
+        this.growthFactor = growthFactor;
+    }
+
+    /**
+     * @return 缓存值实际占用的字节数
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * @return 已申请的堆外内存字节数，与{@link #getUsedBytes()}的差值即为碎片
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocator.getAllocatedBytes();
+    }
+
+    /**
+     * @return 因空间不足被淘汰的条目数
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (getId() == null) {
+            throw new CacheException("Cache instances require an ID.");
+        }
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Cache)) {
+            return false;
+        }
+
+        Cache otherCache = (Cache) o;
+        return getId().equals(otherCache.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        if (getId() == null) {
+            throw new CacheException("Cache instances require an ID.");
+        }
+        return getId().hashCode();
+    }
+
+    /**
+     * 索引条目，记录缓存值在堆外内存中的位置
+     */
+    static final class Entry {
+
+        final Object key;
+        final Chunk chunk;
+        final int length;
+        Entry prev;
+        Entry next;
+
+        Entry(Object key, Chunk chunk, int length) {
+            this.key = key;
+            this.chunk = chunk;
+            this.length = length;
+        }
+    }
+
+}
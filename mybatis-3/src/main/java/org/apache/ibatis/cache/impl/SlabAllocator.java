@@ -0,0 +1,260 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 堆外内存的slab分配器
+ * <p>
+ * 内存按固定大小的页(direct ByteBuffer)按需申请，每页属于一个块大小级别，并被切分成该级别大小的块。
+ * 块大小按增长因子递增，一个条目放入能容纳它的最小块中，浪费的空间不超过增长因子的比例。
+ * 空页会在各级别之间重新分配，避免内存被某个级别长期占用。
+ * 分配器本身不是线程安全的，由{@link OffHeapCache}加锁访问。
+ */
+final class SlabAllocator {
+
+    private final int pageSize;
+    private final int maxPages;
+    private final SizeClass[] sizeClasses;
+    private int allocatedPages;
+
+    SlabAllocator(int pageSize, int maxPages, int minChunkSize, double growthFactor) {
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        List<SizeClass> classes = new ArrayList<>();
+        int chunkSize = minChunkSize;
+        while (chunkSize < pageSize) {
+            classes.add(new SizeClass(classes.size(), chunkSize));
+            int next = (int) Math.ceil(chunkSize * growthFactor);
+            // 按8字节对齐
+            chunkSize = Math.max(chunkSize + 8, (next + 7) & ~7);
+        }
+        classes.add(new SizeClass(classes.size(), pageSize));
+        this.sizeClasses = classes.toArray(new SizeClass[0]);
+    }
+
+    /**
+     * @return 能容纳length字节的最小级别，超过页大小时返回null
+     */
+    SizeClass sizeClassFor(int length) {
+        for (SizeClass sizeClass : sizeClasses) {
+            if (sizeClass.chunkSize >= length) {
+                return sizeClass;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 从级别的空闲块中分配，必要时申请新页或者复用其他级别的空页
+     *
+     * @return 没有可用的块时返回null，调用方需要先淘汰条目
+     */
+    Chunk allocate(SizeClass sizeClass) {
+        Page page = sizeClass.availablePages.peekFirst();
+        if (page == null) {
+            page = newPage(sizeClass);
+            if (page == null) {
+                return null;
+            }
+        }
+        Chunk chunk = page.take();
+        if (!page.hasFree()) {
+            sizeClass.availablePages.pollFirst();
+        }
+        return chunk;
+    }
+
+    private Page newPage(SizeClass sizeClass) {
+        if (allocatedPages < maxPages) {
+            allocatedPages++;
+            Page page = new Page(ByteBuffer.allocateDirect(pageSize));
+            assign(page, sizeClass);
+            return page;
+        }
+        // 复用其他级别中完全空闲的页
+        for (SizeClass other : sizeClasses) {
+            if (other == sizeClass) {
+                continue;
+            }
+            for (Page page : other.availablePages) {
+                if (page.isEmpty()) {
+                    other.availablePages.remove(page);
+                    other.pages.remove(page);
+                    assign(page, sizeClass);
+                    return page;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void assign(Page page, SizeClass sizeClass) {
+        page.format(sizeClass, pageSize / sizeClass.chunkSize);
+        sizeClass.pages.add(page);
+        sizeClass.availablePages.addFirst(page);
+    }
+
+    /**
+     * 释放块，所在页重新变为可分配
+     */
+    void free(Chunk chunk) {
+        Page page = chunk.page;
+        boolean wasFull = !page.hasFree();
+        page.release(chunk.index);
+        if (wasFull) {
+            page.sizeClass.availablePages.addLast(page);
+        }
+    }
+
+    /**
+     * 选择一个可以让给sizeClass的页：页数最多的其他级别中的第一页
+     *
+     * @return 没有其他级别占用页时返回null
+     */
+    Page victimPage(SizeClass sizeClass) {
+        SizeClass victim = null;
+        for (SizeClass other : sizeClasses) {
+            if (other != sizeClass && !other.pages.isEmpty()
+                && (victim == null || other.pages.size() > victim.pages.size())) {
+                victim = other;
+            }
+        }
+        return victim == null ? null : victim.pages.get(0);
+    }
+
+    /**
+     * 释放块之后调用：尝试把已经清空的页让给sizeClass
+     */
+    boolean reclaim(Page page, SizeClass sizeClass) {
+        if (!page.isEmpty() || page.sizeClass == sizeClass) {
+            return false;
+        }
+        page.sizeClass.availablePages.remove(page);
+        page.sizeClass.pages.remove(page);
+        assign(page, sizeClass);
+        return true;
+    }
+
+    void clear() {
+        for (SizeClass sizeClass : sizeClasses) {
+            sizeClass.head = null;
+            sizeClass.tail = null;
+            sizeClass.availablePages.clear();
+            for (Page page : sizeClass.pages) {
+                page.format(sizeClass, pageSize / sizeClass.chunkSize);
+                sizeClass.availablePages.addLast(page);
+            }
+        }
+    }
+
+    long getAllocatedBytes() {
+        return (long) allocatedPages * pageSize;
+    }
+
+    static final class SizeClass {
+
+        final int index;
+        final int chunkSize;
+        final List<Page> pages = new ArrayList<>();
+        // 还有空闲块的页
+        final Deque<Page> availablePages = new ArrayDeque<>();
+        // 此级别条目的LRU链表，head为最近使用
+        OffHeapCache.Entry head;
+        OffHeapCache.Entry tail;
+
+        SizeClass(int index, int chunkSize) {
+            this.index = index;
+            this.chunkSize = chunkSize;
+        }
+    }
+
+    static final class Page {
+
+        final ByteBuffer buffer;
+        SizeClass sizeClass;
+        // 每个块上的条目，空闲块为null
+        OffHeapCache.Entry[] owners;
+        private int[] freeChunks;
+        private int freeCount;
+
+        Page(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        void format(SizeClass sizeClass, int chunkCount) {
+            this.sizeClass = sizeClass;
+            this.owners = new OffHeapCache.Entry[chunkCount];
+            this.freeChunks = new int[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                freeChunks[i] = chunkCount - 1 - i;
+            }
+            this.freeCount = chunkCount;
+        }
+
+        boolean hasFree() {
+            return freeCount > 0;
+        }
+
+        boolean isEmpty() {
+            return freeCount == owners.length;
+        }
+
+        Chunk take() {
+            return new Chunk(this, freeChunks[--freeCount]);
+        }
+
+        void release(int index) {
+            owners[index] = null;
+            freeChunks[freeCount++] = index;
+        }
+    }
+
+    static final class Chunk {
+
+        final Page page;
+        final int index;
+
+        Chunk(Page page, int index) {
+            this.page = page;
+            this.index = index;
+        }
+
+        int offset() {
+            return index * page.sizeClass.chunkSize;
+        }
+
+        void write(byte[] bytes) {
+            ByteBuffer buffer = page.buffer.duplicate();
+            buffer.position(offset());
+            buffer.put(bytes);
+        }
+
+        byte[] read(int length) {
+            ByteBuffer buffer = page.buffer.duplicate();
+            buffer.position(offset());
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return bytes;
+        }
+    }
+
+}
@@ -0,0 +1,330 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * Publishes the invalidations of this node through an {@link InvalidationTransport} and applies the
+ * invalidations received from other nodes to the local second level caches.
+ * <p>
+ * 失效先在本地累积{@code batchDelay}毫秒，重复的失效会被合并，然后按批发送；
+ * 批次超过传输方式的消息上限时拆分成多条消息。收到的失效不会再次发布。
+ * <p>
+ * 设置了{@code secret}时，每条消息以HMAC-SHA256签名结尾，签名不正确的消息被丢弃；
+ * 所有节点需要配置相同的secret。消息只包含命名空间和表名，不使用Java序列化。
+ *
+ * @since 3.5.0
+ */
+public class CacheInvalidationBus implements CacheInvalidationPublisher, Closeable {
+
+  private static final Log log = LogFactory.getLog(CacheInvalidationBus.class);
+
+  private static final int MAGIC = 0x4D424349;
+  // 每条消息的头部: MAGIC + 节点ID + 失效数量
+  private static final int HEADER_SIZE = 4 + 16 + 4;
+  private static final String MAC_ALGORITHM = "HmacSHA256";
+  private static final int MAC_SIZE = 32;
+  public static final long DEFAULT_BATCH_DELAY = 10;
+  public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
+  private final Configuration configuration;
+  private final InvalidationTransport transport;
+  private final UUID nodeId = UUID.randomUUID();
+  private final Set<Invalidation> pending = new LinkedHashSet<>();
+  private long batchDelay = DEFAULT_BATCH_DELAY;
+  private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+  private SecretKeySpec secret;
+  private ScheduledExecutorService scheduler;
+  private boolean flushScheduled;
+  private boolean started;
+  private volatile boolean closed;
+
+  public CacheInvalidationBus(Configuration configuration, InvalidationTransport transport) {
+    this.configuration = configuration;
+    this.transport = transport;
+  }
+
+  /**
+   * @param batchDelay 毫秒，0表示在提交的线程中立即发送
+   */
+  public void setBatchDelay(long batchDelay) {
+    if (batchDelay < 0) {
+      throw new IllegalArgumentException("batchDelay must not be negative: " + batchDelay);
+    }
+    this.batchDelay = batchDelay;
+  }
+
+  public void setMaxBatchSize(int maxBatchSize) {
+    if (maxBatchSize <= 0) {
+      throw new IllegalArgumentException("maxBatchSize must be positive: " + maxBatchSize);
+    }
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  /**
+   * @param secret 所有节点共享的密钥，用于签名和校验消息；为null时不签名
+   */
+  public void setSecret(String secret) {
+    this.secret = secret == null || secret.isEmpty() ? null : new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), MAC_ALGORITHM);
+  }
+
+  public UUID getNodeId() {
+    return nodeId;
+  }
+
+  public InvalidationTransport getTransport() {
+    return transport;
+  }
+
+  /**
+   * 开始接收其他节点的失效；由{@link org.apache.ibatis.session.SqlSessionFactoryBuilder#build(Configuration)}调用，重复调用没有影响
+   */
+  public synchronized void start() throws IOException {
+    if (started || closed) {
+      return;
+    }
+    if (batchDelay > 0) {
+      scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "mybatis-cache-invalidation");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    if (secret == null) {
+      log.warn("Cache invalidation messages are not authenticated, set a secret to reject messages from unknown senders.");
+    }
+    transport.start(this::receive);
+    started = true;
+  }
+
+  public synchronized boolean isStarted() {
+    return started;
+  }
+
+  @Override
+  public void publish(Collection<Invalidation> invalidations) {
+    if (closed || invalidations.isEmpty()) {
+      return;
+    }
+    boolean sendNow;
+    synchronized (pending) {
+      // 重复的失效只保留一条
+      pending.addAll(invalidations);
+      sendNow = scheduler == null || pending.size() >= maxBatchSize;
+      if (!sendNow && !flushScheduled) {
+        flushScheduled = true;
+        scheduler.schedule(this::flush, batchDelay, TimeUnit.MILLISECONDS);
+      }
+    }
+    if (sendNow) {
+      flush();
+    }
+  }
+
+  /**
+   * 立即发送所有累积的失效
+   */
+  public void flush() {
+    List<Invalidation> batch;
+    synchronized (pending) {
+      flushScheduled = false;
+      if (pending.isEmpty()) {
+        return;
+      }
+      batch = new ArrayList<>(pending);
+      pending.clear();
+    }
+    try {
+      for (byte[] message : encode(batch)) {
+        transport.send(message);
+      }
+    } catch (IOException e) {
+      log.error("Could not publish " + batch.size() + " cache invalidations. Cause: " + e, e);
+    }
+  }
+
+  List<byte[]> encode(List<Invalidation> batch) throws IOException {
+    List<byte[]> messages = new ArrayList<>();
+    int maxMessageSize = transport.getMaxMessageSize();
+    int overhead = HEADER_SIZE + (secret == null ? 0 : MAC_SIZE);
+    List<byte[]> entries = new ArrayList<>();
+    int size = overhead;
+    for (Invalidation invalidation : batch) {
+      byte[] entry = encode(invalidation);
+      if (overhead + entry.length > maxMessageSize) {
+        log.warn("Cache invalidation " + invalidation + " is too large for the transport, discarding it.");
+        continue;
+      }
+      if (!entries.isEmpty() && (size + entry.length > maxMessageSize || entries.size() >= maxBatchSize)) {
+        messages.add(toMessage(entries));
+        entries.clear();
+        size = overhead;
+      }
+      entries.add(entry);
+      size += entry.length;
+    }
+    if (!entries.isEmpty()) {
+      messages.add(toMessage(entries));
+    }
+    return messages;
+  }
+
+  private byte[] encode(Invalidation invalidation) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(invalidation.getType().ordinal());
+    out.writeUTF(invalidation.getTarget());
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private byte[] toMessage(List<byte[]> entries) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(MAGIC);
+    out.writeLong(nodeId.getMostSignificantBits());
+    out.writeLong(nodeId.getLeastSignificantBits());
+    out.writeInt(entries.size());
+    for (byte[] entry : entries) {
+      out.write(entry);
+    }
+    if (secret != null) {
+      out.write(sign(bytes.toByteArray(), bytes.size()));
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private byte[] sign(byte[] message, int length) throws IOException {
+    try {
+      Mac mac = Mac.getInstance(MAC_ALGORITHM);
+      mac.init(secret);
+      mac.update(message, 0, length);
+      return mac.doFinal();
+    } catch (GeneralSecurityException e) {
+      throw new IOException("Could not sign cache invalidation message. Cause: " + e, e);
+    }
+  }
+
+  /**
+   * 处理其他节点发来的一条消息
+   */
+  public void receive(byte[] message) {
+    List<Invalidation> invalidations;
+    try {
+      invalidations = decode(message);
+    } catch (IOException e) {
+      log.warn("Discarding malformed cache invalidation message. Cause: " + e);
+      return;
+    }
+    List<String> tables = new ArrayList<>();
+    for (Invalidation invalidation : invalidations) {
+      if (invalidation.getType() == Invalidation.Type.TABLE) {
+        tables.add(invalidation.getTarget());
+      } else {
+        apply(invalidation);
+      }
+    }
+    configuration.getTableVersions().invalidate(tables);
+  }
+
+  private List<Invalidation> decode(byte[] message) throws IOException {
+    int length = message.length;
+    if (secret != null) {
+      // 先校验签名，再解析内容
+      length -= MAC_SIZE;
+      if (length < HEADER_SIZE
+          || !MessageDigest.isEqual(sign(message, length), Arrays.copyOfRange(message, length, message.length))) {
+        throw new IOException("Invalid message signature");
+      }
+    }
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(message, 0, length));
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Unknown message format");
+    }
+    UUID origin = new UUID(in.readLong(), in.readLong());
+    if (nodeId.equals(origin)) {
+      return Collections.emptyList();
+    }
+    int count = in.readInt();
+    // 每条失效至少3个字节: 类型 + 长度为0的名称
+    if (count < 0 || count > in.available() / 3) {
+      throw new IOException("Invalid invalidation count " + count);
+    }
+    List<Invalidation> invalidations = new ArrayList<>(count);
+    Invalidation.Type[] types = Invalidation.Type.values();
+    for (int i = 0; i < count; i++) {
+      int type = in.readUnsignedByte();
+      if (type >= types.length) {
+        throw new IOException("Unknown invalidation type " + type);
+      }
+      String target = in.readUTF();
+      invalidations.add(types[type] == Invalidation.Type.TABLE ? Invalidation.table(target) : Invalidation.namespace(target));
+    }
+    return invalidations;
+  }
+
+  private void apply(Invalidation invalidation) {
+    if (!configuration.hasCache(invalidation.getTarget())) {
+      // 其他节点可能加载了本节点没有的映射文件
+      return;
+    }
+    Cache cache = configuration.getCache(invalidation.getTarget());
+    cache.clear();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    flush();
+    closed = true;
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+    transport.close();
+  }
+
+}
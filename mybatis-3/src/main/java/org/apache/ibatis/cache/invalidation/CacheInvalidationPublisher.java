@@ -0,0 +1,38 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.util.Collection;
+
+/**
+ * SPI for propagating the invalidations committed by a session to the second level caches of other nodes.
+ * <p>
+ * Called from {@link org.apache.ibatis.cache.TransactionalCacheManager#commit()} and, when table based
+ * invalidation is enabled, after the modified tables have been invalidated locally.
+ * Implementations must be thread safe and should not block the committing thread.
+ * <p>
+ * 缓存失效的发布者
+ *
+ * @since 3.5.0
+ */
+public interface CacheInvalidationPublisher {
+
+  /**
+   * @param invalidations 已经在本地生效的失效
+   */
+  void publish(Collection<Invalidation> invalidations);
+
+}
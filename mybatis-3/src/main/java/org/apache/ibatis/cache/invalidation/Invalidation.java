@@ -0,0 +1,84 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * 一条缓存失效消息
+ *
+ * @since 3.5.0
+ */
+public final class Invalidation implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  public enum Type {
+    /** 清空一个命名空间的缓存 */
+    NAMESPACE,
+    /** 使读取了一个表的条目失效 */
+    TABLE
+  }
+
+  private final Type type;
+  // 缓存ID(命名空间)或表名
+  private final String target;
+
+  private Invalidation(Type type, String target) {
+    this.type = type;
+    this.target = target;
+  }
+
+  public static Invalidation namespace(String cacheId) {
+    return new Invalidation(Type.NAMESPACE, cacheId);
+  }
+
+  public static Invalidation table(String table) {
+    return new Invalidation(Type.TABLE, table);
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public String getTarget() {
+    return target;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Invalidation)) {
+      return false;
+    }
+    Invalidation other = (Invalidation) o;
+    return type == other.type && target.equals(other.target);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(type, target);
+  }
+
+  @Override
+  public String toString() {
+    return type + ":" + target;
+  }
+
+}
@@ -0,0 +1,56 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.function.Consumer;
+
+/**
+ * Sends the encoded invalidation batches of a {@link CacheInvalidationBus} to the other nodes.
+ * <p>
+ * Implementations need a default constructor and receive the properties of the
+ * {@code <cacheInvalidation>} element before {@link #start(Consumer)}.
+ * <p>
+ * 缓存失效消息的传输方式
+ *
+ * @since 3.5.0
+ */
+public interface InvalidationTransport extends Closeable {
+
+  default void setProperties(Properties properties) {
+    // NOP
+  }
+
+  /**
+   * 开始接收其他节点的消息
+   *
+   * @param receiver 可能在传输方式自己的线程中调用
+   */
+  void start(Consumer<byte[]> receiver) throws IOException;
+
+  /**
+   * 发送给其他节点，是否发给自己由实现决定
+   */
+  void send(byte[] message) throws IOException;
+
+  /**
+   * @return 一条消息的最大字节数
+   */
+  int getMaxMessageSize();
+
+}
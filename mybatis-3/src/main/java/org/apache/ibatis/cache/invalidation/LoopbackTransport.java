@@ -0,0 +1,76 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 同一个JVM内的传输方式，同一个{@code channel}上的其他实例同步收到消息。
+ * 用于测试，或者在一个进程中运行多个{@link org.apache.ibatis.session.SqlSessionFactory}的场景。
+ *
+ * @since 3.5.0
+ */
+public class LoopbackTransport implements InvalidationTransport {
+
+  private static final Map<String, List<LoopbackTransport>> channels = new ConcurrentHashMap<>();
+
+  private String channel = "default";
+  private volatile Consumer<byte[]> receiver;
+
+  @Override
+  public void setProperties(Properties properties) {
+    channel = properties.getProperty("channel", channel);
+  }
+
+  public void setChannel(String channel) {
+    this.channel = channel;
+  }
+
+  @Override
+  public void start(Consumer<byte[]> receiver) {
+    this.receiver = receiver;
+    channels.computeIfAbsent(channel, k -> new CopyOnWriteArrayList<>()).add(this);
+  }
+
+  @Override
+  public void send(byte[] message) {
+    for (LoopbackTransport peer : channels.getOrDefault(channel, Collections.emptyList())) {
+      if (peer != this) {
+        peer.receiver.accept(message);
+      }
+    }
+  }
+
+  @Override
+  public int getMaxMessageSize() {
+    return 64 * 1024;
+  }
+
+  @Override
+  public void close() {
+    List<LoopbackTransport> peers = channels.get(channel);
+    if (peers != null) {
+      peers.remove(this);
+    }
+  }
+
+}
@@ -0,0 +1,216 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * 基于TCP的传输方式，适用于不支持组播的网络
+ * <p>
+ * 属性: {@code port}为本节点监听的端口(0表示不接收)，{@code bindAddress}为监听的本地地址(默认为所有地址)，
+ * {@code peers}为其他节点的地址列表，以逗号分隔，例如{@code host1:45567,host2:45567}。
+ * 每条消息以长度作为前缀；到某个节点的连接断开后，下次发送时重新连接，期间的消息会丢失。
+ *
+ * @since 3.5.0
+ */
+public class TcpTransport implements InvalidationTransport {
+
+  private static final Log log = LogFactory.getLog(TcpTransport.class);
+
+  private static final int MAX_MESSAGE_SIZE = 1024 * 1024;
+
+  private int port;
+  private String bindAddress;
+  private int connectTimeout = 1000;
+  private final List<Peer> peers = new ArrayList<>();
+  private ServerSocket serverSocket;
+  private volatile boolean closed;
+
+  @Override
+  public void setProperties(Properties properties) {
+    port = Integer.parseInt(properties.getProperty("port", "0"));
+    bindAddress = properties.getProperty("bindAddress");
+    connectTimeout = Integer.parseInt(properties.getProperty("connectTimeout", String.valueOf(connectTimeout)));
+    String peerList = properties.getProperty("peers");
+    if (peerList != null) {
+      for (String peer : peerList.split(",")) {
+        peer = peer.trim();
+        if (peer.isEmpty()) {
+          continue;
+        }
+        int colon = peer.lastIndexOf(':');
+        if (colon < 0) {
+          throw new IllegalArgumentException("Peer address must be host:port, but was " + peer);
+        }
+        peers.add(new Peer(new InetSocketAddress(peer.substring(0, colon), Integer.parseInt(peer.substring(colon + 1)))));
+      }
+    }
+  }
+
+  /**
+   * @return 实际监听的端口
+   */
+  public int getLocalPort() {
+    return serverSocket == null ? -1 : serverSocket.getLocalPort();
+  }
+
+  @Override
+  public void start(Consumer<byte[]> receiver) throws IOException {
+    if (port <= 0) {
+      return;
+    }
+    serverSocket = new ServerSocket();
+    serverSocket.bind(bindAddress == null ? new InetSocketAddress(port) : new InetSocketAddress(bindAddress, port));
+    Thread acceptor = new Thread(() -> {
+      while (!closed) {
+        try {
+          Socket socket = serverSocket.accept();
+          Thread reader = new Thread(() -> read(socket, receiver), "mybatis-cache-invalidation-tcp-" + socket.getRemoteSocketAddress());
+          reader.setDaemon(true);
+          reader.start();
+        } catch (IOException e) {
+          if (!closed) {
+            log.warn("Failed to accept cache invalidation connection. Cause: " + e);
+          }
+        }
+      }
+    }, "mybatis-cache-invalidation-tcp");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  private void read(Socket socket, Consumer<byte[]> receiver) {
+    try (Socket s = socket; DataInputStream in = new DataInputStream(s.getInputStream())) {
+      while (!closed) {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_MESSAGE_SIZE) {
+          throw new IOException("Invalid message length " + length);
+        }
+        byte[] message = new byte[length];
+        in.readFully(message);
+        receiver.accept(message);
+      }
+    } catch (EOFException | SocketException e) {
+      // 对方断开
+    } catch (IOException | RuntimeException e) {
+      log.warn("Failed to receive cache invalidation. Cause: " + e);
+    }
+  }
+
+  @Override
+  public void send(byte[] message) throws IOException {
+    IOException failure = null;
+    for (Peer peer : peers) {
+      try {
+        peer.send(message, connectTimeout);
+      } catch (IOException e) {
+        failure = e;
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  @Override
+  public int getMaxMessageSize() {
+    return MAX_MESSAGE_SIZE;
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    for (Peer peer : peers) {
+      peer.close();
+    }
+    if (serverSocket != null) {
+      serverSocket.close();
+    }
+  }
+
+  private static class Peer {
+
+    private final InetSocketAddress address;
+    private Socket socket;
+    private DataOutputStream out;
+    // 连接和发送都是网络I/O，使用显式锁而不是synchronized，避免阻塞时占用平台线程
+    private final ReentrantLock lock = new ReentrantLock();
+
+    Peer(InetSocketAddress address) {
+      this.address = address;
+    }
+
+    void send(byte[] message, int connectTimeout) throws IOException {
+      lock.lock();
+      try {
+        if (socket == null) {
+          socket = new Socket();
+          socket.setTcpNoDelay(true);
+          try {
+            socket.connect(address, connectTimeout);
+            out = new DataOutputStream(socket.getOutputStream());
+          } catch (IOException e) {
+            close();
+            throw e;
+          }
+        }
+        try {
+          out.writeInt(message.length);
+          out.write(message);
+          out.flush();
+        } catch (IOException e) {
+          close();
+          throw e;
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void close() {
+      lock.lock();
+      try {
+        if (socket != null) {
+          try {
+            socket.close();
+          } catch (IOException e) {
+            // ignore
+          }
+          socket = null;
+          out = null;
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,104 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.function.Consumer;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * 基于UDP组播的传输方式
+ * <p>
+ * 属性: {@code group}(默认230.0.0.1)、{@code port}(默认45566)、{@code timeToLive}(默认1)。
+ * UDP不保证送达，丢失的消息不会重发，对一致性要求高的场景应同时设置缓存的过期时间。
+ *
+ * @since 3.5.0
+ */
+public class UdpMulticastTransport implements InvalidationTransport {
+
+  private static final Log log = LogFactory.getLog(UdpMulticastTransport.class);
+
+  // 避免IP分片
+  private static final int MAX_MESSAGE_SIZE = 1400;
+
+  private String group = "230.0.0.1";
+  private int port = 45566;
+  private int timeToLive = 1;
+  private InetAddress groupAddress;
+  private MulticastSocket socket;
+  private Thread receiverThread;
+
+  @Override
+  public void setProperties(Properties properties) {
+    group = properties.getProperty("group", group);
+    port = Integer.parseInt(properties.getProperty("port", String.valueOf(port)));
+    timeToLive = Integer.parseInt(properties.getProperty("timeToLive", String.valueOf(timeToLive)));
+  }
+
+  @Override
+  public void start(Consumer<byte[]> receiver) throws IOException {
+    groupAddress = InetAddress.getByName(group);
+    socket = new MulticastSocket(port);
+    socket.setTimeToLive(timeToLive);
+    socket.joinGroup(groupAddress);
+    receiverThread = new Thread(() -> {
+      byte[] buffer = new byte[MAX_MESSAGE_SIZE];
+      while (!socket.isClosed()) {
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        try {
+          socket.receive(packet);
+          receiver.accept(Arrays.copyOfRange(packet.getData(), packet.getOffset(), packet.getOffset() + packet.getLength()));
+        } catch (SocketException e) {
+          // 关闭
+        } catch (IOException | RuntimeException e) {
+          log.warn("Failed to receive cache invalidation. Cause: " + e);
+        }
+      }
+    }, "mybatis-cache-invalidation-udp");
+    receiverThread.setDaemon(true);
+    receiverThread.start();
+  }
+
+  @Override
+  public void send(byte[] message) throws IOException {
+    socket.send(new DatagramPacket(message, message.length, groupAddress, port));
+  }
+
+  @Override
+  public int getMaxMessageSize() {
+    return MAX_MESSAGE_SIZE;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (socket != null) {
+      try {
+        socket.leaveGroup(groupAddress);
+      } finally {
+        socket.close();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,61 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource;
+
+/**
+ * 当前线程获取连接时使用的连接池分区
+ * <p>
+ * 执行器在执行映射语句期间设置，取映射语句声明的分区，没有时取会话打开时指定的分区。
+ * 连接池(例如{@link org.apache.ibatis.datasource.pooled.PooledDataSource})据此决定可以使用的预留连接和等待时的优先级。
+ * 没有设置时为null，即默认分区。
+ *
+ * @since 3.5.0
+ */
+public final class ConnectionPartition {
+
+  private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+  private ConnectionPartition() {
+    // Prevent Instantiation
+  }
+
+  /**
+   * @return 当前的分区名称，没有时返回null
+   */
+  public static String current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * 设置当前的分区
+   *
+   * @return 之前的分区，用于{@link #restore(String)}
+   */
+  public static String enter(String partition) {
+    String previous = CURRENT.get();
+    CURRENT.set(partition);
+    return previous;
+  }
+
+  public static void restore(String previous) {
+    if (previous == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(previous);
+    }
+  }
+
+}
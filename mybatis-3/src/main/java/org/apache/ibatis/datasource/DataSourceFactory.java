@@ -19,10 +19,12 @@ import java.util.Properties;
 import javax.sql.DataSource;
 
 /**
- * 数据源工厂类，Mybatis中默认存在三个实现
+ * 数据源工厂类，Mybatis中默认存在五个实现
  *  - JndiDataSourceFactory
  *  - UnpooledDataSourceFactory
  *    - PooledDataSourceFactory
+ *  - ReadWriteDataSourceFactory
+ *  - ShardedDataSourceFactory
  *
  * @author Clinton Begin
  */
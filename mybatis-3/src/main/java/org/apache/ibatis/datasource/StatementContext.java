@@ -0,0 +1,75 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource;
+
+import org.apache.ibatis.mapping.MappedStatement;
+
+/**
+ * 当前线程正在创建Statement的映射语句和参数
+ * <p>
+ * 执行器在调用{@link java.sql.Connection#prepareStatement(String)}等方法创建Statement期间设置，
+ * 路由数据源(例如读写分离、分片)返回的连接据此选择实际使用的数据库。
+ * 不经过执行器直接使用连接时为null。
+ *
+ * @since 3.5.0
+ */
+public final class StatementContext {
+
+  private static final ThreadLocal<StatementContext> CURRENT = new ThreadLocal<>();
+
+  private final MappedStatement mappedStatement;
+  private final Object parameterObject;
+
+  private StatementContext(MappedStatement mappedStatement, Object parameterObject) {
+    this.mappedStatement = mappedStatement;
+    this.parameterObject = parameterObject;
+  }
+
+  public MappedStatement getMappedStatement() {
+    return mappedStatement;
+  }
+
+  public Object getParameterObject() {
+    return parameterObject;
+  }
+
+  /**
+   * @return 正在创建Statement的上下文，没有时返回null
+   */
+  public static StatementContext current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * 设置正在创建Statement的映射语句和参数
+   *
+   * @return 之前的上下文，用于{@link #restore(StatementContext)}
+   */
+  public static StatementContext enter(MappedStatement mappedStatement, Object parameterObject) {
+    StatementContext previous = CURRENT.get();
+    CURRENT.set(new StatementContext(mappedStatement, parameterObject));
+    return previous;
+  }
+
+  public static void restore(StatementContext previous) {
+    if (previous == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(previous);
+    }
+  }
+
+}
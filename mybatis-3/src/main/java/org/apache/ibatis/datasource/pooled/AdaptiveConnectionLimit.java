@@ -0,0 +1,98 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+/**
+ * 自适应的活动连接上限
+ * <p>
+ * 连接的借出时长反映了查询的延迟。短期平均延迟明显高于长期平均延迟(基准)时，
+ * 说明数据库已经过载，按照两者的比值(梯度)成比例地减小上限；
+ * 延迟正常而仍然有请求需要等待连接时，说明连接不够用，上限加1(AIMD)。
+ * 每收集{@link #WINDOW}个样本调整一次，上限不会超出配置的范围。
+ * 默认从最大值开始，由梯度在过载时减小，避免启动时连接不够用。
+ * <p>
+ * 不是线程安全的，由{@link PoolState}的锁保护。
+ *
+ * @since 3.5.0
+ */
+final class AdaptiveConnectionLimit {
+
+    // 每个调整窗口的样本数量
+    static final int WINDOW = 10;
+    // 短期平均值的平滑系数
+    private static final double SHORT_SMOOTHING = 0.2;
+    // 长期平均值(基准)的平滑系数
+    private static final double LONG_SMOOTHING = 0.02;
+    // 短期延迟超过基准的这个倍数时才减小上限，容忍正常的波动
+    private static final double TOLERANCE = 1.5;
+    // 一次最多减小一半
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final int minimum;
+    private final int maximum;
+    private int limit;
+    private double shortLatency = -1;
+    private double longLatency = -1;
+    private int samples;
+    private int waits;
+
+    AdaptiveConnectionLimit(int minimum, int maximum, int initial) {
+        this.maximum = Math.max(1, maximum);
+        this.minimum = Math.max(1, Math.min(minimum, this.maximum));
+        this.limit = Math.max(this.minimum, Math.min(initial, this.maximum));
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    /**
+     * 有请求因为达到上限而等待
+     */
+    void onWait() {
+        waits++;
+    }
+
+    /**
+     * 连接归还时记录借出时长(毫秒)
+     *
+     * @return 上限是否增大，增大时需要唤醒等待的请求
+     */
+    boolean onSample(long latency) {
+        double sample = Math.max(1, latency);
+        if (shortLatency < 0) {
+            shortLatency = sample;
+            longLatency = sample;
+        } else {
+            shortLatency += SHORT_SMOOTHING * (sample - shortLatency);
+            longLatency += LONG_SMOOTHING * (sample - longLatency);
+        }
+        if (++samples < WINDOW) {
+            return false;
+        }
+        int previous = limit;
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, TOLERANCE * longLatency / shortLatency));
+        if (gradient < 1.0) {
+            limit = Math.max(minimum, (int) (limit * gradient));
+        } else if (waits > 0) {
+            limit = Math.min(maximum, limit + 1);
+        }
+        samples = 0;
+        waits = 0;
+        return limit > previous;
+    }
+
+}
@@ -0,0 +1,160 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 池连接的状态跟踪
+ * <p>
+ * 记录连接借出后是否修改了自动提交、事务隔离级别、只读属性，以及是否创建过语句，
+ * 归还连接时只执行确实需要的回滚和恢复操作，不再每次都访问数据库。
+ * 语句的执行不经过连接，无法跟踪，因此只要创建过语句(或者调用过不在{@link #SIDE_EFFECT_FREE}中的方法)并且关闭了自动提交，
+ * 就认为可能有未结束的事务；即使已经提交，之后仍然可以通过已有的语句开始新的事务。
+ * 自动提交的状态由跟踪器记录，{@link Connection#getAutoCommit()}以及不改变状态的{@link Connection#setAutoCommit(boolean)}不会访问数据库。
+ * 通过unwrap或者getMetaData().getConnection()可以取得真实连接，之后无法继续跟踪，此时归还时按照真实连接的状态回滚。
+ * <p>
+ * 同一个真实连接的多个{@link PooledConnection}共享一个跟踪器，只由持有连接的线程或者归还连接的线程访问。
+ */
+final class ConnectionState {
+
+    // 不会开始事务的方法，其他方法(包括未知的方法)都视为可能有未结束的事务
+    private static final Set<String> SIDE_EFFECT_FREE = new HashSet<>(Arrays.asList(
+        "getAutoCommit", "setAutoCommit", "commit", "rollback", "releaseSavepoint",
+        "getTransactionIsolation", "setTransactionIsolation", "isReadOnly", "setReadOnly",
+        "getCatalog", "setCatalog", "getSchema", "setSchema", "getHoldability", "setHoldability",
+        "getWarnings", "clearWarnings", "isClosed", "isValid", "nativeSQL", "isWrapperFor",
+        "getClientInfo", "setClientInfo", "getTypeMap", "setTypeMap", "getNetworkTimeout", "setNetworkTimeout",
+        "toString", "hashCode", "equals"));
+
+    // 连接创建时的自动提交状态，归还时恢复
+    private final boolean initialAutoCommit;
+    private boolean autoCommit;
+    // 借出后创建过语句(或调用过其他可能开始事务的方法)，关闭自动提交时可能有未结束的事务
+    private boolean statementCreated;
+    // 第一次修改之前的事务隔离级别，null表示没有修改过
+    private Integer initialIsolation;
+    // 第一次修改之前的只读属性，null表示没有修改过
+    private Boolean initialReadOnly;
+    // 无法跟踪真实连接的状态
+    private boolean untracked;
+
+    ConnectionState(Connection connection) {
+        boolean current = true;
+        try {
+            current = connection.getAutoCommit();
+        } catch (SQLException e) {
+            untracked = true;
+        }
+        this.initialAutoCommit = current;
+        this.autoCommit = current;
+    }
+
+    /**
+     * 调用真实连接的方法，同时记录状态的变化
+     */
+    Object invoke(Connection connection, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if (!untracked) {
+            if ("getAutoCommit".equals(name)) {
+                return autoCommit;
+            } else if ("setAutoCommit".equals(name) && (Boolean) args[0] == autoCommit) {
+                // 状态没有变化，JDBC规定这是空操作
+                return null;
+            }
+        }
+        if ("setTransactionIsolation".equals(name) && initialIsolation == null) {
+            initialIsolation = connection.getTransactionIsolation();
+        } else if ("setReadOnly".equals(name) && initialReadOnly == null) {
+            initialReadOnly = connection.isReadOnly();
+        }
+        Object result = method.invoke(connection, args);
+        switch (name) {
+            case "setAutoCommit":
+                autoCommit = (Boolean) args[0];
+                break;
+            case "unwrap":
+            case "getMetaData":
+                // 元数据的getConnection()返回真实连接
+                untracked = true;
+                break;
+            default:
+                if (!SIDE_EFFECT_FREE.contains(name)) {
+                    // 自动提交时创建的语句也可能在关闭自动提交之后执行
+                    statementCreated = true;
+                }
+                break;
+        }
+        return result;
+    }
+
+    /**
+     * 通过{@link PooledDataSource#unwrapConnection(Connection)}取得了真实连接
+     */
+    void markUntracked() {
+        untracked = true;
+    }
+
+    /**
+     * @return 连接可能处于未结束的事务中
+     */
+    boolean isTransactionActive() {
+        return untracked || (!autoCommit && statementCreated);
+    }
+
+    boolean isAutoCommit(Connection connection) throws SQLException {
+        return untracked ? connection.getAutoCommit() : autoCommit;
+    }
+
+    /**
+     * 回滚未结束的事务
+     */
+    void rollbackIfNeeded(Connection connection) throws SQLException {
+        if (untracked) {
+            autoCommit = connection.getAutoCommit();
+        }
+        if (isTransactionActive() && !autoCommit) {
+            connection.rollback();
+        }
+        statementCreated = false;
+    }
+
+    /**
+     * 回滚未结束的事务，将修改过的属性恢复为借出前的值
+     */
+    void reset(Connection connection) throws SQLException {
+        rollbackIfNeeded(connection);
+        untracked = false;
+        if (autoCommit != initialAutoCommit) {
+            connection.setAutoCommit(initialAutoCommit);
+            autoCommit = initialAutoCommit;
+        }
+        if (initialIsolation != null) {
+            connection.setTransactionIsolation(initialIsolation);
+            initialIsolation = null;
+        }
+        if (initialReadOnly != null) {
+            connection.setReadOnly(initialReadOnly);
+            initialReadOnly = null;
+        }
+    }
+
+}
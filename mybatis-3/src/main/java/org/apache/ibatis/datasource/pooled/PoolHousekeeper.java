@@ -0,0 +1,90 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * 连接池的后台维护任务
+ * <p>
+ * 所有连接池共用一个守护线程，定期调用{@link PooledDataSource#housekeep()}。
+ * 任务只弱引用数据源，数据源不再被使用之后任务会自动取消，不会阻止数据源被回收。
+ */
+final class PoolHousekeeper implements Runnable {
+
+    private static final Log log = LogFactory.getLog(PoolHousekeeper.class);
+
+    private static ScheduledExecutorService executor;
+
+    private final WeakReference<PooledDataSource> dataSource;
+    private volatile ScheduledFuture<?> future;
+
+    private PoolHousekeeper(PooledDataSource dataSource) {
+        this.dataSource = new WeakReference<>(dataSource);
+    }
+
+    /**
+     * 立即执行一次(预热连接池)，之后按照period(毫秒)定期执行
+     */
+    static PoolHousekeeper schedule(PooledDataSource dataSource, long period) {
+        PoolHousekeeper housekeeper = new PoolHousekeeper(dataSource);
+        housekeeper.future = executor().scheduleWithFixedDelay(housekeeper, 0, period, TimeUnit.MILLISECONDS);
+        return housekeeper;
+    }
+
+    private static synchronized ScheduledExecutorService executor() {
+        if (executor == null) {
+            ScheduledThreadPoolExecutor scheduled = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "mybatis-pool-housekeeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduled.setRemoveOnCancelPolicy(true);
+            executor = scheduled;
+        }
+        return executor;
+    }
+
+    void cancel() {
+        ScheduledFuture<?> scheduled = future;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+    }
+
+    @Override
+    public void run() {
+        PooledDataSource ds = dataSource.get();
+        if (ds == null) {
+            cancel();
+            return;
+        }
+        try {
+            ds.housekeep();
+        } catch (Exception e) {
+            // 异常会导致后续的执行被取消
+            log.warn("Pool housekeeping failed. Cause: " + e);
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.datasource.DataSourceException;
+
+/**
+ * 连接池的分区(舱壁)
+ * <p>
+ * 每个分区可以预留一部分连接，其它分区不能占用这些连接，即使它们空闲。
+ * 分区按照配置的顺序排定优先级，没有指定分区或者分区没有配置的请求属于默认分区，优先级最低，没有预留连接。
+ * 连接释放时，优先级高并且能够获得连接的等待请求先获得连接。
+ * <p>
+ * 不是线程安全的，由{@link PoolState}的锁保护。
+ *
+ * @since 3.5.0
+ */
+final class PoolPartitions {
+
+    private final String[] names;
+    private final int[] reserved;
+    // 每个分区占用(借出以及正在创建或检测)的连接数量，最后一个是默认分区
+    private final int[] held;
+    // 每个分区正在等待的请求数量
+    private final int[] waiting;
+
+    private PoolPartitions(String[] names, int[] reserved) {
+        this.names = names;
+        this.reserved = reserved;
+        this.held = new int[names.length + 1];
+        this.waiting = new int[names.length + 1];
+    }
+
+    /**
+     * 解析分区配置，格式为 {@code name:reserved,name:reserved}，按照优先级从高到低排列
+     *
+     * @return 没有配置分区时返回null
+     */
+    static PoolPartitions parse(String spec) {
+        if (spec == null || spec.trim().isEmpty()) {
+            return null;
+        }
+        List<String> names = new ArrayList<>();
+        List<Integer> reserved = new ArrayList<>();
+        for (String partition : spec.split(",")) {
+            String[] parts = partition.trim().split(":");
+            String name = parts[0].trim();
+            if (name.isEmpty() || parts.length > 2 || names.contains(name)) {
+                throw new DataSourceException("Invalid pool partition '" + partition.trim() + "' in '" + spec + "'.");
+            }
+            int reservedConnections = 0;
+            if (parts.length == 2) {
+                try {
+                    reservedConnections = Integer.parseInt(parts[1].trim());
+                } catch (NumberFormatException e) {
+                    throw new DataSourceException("Invalid reserved connection count of pool partition '" + name + "'.", e);
+                }
+            }
+            names.add(name);
+            reserved.add(Math.max(0, reservedConnections));
+        }
+        int[] reservedArray = new int[reserved.size()];
+        for (int i = 0; i < reservedArray.length; i++) {
+            reservedArray[i] = reserved.get(i);
+        }
+        return new PoolPartitions(names.toArray(new String[0]), reservedArray);
+    }
+
+    /**
+     * @return 分区的下标，null或者没有配置的分区返回默认分区的下标
+     */
+    int indexOf(String name) {
+        if (name != null) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return i;
+                }
+            }
+        }
+        return names.length;
+    }
+
+    int getHeld(int partition) {
+        return held[partition];
+    }
+
+    /**
+     * 分区partition的请求能否再占用一个连接，不能占用其它分区没有用完的预留连接
+     *
+     * @param inUse 所有分区占用的连接数量
+     * @param limit 活动连接的上限
+     */
+    boolean admits(int partition, int inUse, int limit) {
+        int unusedReservations = 0;
+        for (int i = 0; i < names.length; i++) {
+            if (i != partition) {
+                unusedReservations += Math.max(0, reserved[i] - held[i]);
+            }
+        }
+        return inUse + unusedReservations < limit;
+    }
+
+    /**
+     * 是否有优先级更高并且能够获得连接的请求在等待
+     */
+    boolean hasPriorWaiter(int partition, int inUse, int limit) {
+        for (int i = 0; i < partition; i++) {
+            if (waiting[i] > 0 && admits(i, inUse, limit)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void acquire(int partition) {
+        held[partition]++;
+    }
+
+    void release(int partition) {
+        held[partition]--;
+    }
+
+    void startWaiting(int partition) {
+        waiting[partition]++;
+    }
+
+    void stopWaiting(int partition) {
+        waiting[partition]--;
+    }
+
+}
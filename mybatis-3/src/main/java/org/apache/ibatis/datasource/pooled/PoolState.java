@@ -17,6 +17,8 @@ package org.apache.ibatis.datasource.pooled;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  *  记录线程池状态的类
@@ -25,6 +27,10 @@ import java.util.List;
 public class PoolState {
 
     protected PooledDataSource dataSource;
+    // 保护队列和统计信息的锁，等待连接时不会占用平台线程(不使用synchronized和Object.wait)
+    final ReentrantLock lock = new ReentrantLock();
+    // 连接被归还、关闭或者上限变化时通知等待的请求
+    final Condition connectionReleased = lock.newCondition();
     // 空闲连接队列
     protected final List<PooledConnection> idleConnections = new ArrayList<>();
     // 活动连接队列
@@ -45,81 +51,215 @@ public class PoolState {
     protected long hadToWaitCount = 0;
     // 坏的连接数量
     protected long badConnectionCount = 0;
+    // 不在两个队列中、正在锁外创建或检测的连接数量，同样计入活动连接的上限
+    protected int pendingConnectionCount = 0;
+    // 报告过的泄漏连接数量
+    protected long leakedConnectionCount = 0;
+    // 借出的是当前线程上次归还的连接的次数
+    protected long affinityHitCount = 0;
 
     public PoolState(PooledDataSource dataSource) {
         this.dataSource = dataSource;
     }
 
-    public synchronized long getRequestCount() {
-        return requestCount;
+    public long getRequestCount() {
+        lock.lock();
+        try {
+            return requestCount;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized long getAverageRequestTime() {
-        return requestCount == 0 ? 0 : accumulatedRequestTime / requestCount;
+    public long getAverageRequestTime() {
+        lock.lock();
+        try {
+            return requestCount == 0 ? 0 : accumulatedRequestTime / requestCount;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized long getAverageWaitTime() {
-        return hadToWaitCount == 0 ? 0 : accumulatedWaitTime / hadToWaitCount;
+    public long getAverageWaitTime() {
+        lock.lock();
+        try {
+            return hadToWaitCount == 0 ? 0 : accumulatedWaitTime / hadToWaitCount;
+        } finally {
+            lock.unlock();
+        }
+    }
 
+    public long getHadToWaitCount() {
+        lock.lock();
+        try {
+            return hadToWaitCount;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized long getHadToWaitCount() {
-        return hadToWaitCount;
+    public long getBadConnectionCount() {
+        lock.lock();
+        try {
+            return badConnectionCount;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized long getBadConnectionCount() {
-        return badConnectionCount;
+    public long getClaimedOverdueConnectionCount() {
+        lock.lock();
+        try {
+            return claimedOverdueConnectionCount;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized long getClaimedOverdueConnectionCount() {
-        return claimedOverdueConnectionCount;
+    public long getAverageOverdueCheckoutTime() {
+        lock.lock();
+        try {
+            return claimedOverdueConnectionCount == 0 ? 0 : accumulatedCheckoutTimeOfOverdueConnections / claimedOverdueConnectionCount;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized long getAverageOverdueCheckoutTime() {
-        return claimedOverdueConnectionCount == 0 ? 0 : accumulatedCheckoutTimeOfOverdueConnections / claimedOverdueConnectionCount;
+    public long getAverageCheckoutTime() {
+        lock.lock();
+        try {
+            return requestCount == 0 ? 0 : accumulatedCheckoutTime / requestCount;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized long getAverageCheckoutTime() {
-        return requestCount == 0 ? 0 : accumulatedCheckoutTime / requestCount;
+
+    public int getIdleConnectionCount() {
+        lock.lock();
+        try {
+            return idleConnections.size();
+        } finally {
+            lock.unlock();
+        }
     }
 
+    public int getActiveConnectionCount() {
+        lock.lock();
+        try {
+            return activeConnections.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 正在创建或检测、尚未借出的连接数量
+     * @since 3.5.0
+     */
+    public int getPendingConnectionCount() {
+        lock.lock();
+        try {
+            return pendingConnectionCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 借出时间超过泄漏检测阈值而被报告的连接数量
+     * @since 3.5.0
+     */
+    public long getLeakedConnectionCount() {
+        lock.lock();
+        try {
+            return leakedConnectionCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 启用线程亲和时，借出的正好是当前线程上次归还的连接的次数
+     * @since 3.5.0
+     */
+    public long getAffinityHitCount() {
+        lock.lock();
+        try {
+            return affinityHitCount;
+        } finally {
+            lock.unlock();
+        }
+    }
 
-    public synchronized int getIdleConnectionCount() {
-        return idleConnections.size();
+    /**
+     * @return 当前的活动连接上限，启用自动调整时会在配置的范围内变化
+     * @since 3.5.0
+     */
+    public int getActiveConnectionLimit() {
+        lock.lock();
+        try {
+            return dataSource.activeConnectionLimit();
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized int getActiveConnectionCount() {
-        return activeConnections.size();
+    /**
+     * @param partition 分区名称，null表示默认分区
+     * @return 分区借出(包括正在创建或检测)的连接数量，没有配置分区时返回0
+     * @since 3.5.0
+     */
+    public int getPartitionConnectionCount(String partition) {
+        lock.lock();
+        try {
+            return dataSource.partitionConnectionCount(partition);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-    public synchronized String toString() {
-        StringBuilder builder = new StringBuilder();
-        builder.append("\n===CONFINGURATION==============================================");
-        builder.append("\n jdbcDriver                     ").append(dataSource.getDriver());
-        builder.append("\n jdbcUrl                        ").append(dataSource.getUrl());
-        builder.append("\n jdbcUsername                   ").append(dataSource.getUsername());
-        builder.append("\n jdbcPassword                   ").append((dataSource.getPassword() == null ? "NULL" : "************"));
-        builder.append("\n poolMaxActiveConnections       ").append(dataSource.poolMaximumActiveConnections);
-        builder.append("\n poolMaxIdleConnections         ").append(dataSource.poolMaximumIdleConnections);
-        builder.append("\n poolMaxCheckoutTime            ").append(dataSource.poolMaximumCheckoutTime);
-        builder.append("\n poolTimeToWait                 ").append(dataSource.poolTimeToWait);
-        builder.append("\n poolPingEnabled                ").append(dataSource.poolPingEnabled);
-        builder.append("\n poolPingQuery                  ").append(dataSource.poolPingQuery);
-        builder.append("\n poolPingConnectionsNotUsedFor  ").append(dataSource.poolPingConnectionsNotUsedFor);
-        builder.append("\n ---STATUS-----------------------------------------------------");
-        builder.append("\n activeConnections              ").append(getActiveConnectionCount());
-        builder.append("\n idleConnections                ").append(getIdleConnectionCount());
-        builder.append("\n requestCount                   ").append(getRequestCount());
-        builder.append("\n averageRequestTime             ").append(getAverageRequestTime());
-        builder.append("\n averageCheckoutTime            ").append(getAverageCheckoutTime());
-        builder.append("\n claimedOverdue                 ").append(getClaimedOverdueConnectionCount());
-        builder.append("\n averageOverdueCheckoutTime     ").append(getAverageOverdueCheckoutTime());
-        builder.append("\n hadToWait                      ").append(getHadToWaitCount());
-        builder.append("\n averageWaitTime                ").append(getAverageWaitTime());
-        builder.append("\n badConnectionCount             ").append(getBadConnectionCount());
-        builder.append("\n===============================================================");
-        return builder.toString();
+    public String toString() {
+        lock.lock();
+        try {
+            StringBuilder builder = new StringBuilder();
+            builder.append("\n===CONFINGURATION==============================================");
+            builder.append("\n jdbcDriver                     ").append(dataSource.getDriver());
+            builder.append("\n jdbcUrl                        ").append(dataSource.getUrl());
+            builder.append("\n jdbcUsername                   ").append(dataSource.getUsername());
+            builder.append("\n jdbcPassword                   ").append((dataSource.getPassword() == null ? "NULL" : "************"));
+            builder.append("\n poolMaxActiveConnections       ").append(dataSource.poolMaximumActiveConnections);
+            builder.append("\n poolAdaptiveSizingEnabled      ").append(dataSource.poolAdaptiveSizingEnabled);
+            builder.append("\n poolPartitions                 ").append(dataSource.poolPartitions);
+            builder.append("\n poolThreadAffinityEnabled      ").append(dataSource.poolThreadAffinityEnabled);
+            builder.append("\n poolCreationConcurrency        ").append(dataSource.poolConnectionCreationConcurrency);
+            builder.append("\n poolMaxIdleConnections         ").append(dataSource.poolMaximumIdleConnections);
+            builder.append("\n poolMaxCheckoutTime            ").append(dataSource.poolMaximumCheckoutTime);
+            builder.append("\n poolTimeToWait                 ").append(dataSource.poolTimeToWait);
+            builder.append("\n poolPingEnabled                ").append(dataSource.poolPingEnabled);
+            builder.append("\n poolPingQuery                  ").append(dataSource.poolPingQuery);
+            builder.append("\n poolPingConnectionsNotUsedFor  ").append(dataSource.poolPingConnectionsNotUsedFor);
+            builder.append("\n poolLeakDetectionThreshold     ").append(dataSource.poolLeakDetectionThreshold);
+            builder.append("\n ---STATUS-----------------------------------------------------");
+            builder.append("\n activeConnections              ").append(getActiveConnectionCount());
+            builder.append("\n activeConnectionLimit          ").append(getActiveConnectionLimit());
+            builder.append("\n idleConnections                ").append(getIdleConnectionCount());
+            builder.append("\n requestCount                   ").append(getRequestCount());
+            builder.append("\n averageRequestTime             ").append(getAverageRequestTime());
+            builder.append("\n averageCheckoutTime            ").append(getAverageCheckoutTime());
+            builder.append("\n claimedOverdue                 ").append(getClaimedOverdueConnectionCount());
+            builder.append("\n averageOverdueCheckoutTime     ").append(getAverageOverdueCheckoutTime());
+            builder.append("\n hadToWait                      ").append(getHadToWaitCount());
+            builder.append("\n averageWaitTime                ").append(getAverageWaitTime());
+            builder.append("\n badConnectionCount             ").append(getBadConnectionCount());
+            builder.append("\n leakedConnectionCount          ").append(getLeakedConnectionCount());
+            builder.append("\n affinityHitCount               ").append(getAffinityHitCount());
+            builder.append("\n===============================================================");
+            return builder.toString();
+        } finally {
+            lock.unlock();
+        }
     }
 
 }
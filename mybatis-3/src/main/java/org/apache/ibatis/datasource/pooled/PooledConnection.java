@@ -48,6 +48,19 @@ class PooledConnection implements InvocationHandler {
     private int connectionTypeCode;
     // 验证状态
     private boolean valid;
+    // 正在归还，归还完成之前不能作为超时连接被回收
+    private boolean returning;
+    // 连接状态跟踪，同一个真实连接共享
+    private final ConnectionState connectionState;
+    // 借出连接的线程名称，启用泄漏检测时记录
+    private volatile String checkoutThreadName;
+    // 借出位置的调用栈，只有被抽样的借出才记录
+    private volatile Throwable checkoutStackTrace;
+    // 已经作为泄漏连接报告过
+    private boolean leakReported;
+    // 借出连接的分区，没有配置分区时为null
+    private PoolPartitions partitions;
+    private int partition;
 
     /**
      * Constructor for SimplePooledConnection that uses the Connection and PooledDataSource passed in
@@ -56,7 +69,15 @@ class PooledConnection implements InvocationHandler {
      * @param dataSource - the dataSource that the connection is from
      */
     public PooledConnection(Connection connection, PooledDataSource dataSource) {
+        this(connection, dataSource, new ConnectionState(connection));
+    }
+
+    /**
+     * 重新包装已有的真实连接，沿用它的状态跟踪
+     */
+    PooledConnection(Connection connection, PooledDataSource dataSource, ConnectionState connectionState) {
         this.hashCode = connection.hashCode();
+        this.connectionState = connectionState;
         this.realConnection = connection;
         this.dataSource = dataSource;
         this.createdTimestamp = System.currentTimeMillis();
@@ -81,6 +102,18 @@ class PooledConnection implements InvocationHandler {
         return valid && realConnection != null && dataSource.pingConnection(this);
     }
 
+    ConnectionState getConnectionState() {
+        return connectionState;
+    }
+
+    boolean isReturning() {
+        return returning;
+    }
+
+    void setReturning(boolean returning) {
+        this.returning = returning;
+    }
+
     /**
      * Getter for the *real* connection that this wraps
      *
@@ -207,6 +240,68 @@ class PooledConnection implements InvocationHandler {
         return System.currentTimeMillis() - checkoutTimestamp;
     }
 
+    /**
+     * 记录借出连接的线程，captureStackTrace为true时同时记录借出位置的调用栈
+     */
+    void recordCheckout(boolean captureStackTrace) {
+        checkoutThreadName = Thread.currentThread().getName();
+        checkoutStackTrace = captureStackTrace ? new Throwable("Connection checkout") : null;
+    }
+
+    String getCheckoutThreadName() {
+        return checkoutThreadName;
+    }
+
+    Throwable getCheckoutStackTrace() {
+        return checkoutStackTrace;
+    }
+
+    boolean isLeakReported() {
+        return leakReported;
+    }
+
+    void setLeakReported(boolean leakReported) {
+        this.leakReported = leakReported;
+    }
+
+    PoolPartitions getPartitions() {
+        return partitions;
+    }
+
+    int getPartition() {
+        return partition;
+    }
+
+    void setPartition(PoolPartitions partitions, int partition) {
+        this.partitions = partitions;
+        this.partition = partition;
+    }
+
+    /**
+     * 描述连接的借出情况：借出的线程、时长以及借出位置(省略连接池内部的调用)
+     */
+    String describeCheckout() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Connection ").append(getRealHashCode()).append(" checked out ").append(getCheckoutTime()).append(" ms ago");
+        if (checkoutThreadName != null) {
+            builder.append(" by thread '").append(checkoutThreadName).append('\'');
+        }
+        Throwable stackTrace = checkoutStackTrace;
+        if (stackTrace == null) {
+            builder.append(" (checkout site not sampled)");
+            return builder.toString();
+        }
+        boolean inPool = true;
+        for (StackTraceElement element : stackTrace.getStackTrace()) {
+            if (inPool && element.getClassName().startsWith(PooledConnection.class.getPackage().getName() + ".")) {
+                continue;
+            }
+            inPool = false;
+            builder.append("\n\tat ").append(element);
+        }
+        return builder.toString();
+    }
+
     @Override
     public int hashCode() {
         return hashCode;
@@ -251,6 +346,7 @@ class PooledConnection implements InvocationHandler {
                     // issue #579 toString() should never fail
                     // throw an SQLException instead of a Runtime
                     checkConnection();
+                    return connectionState.invoke(realConnection, method, args);
                 }
                 return method.invoke(realConnection, args);
             } catch (Throwable t) {
@@ -16,6 +16,7 @@
 package org.apache.ibatis.datasource.pooled;
 
 import java.io.PrintWriter;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
@@ -23,11 +24,20 @@ import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import javax.sql.DataSource;
 
+import org.apache.ibatis.datasource.ConnectionPartition;
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
@@ -36,6 +46,7 @@ import org.apache.ibatis.logging.LogFactory;
  * 一个简单的，同步的，线程安全的数据库连接池
  * 通过维护UnpooledDataSource 来达到池化的目的，创建连接不销毁，而是保存到队列中
  * This is a simple, synchronous, thread-safe database connection pool.
+ * 锁只保护队列和统计信息，创建、检测、回滚和关闭连接都在锁外进行
  *
  * @author Clinton Begin
  */
@@ -43,6 +54,8 @@ public class PooledDataSource implements DataSource {
 
     private static final Log log = LogFactory.getLog(PooledDataSource.class);
 
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
     private final PoolState state = new PoolState(this);
 
     private final UnpooledDataSource dataSource;
@@ -64,9 +77,49 @@ public class PooledDataSource implements DataSource {
     protected boolean poolPingEnabled;
     // 不使用用来检测数据库的连接
     protected int poolPingConnectionsNotUsedFor;
+    // 池中最少的空闲连接数量，由后台维护任务补充
+    protected int poolMinimumIdleConnections;
+    // 连接的最长存活时间，0表示不限制
+    protected long poolMaximumLifetime;
+    // 后台检测空闲连接
+    protected boolean poolIdleValidationEnabled;
+    // 后台维护任务的执行间隔
+    protected long poolHousekeepingPeriod = 30000;
+    // 连接借出超过这个时间(毫秒)被报告为泄漏，0表示不检测
+    protected long poolLeakDetectionThreshold;
+    // 每多少次借出记录一次借出位置的调用栈
+    protected int poolLeakDetectionSampleRate = 10;
+    // 根据延迟和等待情况自动调整活动连接的上限
+    protected boolean poolAdaptiveSizingEnabled;
+    // 自动调整时活动连接上限的最小值，最大值为poolMaximumActiveConnections
+    protected int poolMinimumActiveConnections = 1;
+    // 自动调整时活动连接上限的初始值，0表示从poolMaximumActiveConnections开始
+    protected int poolInitialActiveConnections;
+    // 连接池分区，格式为 name:reserved,name:reserved
+    protected String poolPartitions;
+    // 优先借出当前线程上次归还的空闲连接
+    protected boolean poolThreadAffinityEnabled;
+    // 由填充线程同时创建连接的数量，0表示由请求线程创建
+    protected int poolConnectionCreationConcurrency;
     // 期望获取的连接类型Code
     // code采用（url + username + password）进行hash
     private int expectedConnectionTypeCode;
+    // 后台维护任务，没有启用时为null
+    private PoolHousekeeper housekeeper;
+    // 自适应的活动连接上限，没有启用时为null
+    private AdaptiveConnectionLimit adaptiveLimit;
+    // 解析后的连接池分区，没有配置时为null
+    private volatile PoolPartitions partitions;
+    // 每个线程上次归还到空闲队列的连接，不阻止被其它线程借出后丢弃的包装对象被回收
+    private final ThreadLocal<WeakReference<PooledConnection>> lastReturnedConnection = new ThreadLocal<>();
+    // 创建连接和分派异步请求的线程，第一次使用时创建
+    private PoolConnectionFiller filler;
+    // 等待分派的异步请求，按照先后顺序排列
+    private final Deque<AsyncConnectionRequest> asyncRequests = new ArrayDeque<>();
+    // 正在分派异步请求
+    private boolean dispatching;
+    // 分派期间又有连接被归还或创建，需要再分派一次
+    private boolean redispatch;
 
     public PooledDataSource() {
         dataSource = new UnpooledDataSource();
@@ -98,12 +151,42 @@ public class PooledDataSource implements DataSource {
 
     @Override
     public Connection getConnection() throws SQLException {
-        return popConnection(dataSource.getUsername(), dataSource.getPassword()).getProxyConnection();
+        return popConnection(dataSource.getUsername(), dataSource.getPassword(), null).getProxyConnection();
     }
 
     @Override
     public Connection getConnection(String username, String password) throws SQLException {
-        return popConnection(username, password).getProxyConnection();
+        return popConnection(username, password, null).getProxyConnection();
+    }
+
+    /**
+     * 异步获取连接，不阻塞调用线程
+     * <p>
+     * 请求排队之后由填充线程按照先后顺序分派，检测、回滚以及(没有启用后台创建时)创建连接都在填充线程中进行。
+     * 请求所属的分区在调用时确定，但是不参与分区之间的优先级排队。取消返回的Future会放弃这个请求。
+     * Acquires a connection without blocking the calling thread.
+     *
+     * @return a future completed with the connection, or with the {@link SQLException} that prevented the checkout
+     * @since 3.5.0
+     */
+    public CompletableFuture<Connection> getConnectionAsync() {
+        return getConnectionAsync(dataSource.getUsername(), dataSource.getPassword());
+    }
+
+    /**
+     * @see #getConnectionAsync()
+     * @since 3.5.0
+     */
+    public CompletableFuture<Connection> getConnectionAsync(String username, String password) {
+        AsyncConnectionRequest request = new AsyncConnectionRequest(username, password, ConnectionPartition.current());
+        state.lock.lock();
+        try {
+            asyncRequests.addLast(request);
+            signalWaiters();
+        } finally {
+            state.lock.unlock();
+        }
+        return request.future;
     }
 
     @Override
@@ -171,6 +254,41 @@ public class PooledDataSource implements DataSource {
         forceCloseAll();
     }
 
+    /**
+     * 启用之后，活动连接的上限在poolMinimumActiveConnections和poolMaximumActiveConnections之间自动调整：
+     * 连接的借出时长明显变长时减小，借出时长正常但有请求等待连接时增大。
+     * Determines if the maximum number of active connections adapts to the observed latency and wait time.
+     *
+     * @param poolAdaptiveSizingEnabled True to adjust the limit between the configured bounds
+     * @since 3.5.0
+     */
+    public void setPoolAdaptiveSizingEnabled(boolean poolAdaptiveSizingEnabled) {
+        this.poolAdaptiveSizingEnabled = poolAdaptiveSizingEnabled;
+        forceCloseAll();
+    }
+
+    /**
+     * The lower bound of the maximum number of active connections when adaptive sizing is enabled.
+     *
+     * @param poolMinimumActiveConnections The lower bound
+     * @since 3.5.0
+     */
+    public void setPoolMinimumActiveConnections(int poolMinimumActiveConnections) {
+        this.poolMinimumActiveConnections = poolMinimumActiveConnections;
+        forceCloseAll();
+    }
+
+    /**
+     * The limit the adaptive sizing starts with. 0 starts at poolMaximumActiveConnections.
+     *
+     * @param poolInitialActiveConnections The initial limit, kept within the configured bounds
+     * @since 3.5.0
+     */
+    public void setPoolInitialActiveConnections(int poolInitialActiveConnections) {
+        this.poolInitialActiveConnections = poolInitialActiveConnections;
+        forceCloseAll();
+    }
+
     /**
      * The maximum number of idle connections
      *
@@ -247,6 +365,141 @@ public class PooledDataSource implements DataSource {
         forceCloseAll();
     }
 
+    /**
+     * The minimum number of idle connections kept by the housekeeper.
+     * The connections are created in the background when the housekeeper starts.
+     *
+     * @param poolMinimumIdleConnections The minimum number of idle connections
+     * @since 3.5.0
+     */
+    public void setPoolMinimumIdleConnections(int poolMinimumIdleConnections) {
+        this.poolMinimumIdleConnections = poolMinimumIdleConnections;
+    }
+
+    /**
+     * 连接超过存活时间之后，归还时或者由后台维护任务关闭。
+     * 每个连接的存活时间会随机缩短最多2.5%，避免同时创建的连接同时被关闭。
+     * The maximum time a connection lives in the pool, 0 means no limit.
+     *
+     * @param milliseconds The maximum lifetime
+     * @since 3.5.0
+     */
+    public void setPoolMaximumLifetime(long milliseconds) {
+        this.poolMaximumLifetime = milliseconds;
+    }
+
+    /**
+     * Determines if idle connections should be validated by the housekeeper.
+     * The ping query is used if enabled, otherwise {@link Connection#isValid(int)}.
+     *
+     * @param poolIdleValidationEnabled True if idle connections should be validated in the background
+     * @since 3.5.0
+     */
+    public void setPoolIdleValidationEnabled(boolean poolIdleValidationEnabled) {
+        this.poolIdleValidationEnabled = poolIdleValidationEnabled;
+    }
+
+    /**
+     * The time between two runs of the housekeeper.
+     *
+     * @param milliseconds The period
+     * @since 3.5.0
+     */
+    public void setPoolHousekeepingPeriod(long milliseconds) {
+        this.poolHousekeepingPeriod = milliseconds;
+        state.lock.lock();
+        try {
+            if (housekeeper != null) {
+                housekeeper.cancel();
+                housekeeper = null;
+            }
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    /**
+     * 连接借出超过这个时间之后，由后台维护任务报告为可能的泄漏(每次借出只报告一次)。
+     * The time in milliseconds after which a checked out connection is reported as a possible leak, 0 disables the detection.
+     *
+     * @param milliseconds The leak detection threshold
+     * @since 3.5.0
+     */
+    public void setPoolLeakDetectionThreshold(long milliseconds) {
+        this.poolLeakDetectionThreshold = milliseconds;
+    }
+
+    /**
+     * 获取调用栈的开销较大，只对部分借出记录借出位置，其余借出只记录线程。
+     * The stack trace of the checkout site is captured for one of every this many checkouts.
+     *
+     * @param poolLeakDetectionSampleRate 1 captures the stack trace of every checkout
+     * @since 3.5.0
+     */
+    public void setPoolLeakDetectionSampleRate(int poolLeakDetectionSampleRate) {
+        this.poolLeakDetectionSampleRate = poolLeakDetectionSampleRate;
+    }
+
+    /**
+     * 配置连接池分区(舱壁)，按照优先级从高到低排列，每个分区可以预留一部分连接。
+     * 映射语句或者会话指定的分区通过{@link ConnectionPartition}传递给连接池。
+     * The pool partitions as {@code name:reserved,name:reserved}, from the highest priority to the lowest.
+     * Reserved connections are never used by other partitions. Requests without a configured partition
+     * have the lowest priority and no reserved connections.
+     *
+     * @param poolPartitions The partitions, null or empty for none
+     * @since 3.5.0
+     */
+    public void setPoolPartitions(String poolPartitions) {
+        PoolPartitions parsed = PoolPartitions.parse(poolPartitions);
+        this.poolPartitions = poolPartitions;
+        forceCloseAll();
+        state.lock.lock();
+        try {
+            partitions = parsed;
+            signalWaiters();
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    /**
+     * 线程重复借出和归还连接时，优先借出这个线程上次归还且仍然空闲的连接，其次才按照先进先出的顺序借出。
+     * 同一个连接在同一个线程中反复使用，驱动和数据库会话的缓存更容易命中。
+     * Determines if a thread should get back the connection it returned last, when it is still idle.
+     *
+     * @param poolThreadAffinityEnabled True to prefer the idle connection last returned by the current thread
+     * @since 3.5.0
+     */
+    public void setPoolThreadAffinityEnabled(boolean poolThreadAffinityEnabled) {
+        this.poolThreadAffinityEnabled = poolThreadAffinityEnabled;
+    }
+
+    /**
+     * 由后台的填充线程创建物理连接，等待连接的请求不会被其它请求的数据库握手阻塞，
+     * 创建的连接放入空闲队列，交给最先满足条件的请求。创建失败时，请求这次创建的调用收到异常。
+     * The number of physical connections created concurrently by background filler threads,
+     * 0 creates them on the requesting thread.
+     *
+     * @param poolConnectionCreationConcurrency The number of filler threads
+     * @since 3.5.0
+     */
+    public void setPoolConnectionCreationConcurrency(int poolConnectionCreationConcurrency) {
+        PoolConnectionFiller previous;
+        state.lock.lock();
+        try {
+            this.poolConnectionCreationConcurrency = poolConnectionCreationConcurrency;
+            // 下次使用时按照新的线程数量创建
+            previous = filler;
+            filler = null;
+        } finally {
+            state.lock.unlock();
+        }
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
     public String getDriver() {
         return dataSource.getDriver();
     }
@@ -283,6 +536,30 @@ public class PooledDataSource implements DataSource {
         return poolMaximumIdleConnections;
     }
 
+    public boolean isPoolAdaptiveSizingEnabled() {
+        return poolAdaptiveSizingEnabled;
+    }
+
+    public int getPoolMinimumActiveConnections() {
+        return poolMinimumActiveConnections;
+    }
+
+    public int getPoolInitialActiveConnections() {
+        return poolInitialActiveConnections;
+    }
+
+    public String getPoolPartitions() {
+        return poolPartitions;
+    }
+
+    public boolean isPoolThreadAffinityEnabled() {
+        return poolThreadAffinityEnabled;
+    }
+
+    public int getPoolConnectionCreationConcurrency() {
+        return poolConnectionCreationConcurrency;
+    }
+
     public int getPoolMaximumLocalBadConnectionTolerance() {
         return poolMaximumLocalBadConnectionTolerance;
     }
@@ -307,40 +584,357 @@ public class PooledDataSource implements DataSource {
         return poolPingConnectionsNotUsedFor;
     }
 
+    public int getPoolMinimumIdleConnections() {
+        return poolMinimumIdleConnections;
+    }
+
+    public long getPoolMaximumLifetime() {
+        return poolMaximumLifetime;
+    }
+
+    public boolean isPoolIdleValidationEnabled() {
+        return poolIdleValidationEnabled;
+    }
+
+    public long getPoolHousekeepingPeriod() {
+        return poolHousekeepingPeriod;
+    }
+
+    public long getPoolLeakDetectionThreshold() {
+        return poolLeakDetectionThreshold;
+    }
+
+    public int getPoolLeakDetectionSampleRate() {
+        return poolLeakDetectionSampleRate;
+    }
+
+    /**
+     * 启动后台维护任务，第一次执行会立即预热连接池。
+     * 没有配置最少空闲连接、最长存活时间和空闲检测时不会启动。
+     * 第一次获取连接时也会自动启动。
+     * Starts the background housekeeper, which also prewarms the pool.
+     *
+     * @since 3.5.0
+     */
+    public void startHousekeeper() {
+        state.lock.lock();
+        try {
+            if (housekeeper == null && isHousekeepingRequired()) {
+                housekeeper = PoolHousekeeper.schedule(this, poolHousekeepingPeriod);
+            }
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    /**
+     * 停止后台维护任务并关闭所有连接
+     * Stops the housekeeper and closes all connections.
+     *
+     * @since 3.5.0
+     */
+    public void shutdown() {
+        PoolConnectionFiller previous;
+        state.lock.lock();
+        try {
+            if (housekeeper != null) {
+                housekeeper.cancel();
+                housekeeper = null;
+            }
+            previous = filler;
+            filler = null;
+        } finally {
+            state.lock.unlock();
+        }
+        if (previous != null) {
+            previous.shutdown();
+        }
+        forceCloseAll();
+    }
+
+    private boolean isHousekeepingRequired() {
+        return poolHousekeepingPeriod > 0
+                && (poolMinimumIdleConnections > 0 || poolMaximumLifetime > 0 || poolIdleValidationEnabled
+                || poolLeakDetectionThreshold > 0);
+    }
+
+    /**
+     * 当前的活动连接上限，启用自动调整时由{@link AdaptiveConnectionLimit}决定。需要持有锁
+     */
+    int activeConnectionLimit() {
+        if (!poolAdaptiveSizingEnabled) {
+            return poolMaximumActiveConnections;
+        }
+        if (adaptiveLimit == null) {
+            adaptiveLimit = new AdaptiveConnectionLimit(poolMinimumActiveConnections, poolMaximumActiveConnections,
+                    poolInitialActiveConnections > 0 ? poolInitialActiveConnections : poolMaximumActiveConnections);
+        }
+        return adaptiveLimit.getLimit();
+    }
+
+    /**
+     * 分区partition的请求能否再占用一个连接。需要持有锁
+     */
+    private boolean isAdmitted(PoolPartitions partitions, int partition, int limit) {
+        int inUse = state.activeConnections.size() + state.pendingConnectionCount;
+        if (partitions == null) {
+            return inUse < limit;
+        }
+        return partitions.admits(partition, inUse, limit) && !partitions.hasPriorWaiter(partition, inUse, limit);
+    }
+
+    /**
+     * 分区占用的连接数量。需要持有锁
+     */
+    int partitionConnectionCount(String name) {
+        PoolPartitions current = partitions;
+        return current == null ? 0 : current.getHeld(current.indexOf(name));
+    }
+
+    /**
+     * 连接不再被分区占用。需要持有锁
+     */
+    private void releasePartition(PooledConnection conn) {
+        // 重新配置分区之前借出的连接不再计数
+        if (conn.getPartitions() != null && conn.getPartitions() == partitions) {
+            partitions.release(conn.getPartition());
+        }
+    }
+
+    /**
+     * 连接是否超过了存活时间
+     * 存活时间根据真实连接的hashCode缩短最多2.5%，同一个连接的结果是固定的
+     */
+    private boolean isExpired(PooledConnection conn, long now) {
+        if (poolMaximumLifetime <= 0) {
+            return false;
+        }
+        long jitter = poolMaximumLifetime / 40;
+        long lifetime = poolMaximumLifetime - (jitter == 0 ? 0 : (conn.getRealHashCode() & Integer.MAX_VALUE) % jitter);
+        return now - conn.getCreatedTimestamp() >= lifetime;
+    }
+
+    /**
+     * 后台维护：报告泄漏的连接，关闭超过存活时间的空闲连接，检测空闲连接，补充空闲连接到最少的数量。
+     * 所有访问数据库的操作都在锁外进行，期间连接计入{@link PoolState#pendingConnectionCount}。
+     */
+    void housekeep() {
+        long now = System.currentTimeMillis();
+        detectLeaks(now);
+        List<PooledConnection> expired = new ArrayList<>();
+        List<PooledConnection> validating = new ArrayList<>();
+        state.lock.lock();
+        try {
+            for (int i = state.idleConnections.size(); i > 0; i--) {
+                PooledConnection conn = state.idleConnections.get(i - 1);
+                if (isExpired(conn, now)) {
+                    state.idleConnections.remove(i - 1);
+                    conn.invalidate();
+                    expired.add(conn);
+                } else if (poolIdleValidationEnabled && now - conn.getLastUsedTimestamp() >= poolHousekeepingPeriod) {
+                    state.idleConnections.remove(i - 1);
+                    validating.add(conn);
+                }
+            }
+            state.pendingConnectionCount += validating.size();
+        } finally {
+            state.lock.unlock();
+        }
+        for (PooledConnection conn : expired) {
+            if (log.isDebugEnabled()) {
+                log.debug("Closing connection " + conn.getRealHashCode() + " which exceeded its maximum lifetime.");
+            }
+            closeQuietly(conn);
+        }
+        for (PooledConnection conn : validating) {
+            boolean good = validateIdleConnection(conn);
+            boolean close = false;
+            state.lock.lock();
+            try {
+                state.pendingConnectionCount--;
+                if (good && state.idleConnections.size() < poolMaximumIdleConnections
+                        && conn.getConnectionTypeCode() == expectedConnectionTypeCode) {
+                    // 刚检测过的连接，获取时不需要再次ping
+                    conn.setLastUsedTimestamp(System.currentTimeMillis());
+                    state.idleConnections.add(conn);
+                } else {
+                    if (!good) {
+                        state.badConnectionCount++;
+                    }
+                    conn.invalidate();
+                    close = true;
+                }
+                signalWaiters();
+            } finally {
+                state.lock.unlock();
+            }
+            if (close) {
+                closeQuietly(conn);
+            }
+        }
+        fillIdleConnections();
+    }
+
+    /**
+     * 报告借出时间超过阈值的活动连接，日志在锁外输出
+     */
+    private void detectLeaks(long now) {
+        if (poolLeakDetectionThreshold <= 0) {
+            return;
+        }
+        List<PooledConnection> leaked = new ArrayList<>();
+        state.lock.lock();
+        try {
+            for (PooledConnection conn : state.activeConnections) {
+                if (!conn.isLeakReported() && !conn.isReturning() && now - conn.getCheckoutTimestamp() > poolLeakDetectionThreshold) {
+                    conn.setLeakReported(true);
+                    state.leakedConnectionCount++;
+                    leaked.add(conn);
+                }
+            }
+        } finally {
+            state.lock.unlock();
+        }
+        for (PooledConnection conn : leaked) {
+            log.warn("Possible connection leak. " + conn.describeCheckout());
+        }
+    }
+
+    /**
+     * 输出所有活动连接的借出情况：借出的线程、时长以及(被抽样的)借出位置。
+     * 需要启用泄漏检测，否则只有借出时长。
+     * Describes who holds each checked out connection.
+     *
+     * @return one entry per active connection, the longest held first
+     * @since 3.5.0
+     */
+    public String dumpActiveConnections() {
+        List<PooledConnection> active;
+        state.lock.lock();
+        try {
+            active = new ArrayList<>(state.activeConnections);
+        } finally {
+            state.lock.unlock();
+        }
+        active.sort((a, b) -> Long.compare(a.getCheckoutTimestamp(), b.getCheckoutTimestamp()));
+        StringBuilder builder = new StringBuilder();
+        builder.append(active.size()).append(" active connection(s)");
+        for (PooledConnection conn : active) {
+            builder.append("\n").append(conn.describeCheckout());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 补充空闲连接，不超过最大空闲连接数量以及最大活动连接数量
+     */
+    private void fillIdleConnections() {
+        int needed;
+        state.lock.lock();
+        try {
+            int capacity = activeConnectionLimit() - state.activeConnections.size() - state.pendingConnectionCount;
+            needed = Math.min(poolMinimumIdleConnections, poolMaximumIdleConnections) - state.idleConnections.size();
+            needed = Math.min(needed, capacity);
+            if (needed <= 0) {
+                return;
+            }
+            state.pendingConnectionCount += needed;
+        } finally {
+            state.lock.unlock();
+        }
+        for (int i = 0; i < needed; i++) {
+            PooledConnection conn = null;
+            try {
+                conn = new PooledConnection(dataSource.getConnection(), this);
+            } catch (SQLException e) {
+                log.warn("Could not create an idle connection. Cause: " + e);
+            }
+            boolean close = false;
+            state.lock.lock();
+            try {
+                if (conn == null) {
+                    // 剩余的连接也不再创建
+                    state.pendingConnectionCount -= needed - i;
+                    signalWaiters();
+                    return;
+                }
+                state.pendingConnectionCount--;
+                // 期间连接池可能被强制关闭并修改了配置
+                int typeCode = assembleConnectionTypeCode(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
+                if (typeCode == expectedConnectionTypeCode && state.idleConnections.size() < poolMaximumIdleConnections) {
+                    conn.setConnectionTypeCode(typeCode);
+                    state.idleConnections.add(conn);
+                    if (log.isDebugEnabled()) {
+                        log.debug("Created idle connection " + conn.getRealHashCode() + ".");
+                    }
+                } else {
+                    conn.invalidate();
+                    close = true;
+                }
+                signalWaiters();
+            } finally {
+                state.lock.unlock();
+            }
+            if (close) {
+                closeQuietly(conn);
+            }
+        }
+    }
+
+    /**
+     * 后台检测空闲连接，启用了ping时使用ping查询，否则使用{@link Connection#isValid(int)}
+     */
+    private boolean validateIdleConnection(PooledConnection conn) {
+        if (poolPingEnabled) {
+            return pingConnection(conn);
+        }
+        try {
+            return conn.getRealConnection().isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Connection " + conn.getRealHashCode() + " is BAD: " + e.getMessage());
+            }
+            return false;
+        }
+    }
+
     /*   强制关闭所有的连接
          清空连接池状态
      * Closes all active and idle connections in the pool
      */
     public void forceCloseAll() {
-        synchronized (state) {
+        List<PooledConnection> connections;
+        state.lock.lock();
+        try {
             expectedConnectionTypeCode = assembleConnectionTypeCode(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
+            // 配置可能已经改变，重新开始调整
+            adaptiveLimit = null;
+            connections = new ArrayList<>(state.activeConnections.size() + state.idleConnections.size());
             for (int i = state.activeConnections.size(); i > 0; i--) {
-                try {
-                    PooledConnection conn = state.activeConnections.remove(i - 1);
-                    conn.invalidate();
-
-                    Connection realConn = conn.getRealConnection();
-                    if (!realConn.getAutoCommit()) {
-                        realConn.rollback();
-                    }
-                    realConn.close();
-                } catch (Exception e) {
-                    // ignore
-                }
+                PooledConnection conn = state.activeConnections.remove(i - 1);
+                releasePartition(conn);
+                connections.add(conn);
             }
             for (int i = state.idleConnections.size(); i > 0; i--) {
-                try {
-                    PooledConnection conn = state.idleConnections.remove(i - 1);
-                    conn.invalidate();
-
-                    Connection realConn = conn.getRealConnection();
-                    if (!realConn.getAutoCommit()) {
-                        realConn.rollback();
-                    }
-                    realConn.close();
-                } catch (Exception e) {
-                    // ignore
+                connections.add(state.idleConnections.remove(i - 1));
+            }
+            for (PooledConnection conn : connections) {
+                conn.invalidate();
+            }
+            signalWaiters();
+        } finally {
+            state.lock.unlock();
+        }
+        // 回滚和关闭在锁外进行
+        for (PooledConnection conn : connections) {
+            try {
+                Connection realConn = conn.getRealConnection();
+                if (!realConn.getAutoCommit()) {
+                    realConn.rollback();
                 }
+                realConn.close();
+            } catch (Exception e) {
+                // ignore
             }
         }
         if (log.isDebugEnabled()) {
@@ -360,41 +954,64 @@ public class PooledDataSource implements DataSource {
      * 将连接放回连接池中，对于放回的连接，需要从活动状态队列中移除，然后添加到空闲队列。
      * 还需要对TypeCode进行检测，确保是从同一个地址获取的连接
      * 将连接的状态变为不可用
+     * <p>
+     * 检测、回滚和恢复连接状态需要访问数据库，这些操作在锁外进行，锁内只修改队列和统计信息。
+     * 归还期间连接仍然在活动队列中(计入活动连接的上限)，但不会被当作超时连接回收。
      *
      * @param conn
      * @throws SQLException
      */
     protected void pushConnection(PooledConnection conn) throws SQLException {
-
-        synchronized (state) {
-            state.activeConnections.remove(conn);
-            if (conn.isValid()) {
-                if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode) {
-                    state.accumulatedCheckoutTime += conn.getCheckoutTime();
-                    // 如果不是自动提交，那么需要先回滚，防止连接中存在待提交事务
-                    if (!conn.getRealConnection().getAutoCommit()) {
-                        conn.getRealConnection().rollback();
-                    }
+        state.lock.lock();
+        try {
+            if (conn.isReturning()) {
+                return;
+            }
+            conn.setReturning(true);
+        } finally {
+            state.lock.unlock();
+        }
+        boolean good = conn.isValid();
+        SQLException resetFailure = null;
+        if (good) {
+            try {
+                // 只回滚和恢复确实发生了变化的状态
+                conn.getConnectionState().reset(conn.getRealConnection());
+            } catch (SQLException e) {
+                resetFailure = e;
+                good = false;
+            }
+        }
+        boolean close = false;
+        PooledConnection idleConn = null;
+        state.lock.lock();
+        try {
+            conn.setReturning(false);
+            if (!removeConnection(state.activeConnections, conn)) {
+                // 已经被强制关闭
+                return;
+            }
+            releasePartition(conn);
+            signalWaiters();
+            if (good) {
+                state.accumulatedCheckoutTime += conn.getCheckoutTime();
+                if (adaptiveLimit != null && adaptiveLimit.onSample(conn.getCheckoutTime())) {
+                    // 上限增大，等待的请求可以创建新的连接
+                    signalWaiters();
+                }
+                if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode
+                        && !isExpired(conn, System.currentTimeMillis())) {
                     // 对已有连接重新包装
-                    PooledConnection newConn = new PooledConnection(conn.getRealConnection(), this);
+                    PooledConnection newConn = new PooledConnection(conn.getRealConnection(), this, conn.getConnectionState());
                     state.idleConnections.add(newConn);
+                    idleConn = newConn;
                     newConn.setCreatedTimestamp(conn.getCreatedTimestamp());
                     newConn.setLastUsedTimestamp(conn.getLastUsedTimestamp());
-                    conn.invalidate();
                     if (log.isDebugEnabled()) {
                         log.debug("Returned connection " + newConn.getRealHashCode() + " to pool.");
                     }
-                    state.notifyAll();
                 } else {
-                    state.accumulatedCheckoutTime += conn.getCheckoutTime();
-                    if (!conn.getRealConnection().getAutoCommit()) {
-                        conn.getRealConnection().rollback();
-                    }
-                    conn.getRealConnection().close();
-                    if (log.isDebugEnabled()) {
-                        log.debug("Closed connection " + conn.getRealHashCode() + ".");
-                    }
-                    conn.invalidate();
+                    close = true;
                 }
             } else {
                 if (log.isDebugEnabled()) {
@@ -402,122 +1019,471 @@ public class PooledDataSource implements DataSource {
                 }
                 state.badConnectionCount++;
             }
+            conn.invalidate();
+        } finally {
+            state.lock.unlock();
+        }
+        if (idleConn != null && poolThreadAffinityEnabled) {
+            lastReturnedConnection.set(new WeakReference<>(idleConn));
+        }
+        if (conn.isLeakReported()) {
+            log.warn("Connection " + conn.getRealHashCode() + " previously reported as leaked was returned after "
+                    + conn.getCheckoutTime() + " ms.");
+        }
+        if (close) {
+            conn.getRealConnection().close();
+            if (log.isDebugEnabled()) {
+                log.debug("Closed connection " + conn.getRealHashCode() + ".");
+            }
+        }
+        if (resetFailure != null) {
+            closeQuietly(conn);
+            throw resetFailure;
+        }
+    }
+
+    /**
+     * 从队列中移除这个连接对象(不使用equals，同一个真实连接的旧包装对象不能移除新的包装对象)
+     */
+    private static boolean removeConnection(List<PooledConnection> connections, PooledConnection conn) {
+        for (int i = 0; i < connections.size(); i++) {
+            if (connections.get(i) == conn) {
+                connections.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 从空闲队列取出一个连接，启用线程亲和时优先取出当前线程上次归还的连接
+     * 需要持有{@link PoolState#lock}
+     */
+    private PooledConnection takeIdleConnection() {
+        if (poolThreadAffinityEnabled) {
+            WeakReference<PooledConnection> ref = lastReturnedConnection.get();
+            PooledConnection affine = ref == null ? null : ref.get();
+            if (affine != null) {
+                // 刚归还的连接在队列尾部，从尾部开始查找
+                for (int i = state.idleConnections.size() - 1; i >= 0; i--) {
+                    if (state.idleConnections.get(i) == affine) {
+                        state.affinityHitCount++;
+                        return state.idleConnections.remove(i);
+                    }
+                }
+                // 已经被其它线程借出或者被关闭
+                lastReturnedConnection.remove();
+            }
+        }
+        return state.idleConnections.remove(0);
+    }
+
+    /**
+     * 连接被归还、创建或关闭，或者上限变化时唤醒等待的请求，并分派异步请求
+     * 需要持有{@link PoolState#lock}
+     */
+    private void signalWaiters() {
+        state.connectionReleased.signalAll();
+        if (!asyncRequests.isEmpty()) {
+            if (dispatching) {
+                redispatch = true;
+            } else {
+                dispatching = true;
+                filler().execute(this::dispatchAsyncRequests);
+            }
+        }
+    }
+
+    /**
+     * 需要持有{@link PoolState#lock}
+     */
+    private PoolConnectionFiller filler() {
+        if (filler == null) {
+            filler = new PoolConnectionFiller(Math.max(1, poolConnectionCreationConcurrency));
+        }
+        return filler;
+    }
+
+    /**
+     * 在填充线程中按照先后顺序为异步请求获取连接。
+     * 排在最前面的请求需要等待时结束，连接被归还或创建之后重新分派。
+     */
+    private void dispatchAsyncRequests() {
+        while (true) {
+            AsyncConnectionRequest request;
+            state.lock.lock();
+            try {
+                request = asyncRequests.peekFirst();
+                while (request != null && request.future.isDone()) {
+                    // 已经被取消
+                    asyncRequests.pollFirst();
+                    request = asyncRequests.peekFirst();
+                }
+                if (request == null) {
+                    dispatching = false;
+                    redispatch = false;
+                    return;
+                }
+                redispatch = false;
+            } finally {
+                state.lock.unlock();
+            }
+            PooledConnection conn = null;
+            SQLException failure = null;
+            String previous = ConnectionPartition.enter(request.partition);
+            try {
+                conn = popConnection(request.username, request.password, request);
+            } catch (SQLException e) {
+                failure = e;
+            } catch (RuntimeException e) {
+                failure = new SQLException("Could not acquire a connection. Cause: " + e, e);
+            } finally {
+                ConnectionPartition.restore(previous);
+            }
+            state.lock.lock();
+            try {
+                if (conn == null && failure == null) {
+                    if (!redispatch) {
+                        dispatching = false;
+                        return;
+                    }
+                    continue;
+                }
+                // 只有分派线程移除请求，队首仍然是这个请求
+                asyncRequests.pollFirst();
+            } finally {
+                state.lock.unlock();
+            }
+            if (failure != null) {
+                request.future.completeExceptionally(failure);
+            } else if (!request.future.complete(conn.getProxyConnection())) {
+                // 请求在分派期间被取消
+                try {
+                    pushConnection(conn);
+                } catch (SQLException e) {
+                    log.debug("Could not return the connection of a cancelled request. Cause: " + e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 由填充线程创建一个连接，完成后放入空闲队列并唤醒等待的请求
+     * 需要持有{@link PoolState#lock}
+     *
+     * @return 创建完成或者失败(异常为{@link SQLException})时完成
+     */
+    private CompletableFuture<Void> createConnectionInBackground() {
+        CompletableFuture<Void> creation = new CompletableFuture<>();
+        state.pendingConnectionCount++;
+        filler().execute(() -> createIdleConnection(creation));
+        return creation;
+    }
+
+    private void createIdleConnection(CompletableFuture<Void> creation) {
+        int typeCode = assembleConnectionTypeCode(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
+        PooledConnection conn = null;
+        SQLException failure = null;
+        try {
+            conn = new PooledConnection(dataSource.getConnection(), this);
+        } catch (SQLException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            failure = new SQLException("Could not create a connection. Cause: " + e, e);
+        }
+        boolean close = false;
+        state.lock.lock();
+        try {
+            state.pendingConnectionCount--;
+            if (conn != null) {
+                // 期间配置可能已经改变
+                if (typeCode == assembleConnectionTypeCode(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword())) {
+                    // 为等待的请求创建，不受最大空闲连接数量的限制
+                    conn.setConnectionTypeCode(typeCode);
+                    state.idleConnections.add(conn);
+                    if (log.isDebugEnabled()) {
+                        log.debug("Created connection " + conn.getRealHashCode() + " in the background.");
+                    }
+                } else {
+                    conn.invalidate();
+                    close = true;
+                }
+            }
+            // 在唤醒之前完成，被唤醒的请求可以看到创建的结果
+            if (failure != null) {
+                creation.completeExceptionally(failure);
+            } else {
+                creation.complete(null);
+            }
+            signalWaiters();
+        } finally {
+            state.lock.unlock();
+        }
+        if (close) {
+            closeQuietly(conn);
+        }
+    }
+
+    private static SQLException creationFailure(CompletableFuture<Void> creation) {
+        try {
+            creation.getNow(null);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException) {
+                return (SQLException) e.getCause();
+            }
+        }
+        return new SQLException("Could not create a connection.");
+    }
+
+    private void closeQuietly(PooledConnection conn) {
+        try {
+            conn.getRealConnection().close();
+        } catch (SQLException e) {
+            // ignore
         }
     }
 
     /**
      * 获取数据库连接
+     * <p>
+     * 创建连接、检测连接以及回滚回收的超时连接在锁外进行，期间连接计入{@link PoolState#pendingConnectionCount}。
+     *
+     * 启用后台创建时，连接由填充线程创建，请求线程等待创建完成。
+     *
      * @param username
      * @param password
+     * @param request 异步请求，需要等待时不等待而是返回null；同步获取时为null
      * @return
      * @throws SQLException
      */
-    private PooledConnection popConnection(String username, String password) throws SQLException {
-        boolean countedWait = false;
+    private PooledConnection popConnection(String username, String password, AsyncConnectionRequest request) throws SQLException {
+        if (housekeeper == null && isHousekeepingRequired()) {
+            startHousekeeper();
+        }
+        boolean countedWait = request != null && request.countedWait;
+        // 由填充线程为这个请求创建的连接
+        CompletableFuture<Void> creation = request == null ? null : request.creation;
+        // 配置了分区时，当前请求所属的分区
+        PoolPartitions partitions = this.partitions;
+        int partition = partitions == null ? 0 : partitions.indexOf(ConnectionPartition.current());
+        boolean waiting = false;
         PooledConnection conn = null;
-        long t = System.currentTimeMillis();
+        // 被回收的超时连接，启用泄漏检测时报告
+        PooledConnection leaked = null;
+        long t = request == null ? System.currentTimeMillis() : request.requestedAt;
         int localBadConnectionCount = 0;
 
         while (conn == null) {
-            synchronized (state) {
+            boolean create = false;
+            boolean mustWait = false;
+            boolean awaitCreation = false;
+            state.lock.lock();
+            try {
+                if (partitions != this.partitions) {
+                    // 分区被重新配置
+                    if (waiting) {
+                        partitions.stopWaiting(partition);
+                        waiting = false;
+                    }
+                    partitions = this.partitions;
+                    partition = partitions == null ? 0 : partitions.indexOf(ConnectionPartition.current());
+                }
+                int limit = activeConnectionLimit();
+                // 自动调整减小了上限、其它分区的预留连接没有用完、或者有优先级更高的请求在等待时，不能借出空闲连接
+                boolean admitted = isAdmitted(partitions, partition, limit);
+                if (admitted && waiting) {
+                    partitions.stopWaiting(partition);
+                    waiting = false;
+                    // 被当前请求挡住的优先级更低的请求可能已经可以获取连接
+                    signalWaiters();
+                }
                 // 空闲队列不为空，则先从空闲队列获取连接，从头部开始获取
-                if (!state.idleConnections.isEmpty()) {
+                if (admitted && !state.idleConnections.isEmpty()) {
                     // Pool has available connection
-                    conn = state.idleConnections.remove(0);
+                    conn = takeIdleConnection();
                     if (log.isDebugEnabled()) {
                         log.debug("Checked out connection " + conn.getRealHashCode() + " from pool.");
                     }
-                } else {
+                } else if (admitted && poolConnectionCreationConcurrency <= 0) {
                     // 如果空闲队列为空且活动队列未满，则需要重新创建新的连接
                     // Pool does not have available connection
-                    if (state.activeConnections.size() < poolMaximumActiveConnections) {
-                        // Can create new connection
-                        conn = new PooledConnection(dataSource.getConnection(), this);
+                    // Can create new connection
+                    create = true;
+                } else if (admitted) {
+                    // 由填充线程创建连接，创建完成后放入空闲队列
+                    if (creation != null && creation.isCompletedExceptionally()) {
+                        throw creationFailure(creation);
+                    }
+                    if (creation == null || creation.isDone()) {
+                        // 之前创建的连接已经被其它请求借出
+                        creation = createConnectionInBackground();
+                    }
+                    awaitCreation = true;
+                } else {
+                    // 活动队列满载，则取出头部的过期的活动连接，回滚事务
+                    // 即CheckoutTime 超过poolMaximumCheckoutTime 规定的时间，则认为连接过期
+                    // Cannot create new connection
+                    PooledConnection oldestActiveConnection = state.activeConnections.isEmpty() ? null : state.activeConnections.get(0);
+                    long longestCheckoutTime = oldestActiveConnection == null ? 0 : oldestActiveConnection.getCheckoutTime();
+                    if (oldestActiveConnection != null && !oldestActiveConnection.isReturning()
+                            && longestCheckoutTime > poolMaximumCheckoutTime
+                            && state.activeConnections.size() + state.pendingConnectionCount >= limit) {
+                        // Can claim overdue connection
+                        state.claimedOverdueConnectionCount++;
+                        state.accumulatedCheckoutTimeOfOverdueConnections += longestCheckoutTime;
+                        state.accumulatedCheckoutTime += longestCheckoutTime;
+                        state.activeConnections.remove(0);
+                        releasePartition(oldestActiveConnection);
+                        if (waiting) {
+                            partitions.stopWaiting(partition);
+                            waiting = false;
+                        }
+                        // 未结束的事务在锁外回滚
+                        conn = new PooledConnection(oldestActiveConnection.getRealConnection(), this, oldestActiveConnection.getConnectionState());
+                        conn.setCreatedTimestamp(oldestActiveConnection.getCreatedTimestamp());
+                        conn.setLastUsedTimestamp(oldestActiveConnection.getLastUsedTimestamp());
+                        oldestActiveConnection.invalidate();
+                        if (poolLeakDetectionThreshold > 0 && !oldestActiveConnection.isLeakReported()) {
+                            oldestActiveConnection.setLeakReported(true);
+                            state.leakedConnectionCount++;
+                            leaked = oldestActiveConnection;
+                        }
                         if (log.isDebugEnabled()) {
-                            log.debug("Created connection " + conn.getRealHashCode() + ".");
+                            log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
                         }
                     } else {
-                        // 活动队列满载，则取出头部的过期的活动连接，回滚事务
-                        // 即CheckoutTime 超过poolMaximumCheckoutTime 规定的时间，则认为连接过期
-                        // Cannot create new connection
-                        PooledConnection oldestActiveConnection = state.activeConnections.get(0);
-                        long longestCheckoutTime = oldestActiveConnection.getCheckoutTime();
-                        if (longestCheckoutTime > poolMaximumCheckoutTime) {
-                            // Can claim overdue connection
-                            state.claimedOverdueConnectionCount++;
-                            state.accumulatedCheckoutTimeOfOverdueConnections += longestCheckoutTime;
-                            state.accumulatedCheckoutTime += longestCheckoutTime;
-                            state.activeConnections.remove(oldestActiveConnection);
-                            if (!oldestActiveConnection.getRealConnection().getAutoCommit()) {
-                                try {
-                                    oldestActiveConnection.getRealConnection().rollback();
-                                } catch (SQLException e) {
-                  /*
-                     Just log a message for debug and continue to execute the following
-                     statement like nothing happened.
-                     Wrap the bad connection with a new PooledConnection, this will help
-                     to not interrupt current executing thread and give current thread a
-                     chance to join the next competition for another valid/good database
-                     connection. At the end of this loop, bad {@link @conn} will be set as null.
-                   */
-                                    log.debug("Bad connection. Could not roll back");
-                                }
-                            }
-                            conn = new PooledConnection(oldestActiveConnection.getRealConnection(), this);
-                            conn.setCreatedTimestamp(oldestActiveConnection.getCreatedTimestamp());
-                            conn.setLastUsedTimestamp(oldestActiveConnection.getLastUsedTimestamp());
-                            oldestActiveConnection.invalidate();
-                            if (log.isDebugEnabled()) {
-                                log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
-                            }
-                        } else {
-                            // Must wait
-                            try {
-                                if (!countedWait) {
-                                    state.hadToWaitCount++;
-                                    countedWait = true;
-                                }
-                                if (log.isDebugEnabled()) {
-                                    log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
-                                }
-                                long wt = System.currentTimeMillis();
-                                state.wait(poolTimeToWait);
-                                state.accumulatedWaitTime += System.currentTimeMillis() - wt;
-                            } catch (InterruptedException e) {
-                                break;
-                            }
-                        }
+                        // Must wait
+                        mustWait = true;
                     }
                 }
-                if (conn != null) {
-                    // ping to server and check the connection is valid or not
-                    if (conn.isValid()) {
-                        if (!conn.getRealConnection().getAutoCommit()) {
-                            conn.getRealConnection().rollback();
+                if (mustWait || awaitCreation) {
+                    if (!countedWait) {
+                        state.hadToWaitCount++;
+                        countedWait = true;
+                        if (mustWait && adaptiveLimit != null) {
+                            adaptiveLimit.onWait();
+                        }
+                    }
+                    if (request != null) {
+                        // 异步请求不等待，连接被归还或创建之后重新分派
+                        request.countedWait = true;
+                        request.creation = creation;
+                        return null;
+                    }
+                    try {
+                        if (mustWait && partitions != null && !waiting) {
+                            // 等待期间优先级更低的请求不能获取连接
+                            partitions.startWaiting(partition);
+                            waiting = true;
                         }
-                        conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
-                        conn.setCheckoutTimestamp(System.currentTimeMillis());
-                        conn.setLastUsedTimestamp(System.currentTimeMillis());
-                        state.activeConnections.add(conn);
-                        state.requestCount++;
-                        state.accumulatedRequestTime += System.currentTimeMillis() - t;
-                    } else {
                         if (log.isDebugEnabled()) {
-                            log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
+                            log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
                         }
-                        state.badConnectionCount++;
-                        localBadConnectionCount++;
-                        conn = null;
-                        if (localBadConnectionCount > (poolMaximumIdleConnections + poolMaximumLocalBadConnectionTolerance)) {
-                            if (log.isDebugEnabled()) {
-                                log.debug("PooledDataSource: Could not get a good connection to the database.");
-                            }
-                            throw new SQLException("PooledDataSource: Could not get a good connection to the database.");
+                        long wt = System.currentTimeMillis();
+                        if (poolTimeToWait > 0) {
+                            state.connectionReleased.await(poolTimeToWait, TimeUnit.MILLISECONDS);
+                        } else {
+                            state.connectionReleased.await();
+                        }
+                        state.accumulatedWaitTime += System.currentTimeMillis() - wt;
+                    } catch (InterruptedException e) {
+                        if (waiting) {
+                            partitions.stopWaiting(partition);
+                        }
+                        break;
+                    }
+                    continue;
+                }
+                state.pendingConnectionCount++;
+                if (partitions != null) {
+                    partitions.acquire(partition);
+                }
+            } finally {
+                state.lock.unlock();
+            }
+
+            if (leaked != null) {
+                log.warn("Reclaimed overdue connection, possible connection leak. " + leaked.describeCheckout());
+                leaked = null;
+            }
+
+            if (create) {
+                try {
+                    conn = new PooledConnection(dataSource.getConnection(), this);
+                } catch (SQLException | RuntimeException e) {
+                    state.lock.lock();
+                    try {
+                        state.pendingConnectionCount--;
+                        if (partitions != null && partitions == this.partitions) {
+                            partitions.release(partition);
                         }
+                        signalWaiters();
+                    } finally {
+                        state.lock.unlock();
                     }
+                    throw e;
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Created connection " + conn.getRealHashCode() + ".");
                 }
             }
 
+            // ping to server and check the connection is valid or not
+            boolean good = conn.isValid();
+            if (good) {
+                try {
+                    conn.getConnectionState().rollbackIfNeeded(conn.getRealConnection());
+                } catch (SQLException e) {
+                  /*
+                     Just log a message for debug and continue to execute the following
+                     statement like nothing happened.
+                     Discard the bad connection and give current thread a chance to join
+                     the next competition for another valid/good database connection.
+                   */
+                    log.debug("Bad connection. Could not roll back");
+                    good = false;
+                }
+            }
+            if (good && poolLeakDetectionThreshold > 0) {
+                // 在锁外记录借出位置，大部分借出只记录线程名称
+                conn.recordCheckout(poolLeakDetectionSampleRate <= 1
+                        || ThreadLocalRandom.current().nextInt(poolLeakDetectionSampleRate) == 0);
+            }
+            state.lock.lock();
+            try {
+                state.pendingConnectionCount--;
+                if (good) {
+                    conn.setPartition(partitions, partition);
+                    conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
+                    conn.setCheckoutTimestamp(System.currentTimeMillis());
+                    conn.setLastUsedTimestamp(System.currentTimeMillis());
+                    state.activeConnections.add(conn);
+                    state.requestCount++;
+                    state.accumulatedRequestTime += System.currentTimeMillis() - t;
+                } else {
+                    if (partitions != null && partitions == this.partitions) {
+                        partitions.release(partition);
+                    }
+                    state.badConnectionCount++;
+                    signalWaiters();
+                }
+            } finally {
+                state.lock.unlock();
+            }
+            if (!good) {
+                if (log.isDebugEnabled()) {
+                    log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
+                }
+                closeQuietly(conn);
+                conn = null;
+                localBadConnectionCount++;
+                if (localBadConnectionCount > (poolMaximumIdleConnections + poolMaximumLocalBadConnectionTolerance)) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("PooledDataSource: Could not get a good connection to the database.");
+                    }
+                    throw new SQLException("PooledDataSource: Could not get a good connection to the database.");
+                }
+            }
         }
 
         if (conn == null) {
@@ -560,7 +1526,7 @@ public class PooledDataSource implements DataSource {
                         try (Statement statement = realConn.createStatement()) {
                             statement.executeQuery(poolPingQuery).close();
                         }
-                        if (!realConn.getAutoCommit()) {
+                        if (!conn.getConnectionState().isAutoCommit(realConn)) {
                             realConn.rollback();
                         }
                         result = true;
@@ -596,7 +1562,10 @@ public class PooledDataSource implements DataSource {
         if (Proxy.isProxyClass(conn.getClass())) {
             InvocationHandler handler = Proxy.getInvocationHandler(conn);
             if (handler instanceof PooledConnection) {
-                return ((PooledConnection) handler).getRealConnection();
+                PooledConnection pooledConnection = (PooledConnection) handler;
+                // 调用者可能直接修改真实连接的状态
+                pooledConnection.getConnectionState().markUntracked();
+                return pooledConnection.getRealConnection();
             }
         }
         return conn;
@@ -619,4 +1588,24 @@ public class PooledDataSource implements DataSource {
         return Logger.getLogger(Logger.GLOBAL_LOGGER_NAME); // requires JDK version 1.6
     }
 
+    /**
+     * 等待分派的异步请求
+     */
+    private static final class AsyncConnectionRequest {
+
+        private final CompletableFuture<Connection> future = new CompletableFuture<>();
+        private final String username;
+        private final String password;
+        private final String partition;
+        private final long requestedAt = System.currentTimeMillis();
+        // 由填充线程为这个请求创建的连接
+        private CompletableFuture<Void> creation;
+        private boolean countedWait;
+
+        AsyncConnectionRequest(String username, String password, String partition) {
+            this.username = username;
+            this.password = password;
+            this.partition = partition;
+        }
+    }
 }
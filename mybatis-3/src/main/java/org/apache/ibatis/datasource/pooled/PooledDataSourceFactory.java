@@ -15,6 +15,8 @@
  */
 package org.apache.ibatis.datasource.pooled;
 
+import java.util.Properties;
+
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSourceFactory;
 
 /**
@@ -29,4 +31,11 @@ public class PooledDataSourceFactory extends UnpooledDataSourceFactory {
         this.dataSource = new PooledDataSource();
     }
 
+    @Override
+    public void setProperties(Properties properties) {
+        super.setProperties(properties);
+        // 配置了最少空闲连接时在启动时预热连接池
+        ((PooledDataSource) dataSource).startHousekeeper();
+    }
+
 }
@@ -0,0 +1,249 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.readwrite;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.apache.ibatis.datasource.StatementContext;
+import org.apache.ibatis.mapping.DataSourceRoute;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * 读写分离数据源返回的连接
+ * <p>
+ * 主库和从库的真实连接都在第一次需要时才获取。
+ * 自动提交、事务隔离级别和只读属性会记录下来，应用到已经获取以及之后获取的真实连接上；
+ * 提交和回滚作用于所有已经获取的真实连接；创建Statement按照{@link StatementContext}选择真实连接；
+ * 其余方法使用主库连接。
+ * <p>
+ * 关闭了自动提交(事务中)的查询默认使用主库，以便看到事务中的写入并与事务保持一致；
+ * 连接设置为只读或者语句指定了{@link DataSourceRoute#REPLICA}时仍然使用从库。
+ */
+final class ReadWriteConnection implements InvocationHandler {
+
+    private static final Class<?>[] IFACES = new Class<?>[]{Connection.class};
+
+    private final ReadWriteDataSource dataSource;
+    private final String username;
+    private final String password;
+    private final Connection proxyConnection;
+
+    private Connection primary;
+    private ReadWriteDataSource.Replica.Lease replica;
+    // 没有可用的从库，之后不再尝试
+    private boolean replicaUnavailable;
+    // 执行过写操作，之后的查询也使用主库
+    private boolean written;
+    private boolean closed;
+
+    private Boolean autoCommit;
+    private Integer transactionIsolation;
+    private Boolean readOnly;
+
+    ReadWriteConnection(ReadWriteDataSource dataSource, String username, String password) {
+        this.dataSource = dataSource;
+        this.username = username;
+        this.password = password;
+        this.proxyConnection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), IFACES, this);
+    }
+
+    Connection getProxyConnection() {
+        return proxyConnection;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String methodName = method.getName();
+        if (Object.class.equals(method.getDeclaringClass())) {
+            if ("equals".equals(methodName)) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(methodName)) {
+                return System.identityHashCode(proxy);
+            }
+            return getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+        }
+        if ("close".equals(methodName)) {
+            close();
+            return null;
+        } else if ("isClosed".equals(methodName)) {
+            return closed;
+        }
+        if (closed) {
+            throw new SQLException("Connection is closed.");
+        }
+        try {
+            switch (methodName) {
+                case "setAutoCommit":
+                    autoCommit = (Boolean) args[0];
+                    break;
+                case "setTransactionIsolation":
+                    transactionIsolation = (Integer) args[0];
+                    break;
+                case "setReadOnly":
+                    readOnly = (Boolean) args[0];
+                    break;
+                case "getAutoCommit":
+                    if (autoCommit != null) {
+                        return autoCommit;
+                    }
+                    return method.invoke(current(), args);
+                case "commit":
+                case "rollback":
+                    if (args == null) {
+                        break;
+                    }
+                    return method.invoke(primary(), args);
+                case "createStatement":
+                case "prepareStatement":
+                case "prepareCall":
+                    return method.invoke(route("prepareCall".equals(methodName)), args);
+                default:
+                    return method.invoke(primary(), args);
+            }
+            // 作用于所有已经获取的真实连接
+            if (primary != null) {
+                method.invoke(primary, args);
+            }
+            if (replica != null) {
+                method.invoke(replica.getConnection(), args);
+            }
+            return null;
+        } catch (Throwable t) {
+            throw ExceptionUtil.unwrapThrowable(t);
+        }
+    }
+
+    /**
+     * 为正在创建的Statement选择真实连接
+     */
+    private Connection route(boolean callable) throws SQLException {
+        StatementContext context = StatementContext.current();
+        MappedStatement ms = context == null ? null : context.getMappedStatement();
+        if (ms != null && isRead(ms, callable)) {
+            Connection connection = replica();
+            if (connection != null) {
+                return connection;
+            }
+        } else if (ms == null || ms.getDataSourceRoute() != DataSourceRoute.REPLICA) {
+            // 不经过执行器直接使用连接时无法判断是否为写操作
+            written = true;
+        }
+        return primary();
+    }
+
+    private boolean isRead(MappedStatement ms, boolean callable) {
+        switch (ms.getDataSourceRoute()) {
+            case REPLICA:
+                return true;
+            case PRIMARY:
+                return false;
+            default:
+                return !written && !callable && (!inTransaction() || Boolean.TRUE.equals(readOnly))
+                        && ms.getSqlCommandType() == SqlCommandType.SELECT
+                        && ms.getStatementType() != StatementType.CALLABLE;
+        }
+    }
+
+    /**
+     * 只有明确关闭了自动提交才认为处于事务中，未设置时按照JDBC的默认值(自动提交)处理
+     */
+    private boolean inTransaction() {
+        return Boolean.FALSE.equals(autoCommit);
+    }
+
+    private Connection current() throws SQLException {
+        if (primary == null && replica != null) {
+            return replica.getConnection();
+        }
+        return primary();
+    }
+
+    private Connection primary() throws SQLException {
+        if (primary == null) {
+            Connection connection = dataSource.getPrimaryConnection(username, password);
+            try {
+                configure(connection);
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+            primary = connection;
+        }
+        return primary;
+    }
+
+    /**
+     * @return 没有可用的从库时返回null
+     */
+    private Connection replica() throws SQLException {
+        if (replica == null && !replicaUnavailable) {
+            ReadWriteDataSource.Replica.Lease lease = dataSource.leaseReplica(username, password);
+            if (lease == null) {
+                replicaUnavailable = true;
+                return null;
+            }
+            try {
+                configure(lease.getConnection());
+            } catch (SQLException e) {
+                lease.release();
+                throw e;
+            }
+            replica = lease;
+        }
+        return replica == null ? null : replica.getConnection();
+    }
+
+    private void configure(Connection connection) throws SQLException {
+        if (autoCommit != null && connection.getAutoCommit() != autoCommit) {
+            connection.setAutoCommit(autoCommit);
+        }
+        if (transactionIsolation != null) {
+            connection.setTransactionIsolation(transactionIsolation);
+        }
+        if (readOnly != null) {
+            connection.setReadOnly(readOnly);
+        }
+    }
+
+    private void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        SQLException failure = null;
+        if (replica != null) {
+            try {
+                replica.release();
+            } catch (SQLException e) {
+                failure = e;
+            }
+        }
+        if (primary != null) {
+            primary.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+}
@@ -0,0 +1,280 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.readwrite;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * 读写分离数据源，包含一个主库和多个从库连接池
+ * <p>
+ * 返回的连接按需从主库或者从库获取真实连接：通过执行器创建Statement时，
+ * 查询语句({@link org.apache.ibatis.mapping.DataSourceRoute#DEFAULT})在连接上还没有执行过写操作时使用从库，
+ * 其余语句使用主库。一旦执行过写操作，之后的查询也使用主库，保证会话能读到自己的写入。
+ * 映射语句可以通过{@link org.apache.ibatis.mapping.DataSourceRoute}指定固定使用主库或者从库。
+ * <p>
+ * 从库按照未归还的连接数量(最少优先)选择，连续获取连接失败达到阈值的从库会被暂时剔除，
+ * 没有可用的从库时查询使用主库。
+ * REUSE执行器缓存的Statement会继续使用创建它时的连接。
+ *
+ * @since 3.5.0
+ */
+public class ReadWriteDataSource implements DataSource {
+
+    private static final Log log = LogFactory.getLog(ReadWriteDataSource.class);
+
+    private final PooledDataSource primary;
+    private final List<Replica> replicas;
+    // 未归还连接数量相同时轮流选择
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    // 连续失败多少次之后剔除从库
+    protected int replicaFailureThreshold = 3;
+    // 剔除从库的时间
+    protected long replicaEjectionTime = 30000;
+
+    public ReadWriteDataSource(PooledDataSource primary, List<PooledDataSource> replicas) {
+        this.primary = primary;
+        List<Replica> list = new ArrayList<>(replicas.size());
+        for (PooledDataSource replica : replicas) {
+            list.add(new Replica(replica));
+        }
+        this.replicas = Collections.unmodifiableList(list);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return new ReadWriteConnection(this, null, null).getProxyConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return new ReadWriteConnection(this, username, password).getProxyConnection();
+    }
+
+    Connection getPrimaryConnection(String username, String password) throws SQLException {
+        return username == null ? primary.getConnection() : primary.getConnection(username, password);
+    }
+
+    /**
+     * 选择未归还连接最少的可用从库并获取连接，失败时尝试下一个从库
+     *
+     * @return 没有可用的从库时返回null
+     */
+    Replica.Lease leaseReplica(String username, String password) {
+        int size = replicas.size();
+        if (size == 0) {
+            return null;
+        }
+        boolean[] tried = new boolean[size];
+        for (int attempt = 0; attempt < size; attempt++) {
+            long now = System.currentTimeMillis();
+            int start = (nextReplica.getAndIncrement() & Integer.MAX_VALUE) % size;
+            int selected = -1;
+            int least = Integer.MAX_VALUE;
+            for (int i = 0; i < size; i++) {
+                int index = (start + i) % size;
+                Replica replica = replicas.get(index);
+                int outstanding = replica.outstanding.get();
+                if (!tried[index] && replica.isAvailable(now) && outstanding < least) {
+                    selected = index;
+                    least = outstanding;
+                }
+            }
+            if (selected < 0) {
+                return null;
+            }
+            tried[selected] = true;
+            Replica replica = replicas.get(selected);
+            replica.outstanding.incrementAndGet();
+            try {
+                Connection connection = username == null ? replica.dataSource.getConnection() : replica.dataSource.getConnection(username, password);
+                replica.failures.set(0);
+                return replica.new Lease(connection);
+            } catch (SQLException | RuntimeException e) {
+                replica.outstanding.decrementAndGet();
+                recordFailure(replica, selected, e);
+            }
+        }
+        return null;
+    }
+
+    private void recordFailure(Replica replica, int index, Exception e) {
+        log.warn("Could not get a connection from replica " + index + ". Cause: " + e);
+        // 剔除时间结束之后，再失败一次就会被重新剔除
+        if (replica.failures.incrementAndGet() >= replicaFailureThreshold) {
+            replica.ejectedUntil = System.currentTimeMillis() + replicaEjectionTime;
+            log.warn("Ejected replica " + index + " for " + replicaEjectionTime + " milliseconds.");
+        }
+    }
+
+    public PooledDataSource getPrimary() {
+        return primary;
+    }
+
+    public List<PooledDataSource> getReplicas() {
+        List<PooledDataSource> list = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            list.add(replica.dataSource);
+        }
+        return list;
+    }
+
+    /**
+     * @return 从库当前是否可以使用(没有被剔除)
+     */
+    public boolean isReplicaAvailable(int index) {
+        return replicas.get(index).isAvailable(System.currentTimeMillis());
+    }
+
+    /**
+     * @return 从库未归还的连接数量
+     */
+    public int getReplicaOutstandingRequests(int index) {
+        return replicas.get(index).outstanding.get();
+    }
+
+    public int getReplicaFailureThreshold() {
+        return replicaFailureThreshold;
+    }
+
+    /**
+     * The number of consecutive failures to get a connection after which a replica is ejected.
+     *
+     * @param replicaFailureThreshold The number of failures
+     */
+    public void setReplicaFailureThreshold(int replicaFailureThreshold) {
+        this.replicaFailureThreshold = replicaFailureThreshold;
+    }
+
+    public long getReplicaEjectionTime() {
+        return replicaEjectionTime;
+    }
+
+    /**
+     * The time an ejected replica is not used.
+     *
+     * @param milliseconds The ejection time
+     */
+    public void setReplicaEjectionTime(long milliseconds) {
+        this.replicaEjectionTime = milliseconds;
+    }
+
+    /**
+     * 关闭所有连接池
+     */
+    public void forceCloseAll() {
+        primary.forceCloseAll();
+        for (Replica replica : replicas) {
+            replica.dataSource.forceCloseAll();
+        }
+    }
+
+    @Override
+    public void setLoginTimeout(int loginTimeout) throws SQLException {
+        DriverManager.setLoginTimeout(loginTimeout);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter logWriter) throws SQLException {
+        DriverManager.setLogWriter(logWriter);
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return DriverManager.getLogWriter();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        throw new SQLException(getClass().getName() + " is not a wrapper.");
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() {
+        return Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+    }
+
+    /**
+     * 从库及其状态
+     */
+    static final class Replica {
+
+        private final PooledDataSource dataSource;
+        // 未归还的连接数量
+        private final AtomicInteger outstanding = new AtomicInteger();
+        // 连续获取连接失败的次数
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile long ejectedUntil;
+
+        Replica(PooledDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        boolean isAvailable(long now) {
+            return now >= ejectedUntil;
+        }
+
+        /**
+         * 从库的一个连接，关闭时归还计数
+         */
+        final class Lease {
+
+            private final Connection connection;
+            private boolean released;
+
+            Lease(Connection connection) {
+                this.connection = connection;
+            }
+
+            Connection getConnection() {
+                return connection;
+            }
+
+            void release() throws SQLException {
+                if (!released) {
+                    released = true;
+                    outstanding.decrementAndGet();
+                    connection.close();
+                }
+            }
+        }
+    }
+
+}
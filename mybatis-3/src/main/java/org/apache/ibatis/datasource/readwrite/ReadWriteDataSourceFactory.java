@@ -0,0 +1,102 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.readwrite;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.datasource.DataSourceException;
+import org.apache.ibatis.datasource.DataSourceFactory;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
+
+/**
+ * 读写分离数据源工厂
+ * <p>
+ * 以{@code primary.}开头的属性只用于主库，以{@code replica.<名称>.}开头的属性只用于对应的从库(按名称排序)，
+ * {@code replicaFailureThreshold}和{@code replicaEjectionTime}用于{@link ReadWriteDataSource}，
+ * 其余属性用于所有的连接池，与{@link PooledDataSourceFactory}的属性相同。
+ *
+ * @since 3.5.0
+ */
+public class ReadWriteDataSourceFactory implements DataSourceFactory {
+
+    private static final String PRIMARY_PROPERTY_PREFIX = "primary.";
+    private static final String REPLICA_PROPERTY_PREFIX = "replica.";
+
+    private ReadWriteDataSource dataSource;
+
+    @Override
+    public void setProperties(Properties properties) {
+        Properties shared = new Properties();
+        Properties primaryProperties = new Properties();
+        Map<String, Properties> replicaProperties = new TreeMap<>();
+        String failureThreshold = null;
+        String ejectionTime = null;
+        for (String name : properties.stringPropertyNames()) {
+            String value = properties.getProperty(name);
+            if (name.startsWith(PRIMARY_PROPERTY_PREFIX)) {
+                primaryProperties.setProperty(name.substring(PRIMARY_PROPERTY_PREFIX.length()), value);
+            } else if (name.startsWith(REPLICA_PROPERTY_PREFIX)) {
+                String rest = name.substring(REPLICA_PROPERTY_PREFIX.length());
+                int dot = rest.indexOf('.');
+                if (dot <= 0 || dot == rest.length() - 1) {
+                    throw new DataSourceException("Invalid replica property: " + name + ". Expected replica.<name>.<property>");
+                }
+                replicaProperties.computeIfAbsent(rest.substring(0, dot), k -> new Properties())
+                        .setProperty(rest.substring(dot + 1), value);
+            } else if ("replicaFailureThreshold".equals(name)) {
+                failureThreshold = value;
+            } else if ("replicaEjectionTime".equals(name)) {
+                ejectionTime = value;
+            } else {
+                shared.setProperty(name, value);
+            }
+        }
+        PooledDataSource primary = newPooledDataSource(shared, primaryProperties);
+        List<PooledDataSource> replicas = new ArrayList<>(replicaProperties.size());
+        for (Properties replica : replicaProperties.values()) {
+            replicas.add(newPooledDataSource(shared, replica));
+        }
+        dataSource = new ReadWriteDataSource(primary, replicas);
+        if (failureThreshold != null) {
+            dataSource.setReplicaFailureThreshold(Integer.parseInt(failureThreshold));
+        }
+        if (ejectionTime != null) {
+            dataSource.setReplicaEjectionTime(Long.parseLong(ejectionTime));
+        }
+    }
+
+    private PooledDataSource newPooledDataSource(Properties shared, Properties specific) {
+        Properties properties = new Properties();
+        properties.putAll(shared);
+        properties.putAll(specific);
+        PooledDataSourceFactory factory = new PooledDataSourceFactory();
+        factory.setProperties(properties);
+        return (PooledDataSource) factory.getDataSource();
+    }
+
+    @Override
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+}
@@ -0,0 +1,34 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.sharding;
+
+/**
+ * 取模分片策略，整数按照数值取模，其余类型按照hashCode取模
+ *
+ * @since 3.5.0
+ */
+public class ModuloShardStrategy implements ShardStrategy {
+
+    @Override
+    public int shard(Object shardKeyValue, int shardCount) {
+        if (shardKeyValue instanceof Long || shardKeyValue instanceof Integer
+                || shardKeyValue instanceof Short || shardKeyValue instanceof Byte) {
+            return (int) Math.floorMod(((Number) shardKeyValue).longValue(), (long) shardCount);
+        }
+        return Math.floorMod(shardKeyValue.hashCode(), shardCount);
+    }
+
+}
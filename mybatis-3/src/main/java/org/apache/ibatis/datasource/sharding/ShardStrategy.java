@@ -0,0 +1,32 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.sharding;
+
+/**
+ * 分片策略，根据分片键的值选择分片
+ *
+ * @since 3.5.0
+ */
+public interface ShardStrategy {
+
+    /**
+     * @param shardKeyValue 分片键的值，不为null
+     * @param shardCount 分片数量
+     * @return 分片的下标，范围是[0, shardCount)
+     */
+    int shard(Object shardKeyValue, int shardCount);
+
+}
@@ -0,0 +1,217 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.sharding;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.datasource.StatementContext;
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * 分片数据源返回的连接
+ * <p>
+ * 各分片的真实连接在第一次需要时才获取。
+ * 自动提交、事务隔离级别和只读属性会记录下来，应用到已经获取以及之后获取的真实连接上；
+ * 提交和回滚作用于所有已经获取的真实连接；创建Statement按照{@link StatementContext}选择分片；
+ * 其余方法使用第一个分片的连接。
+ *
+ * @since 3.5.0
+ */
+public final class ShardedConnection implements InvocationHandler {
+
+    private static final Class<?>[] IFACES = new Class<?>[]{Connection.class};
+
+    private final ShardedDataSource dataSource;
+    private final String username;
+    private final String password;
+    private final Connection proxyConnection;
+    private final Connection[] connections;
+    private boolean closed;
+
+    private Boolean autoCommit;
+    private Integer transactionIsolation;
+    private Boolean readOnly;
+
+    ShardedConnection(ShardedDataSource dataSource, String username, String password) {
+        this.dataSource = dataSource;
+        this.username = username;
+        this.password = password;
+        this.connections = new Connection[dataSource.getShardCount()];
+        this.proxyConnection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), IFACES, this);
+    }
+
+    /**
+     * @return 分片数据源返回的连接对应的对象，其他连接返回null
+     */
+    public static ShardedConnection of(Connection connection) {
+        if (connection != null && Proxy.isProxyClass(connection.getClass())) {
+            InvocationHandler handler = Proxy.getInvocationHandler(connection);
+            if (handler instanceof ShardedConnection) {
+                return (ShardedConnection) handler;
+            }
+        }
+        return null;
+    }
+
+    Connection getProxyConnection() {
+        return proxyConnection;
+    }
+
+    public ShardedDataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * 获取分片的真实连接，连接由这个对象管理，不能关闭
+     */
+    public Connection getShardConnection(int index) throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection is closed.");
+        }
+        Connection connection = connections[index];
+        if (connection == null) {
+            DataSource shard = dataSource.getShard(index);
+            connection = username == null ? shard.getConnection() : shard.getConnection(username, password);
+            try {
+                configure(connection);
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+            connections[index] = connection;
+        }
+        return connection;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String methodName = method.getName();
+        if (Object.class.equals(method.getDeclaringClass())) {
+            if ("equals".equals(methodName)) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(methodName)) {
+                return System.identityHashCode(proxy);
+            }
+            return getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+        }
+        if ("close".equals(methodName)) {
+            close();
+            return null;
+        } else if ("isClosed".equals(methodName)) {
+            return closed;
+        }
+        if (closed) {
+            throw new SQLException("Connection is closed.");
+        }
+        try {
+            switch (methodName) {
+                case "setAutoCommit":
+                    autoCommit = (Boolean) args[0];
+                    break;
+                case "setTransactionIsolation":
+                    transactionIsolation = (Integer) args[0];
+                    break;
+                case "setReadOnly":
+                    readOnly = (Boolean) args[0];
+                    break;
+                case "getAutoCommit":
+                    if (autoCommit != null) {
+                        return autoCommit;
+                    }
+                    return method.invoke(getShardConnection(0), args);
+                case "commit":
+                case "rollback":
+                    if (args == null) {
+                        break;
+                    }
+                    return method.invoke(getShardConnection(0), args);
+                case "createStatement":
+                case "prepareStatement":
+                case "prepareCall":
+                    return method.invoke(getShardConnection(route()), args);
+                default:
+                    return method.invoke(getShardConnection(0), args);
+            }
+            // 作用于所有已经获取的真实连接
+            for (Connection connection : connections) {
+                if (connection != null) {
+                    method.invoke(connection, args);
+                }
+            }
+            return null;
+        } catch (Throwable t) {
+            throw ExceptionUtil.unwrapThrowable(t);
+        }
+    }
+
+    private int route() throws SQLException {
+        if (connections.length == 1) {
+            return 0;
+        }
+        StatementContext context = StatementContext.current();
+        if (context == null) {
+            throw new SQLException("Could not determine the shard of a statement that is not executed by a mapped statement.");
+        }
+        Integer shard = dataSource.resolveShard(context.getMappedStatement(), context.getParameterObject());
+        if (shard == null) {
+            throw new SQLException("Could not determine the shard of mapped statement '" + context.getMappedStatement().getId()
+                    + "'. Declare a shardKey and pass a non null value for it.");
+        }
+        return shard;
+    }
+
+    private void configure(Connection connection) throws SQLException {
+        if (autoCommit != null && connection.getAutoCommit() != autoCommit) {
+            connection.setAutoCommit(autoCommit);
+        }
+        if (transactionIsolation != null) {
+            connection.setTransactionIsolation(transactionIsolation);
+        }
+        if (readOnly != null) {
+            connection.setReadOnly(readOnly);
+        }
+    }
+
+    private void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        SQLException failure = null;
+        for (int i = 0; i < connections.length; i++) {
+            if (connections[i] != null) {
+                try {
+                    connections[i].close();
+                } catch (SQLException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+                connections[i] = null;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+}
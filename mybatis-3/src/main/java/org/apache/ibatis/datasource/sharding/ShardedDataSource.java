@@ -0,0 +1,215 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.sharding;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.datasource.DataSourceException;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.executor.keygen.SelectKeyGenerator;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * 分片数据源，包含多个分片的数据源
+ * <p>
+ * 返回的连接按需获取各个分片的真实连接，通过执行器创建Statement时，
+ * 根据映射语句声明的分片键({@link MappedStatement#getShardKey()})从参数对象中取值，
+ * 再由{@link ShardStrategy}选择分片。
+ * 没有分片键的查询由执行器({@link org.apache.ibatis.executor.ShardingExecutor})在所有分片上并行执行后合并结果，
+ * 没有分片键的写操作会抛出异常。
+ * 自动提交、事务隔离级别和只读属性会应用到所有分片的连接上，提交和回滚作用于所有已经获取的连接(不是分布式事务)。
+ *
+ * @since 3.5.0
+ */
+public class ShardedDataSource implements DataSource {
+
+    private static ExecutorService defaultFanOutExecutor;
+
+    private final List<DataSource> shards;
+    private ShardStrategy shardStrategy = new ModuloShardStrategy();
+    // 在所有分片上执行查询使用的线程池
+    private Executor fanOutExecutor;
+
+    public ShardedDataSource(List<? extends DataSource> shards) {
+        if (shards.isEmpty()) {
+            throw new DataSourceException("A sharded data source requires at least one shard.");
+        }
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return new ShardedConnection(this, null, null).getProxyConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return new ShardedConnection(this, username, password).getProxyConnection();
+    }
+
+    /**
+     * 根据映射语句的分片键和参数对象选择分片
+     * <p>
+     * selectKey语句使用所属语句的分片键，没有分片键的值时使用第一个分片。
+     *
+     * @return 无法确定分片时返回null
+     */
+    public Integer resolveShard(MappedStatement ms, Object parameterObject) {
+        if (shards.size() == 1) {
+            return 0;
+        }
+        String shardKey = ms.getShardKey();
+        boolean keyStatement = false;
+        if (shardKey == null && ms.getId().endsWith(SelectKeyGenerator.SELECT_KEY_SUFFIX)) {
+            String parentId = ms.getId().substring(0, ms.getId().length() - SelectKeyGenerator.SELECT_KEY_SUFFIX.length());
+            Configuration configuration = ms.getConfiguration();
+            if (configuration.hasStatement(parentId, false)) {
+                shardKey = configuration.getMappedStatement(parentId, false).getShardKey();
+            }
+            keyStatement = true;
+        }
+        Object value = shardKey == null ? null : getShardKeyValue(ms.getConfiguration(), shardKey, parameterObject);
+        if (value == null) {
+            return keyStatement ? 0 : null;
+        }
+        int shard = shardStrategy.shard(value, shards.size());
+        if (shard < 0 || shard >= shards.size()) {
+            throw new DataSourceException("Shard strategy " + shardStrategy.getClass().getName() + " returned shard " + shard
+                    + " for value '" + value + "' but there are " + shards.size() + " shards.");
+        }
+        return shard;
+    }
+
+    private Object getShardKeyValue(Configuration configuration, String shardKey, Object parameterObject) {
+        if (parameterObject == null) {
+            return null;
+        }
+        // 参数对象本身就是分片键
+        if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+            return parameterObject;
+        }
+        MetaObject metaObject = configuration.newMetaObject(parameterObject);
+        return metaObject.hasGetter(shardKey) ? metaObject.getValue(shardKey) : null;
+    }
+
+    DataSource getShard(int index) {
+        return shards.get(index);
+    }
+
+    public List<DataSource> getShards() {
+        return shards;
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public ShardStrategy getShardStrategy() {
+        return shardStrategy;
+    }
+
+    public void setShardStrategy(ShardStrategy shardStrategy) {
+        this.shardStrategy = shardStrategy;
+    }
+
+    /**
+     * @return 在所有分片上执行查询使用的线程池，没有设置时使用公共的守护线程池
+     */
+    public Executor getFanOutExecutor() {
+        if (fanOutExecutor == null) {
+            return defaultFanOutExecutor();
+        }
+        return fanOutExecutor;
+    }
+
+    public void setFanOutExecutor(Executor fanOutExecutor) {
+        this.fanOutExecutor = fanOutExecutor;
+    }
+
+    private static synchronized ExecutorService defaultFanOutExecutor() {
+        if (defaultFanOutExecutor == null) {
+            AtomicInteger count = new AtomicInteger();
+            defaultFanOutExecutor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "mybatis-shard-fan-out-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return defaultFanOutExecutor;
+    }
+
+    /**
+     * 关闭所有分片连接池的连接
+     */
+    public void forceCloseAll() {
+        for (DataSource shard : shards) {
+            if (shard instanceof PooledDataSource) {
+                ((PooledDataSource) shard).forceCloseAll();
+            }
+        }
+    }
+
+    @Override
+    public void setLoginTimeout(int loginTimeout) throws SQLException {
+        DriverManager.setLoginTimeout(loginTimeout);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter logWriter) throws SQLException {
+        DriverManager.setLogWriter(logWriter);
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return DriverManager.getLogWriter();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        throw new SQLException(getClass().getName() + " is not a wrapper.");
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() {
+        return Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+    }
+
+}
@@ -0,0 +1,94 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.sharding;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.datasource.DataSourceException;
+import org.apache.ibatis.datasource.DataSourceFactory;
+import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
+import org.apache.ibatis.io.Resources;
+
+/**
+ * 分片数据源工厂
+ * <p>
+ * 以{@code shard.<名称>.}开头的属性只用于对应的分片，分片按名称排序，
+ * {@code shardStrategy}是{@link ShardStrategy}实现类的全限定名，
+ * 其余属性用于所有分片的连接池，与{@link PooledDataSourceFactory}的属性相同。
+ *
+ * @since 3.5.0
+ */
+public class ShardedDataSourceFactory implements DataSourceFactory {
+
+    private static final String SHARD_PROPERTY_PREFIX = "shard.";
+
+    private ShardedDataSource dataSource;
+
+    @Override
+    public void setProperties(Properties properties) {
+        Properties shared = new Properties();
+        Map<String, Properties> shardProperties = new TreeMap<>();
+        String shardStrategy = null;
+        for (String name : properties.stringPropertyNames()) {
+            String value = properties.getProperty(name);
+            if (name.startsWith(SHARD_PROPERTY_PREFIX)) {
+                String rest = name.substring(SHARD_PROPERTY_PREFIX.length());
+                int dot = rest.indexOf('.');
+                if (dot <= 0 || dot == rest.length() - 1) {
+                    throw new DataSourceException("Invalid shard property: " + name + ". Expected shard.<name>.<property>");
+                }
+                shardProperties.computeIfAbsent(rest.substring(0, dot), k -> new Properties())
+                        .setProperty(rest.substring(dot + 1), value);
+            } else if ("shardStrategy".equals(name)) {
+                shardStrategy = value;
+            } else {
+                shared.setProperty(name, value);
+            }
+        }
+        if (shardProperties.isEmpty()) {
+            throw new DataSourceException("A sharded data source requires at least one shard.<name>.url property.");
+        }
+        List<DataSource> shards = new ArrayList<>(shardProperties.size());
+        for (Properties shard : shardProperties.values()) {
+            Properties merged = new Properties();
+            merged.putAll(shared);
+            merged.putAll(shard);
+            PooledDataSourceFactory factory = new PooledDataSourceFactory();
+            factory.setProperties(merged);
+            shards.add(factory.getDataSource());
+        }
+        dataSource = new ShardedDataSource(shards);
+        if (shardStrategy != null) {
+            try {
+                dataSource.setShardStrategy((ShardStrategy) Resources.classForName(shardStrategy).getConstructor().newInstance());
+            } catch (Exception e) {
+                throw new DataSourceException("Error creating shard strategy (" + shardStrategy + ").  Cause: " + e, e);
+            }
+        }
+    }
+
+    @Override
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+}
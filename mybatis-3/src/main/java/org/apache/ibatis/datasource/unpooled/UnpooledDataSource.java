@@ -25,6 +25,7 @@ import java.util.Enumeration;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
 import javax.sql.DataSource;
@@ -47,6 +48,8 @@ public class UnpooledDataSource implements DataSource {
     private static Map<String, Driver> registeredDrivers = new ConcurrentHashMap<>();
     // 数据库驱动地址
     private String driver;
+    // 保护驱动的加载和注册(类加载可能读取jar文件)，使用显式锁而不是synchronized，避免阻塞时占用平台线程
+    private final ReentrantLock driverLock = new ReentrantLock();
     // 数据库连接地址
     private String url;
     // 数据库访问帐号
@@ -147,8 +150,13 @@ public class UnpooledDataSource implements DataSource {
         return driver;
     }
 
-    public synchronized void setDriver(String driver) {
-        this.driver = driver;
+    public void setDriver(String driver) {
+        driverLock.lock();
+        try {
+            this.driver = driver;
+        } finally {
+            driverLock.unlock();
+        }
     }
 
     public String getUrl() {
@@ -212,24 +220,29 @@ public class UnpooledDataSource implements DataSource {
         return connection;
     }
 
-    private synchronized void initializeDriver() throws SQLException {
-        if (!registeredDrivers.containsKey(driver)) {
-            Class<?> driverType;
-            try {
-                if (driverClassLoader != null) {
-                    driverType = Class.forName(driver, true, driverClassLoader);
-                } else {
-                    driverType = Resources.classForName(driver);
+    private void initializeDriver() throws SQLException {
+        driverLock.lock();
+        try {
+            if (!registeredDrivers.containsKey(driver)) {
+                Class<?> driverType;
+                try {
+                    if (driverClassLoader != null) {
+                        driverType = Class.forName(driver, true, driverClassLoader);
+                    } else {
+                        driverType = Resources.classForName(driver);
+                    }
+                    // DriverManager要求通过系统ClassLoader加载驱动程序
+                    // DriverManager requires the driver to be loaded via the system ClassLoader.
+                    // http://www.kfu.com/~nsayer/Java/dyn-jdbc.html
+                    Driver driverInstance = (Driver) driverType.newInstance();
+                    DriverManager.registerDriver(new DriverProxy(driverInstance));
+                    registeredDrivers.put(driver, driverInstance);
+                } catch (Exception e) {
+                    throw new SQLException("Error setting driver on UnpooledDataSource. Cause: " + e);
                 }
-                // DriverManager要求通过系统ClassLoader加载驱动程序
-                // DriverManager requires the driver to be loaded via the system ClassLoader.
-                // http://www.kfu.com/~nsayer/Java/dyn-jdbc.html
-                Driver driverInstance = (Driver) driverType.newInstance();
-                DriverManager.registerDriver(new DriverProxy(driverInstance));
-                registeredDrivers.put(driver, driverInstance);
-            } catch (Exception e) {
-                throw new SQLException("Error setting driver on UnpooledDataSource. Cause: " + e);
             }
+        } finally {
+            driverLock.unlock();
         }
     }
 
@@ -26,6 +26,7 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.datasource.ConnectionPartition;
 import org.apache.ibatis.executor.statement.StatementUtil;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
@@ -62,17 +63,37 @@ public abstract class BaseExecutor implements Executor {
     // 查询栈，递归时可以防止循环引用
     protected int queryStack;
     private boolean closed;
+    // 会话打开时指定的连接池分区
+    private String connectionPartition;
 
     protected BaseExecutor(Configuration configuration, Transaction transaction) {
         this.transaction = transaction;
         this.deferredLoads = new ConcurrentLinkedQueue<>();
-        this.localCache = new PerpetualCache("LocalCache");
         this.localOutputParameterCache = new PerpetualCache("LocalOutputParameterCache");
+        this.localCache = newLocalCache(configuration);
         this.closed = false;
         this.configuration = configuration;
         this.wrapper = this;
     }
 
+    /**
+     * 设置了localCacheSize或localCacheMaxBytes时使用有界的本地缓存
+     */
+    private PerpetualCache newLocalCache(Configuration configuration) {
+        if (configuration == null) {
+            return new PerpetualCache("LocalCache");
+        }
+        int maxSize = configuration.getLocalCacheSize();
+        long maxBytes = configuration.getLocalCacheMaxBytes();
+        if (maxSize <= 0 && maxBytes <= 0) {
+            return new PerpetualCache("LocalCache");
+        }
+        return new BoundedLocalCache("LocalCache", maxSize, maxBytes, key -> {
+            localOutputParameterCache.removeObject(key);
+            configuration.recordLocalCacheEviction();
+        });
+    }
+
     @Override
     public Transaction getTransaction() {
         if (closed) {
@@ -125,8 +146,16 @@ public abstract class BaseExecutor implements Executor {
         }
         // 清空本地缓存
         clearLocalCache();
-        // 子类实现更新逻辑
-        return doUpdate(ms, parameter);
+        String partition = connectionPartition(ms);
+        String previousPartition = partition == null ? null : ConnectionPartition.enter(partition);
+        try {
+            // 子类实现更新逻辑
+            return doUpdate(ms, parameter);
+        } finally {
+            if (partition != null) {
+                ConnectionPartition.restore(previousPartition);
+            }
+        }
     }
 
     @Override
@@ -192,6 +221,9 @@ public abstract class BaseExecutor implements Executor {
             // 清空加载队列，防止内存溢出
             // issue #601
             deferredLoads.clear();
+            if (localCache instanceof BoundedLocalCache) {
+                ((BoundedLocalCache) localCache).unpinAll();
+            }
             // 针对STATEMENT级别的缓存，每次执行完方法，都要清空缓存
             if (configuration.getLocalCacheScope() == LocalCacheScope.STATEMENT) {
                 // issue #482
@@ -204,7 +236,33 @@ public abstract class BaseExecutor implements Executor {
     @Override
     public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) throws SQLException {
         BoundSql boundSql = ms.getBoundSql(parameter);
-        return doQueryCursor(ms, parameter, rowBounds, boundSql);
+        String partition = connectionPartition(ms);
+        String previousPartition = partition == null ? null : ConnectionPartition.enter(partition);
+        try {
+            return doQueryCursor(ms, parameter, rowBounds, boundSql);
+        } finally {
+            if (partition != null) {
+                ConnectionPartition.restore(previousPartition);
+            }
+        }
+    }
+
+    /**
+     * 设置会话使用的连接池分区，映射语句声明的分区优先
+     *
+     * @param connectionPartition 分区名称，null表示默认分区
+     * @since 3.5.0
+     */
+    public void setConnectionPartition(String connectionPartition) {
+        this.connectionPartition = connectionPartition;
+    }
+
+    /**
+     * 执行映射语句期间获取连接使用的分区，连接池据此决定可以使用的预留连接和等待时的优先级
+     */
+    private String connectionPartition(MappedStatement ms) {
+        String partition = ms.getConnectionPartition();
+        return partition != null ? partition : connectionPartition;
     }
 
     /**
@@ -227,6 +285,10 @@ public abstract class BaseExecutor implements Executor {
             deferredLoad.load();
         } else {
             deferredLoads.add(new DeferredLoad(resultObject, property, key, localCache, configuration, targetType));
+            if (localCache instanceof BoundedLocalCache) {
+                // 加载之前不能被淘汰
+                ((BoundedLocalCache) localCache).pin(key);
+            }
         }
     }
 
@@ -400,10 +462,15 @@ public abstract class BaseExecutor implements Executor {
         List<E> list;
         // 首先使用占位符，占位要保存的结果，防止空指针
         localCache.putObject(key, EXECUTION_PLACEHOLDER);
+        String partition = connectionPartition(ms);
+        String previousPartition = partition == null ? null : ConnectionPartition.enter(partition);
         try {
             // 调动实现类去实现真正查询逻辑
             list = doQuery(ms, parameter, rowBounds, resultHandler, boundSql);
         } finally {
+            if (partition != null) {
+                ConnectionPartition.restore(previousPartition);
+            }
             //移除占位符
             localCache.removeObject(key);
         }
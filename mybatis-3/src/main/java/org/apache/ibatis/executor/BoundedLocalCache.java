@@ -0,0 +1,169 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.apache.ibatis.executor.ExecutionPlaceholder.EXECUTION_PLACEHOLDER;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.apache.ibatis.cache.ObjectSizeEstimator;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+
+/**
+ * 有界的一级(本地)缓存
+ * <p>
+ * 按最近最少使用的顺序淘汰条目，直到条目数不超过{@code maxSize}并且估算的占用不超过{@code maxBytes}(0表示不限制)。
+ * 正在执行的查询的占位符{@link ExecutionPlaceholder}，以及延迟加载队列还要读取的条目({@link #pin(Object)})不会被淘汰，
+ * 因此循环引用的嵌套查询仍然能够正确地组装，此时缓存可能暂时超过上限。
+ * 与{@link PerpetualCache}一样只在一个会话中使用，不是线程安全的。
+ *
+ * @since 3.5.0
+ */
+public class BoundedLocalCache extends PerpetualCache {
+
+    private final int maxSize;
+    private final long maxBytes;
+    // 按访问顺序排列
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<Object> pinned = new HashSet<>();
+    // 条目被淘汰时调用，可以为null
+    private final Consumer<Object> evictionListener;
+    private long estimatedBytes;
+    private long evictionCount;
+
+    public BoundedLocalCache(String id, int maxSize, long maxBytes) {
+        this(id, maxSize, maxBytes, null);
+    }
+
+    public BoundedLocalCache(String id, int maxSize, long maxBytes, Consumer<Object> evictionListener) {
+        super(id);
+        this.maxSize = maxSize;
+        this.maxBytes = maxBytes;
+        this.evictionListener = evictionListener;
+    }
+
+    @Override
+    public int getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        long bytes = maxBytes > 0 && value != EXECUTION_PLACEHOLDER ? ObjectSizeEstimator.estimate(value) : 0;
+        Entry previous = entries.put(key, new Entry(value, bytes));
+        if (previous != null) {
+            estimatedBytes -= previous.bytes;
+        }
+        estimatedBytes += bytes;
+        evictIfNecessary();
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        Entry entry = entries.get(key);
+        return entry == null ? null : entry.value;
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        estimatedBytes -= entry.bytes;
+        return entry.value;
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+        pinned.clear();
+        estimatedBytes = 0;
+    }
+
+    /**
+     * 延迟加载队列中的条目在加载之前不能被淘汰
+     */
+    public void pin(Object key) {
+        pinned.add(key);
+    }
+
+    public void unpinAll() {
+        if (!pinned.isEmpty()) {
+            pinned.clear();
+            evictIfNecessary();
+        }
+    }
+
+    private void evictIfNecessary() {
+        if (!isOverLimit()) {
+            return;
+        }
+        Iterator<Map.Entry<Object, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext() && isOverLimit()) {
+            Map.Entry<Object, Entry> eldest = iterator.next();
+            if (eldest.getValue().value == EXECUTION_PLACEHOLDER || pinned.contains(eldest.getKey())) {
+                continue;
+            }
+            iterator.remove();
+            estimatedBytes -= eldest.getValue().bytes;
+            evictionCount++;
+            if (evictionListener != null) {
+                evictionListener.accept(eldest.getKey());
+            }
+        }
+    }
+
+    private boolean isOverLimit() {
+        return (maxSize > 0 && entries.size() > maxSize) || (maxBytes > 0 && estimatedBytes > maxBytes);
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return 估算的占用字节数，未设置maxBytes时为0
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    private static class Entry {
+
+        private final Object value;
+        private final long bytes;
+
+        Entry(Object value, long bytes) {
+            this.value = value;
+            this.bytes = bytes;
+        }
+    }
+
+}
@@ -16,20 +16,32 @@
 package org.apache.ibatis.executor;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.CacheStatistics;
+import org.apache.ibatis.cache.TableVersions;
 import org.apache.ibatis.cache.TransactionalCacheManager;
+import org.apache.ibatis.cache.decorators.SingleFlightCache;
+import org.apache.ibatis.cache.invalidation.CacheInvalidationPublisher;
+import org.apache.ibatis.cache.invalidation.Invalidation;
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.parameter.ParameterHandler;
+import org.apache.ibatis.executor.resultset.CachedResultRows;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ParameterMode;
 import org.apache.ibatis.mapping.StatementType;
 import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SecondLevelCacheMode;
 import org.apache.ibatis.transaction.Transaction;
 
 /**
@@ -41,10 +53,24 @@ import org.apache.ibatis.transaction.Transaction;
 public class CachingExecutor implements Executor {
 
     private final Executor delegate;
-    private final TransactionalCacheManager tcm = new TransactionalCacheManager();
+    private final TransactionalCacheManager tcm;
+    private final CacheInvalidationPublisher publisher;
+    // 按表失效时，当前事务修改过的表，事务结束后才使其他会话缓存的结果失效
+    private final Set<String> modifiedTables = new HashSet<>();
+    private TableVersions tableVersions;
 
     public CachingExecutor(Executor delegate) {
+        this(delegate, null);
+    }
+
+    /**
+     * @param publisher 将提交的失效通知给其他节点，可以为null
+     * @since 3.5.0
+     */
+    public CachingExecutor(Executor delegate, CacheInvalidationPublisher publisher) {
         this.delegate = delegate;
+        this.publisher = publisher;
+        this.tcm = new TransactionalCacheManager(publisher);
         delegate.setExecutorWrapper(this);
     }
 
@@ -62,6 +88,7 @@ public class CachingExecutor implements Executor {
             } else {
                 tcm.commit();
             }
+            invalidateModifiedTables();
         } finally {
             delegate.close(forceRollback);
         }
@@ -74,7 +101,11 @@ public class CachingExecutor implements Executor {
 
     @Override
     public int update(MappedStatement ms, Object parameterObject) throws SQLException {
-        flushCacheIfRequired(ms);
+        if (ms.getConfiguration().isTableCacheInvalidation()) {
+            recordModifiedTables(ms, parameterObject);
+        } else {
+            flushCacheIfRequired(ms);
+        }
         return delegate.update(ms, parameterObject);
     }
 
@@ -99,18 +130,92 @@ public class CachingExecutor implements Executor {
             flushCacheIfRequired(ms);
             if (ms.isUseCache() && resultHandler == null) {
                 ensureNoOutParams(ms, boundSql);
-                @SuppressWarnings("unchecked")
-                List<E> list = (List<E>) tcm.getObject(cache, key);
-                if (list == null) {
-                    list = delegate.<E>query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
-                    tcm.putObject(cache, key, list); // issue #578 and #116
+                CacheKey cacheKey = key;
+                if (ms.getConfiguration().isTableCacheInvalidation()) {
+                    TableVersions versions = ms.getConfiguration().getTableVersions();
+                    Set<String> readTables = versions.getReadTables(ms, boundSql);
+                    if (TableVersions.isAffected(readTables, modifiedTables)) {
+                        // 当前事务修改过读取的表，缓存中的结果可能已经过时
+                        return delegate.<E>query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
+                    }
+                    cacheKey = versions.tag(key, readTables);
+                }
+                if (ms.getConfiguration().getSecondLevelCacheMode() == SecondLevelCacheMode.ROWS && CachedResultRows.isCacheable(ms)) {
+                    return queryRows(cache, cacheKey, ms, parameterObject, rowBounds, key, boundSql);
                 }
-                return list;
+                // 未命中时查询数据库，结果在提交时写入缓存 issue #578 and #116
+                Object value = getObject(cache, cacheKey, ms,
+                        () -> delegate.<E>query(ms, parameterObject, rowBounds, resultHandler, key, boundSql));
+                return cachedList(value, ms, parameterObject, rowBounds, boundSql);
             }
         }
         return delegate.<E>query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
     }
 
+    /**
+     * 以结果行的方式缓存：未命中时在查询数据库的同时捕获结果行，缓存中保存的是结果行
+     */
+    private <E> List<E> queryRows(Cache cache, CacheKey cacheKey, MappedStatement ms, Object parameterObject, RowBounds rowBounds,
+                                  CacheKey key, BoundSql boundSql) throws SQLException {
+        List<List<E>> loaded = new ArrayList<>(1);
+        Object value = getObject(cache, cacheKey, ms, () -> {
+            CachedResultRows.Capture capture = CachedResultRows.Capture.begin(ms);
+            try {
+                loaded.add(delegate.<E>query(ms, parameterObject, rowBounds, Executor.NO_RESULT_HANDLER, key, boundSql));
+            } finally {
+                capture.end();
+            }
+            // 命中了本地缓存或者结果无法以行的方式缓存时，仍然缓存对象
+            CachedResultRows rows = capture.getRows();
+            return rows != null ? rows : loaded.get(0);
+        });
+        if (!loaded.isEmpty()) {
+            // 本次查询了数据库，直接返回映射好的结果
+            return loaded.get(0);
+        }
+        return cachedList(value, ms, parameterObject, rowBounds, boundSql);
+    }
+
+    /**
+     * 从二级缓存中获取，开启了统计时记录语句的命中次数和加载耗时
+     */
+    private Object getObject(Cache cache, CacheKey cacheKey, MappedStatement ms, SingleFlightCache.Loader<SQLException> loader)
+            throws SQLException {
+        CacheStatistics statistics = ms.getConfiguration().getCacheStatistics(cache.getId());
+        if (statistics == null) {
+            return tcm.getObject(cache, cacheKey, ms.getCacheExpiry(), loader);
+        }
+        boolean[] loaded = new boolean[1];
+        Object value = tcm.getObject(cache, cacheKey, ms.getCacheExpiry(), () -> {
+            loaded[0] = true;
+            long start = System.nanoTime();
+            try {
+                return loader.load();
+            } finally {
+                statistics.recordStatementLoad(ms.getId(), System.nanoTime() - start);
+            }
+        });
+        if (!loaded[0]) {
+            statistics.recordStatementHit(ms.getId());
+        }
+        return value;
+    }
+
+    /**
+     * 缓存的是结果行时，重新映射成对象
+     */
+    @SuppressWarnings("unchecked")
+    private <E> List<E> cachedList(Object value, MappedStatement ms, Object parameterObject, RowBounds rowBounds, BoundSql boundSql)
+            throws SQLException {
+        if (value instanceof CachedResultRows) {
+            Configuration configuration = ms.getConfiguration();
+            ParameterHandler parameterHandler = configuration.newParameterHandler(ms, parameterObject, boundSql);
+            return configuration.newResultSetHandler(this, ms, rowBounds, parameterHandler, Executor.NO_RESULT_HANDLER, boundSql)
+                    .<E>handleResultSets(((CachedResultRows) value).newStatement());
+        }
+        return (List<E>) value;
+    }
+
     @Override
     public List<BatchResult> flushStatements() throws SQLException {
         return delegate.flushStatements();
@@ -120,6 +225,7 @@ public class CachingExecutor implements Executor {
     public void commit(boolean required) throws SQLException {
         delegate.commit(required);
         tcm.commit();
+        invalidateModifiedTables();
     }
 
     @Override
@@ -130,6 +236,8 @@ public class CachingExecutor implements Executor {
             if (required) {
                 tcm.rollback();
             }
+            // 自动提交时写操作已经生效，同样需要失效
+            invalidateModifiedTables();
         }
     }
 
@@ -163,6 +271,28 @@ public class CachingExecutor implements Executor {
         delegate.clearLocalCache();
     }
 
+    private void recordModifiedTables(MappedStatement ms, Object parameterObject) {
+        if (ms.isFlushCacheRequired()) {
+            tableVersions = ms.getConfiguration().getTableVersions();
+            BoundSql boundSql = ms.getTables() == null ? ms.getBoundSql(parameterObject) : null;
+            modifiedTables.addAll(tableVersions.getWrittenTables(ms, boundSql));
+        }
+    }
+
+    private void invalidateModifiedTables() {
+        if (!modifiedTables.isEmpty()) {
+            tableVersions.invalidate(modifiedTables);
+            if (publisher != null) {
+                List<Invalidation> invalidations = new ArrayList<>(modifiedTables.size());
+                for (String table : modifiedTables) {
+                    invalidations.add(Invalidation.table(table));
+                }
+                publisher.publish(invalidations);
+            }
+            modifiedTables.clear();
+        }
+    }
+
     private void flushCacheIfRequired(MappedStatement ms) {
         Cache cache = ms.getCache();
         if (cache != null && ms.isFlushCacheRequired()) {
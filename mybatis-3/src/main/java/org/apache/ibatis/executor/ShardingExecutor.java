@@ -0,0 +1,341 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.datasource.sharding.ShardedConnection;
+import org.apache.ibatis.datasource.sharding.ShardedDataSource;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+
+/**
+ * 分片执行器，是一个执行器的包装类，环境的数据源是{@link ShardedDataSource}时使用
+ * <p>
+ * 能够确定分片的语句直接交给被包装的执行器，由连接选择分片。
+ * 没有分片键的查询在所有分片上并行执行(每个分片使用独立的执行器)，然后合并结果：
+ * 声明了{@link MappedStatement#getShardComparator()}时按照比较器归并各分片的有序结果，否则按分片顺序拼接。
+ * 分页参数在合并之后应用。
+ *
+ * @since 3.5.0
+ */
+public class ShardingExecutor implements Executor {
+
+    private final Executor delegate;
+    private final ShardedDataSource dataSource;
+    // 上一个语句使用的分片
+    private int lastShard = -1;
+    // 切换分片时提前执行的批处理结果
+    private final List<BatchResult> flushedResults = new ArrayList<>();
+
+    public ShardingExecutor(Executor delegate, ShardedDataSource dataSource) {
+        this.delegate = delegate;
+        this.dataSource = dataSource;
+        delegate.setExecutorWrapper(this);
+    }
+
+    @Override
+    public Transaction getTransaction() {
+        return delegate.getTransaction();
+    }
+
+    @Override
+    public void close(boolean forceRollback) {
+        flushedResults.clear();
+        delegate.close(forceRollback);
+    }
+
+    @Override
+    public boolean isClosed() {
+        return delegate.isClosed();
+    }
+
+    @Override
+    public int update(MappedStatement ms, Object parameter) throws SQLException {
+        Integer shard = dataSource.resolveShard(ms, parameter);
+        if (shard == null) {
+            throw new ExecutorException("Could not determine the shard of mapped statement '" + ms.getId()
+                    + "'. Declare a shardKey and pass a non null value for it.");
+        }
+        switchShard(shard);
+        return delegate.update(ms, parameter);
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler) throws SQLException {
+        BoundSql boundSql = ms.getBoundSql(parameter);
+        CacheKey key = createCacheKey(ms, parameter, rowBounds, boundSql);
+        return query(ms, parameter, rowBounds, resultHandler, key, boundSql);
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, CacheKey cacheKey, BoundSql boundSql) throws SQLException {
+        Integer shard = dataSource.resolveShard(ms, parameter);
+        if (shard != null) {
+            switchShard(shard);
+            return delegate.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql);
+        }
+        return queryAllShards(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql);
+    }
+
+    @Override
+    public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) throws SQLException {
+        Integer shard = dataSource.resolveShard(ms, parameter);
+        if (shard == null) {
+            throw new ExecutorException("Cursor queries require a shard key. Mapped statement '" + ms.getId() + "' has no shard key value.");
+        }
+        switchShard(shard);
+        return delegate.queryCursor(ms, parameter, rowBounds);
+    }
+
+    /**
+     * REUSE和BATCH执行器按照SQL复用Statement，切换分片之前需要释放已经创建的Statement
+     */
+    private void switchShard(int shard) throws SQLException {
+        if (lastShard >= 0 && lastShard != shard && !(delegate instanceof SimpleExecutor)) {
+            flushedResults.addAll(delegate.flushStatements());
+        }
+        lastShard = shard;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <E> List<E> queryAllShards(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                                       CacheKey cacheKey, BoundSql boundSql) throws SQLException {
+        ShardedConnection connection = ShardedConnection.of(delegate.getTransaction().getConnection());
+        if (connection == null) {
+            throw new ExecutorException("The connection of the transaction was not obtained from a ShardedDataSource.");
+        }
+        // 每个分片最多需要 offset + limit 行，分页在合并之后进行
+        RowBounds shardRowBounds = RowBounds.DEFAULT;
+        if (rowBounds.getLimit() != RowBounds.NO_ROW_LIMIT) {
+            shardRowBounds = new RowBounds(RowBounds.NO_ROW_OFFSET, (int) Math.min(Integer.MAX_VALUE, (long) rowBounds.getOffset() + rowBounds.getLimit()));
+        }
+        Configuration configuration = ms.getConfiguration();
+        Integer timeout = delegate.getTransaction().getTimeout();
+        int shardCount = dataSource.getShardCount();
+        List<Executor> executors = new ArrayList<>(shardCount);
+        List<FutureTask<List<Object>>> tasks = new ArrayList<>(shardCount);
+        try {
+            for (int i = 0; i < shardCount; i++) {
+                Executor executor = new SimpleExecutor(configuration, new ShardTransaction(connection.getShardConnection(i), timeout));
+                executors.add(executor);
+                RowBounds bounds = shardRowBounds;
+                tasks.add(new FutureTask<>(() -> executor.query(ms, parameter, bounds, Executor.NO_RESULT_HANDLER, cacheKey, boundSql)));
+            }
+            // 第一个分片在当前线程执行
+            for (int i = 1; i < shardCount; i++) {
+                FutureTask<List<Object>> task = tasks.get(i);
+                dataSource.getFanOutExecutor().execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        ErrorContext.instance().reset();
+                    }
+                });
+            }
+            tasks.get(0).run();
+            List<List<Object>> results = new ArrayList<>(shardCount);
+            Throwable failure = null;
+            for (FutureTask<List<Object>> task : tasks) {
+                try {
+                    results.add(task.get());
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ExecutorException("Interrupted while waiting for the shards of mapped statement '" + ms.getId() + "'.", e);
+                }
+            }
+            if (failure instanceof SQLException) {
+                throw (SQLException) failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure != null) {
+                throw new ExecutorException("Error querying the shards of mapped statement '" + ms.getId() + "'.  Cause: " + failure, failure);
+            }
+            List<Object> merged = page(merge(results, ms.getShardComparator()), rowBounds);
+            if (resultHandler != null) {
+                DefaultResultContext<Object> resultContext = new DefaultResultContext<>();
+                for (Object result : merged) {
+                    resultContext.nextResultObject(result);
+                    resultHandler.handleResult(resultContext);
+                    if (resultContext.isStopped()) {
+                        break;
+                    }
+                }
+                return Collections.emptyList();
+            }
+            return (List<E>) merged;
+        } finally {
+            for (Executor executor : executors) {
+                executor.close(false);
+            }
+        }
+    }
+
+    /**
+     * 拼接各分片的结果，或者按照比较器归并各分片的有序结果
+     */
+    private static List<Object> merge(List<List<Object>> results, Comparator<Object> comparator) {
+        int size = 0;
+        for (List<Object> result : results) {
+            size += result.size();
+        }
+        List<Object> merged = new ArrayList<>(size);
+        if (comparator == null) {
+            for (List<Object> result : results) {
+                merged.addAll(result);
+            }
+            return merged;
+        }
+        // {分片下标, 位置}，相等时先取下标小的分片，结果是稳定的
+        PriorityQueue<int[]> heads = new PriorityQueue<>(results.size(), (a, b) -> {
+            int c = comparator.compare(results.get(a[0]).get(a[1]), results.get(b[0]).get(b[1]));
+            return c != 0 ? c : Integer.compare(a[0], b[0]);
+        });
+        for (int i = 0; i < results.size(); i++) {
+            if (!results.get(i).isEmpty()) {
+                heads.add(new int[]{i, 0});
+            }
+        }
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<Object> result = results.get(head[0]);
+            merged.add(result.get(head[1]));
+            if (++head[1] < result.size()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    private static List<Object> page(List<Object> list, RowBounds rowBounds) {
+        int from = Math.min(rowBounds.getOffset(), list.size());
+        int to = (int) Math.min(list.size(), (long) from + rowBounds.getLimit());
+        if (from == 0 && to == list.size()) {
+            return list;
+        }
+        return new ArrayList<>(list.subList(from, to));
+    }
+
+    @Override
+    public List<BatchResult> flushStatements() throws SQLException {
+        List<BatchResult> results = delegate.flushStatements();
+        if (flushedResults.isEmpty()) {
+            return results;
+        }
+        List<BatchResult> all = new ArrayList<>(flushedResults);
+        all.addAll(results);
+        flushedResults.clear();
+        return all;
+    }
+
+    @Override
+    public void commit(boolean required) throws SQLException {
+        flushedResults.clear();
+        delegate.commit(required);
+    }
+
+    @Override
+    public void rollback(boolean required) throws SQLException {
+        flushedResults.clear();
+        delegate.rollback(required);
+    }
+
+    @Override
+    public CacheKey createCacheKey(MappedStatement ms, Object parameterObject, RowBounds rowBounds, BoundSql boundSql) {
+        return delegate.createCacheKey(ms, parameterObject, rowBounds, boundSql);
+    }
+
+    @Override
+    public boolean isCached(MappedStatement ms, CacheKey key) {
+        return delegate.isCached(ms, key);
+    }
+
+    @Override
+    public void deferLoad(MappedStatement ms, MetaObject resultObject, String property, CacheKey key, Class<?> targetType) {
+        delegate.deferLoad(ms, resultObject, property, key, targetType);
+    }
+
+    @Override
+    public void clearLocalCache() {
+        delegate.clearLocalCache();
+    }
+
+    @Override
+    public void setExecutorWrapper(Executor executor) {
+        // 嵌套查询经过外层的包装类(例如CachingExecutor)
+        delegate.setExecutorWrapper(executor);
+    }
+
+    /**
+     * 在单个分片上执行查询的事务，连接由{@link ShardedConnection}管理，提交、回滚和关闭都由外层事务完成
+     */
+    private static final class ShardTransaction implements Transaction {
+
+        private final Connection connection;
+        private final Integer timeout;
+
+        ShardTransaction(Connection connection, Integer timeout) {
+            this.connection = connection;
+            this.timeout = timeout;
+        }
+
+        @Override
+        public Connection getConnection() {
+            return connection;
+        }
+
+        @Override
+        public void commit() {
+            // 由外层事务提交
+        }
+
+        @Override
+        public void rollback() {
+            // 由外层事务回滚
+        }
+
+        @Override
+        public void close() {
+            // 连接由ShardedConnection关闭
+        }
+
+        @Override
+        public Integer getTimeout() {
+            return timeout;
+        }
+    }
+
+}
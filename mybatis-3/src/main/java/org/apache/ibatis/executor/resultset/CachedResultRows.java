@@ -0,0 +1,547 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.io.Serializable;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLXML;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ibatis.cache.ImmutableCacheValue;
+import org.apache.ibatis.mapping.Discriminator;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * 缓存在二级缓存中的结果行
+ * <p>
+ * 按列存储：整数、浮点数、布尔类型的列存放在原始类型数组中(null值用BitSet标记)，
+ * 其余的列存放在对象数组中，相同的字符串只保存一份。
+ * 缓存命中时通过{@link #newStatement()}得到一个基于内存的结果集，再由{@link DefaultResultSetHandler}重新映射成对象，
+ * 所以每次命中得到的都是新的对象，而缓存中保存的内容比对象图更小，也不会被调用者修改。
+ *
+ * @see org.apache.ibatis.session.SecondLevelCacheMode#ROWS
+ * @since 3.5.0
+ */
+public final class CachedResultRows implements ImmutableCacheValue, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // 与连接相关或者无法复制的列类型，不缓存
+    private static final Set<Integer> UNSUPPORTED_TYPES = new HashSet<>();
+
+    static {
+        UNSUPPORTED_TYPES.add(Types.ARRAY);
+        UNSUPPORTED_TYPES.add(Types.STRUCT);
+        UNSUPPORTED_TYPES.add(Types.REF);
+        UNSUPPORTED_TYPES.add(Types.REF_CURSOR);
+        UNSUPPORTED_TYPES.add(Types.DATALINK);
+        UNSUPPORTED_TYPES.add(Types.DISTINCT);
+        UNSUPPORTED_TYPES.add(Types.JAVA_OBJECT);
+        UNSUPPORTED_TYPES.add(Types.ROWID);
+        UNSUPPORTED_TYPES.add(Types.OTHER);
+    }
+
+    private final String[] columnLabels;
+    private final String[] columnNames;
+    private final String[] columnClassNames;
+    private final int[] columnTypes;
+    private final int rowCount;
+    private final Column[] columns;
+    // 列标签(大写)到列序号(从1开始)
+    private transient volatile Map<String, Integer> columnIndexes;
+
+    private CachedResultRows(String[] columnLabels, String[] columnNames, String[] columnClassNames, int[] columnTypes,
+                             int rowCount, Column[] columns) {
+        this.columnLabels = columnLabels;
+        this.columnNames = columnNames;
+        this.columnClassNames = columnClassNames;
+        this.columnTypes = columnTypes;
+        this.rowCount = rowCount;
+        this.columns = columns;
+    }
+
+    /**
+     * 语句的结果能否以结果行的方式缓存
+     * <p>
+     * 存储过程、多结果集以及包含嵌套查询(可能延迟加载)的语句只能缓存对象
+     */
+    public static boolean isCacheable(MappedStatement ms) {
+        if (ms.getStatementType() == StatementType.CALLABLE || ms.getResultSets() != null) {
+            return false;
+        }
+        List<ResultMap> resultMaps = ms.getResultMaps();
+        return resultMaps.size() == 1 && !hasNestedQueries(ms.getConfiguration(), resultMaps.get(0), new HashSet<>());
+    }
+
+    private static boolean hasNestedQueries(Configuration configuration, ResultMap resultMap, Set<String> visited) {
+        if (!visited.add(resultMap.getId())) {
+            return false;
+        }
+        if (resultMap.hasNestedQueries()) {
+            return true;
+        }
+        for (ResultMapping resultMapping : resultMap.getResultMappings()) {
+            String nestedResultMapId = resultMapping.getNestedResultMapId();
+            if (nestedResultMapId != null && hasNestedQueries(configuration, nestedResultMapId, visited)) {
+                return true;
+            }
+        }
+        Discriminator discriminator = resultMap.getDiscriminator();
+        if (discriminator != null) {
+            for (String caseResultMapId : discriminator.getDiscriminatorMap().values()) {
+                if (hasNestedQueries(configuration, caseResultMapId, visited)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasNestedQueries(Configuration configuration, String resultMapId, Set<String> visited) {
+        // 无法解析的结果映射按包含嵌套查询处理
+        return !configuration.hasResultMap(resultMapId)
+                || hasNestedQueries(configuration, configuration.getResultMap(resultMapId), visited);
+    }
+
+    /**
+     * 读取结果集中的行，分页时只读取到 offset + limit 为止。
+     * 包含嵌套结果映射时分页按父对象计数，调用方需要传入{@link RowBounds#DEFAULT}读取全部的行
+     *
+     * @return 包含无法缓存的列类型时返回null，此时结果集没有被读取
+     */
+    static CachedResultRows read(ResultSet rs, RowBounds rowBounds) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        String[] labels = new String[columnCount];
+        String[] names = new String[columnCount];
+        String[] classNames = new String[columnCount];
+        int[] types = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            types[i] = metaData.getColumnType(i + 1);
+            if (UNSUPPORTED_TYPES.contains(types[i])) {
+                return null;
+            }
+            labels[i] = metaData.getColumnLabel(i + 1);
+            names[i] = metaData.getColumnName(i + 1);
+            classNames[i] = metaData.getColumnClassName(i + 1);
+        }
+        long maxRows = rowBounds.getLimit() == RowBounds.NO_ROW_LIMIT
+                ? Long.MAX_VALUE : (long) rowBounds.getOffset() + rowBounds.getLimit();
+        List<Object[]> rows = new ArrayList<>();
+        while (rows.size() < maxRows && rs.next()) {
+            Object[] row = new Object[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                row[i] = materialize(rs.getObject(i + 1));
+            }
+            rows.add(row);
+        }
+        Column[] columns = new Column[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columns[i] = pack(rows, i);
+        }
+        return new CachedResultRows(labels, names, classNames, types, rows.size(), columns);
+    }
+
+    /**
+     * 将LOB读成与连接无关的值
+     */
+    private static Object materialize(Object value) throws SQLException {
+        if (value instanceof Blob) {
+            Blob blob = (Blob) value;
+            byte[] bytes = blob.getBytes(1, (int) blob.length());
+            free(blob);
+            return bytes;
+        } else if (value instanceof Clob) {
+            Clob clob = (Clob) value;
+            String string = clob.getSubString(1, (int) clob.length());
+            free(clob);
+            return string;
+        } else if (value instanceof SQLXML) {
+            SQLXML xml = (SQLXML) value;
+            String string = xml.getString();
+            xml.free();
+            return string;
+        }
+        return value;
+    }
+
+    private static void free(Blob blob) throws SQLException {
+        try {
+            blob.free();
+        } catch (SQLFeatureNotSupportedException e) {
+            // ignore
+        }
+    }
+
+    private static void free(Clob clob) throws SQLException {
+        try {
+            clob.free();
+        } catch (SQLFeatureNotSupportedException e) {
+            // ignore
+        }
+    }
+
+    private static Column pack(List<Object[]> rows, int column) {
+        int rowCount = rows.size();
+        Class<?> type = null;
+        for (Object[] row : rows) {
+            Object value = row[column];
+            if (value == null) {
+                continue;
+            }
+            if (type == null) {
+                type = value.getClass();
+            } else if (type != value.getClass()) {
+                type = Object.class;
+                break;
+            }
+        }
+        if (type == Integer.class) {
+            int[] values = new int[rowCount];
+            BitSet nulls = new BitSet();
+            for (int i = 0; i < rowCount; i++) {
+                Object value = rows.get(i)[column];
+                if (value == null) {
+                    nulls.set(i);
+                } else {
+                    values[i] = (Integer) value;
+                }
+            }
+            return new IntColumn(values, nulls);
+        } else if (type == Long.class) {
+            long[] values = new long[rowCount];
+            BitSet nulls = new BitSet();
+            for (int i = 0; i < rowCount; i++) {
+                Object value = rows.get(i)[column];
+                if (value == null) {
+                    nulls.set(i);
+                } else {
+                    values[i] = (Long) value;
+                }
+            }
+            return new LongColumn(values, nulls);
+        } else if (type == Double.class) {
+            double[] values = new double[rowCount];
+            BitSet nulls = new BitSet();
+            for (int i = 0; i < rowCount; i++) {
+                Object value = rows.get(i)[column];
+                if (value == null) {
+                    nulls.set(i);
+                } else {
+                    values[i] = (Double) value;
+                }
+            }
+            return new DoubleColumn(values, nulls);
+        } else if (type == Boolean.class) {
+            BitSet values = new BitSet();
+            BitSet nulls = new BitSet();
+            for (int i = 0; i < rowCount; i++) {
+                Object value = rows.get(i)[column];
+                if (value == null) {
+                    nulls.set(i);
+                } else if ((Boolean) value) {
+                    values.set(i);
+                }
+            }
+            return new BooleanColumn(values, nulls);
+        }
+        Object[] values = new Object[rowCount];
+        // 相同的字符串只保存一份
+        Map<String, String> strings = type == String.class ? new HashMap<>() : null;
+        for (int i = 0; i < rowCount; i++) {
+            Object value = rows.get(i)[column];
+            if (strings != null && value != null) {
+                String string = (String) value;
+                String previous = strings.putIfAbsent(string, string);
+                value = previous != null ? previous : string;
+            }
+            values[i] = value;
+        }
+        return new ObjectColumn(values);
+    }
+
+    /**
+     * @return 所有的值都可以序列化时才能放入缓存
+     */
+    boolean isSerializable() {
+        for (Column column : columns) {
+            if (!column.isSerializable()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 创建一个只包含这些结果行的Statement，用于{@link org.apache.ibatis.executor.resultset.ResultSetHandler#handleResultSets(Statement)}
+     */
+    public Statement newStatement() {
+        return CachedResultSet.newStatement(this);
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    String getColumnLabel(int column) {
+        return columnLabels[column - 1];
+    }
+
+    String getColumnName(int column) {
+        return columnNames[column - 1];
+    }
+
+    String getColumnClassName(int column) {
+        return columnClassNames[column - 1];
+    }
+
+    int getColumnType(int column) {
+        return columnTypes[column - 1];
+    }
+
+    /**
+     * @param row 从0开始
+     * @param column 从1开始
+     */
+    Object getValue(int row, int column) {
+        return columns[column - 1].get(row);
+    }
+
+    /**
+     * 根据列标签(不区分大小写)查找列序号
+     *
+     * @return 找不到时返回0
+     */
+    int findColumn(String label) {
+        Map<String, Integer> indexes = columnIndexes;
+        if (indexes == null) {
+            indexes = new HashMap<>();
+            // 同名的列取第一个，与JDBC驱动一致
+            for (int i = columnLabels.length; i > 0; i--) {
+                indexes.put(columnLabels[i - 1].toUpperCase(Locale.ENGLISH), i);
+            }
+            columnIndexes = indexes;
+        }
+        Integer index = indexes.get(label.toUpperCase(Locale.ENGLISH));
+        return index == null ? 0 : index;
+    }
+
+    private abstract static class Column implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        abstract Object get(int row);
+
+        boolean isSerializable() {
+            return true;
+        }
+    }
+
+    private static final class IntColumn extends Column {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] values;
+        private final BitSet nulls;
+
+        IntColumn(int[] values, BitSet nulls) {
+            this.values = values;
+            this.nulls = nulls;
+        }
+
+        @Override
+        Object get(int row) {
+            return nulls.get(row) ? null : values[row];
+        }
+    }
+
+    private static final class LongColumn extends Column {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long[] values;
+        private final BitSet nulls;
+
+        LongColumn(long[] values, BitSet nulls) {
+            this.values = values;
+            this.nulls = nulls;
+        }
+
+        @Override
+        Object get(int row) {
+            return nulls.get(row) ? null : values[row];
+        }
+    }
+
+    private static final class DoubleColumn extends Column {
+
+        private static final long serialVersionUID = 1L;
+
+        private final double[] values;
+        private final BitSet nulls;
+
+        DoubleColumn(double[] values, BitSet nulls) {
+            this.values = values;
+            this.nulls = nulls;
+        }
+
+        @Override
+        Object get(int row) {
+            return nulls.get(row) ? null : values[row];
+        }
+    }
+
+    private static final class BooleanColumn extends Column {
+
+        private static final long serialVersionUID = 1L;
+
+        private final BitSet values;
+        private final BitSet nulls;
+
+        BooleanColumn(BitSet values, BitSet nulls) {
+            this.values = values;
+            this.nulls = nulls;
+        }
+
+        @Override
+        Object get(int row) {
+            return nulls.get(row) ? null : values.get(row);
+        }
+    }
+
+    private static final class ObjectColumn extends Column {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Object[] values;
+
+        ObjectColumn(Object[] values) {
+            this.values = values;
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        boolean isSerializable() {
+            for (Object value : values) {
+                if (value != null && !(value instanceof Serializable)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 在执行语句的线程上传递要捕获结果行的语句
+     * <p>
+     * {@link org.apache.ibatis.executor.CachingExecutor}在查询数据库前调用{@link #begin(MappedStatement)}，
+     * {@link DefaultResultSetHandler}处理该语句的第一个结果集时通过{@link #take(MappedStatement)}取得并读取结果行。
+     */
+    public static final class Capture {
+
+        private static final ThreadLocal<Capture> CURRENT = new ThreadLocal<>();
+
+        private final MappedStatement ms;
+        private final Capture previous;
+        private boolean taken;
+        private CachedResultRows rows;
+
+        private Capture(MappedStatement ms, Capture previous) {
+            this.ms = ms;
+            this.previous = previous;
+        }
+
+        public static Capture begin(MappedStatement ms) {
+            Capture capture = new Capture(ms, CURRENT.get());
+            CURRENT.set(capture);
+            return capture;
+        }
+
+        /**
+         * 结束捕获，必须在finally中调用
+         */
+        public void end() {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+
+        /**
+         * @return 当前线程正在为该语句捕获结果行时返回Capture，每次begin只能取得一次
+         */
+        static Capture take(MappedStatement ms) {
+            Capture capture = CURRENT.get();
+            if (capture == null || capture.taken || capture.ms != ms) {
+                return null;
+            }
+            capture.taken = true;
+            return capture;
+        }
+
+        /**
+         * 读取结果集并关闭，返回读取后的内存结果集
+         *
+         * @return 包含无法缓存的列类型时返回null，此时结果集保持原样
+         */
+        ResultSet read(ResultSet rs, RowBounds rowBounds) throws SQLException {
+            CachedResultRows read = CachedResultRows.read(rs, rowBounds);
+            if (read == null) {
+                return null;
+            }
+            if (read.isSerializable()) {
+                rows = read;
+            }
+            return read.newStatement().getResultSet();
+        }
+
+        /**
+         * @return 捕获到的结果行，没有查询数据库(例如命中了本地缓存)或者结果无法缓存时返回null
+         */
+        public CachedResultRows getRows() {
+            return rows;
+        }
+    }
+
+}
@@ -0,0 +1,520 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.JDBCType;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+import javax.sql.rowset.serial.SerialBlob;
+import javax.sql.rowset.serial.SerialClob;
+
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * 基于{@link CachedResultRows}的只读、只能向前的结果集
+ * <p>
+ * 只实现了结果映射会用到的方法，按列序号或列标签(不区分大小写)取值，
+ * 可变的值(日期、字节数组)每次读取都返回副本，其余方法抛出{@link SQLFeatureNotSupportedException}。
+ */
+final class CachedResultSet implements InvocationHandler {
+
+    private final CachedResultRows rows;
+    private final Statement statement;
+    // 当前行，从0开始
+    private int row = -1;
+    private boolean wasNull;
+    private boolean closed;
+
+    private CachedResultSet(CachedResultRows rows, Statement statement) {
+        this.rows = rows;
+        this.statement = statement;
+    }
+
+    /**
+     * 创建一个只有一个结果集的Statement
+     */
+    static Statement newStatement(CachedResultRows rows) {
+        StatementHandler handler = new StatementHandler();
+        Statement statement = (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{Statement.class}, handler);
+        handler.resultSet = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                new CachedResultSet(rows, statement));
+        return statement;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] params) throws Throwable {
+        if (Object.class.equals(method.getDeclaringClass())) {
+            try {
+                return method.invoke(this, params);
+            } catch (Throwable t) {
+                throw ExceptionUtil.unwrapThrowable(t);
+            }
+        }
+        String name = method.getName();
+        switch (name) {
+            case "next":
+                checkOpen();
+                if (row < rows.getRowCount()) {
+                    row++;
+                }
+                return row < rows.getRowCount();
+            case "close":
+                closed = true;
+                return null;
+            case "isClosed":
+                return closed;
+            case "wasNull":
+                return wasNull;
+            case "getMetaData":
+                return Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(), new Class<?>[]{ResultSetMetaData.class},
+                        new MetaDataHandler(rows));
+            case "findColumn":
+                return columnIndex(params[0]);
+            case "getStatement":
+                return statement;
+            case "getType":
+                return ResultSet.TYPE_FORWARD_ONLY;
+            case "getConcurrency":
+                return ResultSet.CONCUR_READ_ONLY;
+            case "getHoldability":
+                return ResultSet.HOLD_CURSORS_OVER_COMMIT;
+            case "getFetchDirection":
+                return ResultSet.FETCH_FORWARD;
+            case "getFetchSize":
+                return 0;
+            case "setFetchSize":
+            case "setFetchDirection":
+            case "clearWarnings":
+            case "getWarnings":
+                return null;
+            case "getRow":
+                return row >= 0 && row < rows.getRowCount() ? row + 1 : 0;
+            case "isBeforeFirst":
+                return row < 0 && rows.getRowCount() > 0;
+            case "isAfterLast":
+                return row >= rows.getRowCount() && rows.getRowCount() > 0;
+            case "isFirst":
+                return row == 0 && rows.getRowCount() > 0;
+            case "isLast":
+                return row == rows.getRowCount() - 1 && row >= 0;
+            case "unwrap":
+            case "isWrapperFor":
+                return wrapper(proxy, method, params);
+            default:
+                return getValue(name, params);
+        }
+    }
+
+    private Object getValue(String name, Object[] params) throws SQLException {
+        if (params == null || params.length == 0 || !name.startsWith("get")) {
+            throw new SQLFeatureNotSupportedException("ResultSet." + name + " is not supported by cached result rows");
+        }
+        checkOpen();
+        if (row < 0 || row >= rows.getRowCount()) {
+            throw new SQLException("The cursor is not positioned on a row");
+        }
+        Object value = rows.getValue(row, columnIndex(params[0]));
+        wasNull = value == null;
+        switch (name) {
+            case "getObject":
+                if (params.length == 2 && params[1] instanceof Class) {
+                    return value == null ? null : convert(value, (Class<?>) params[1]);
+                }
+                return copy(value);
+            case "getString":
+            case "getNString":
+                return value == null ? null : value.toString();
+            case "getBoolean":
+                return value != null && toBoolean(value);
+            case "getByte":
+                return value == null ? (byte) 0 : (byte) toLong(value);
+            case "getShort":
+                return value == null ? (short) 0 : (short) toLong(value);
+            case "getInt":
+                return value == null ? 0 : (int) toLong(value);
+            case "getLong":
+                return value == null ? 0L : toLong(value);
+            case "getFloat":
+                return value == null ? 0F : (float) toDouble(value);
+            case "getDouble":
+                return value == null ? 0D : toDouble(value);
+            case "getBigDecimal":
+                if (value == null) {
+                    return null;
+                }
+                BigDecimal decimal = toBigDecimal(value);
+                return params.length == 2 ? decimal.setScale((Integer) params[1], RoundingMode.HALF_UP) : decimal;
+            case "getBytes":
+                return value == null ? null : toBytes(value);
+            case "getTimestamp":
+                return value == null ? null : toTimestamp(value);
+            case "getDate":
+                return value == null ? null : toDate(value);
+            case "getTime":
+                return value == null ? null : toTime(value);
+            case "getBlob":
+                return value == null ? null : new SerialBlob(toBytes(value));
+            case "getClob":
+                return value == null ? null : new SerialClob(value.toString().toCharArray());
+            case "getBinaryStream":
+                return value == null ? null : new ByteArrayInputStream(toBytes(value));
+            case "getAsciiStream":
+                return value == null ? null : new ByteArrayInputStream(value.toString().getBytes(StandardCharsets.US_ASCII));
+            case "getCharacterStream":
+            case "getNCharacterStream":
+                return value == null ? null : new StringReader(value.toString());
+            default:
+                throw new SQLFeatureNotSupportedException("ResultSet." + name + " is not supported by cached result rows");
+        }
+    }
+
+    private int columnIndex(Object column) throws SQLException {
+        if (column instanceof Integer) {
+            int index = (Integer) column;
+            if (index < 1 || index > rows.getColumnCount()) {
+                throw new SQLException("Invalid column index: " + index);
+            }
+            return index;
+        }
+        int index = rows.findColumn((String) column);
+        if (index == 0) {
+            throw new SQLException("Column '" + column + "' not found");
+        }
+        return index;
+    }
+
+    private void checkOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("The result set is closed");
+        }
+    }
+
+    private static Object wrapper(Object proxy, Method method, Object[] params) throws SQLException {
+        Class<?> iface = (Class<?>) params[0];
+        if ("isWrapperFor".equals(method.getName())) {
+            return iface.isInstance(proxy);
+        }
+        if (iface.isInstance(proxy)) {
+            return proxy;
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    private static Object copy(Object value) {
+        if (value instanceof byte[]) {
+            return ((byte[]) value).clone();
+        } else if (value instanceof java.util.Date) {
+            return ((java.util.Date) value).clone();
+        }
+        return value;
+    }
+
+    private static Object convert(Object value, Class<?> type) throws SQLException {
+        if (type == String.class) {
+            return value.toString();
+        } else if (type == Integer.class) {
+            return (int) toLong(value);
+        } else if (type == Long.class) {
+            return toLong(value);
+        } else if (type == Short.class) {
+            return (short) toLong(value);
+        } else if (type == Byte.class) {
+            return (byte) toLong(value);
+        } else if (type == Double.class) {
+            return toDouble(value);
+        } else if (type == Float.class) {
+            return (float) toDouble(value);
+        } else if (type == Boolean.class) {
+            return toBoolean(value);
+        } else if (type == BigDecimal.class) {
+            return toBigDecimal(value);
+        } else if (type == BigInteger.class) {
+            return toBigDecimal(value).toBigInteger();
+        } else if (type == byte[].class) {
+            return toBytes(value);
+        } else if (type == Timestamp.class || type == java.util.Date.class) {
+            return toTimestamp(value);
+        } else if (type == Date.class) {
+            return toDate(value);
+        } else if (type == Time.class) {
+            return toTime(value);
+        } else if (type == LocalDateTime.class) {
+            return toTimestamp(value).toLocalDateTime();
+        } else if (type == LocalDate.class) {
+            return value instanceof Date ? ((Date) value).toLocalDate() : toTimestamp(value).toLocalDateTime().toLocalDate();
+        } else if (type == LocalTime.class) {
+            return value instanceof Time ? ((Time) value).toLocalTime() : toTimestamp(value).toLocalDateTime().toLocalTime();
+        } else if (type == Instant.class) {
+            return toTimestamp(value).toInstant();
+        } else if (type.isInstance(value)) {
+            return copy(value);
+        }
+        throw cannotConvert(value, type);
+    }
+
+    private static boolean toBoolean(Object value) throws SQLException {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        } else if (value instanceof Number) {
+            return ((Number) value).doubleValue() != 0;
+        } else if (value instanceof String) {
+            String string = ((String) value).trim();
+            if ("1".equals(string) || "true".equalsIgnoreCase(string)) {
+                return true;
+            } else if ("0".equals(string) || "false".equalsIgnoreCase(string)) {
+                return false;
+            }
+        }
+        throw cannotConvert(value, boolean.class);
+    }
+
+    private static long toLong(Object value) throws SQLException {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        } else if (value instanceof String) {
+            return parse((String) value).longValue();
+        }
+        throw cannotConvert(value, long.class);
+    }
+
+    private static double toDouble(Object value) throws SQLException {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        } else if (value instanceof String) {
+            return parse((String) value).doubleValue();
+        }
+        throw cannotConvert(value, double.class);
+    }
+
+    private static BigDecimal toBigDecimal(Object value) throws SQLException {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        } else if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            return BigDecimal.valueOf(((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            return BigDecimal.valueOf(((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? BigDecimal.ONE : BigDecimal.ZERO;
+        } else if (value instanceof String) {
+            return parse((String) value);
+        }
+        throw cannotConvert(value, BigDecimal.class);
+    }
+
+    private static BigDecimal parse(String value) throws SQLException {
+        try {
+            return new BigDecimal(value.trim());
+        } catch (NumberFormatException e) {
+            throw new SQLException("Cannot convert '" + value + "' to a number", e);
+        }
+    }
+
+    private static byte[] toBytes(Object value) throws SQLException {
+        if (value instanceof byte[]) {
+            return ((byte[]) value).clone();
+        } else if (value instanceof String) {
+            return ((String) value).getBytes(StandardCharsets.UTF_8);
+        }
+        throw cannotConvert(value, byte[].class);
+    }
+
+    private static Timestamp toTimestamp(Object value) throws SQLException {
+        if (value instanceof Timestamp) {
+            return (Timestamp) ((Timestamp) value).clone();
+        } else if (value instanceof java.util.Date) {
+            return new Timestamp(((java.util.Date) value).getTime());
+        } else if (value instanceof LocalDateTime) {
+            return Timestamp.valueOf((LocalDateTime) value);
+        } else if (value instanceof String) {
+            try {
+                return Timestamp.valueOf(((String) value).trim());
+            } catch (IllegalArgumentException e) {
+                throw new SQLException("Cannot convert '" + value + "' to a timestamp", e);
+            }
+        }
+        throw cannotConvert(value, Timestamp.class);
+    }
+
+    private static Date toDate(Object value) throws SQLException {
+        if (value instanceof Date) {
+            return (Date) ((Date) value).clone();
+        } else if (value instanceof Time) {
+            throw cannotConvert(value, Date.class);
+        } else if (value instanceof String) {
+            try {
+                return Date.valueOf(((String) value).trim());
+            } catch (IllegalArgumentException e) {
+                throw new SQLException("Cannot convert '" + value + "' to a date", e);
+            }
+        }
+        return Date.valueOf(toTimestamp(value).toLocalDateTime().toLocalDate());
+    }
+
+    private static Time toTime(Object value) throws SQLException {
+        if (value instanceof Time) {
+            return (Time) ((Time) value).clone();
+        } else if (value instanceof Date) {
+            throw cannotConvert(value, Time.class);
+        } else if (value instanceof String) {
+            try {
+                return Time.valueOf(((String) value).trim());
+            } catch (IllegalArgumentException e) {
+                throw new SQLException("Cannot convert '" + value + "' to a time", e);
+            }
+        }
+        return new Time(toTimestamp(value).getTime());
+    }
+
+    private static SQLException cannotConvert(Object value, Class<?> type) {
+        return new SQLException("Cannot convert " + value.getClass().getName() + " to " + type.getName());
+    }
+
+    /**
+     * 结果集的元数据
+     */
+    private static final class MetaDataHandler implements InvocationHandler {
+
+        private final CachedResultRows rows;
+
+        MetaDataHandler(CachedResultRows rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] params) throws Throwable {
+            if (Object.class.equals(method.getDeclaringClass())) {
+                try {
+                    return method.invoke(this, params);
+                } catch (Throwable t) {
+                    throw ExceptionUtil.unwrapThrowable(t);
+                }
+            }
+            String name = method.getName();
+            if ("getColumnCount".equals(name)) {
+                return rows.getColumnCount();
+            } else if ("unwrap".equals(name) || "isWrapperFor".equals(name)) {
+                return wrapper(proxy, method, params);
+            }
+            int column = (Integer) params[0];
+            if (column < 1 || column > rows.getColumnCount()) {
+                throw new SQLException("Invalid column index: " + column);
+            }
+            switch (name) {
+                case "getColumnLabel":
+                    return rows.getColumnLabel(column);
+                case "getColumnName":
+                    return rows.getColumnName(column);
+                case "getColumnClassName":
+                    return rows.getColumnClassName(column);
+                case "getColumnType":
+                    return rows.getColumnType(column);
+                case "getColumnTypeName":
+                    try {
+                        return JDBCType.valueOf(rows.getColumnType(column)).getName();
+                    } catch (IllegalArgumentException e) {
+                        return "OTHER";
+                    }
+                case "isNullable":
+                    return ResultSetMetaData.columnNullableUnknown;
+                case "isReadOnly":
+                    return true;
+                case "isWritable":
+                case "isDefinitelyWritable":
+                    return false;
+                default:
+                    throw new SQLFeatureNotSupportedException("ResultSetMetaData." + name + " is not supported by cached result rows");
+            }
+        }
+    }
+
+    /**
+     * 只返回一个结果集的Statement
+     */
+    private static final class StatementHandler implements InvocationHandler {
+
+        private ResultSet resultSet;
+        private boolean resultSetReturned;
+        private boolean closed;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] params) throws Throwable {
+            if (Object.class.equals(method.getDeclaringClass())) {
+                try {
+                    return method.invoke(this, params);
+                } catch (Throwable t) {
+                    throw ExceptionUtil.unwrapThrowable(t);
+                }
+            }
+            switch (method.getName()) {
+                case "getResultSet":
+                    if (resultSetReturned) {
+                        return null;
+                    }
+                    resultSetReturned = true;
+                    return resultSet;
+                case "getMoreResults":
+                    if (resultSetReturned) {
+                        resultSet.close();
+                    }
+                    resultSetReturned = true;
+                    return false;
+                case "getUpdateCount":
+                    return -1;
+                case "close":
+                    resultSet.close();
+                    closed = true;
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "getWarnings":
+                case "clearWarnings":
+                    return null;
+                case "unwrap":
+                case "isWrapperFor":
+                    return wrapper(proxy, method, params);
+                default:
+                    throw new SQLFeatureNotSupportedException("Statement." + method.getName() + " is not supported by cached result rows");
+            }
+        }
+    }
+
+}
@@ -38,14 +38,26 @@ import org.apache.ibatis.mapping.ResultMap;
 import org.apache.ibatis.mapping.ResultMapping;
 import org.apache.ibatis.reflection.MetaClass;
 import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.ReflectionException;
 import org.apache.ibatis.reflection.ReflectorFactory;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.reflection.invoker.PrimitiveSetter;
+import org.apache.ibatis.reflection.wrapper.DefaultObjectWrapperFactory;
+import org.apache.ibatis.reflection.wrapper.ObjectWrapper;
 import org.apache.ibatis.session.AutoMappingBehavior;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultContext;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.type.BooleanTypeHandler;
+import org.apache.ibatis.type.ByteTypeHandler;
+import org.apache.ibatis.type.DoubleTypeHandler;
+import org.apache.ibatis.type.FloatTypeHandler;
+import org.apache.ibatis.type.IntegerTypeHandler;
 import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.LongTypeHandler;
+import org.apache.ibatis.type.PrimitiveTypeHandler;
+import org.apache.ibatis.type.ShortTypeHandler;
 import org.apache.ibatis.type.TypeHandler;
 import org.apache.ibatis.type.TypeHandlerRegistry;
 
@@ -55,6 +67,8 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -74,6 +88,12 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 
     //延迟对象
     private static final Object DEFERED = new Object();
+
+    // 以原始类型读取列值的内置类型处理器，只匹配这些类本身，子类可能覆盖了getNullableResult
+    private static final Set<Class<?>> PRIMITIVE_TYPE_HANDLERS = new HashSet<>(Arrays.asList(
+            BooleanTypeHandler.class, ByteTypeHandler.class, ShortTypeHandler.class, IntegerTypeHandler.class,
+            LongTypeHandler.class, FloatTypeHandler.class, DoubleTypeHandler.class));
+
     // 执行器
     private final Executor executor;
     // 主要配置信息类
@@ -130,12 +150,22 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         private final TypeHandler<?> typeHandler;
         // 是否原始类型
         private final boolean primitive;
+        // 原始类型设置器及其对应的结果对象类型，不能按原始类型映射时为null
+        private final PrimitiveSetter primitiveSetter;
+        private final Class<?> primitiveTargetType;
 
         public UnMappedColumnAutoMapping(String column, String property, TypeHandler<?> typeHandler, boolean primitive) {
+            this(column, property, typeHandler, primitive, null, null);
+        }
+
+        public UnMappedColumnAutoMapping(String column, String property, TypeHandler<?> typeHandler, boolean primitive,
+                                         PrimitiveSetter primitiveSetter, Class<?> primitiveTargetType) {
             this.column = column;
             this.property = property;
             this.typeHandler = typeHandler;
             this.primitive = primitive;
+            this.primitiveSetter = primitiveSetter;
+            this.primitiveTargetType = primitiveTargetType;
         }
     }
 
@@ -217,6 +247,9 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 
         int resultSetCount = 0;
         ResultSetWrapper rsw = getFirstResultSet(stmt);
+        if (rsw != null) {
+            rsw = captureRows(rsw);
+        }
 
         List<ResultMap> resultMaps = mappedStatement.getResultMaps();
         int resultMapCount = resultMaps.size();
@@ -282,6 +315,23 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         return rs != null ? new ResultSetWrapper(rs, configuration) : null;
     }
 
+    /**
+     * 二级缓存以结果行方式缓存该语句时，先将结果行读入内存，再从内存中映射
+     */
+    private ResultSetWrapper captureRows(ResultSetWrapper rsw) throws SQLException {
+        CachedResultRows.Capture capture = CachedResultRows.Capture.take(mappedStatement);
+        if (capture == null) {
+            return rsw;
+        }
+        // 嵌套结果映射的分页按父对象计数，与行数无关，需要读取全部的行
+        ResultSet rows = capture.read(rsw.getResultSet(), mappedStatement.hasNestedResultMaps() ? RowBounds.DEFAULT : rowBounds);
+        if (rows == null) {
+            return rsw;
+        }
+        closeResultSet(rsw.getResultSet());
+        return new ResultSetWrapper(rows, configuration);
+    }
+
     private ResultSetWrapper getNextResultSet(Statement stmt) {
         // Making this method tolerant of bad JDBC drivers
         try {
@@ -477,6 +527,16 @@ public class DefaultResultSetHandler implements ResultSetHandler {
             if (propertyMapping.isCompositeResult()
                     || (column != null && mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH)))
                     || propertyMapping.getResultSet() != null) {
+                // 列和属性都是原始类型时，直接以原始类型读取并设置，不装箱
+                if (column != null && !propertyMapping.isCompositeResult() && propertyMapping.getNestedQueryId() == null
+                        && propertyMapping.getResultSet() == null) {
+                    PrimitiveSetter primitiveSetter = resolvePrimitiveSetter(metaObject, propertyMapping.getProperty(), propertyMapping.getTypeHandler());
+                    if (primitiveSetter != null) {
+                        foundValues = applyPrimitiveResult(rsw.getResultSet(), column, (PrimitiveTypeHandler<?>) propertyMapping.getTypeHandler(),
+                                primitiveSetter, metaObject.getOriginalObject(), propertyMapping.getProperty()) || foundValues;
+                        continue;
+                    }
+                }
                 Object value = getPropertyMappingValue(rsw.getResultSet(), metaObject, propertyMapping, lazyLoader, columnPrefix);
                 // issue #541 make property optional
                 final String property = propertyMapping.getProperty();
@@ -537,7 +597,9 @@ public class DefaultResultSetHandler implements ResultSetHandler {
                     final Class<?> propertyType = metaObject.getSetterType(property);
                     if (typeHandlerRegistry.hasTypeHandler(propertyType, rsw.getJdbcType(columnName))) {
                         final TypeHandler<?> typeHandler = rsw.getTypeHandler(propertyType, columnName);
-                        autoMapping.add(new UnMappedColumnAutoMapping(columnName, property, typeHandler, propertyType.isPrimitive()));
+                        PrimitiveSetter primitiveSetter = resolvePrimitiveSetter(metaObject, property, typeHandler);
+                        autoMapping.add(new UnMappedColumnAutoMapping(columnName, property, typeHandler, propertyType.isPrimitive(),
+                                primitiveSetter, primitiveSetter != null ? metaObject.getOriginalObject().getClass() : null));
                     } else {
                         configuration.getAutoMappingUnknownColumnBehavior()
                                 .doAction(mappedStatement, columnName, property, propertyType);
@@ -557,6 +619,11 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         boolean foundValues = false;
         if (!autoMapping.isEmpty()) {
             for (UnMappedColumnAutoMapping mapping : autoMapping) {
+                if (mapping.primitiveSetter != null && mapping.primitiveTargetType == metaObject.getOriginalObject().getClass()) {
+                    foundValues = applyPrimitiveResult(rsw.getResultSet(), mapping.column, (PrimitiveTypeHandler<?>) mapping.typeHandler,
+                            mapping.primitiveSetter, metaObject.getOriginalObject(), mapping.property) || foundValues;
+                    continue;
+                }
                 final Object value = mapping.typeHandler.getResult(rsw.getResultSet(), mapping.column);
                 if (value != null) {
                     foundValues = true;
@@ -570,6 +637,103 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         return foundValues;
     }
 
+    //
+    // PRIMITIVE MAPPINGS
+    //
+
+    /**
+     * 列的类型处理器与目标属性都是同一种原始类型时，返回该属性的原始类型设置器，否则返回null
+     */
+    private PrimitiveSetter resolvePrimitiveSetter(MetaObject metaObject, String property, TypeHandler<?> typeHandler) {
+        if (typeHandler == null || !PRIMITIVE_TYPE_HANDLERS.contains(typeHandler.getClass()) || property == null
+                || property.indexOf('.') >= 0 || property.indexOf('[') >= 0
+                || !(configuration.getObjectWrapperFactory() instanceof DefaultObjectWrapperFactory)) {
+            return null;
+        }
+        Object target = metaObject.getOriginalObject();
+        if (target == null || target instanceof Map || target instanceof Collection || target instanceof ObjectWrapper) {
+            return null;
+        }
+        PrimitiveSetter primitiveSetter = configuration.getReflectorFactory().findForClass(target.getClass()).getPrimitiveSetter(property);
+        if (primitiveSetter == null || primitiveSetter.getType() != ((PrimitiveTypeHandler<?>) typeHandler).getPrimitiveType()) {
+            return null;
+        }
+        return primitiveSetter;
+    }
+
+    /**
+     * 以原始类型读取列值并设置到属性上，SQL NULL时不调用设置器(与原始类型属性不接受null的处理一致)
+     *
+     * @return 列值不为SQL NULL时返回true
+     */
+    private boolean applyPrimitiveResult(ResultSet rs, String column, PrimitiveTypeHandler<?> typeHandler, PrimitiveSetter primitiveSetter,
+                                         Object target, String property) throws SQLException {
+        final Class<?> type = primitiveSetter.getType();
+        boolean read = false;
+        try {
+            if (type == int.class) {
+                int value = typeHandler.getInt(rs, column);
+                if (value == 0 && rs.wasNull()) {
+                    return false;
+                }
+                read = true;
+                primitiveSetter.setInt(target, value);
+            } else if (type == long.class) {
+                long value = typeHandler.getLong(rs, column);
+                if (value == 0 && rs.wasNull()) {
+                    return false;
+                }
+                read = true;
+                primitiveSetter.setLong(target, value);
+            } else if (type == double.class) {
+                double value = typeHandler.getDouble(rs, column);
+                if (value == 0 && rs.wasNull()) {
+                    return false;
+                }
+                read = true;
+                primitiveSetter.setDouble(target, value);
+            } else if (type == float.class) {
+                float value = typeHandler.getFloat(rs, column);
+                if (value == 0 && rs.wasNull()) {
+                    return false;
+                }
+                read = true;
+                primitiveSetter.setFloat(target, value);
+            } else if (type == short.class) {
+                short value = typeHandler.getShort(rs, column);
+                if (value == 0 && rs.wasNull()) {
+                    return false;
+                }
+                read = true;
+                primitiveSetter.setShort(target, value);
+            } else if (type == byte.class) {
+                byte value = typeHandler.getByte(rs, column);
+                if (value == 0 && rs.wasNull()) {
+                    return false;
+                }
+                read = true;
+                primitiveSetter.setByte(target, value);
+            } else if (type == boolean.class) {
+                boolean value = typeHandler.getBoolean(rs, column);
+                if (!value && rs.wasNull()) {
+                    return false;
+                }
+                read = true;
+                primitiveSetter.setBoolean(target, value);
+            } else {
+                throw new ExecutorException("Unsupported primitive type " + type + " for property '" + property + "'");
+            }
+            return true;
+        } catch (ExecutorException e) {
+            throw e;
+        } catch (Throwable t) {
+            if (!read) {
+                throw new ResultMapException("Error attempting to get column '" + column + "' from result set.  Cause: " + t, t);
+            }
+            throw new ReflectionException("Could not set property '" + property + "' of '" + target.getClass() + "' Cause: " + t.toString(), t);
+        }
+    }
+
     // MULTIPLE RESULT SETS
 
     private void linkToParents(ResultSet rs, ResultMapping parentMapping, Object rowValue) throws SQLException {
@@ -19,6 +19,7 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 
+import org.apache.ibatis.datasource.StatementContext;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ExecutorException;
@@ -98,6 +99,8 @@ public abstract class BaseStatementHandler implements StatementHandler {
     public Statement prepare(Connection connection, Integer transactionTimeout) throws SQLException {
         ErrorContext.instance().sql(boundSql.getSql());
         Statement statement = null;
+        // 路由数据源根据映射语句选择连接
+        StatementContext previous = StatementContext.enter(mappedStatement, boundSql.getParameterObject());
         try {
             statement = instantiateStatement(connection);
             setStatementTimeout(statement, transactionTimeout);
@@ -109,6 +112,8 @@ public abstract class BaseStatementHandler implements StatementHandler {
         } catch (Exception e) {
             closeStatement(statement);
             throw new ExecutorException("Error preparing statement.  Cause: " + e, e);
+        } finally {
+            StatementContext.restore(previous);
         }
     }
 
@@ -69,6 +69,10 @@ public class BoundSql {
         return parameterObject;
     }
 
+    public boolean hasAdditionalParameters() {
+        return !additionalParameters.isEmpty();
+    }
+
     public boolean hasAdditionalParameter(String name) {
         String paramName = new PropertyTokenizer(name).getName();
         return additionalParameters.containsKey(paramName);
@@ -23,12 +23,17 @@ import java.util.Properties;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheStatistics;
+import org.apache.ibatis.cache.CopyStrategy;
 import org.apache.ibatis.builder.InitializingObject;
 import org.apache.ibatis.cache.decorators.BlockingCache;
+import org.apache.ibatis.cache.decorators.ExpiringCache;
 import org.apache.ibatis.cache.decorators.LoggingCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.ScheduledCache;
 import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.decorators.SingleFlightCache;
+import org.apache.ibatis.cache.decorators.StatisticsCache;
 import org.apache.ibatis.cache.decorators.SynchronizedCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.reflection.MetaObject;
@@ -57,6 +62,12 @@ public class CacheBuilder {
     private Properties properties;
     // 是否阻塞，如果阻塞则为缓存增加阻塞装饰器，实现缓存调用的同步
     private boolean blocking;
+    // 是否合并同一个key的并发加载，开启时替代阻塞装饰器
+    private boolean singleFlight;
+    // 读写缓存的复制策略，为空时使用Java序列化
+    private CopyStrategy copyStrategy;
+    // 统计信息，不为空时为缓存增加统计装饰器
+    private CacheStatistics statistics;
 
     public CacheBuilder(String id) {
         this.id = id;
@@ -95,6 +106,30 @@ public class CacheBuilder {
         return this;
     }
 
+    /**
+     * @since 3.5.0
+     */
+    public CacheBuilder singleFlight(boolean singleFlight) {
+        this.singleFlight = singleFlight;
+        return this;
+    }
+
+    /**
+     * @since 3.5.0
+     */
+    public CacheBuilder copyStrategy(CopyStrategy copyStrategy) {
+        this.copyStrategy = copyStrategy;
+        return this;
+    }
+
+    /**
+     * @since 3.5.0
+     */
+    public CacheBuilder statistics(CacheStatistics statistics) {
+        this.statistics = statistics;
+        return this;
+    }
+
     public CacheBuilder properties(Properties properties) {
         this.properties = properties;
         return this;
@@ -116,8 +151,14 @@ public class CacheBuilder {
                 setCacheProperties(cache);
             }
             cache = setStandardDecorators(cache);
-        } else if (!LoggingCache.class.isAssignableFrom(cache.getClass())) {
-            cache = new LoggingCache(cache);
+        } else {
+            boolean logging = LoggingCache.class.isAssignableFrom(cache.getClass());
+            if (statistics != null) {
+                cache = new StatisticsCache(cache, statistics);
+            }
+            if (!logging) {
+                cache = new LoggingCache(cache);
+            }
         }
         return cache;
     }
@@ -137,7 +178,7 @@ public class CacheBuilder {
 
     /**
      *  使用装饰器模式，装饰真正实现的缓存
-     *   顺序： ScheduledCache->SerializedCache->LoggingCache->SynchronizedCache->BlockingCache
+     *   顺序： ExpiringCache->ScheduledCache->StatisticsCache->SerializedCache->LoggingCache->SynchronizedCache->BlockingCache(SingleFlightCache)
      * @param cache
      * @return
      */
@@ -147,16 +188,27 @@ public class CacheBuilder {
             if (size != null && metaCache.hasSetter("size")) {
                 metaCache.setValue("size", size);
             }
+            // 按条目过期，expireAfterWrite、expireAfterAccess、refreshAhead等属性
+            cache = new ExpiringCache(cache);
+            setCacheProperties(cache);
             if (clearInterval != null) {
                 cache = new ScheduledCache(cache);
                 ((ScheduledCache) cache).setClearInterval(clearInterval);
             }
+            // 在序列化之前统计，估算的是缓存中实际保存的值的大小
+            if (statistics != null) {
+                cache = new StatisticsCache(cache, statistics);
+            }
             if (readWrite) {
-                cache = new SerializedCache(cache);
+                cache = copyStrategy == null ? new SerializedCache(cache) : new SerializedCache(cache, copyStrategy);
             }
             cache = new LoggingCache(cache);
             cache = new SynchronizedCache(cache);
-            if (blocking) {
+            if (singleFlight) {
+                cache = new SingleFlightCache(cache);
+                // maxInFlight、timeout等属性
+                setCacheProperties(cache);
+            } else if (blocking) {
                 cache = new BlockingCache(cache);
             }
             return cache;
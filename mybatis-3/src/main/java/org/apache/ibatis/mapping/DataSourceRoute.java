@@ -0,0 +1,30 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.mapping;
+
+/**
+ * 语句在读写分离数据源中的路由
+ *
+ * @since 3.5.0
+ */
+public enum DataSourceRoute {
+    // 查询语句在没有写操作的会话中使用从库，其余使用主库
+    DEFAULT,
+    // 总是使用主库
+    PRIMARY,
+    // 总是使用从库，即使会话中已经有写操作(不保证读到自己的写入)
+    REPLICA
+}
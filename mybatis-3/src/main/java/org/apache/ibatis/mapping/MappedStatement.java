@@ -17,9 +17,12 @@ package org.apache.ibatis.mapping;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheExpiry;
+import org.apache.ibatis.cache.TableVersions;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.executor.keygen.NoKeyGenerator;
@@ -59,6 +62,18 @@ public final class MappedStatement {
     private boolean flushCacheRequired;
     // 是否使用缓存，将会导致本条语句的结果被二级缓存，默认值：对 select 元素为 true。
     private boolean useCache;
+    // 二级缓存条目的过期策略，为null时使用缓存的默认值
+    private CacheExpiry cacheExpiry;
+    // 读取(查询)或修改(写操作)的表，为null时从SQL中识别
+    private String[] tables;
+    // 在读写分离数据源中的路由
+    private DataSourceRoute dataSourceRoute;
+    // 分片键，参数对象中用来选择分片的属性
+    private String shardKey;
+    // 没有分片键的查询在所有分片上执行后，合并各分片有序结果使用的比较器，为null时直接拼接
+    private Comparator<Object> shardComparator;
+    // 获取连接时使用的连接池分区
+    private String connectionPartition;
     // 这个设置仅针对嵌套结果 select 语句适用：如果为 true，就是假设包含了嵌套结果集或是分组了，这样的话当返回一个主结果行的时候，就不会发生有对前面结果集的引用的情况。
     // 这就使得在获取嵌套的结果集的时候不至于导致内存不够用。默认值：false。
     private boolean resultOrdered;
@@ -94,6 +109,7 @@ public final class MappedStatement {
             mappedStatement.sqlSource = sqlSource;
             mappedStatement.statementType = StatementType.PREPARED;
             mappedStatement.resultSetType = ResultSetType.DEFAULT;
+            mappedStatement.dataSourceRoute = DataSourceRoute.DEFAULT;
             mappedStatement.parameterMap = new ParameterMap.Builder(configuration, "defaultParameterMap", null, new ArrayList<>()).build();
             mappedStatement.resultMaps = new ArrayList<>();
             mappedStatement.sqlCommandType = sqlCommandType;
@@ -163,6 +179,63 @@ public final class MappedStatement {
             return this;
         }
 
+        /**
+         * @since 3.5.0
+         */
+        public Builder cacheExpiry(CacheExpiry cacheExpiry) {
+            mappedStatement.cacheExpiry = cacheExpiry;
+            return this;
+        }
+
+        /**
+         * @param tables 逗号分隔的表名
+         * @since 3.5.0
+         */
+        public Builder tables(String tables) {
+            String[] names = delimitedStringToArray(tables);
+            if (names != null) {
+                for (int i = 0; i < names.length; i++) {
+                    // 与从SQL中识别出的表名一致，否则 app.person 和 person 的版本号不同
+                    names[i] = TableVersions.normalizeTableName(names[i]);
+                }
+            }
+            mappedStatement.tables = names;
+            return this;
+        }
+
+        /**
+         * @since 3.5.0
+         */
+        public Builder dataSourceRoute(DataSourceRoute dataSourceRoute) {
+            mappedStatement.dataSourceRoute = dataSourceRoute == null ? DataSourceRoute.DEFAULT : dataSourceRoute;
+            return this;
+        }
+
+        /**
+         * @since 3.5.0
+         */
+        public Builder shardKey(String shardKey) {
+            mappedStatement.shardKey = shardKey;
+            return this;
+        }
+
+        /**
+         * @since 3.5.0
+         */
+        @SuppressWarnings("unchecked")
+        public Builder shardComparator(Comparator<?> shardComparator) {
+            mappedStatement.shardComparator = (Comparator<Object>) shardComparator;
+            return this;
+        }
+
+        /**
+         * @since 3.5.0
+         */
+        public Builder connectionPartition(String connectionPartition) {
+            mappedStatement.connectionPartition = connectionPartition;
+            return this;
+        }
+
         public Builder resultOrdered(boolean resultOrdered) {
             mappedStatement.resultOrdered = resultOrdered;
             return this;
@@ -281,6 +354,48 @@ public final class MappedStatement {
         return useCache;
     }
 
+    public CacheExpiry getCacheExpiry() {
+        return cacheExpiry;
+    }
+
+    /**
+     * @return 声明的读取或修改的表(小写)，没有声明时返回null
+     */
+    public String[] getTables() {
+        return tables;
+    }
+
+    /**
+     * @since 3.5.0
+     */
+    public DataSourceRoute getDataSourceRoute() {
+        return dataSourceRoute;
+    }
+
+    /**
+     * @return 分片键，没有声明时返回null
+     * @since 3.5.0
+     */
+    public String getShardKey() {
+        return shardKey;
+    }
+
+    /**
+     * @return 合并各分片结果的比较器，没有声明时返回null
+     * @since 3.5.0
+     */
+    public Comparator<Object> getShardComparator() {
+        return shardComparator;
+    }
+
+    /**
+     * @return 获取连接时使用的连接池分区，没有声明时返回null
+     * @since 3.5.0
+     */
+    public String getConnectionPartition() {
+        return connectionPartition;
+    }
+
     public boolean isResultOrdered() {
         return resultOrdered;
     }
@@ -31,10 +31,12 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.ibatis.reflection.invoker.GetFieldInvoker;
 import org.apache.ibatis.reflection.invoker.Invoker;
 import org.apache.ibatis.reflection.invoker.MethodInvoker;
+import org.apache.ibatis.reflection.invoker.PrimitiveSetter;
 import org.apache.ibatis.reflection.invoker.SetFieldInvoker;
 import org.apache.ibatis.reflection.property.PropertyNamer;
 
@@ -58,6 +60,8 @@ public class Reflector {
     //setter getter类型
     private final Map<String, Class<?>> setTypes = new HashMap<>();
     private final Map<String, Class<?>> getTypes = new HashMap<>();
+    //原始类型属性的设置器，按需创建
+    private final Map<String, PrimitiveSetter> primitiveSetters = new ConcurrentHashMap<>();
     //无参构造器
     private Constructor<?> defaultConstructor;
 
@@ -420,6 +424,24 @@ public class Reflector {
         return method;
     }
 
+    /**
+     * 获取原始类型属性的设置器，设置时不需要装箱
+     *
+     * @param propertyName - the name of the property
+     * @return 属性不存在、不是原始类型或者无法访问时返回null
+     */
+    public PrimitiveSetter getPrimitiveSetter(String propertyName) {
+        PrimitiveSetter setter = primitiveSetters.get(propertyName);
+        if (setter == null) {
+            Invoker method = setMethods.get(propertyName);
+            if (method == null) {
+                return null;
+            }
+            setter = primitiveSetters.computeIfAbsent(propertyName, k -> PrimitiveSetter.forInvoker(method));
+        }
+        return setter;
+    }
+
     /**
      * Gets the type for a property setter
      *
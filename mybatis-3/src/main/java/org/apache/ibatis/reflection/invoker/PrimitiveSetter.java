@@ -0,0 +1,120 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import org.apache.ibatis.lang.UsesJava7;
+import org.apache.ibatis.reflection.Reflector;
+
+/**
+ * 原始类型属性设置器
+ * <p>
+ * 基于MethodHandle直接以原始类型调用setter方法或设置字段，
+ * 不需要像{@link Invoker#invoke(Object, Object[])}那样装箱并创建参数数组。
+ * 每个实例只支持与{@link #getType()}一致的那一个setXxx方法。
+ * (invokeExact是签名多态方法，animal-sniffer无法识别，因此标注{@link UsesJava7})
+ */
+@UsesJava7
+public final class PrimitiveSetter {
+
+  private final Class<?> type;
+  // 类型为 (Object, type)void
+  private final MethodHandle handle;
+
+  private PrimitiveSetter(Class<?> type, MethodHandle handle) {
+    this.type = type;
+    this.handle = handle.asType(MethodType.methodType(void.class, Object.class, type));
+  }
+
+  /**
+   * 根据setter的Invoker创建原始类型设置器
+   *
+   * @return 非原始类型属性，或者无法访问该成员时返回null
+   */
+  public static PrimitiveSetter forInvoker(Invoker invoker) {
+    if (!invoker.getType().isPrimitive()) {
+      return null;
+    }
+    try {
+      if (invoker instanceof SetFieldInvoker) {
+        Field field = ((SetFieldInvoker) invoker).getField();
+        if (!makeAccessible(field)) {
+          return null;
+        }
+        return new PrimitiveSetter(invoker.getType(), MethodHandles.lookup().unreflectSetter(field));
+      } else if (invoker instanceof MethodInvoker) {
+        Method method = ((MethodInvoker) invoker).getMethod();
+        if (method.getParameterTypes().length != 1 || !makeAccessible(method)) {
+          return null;
+        }
+        return new PrimitiveSetter(invoker.getType(), MethodHandles.lookup().unreflect(method));
+      }
+    } catch (IllegalAccessException e) {
+      // 无法访问的成员只能使用普通的Invoker
+    }
+    return null;
+  }
+
+  private static boolean makeAccessible(AccessibleObject member) {
+    if (member.isAccessible()) {
+      return true;
+    }
+    if (!Reflector.canControlMemberAccessible()) {
+      return false;
+    }
+    member.setAccessible(true);
+    return true;
+  }
+
+  public Class<?> getType() {
+    return type;
+  }
+
+  public void setBoolean(Object target, boolean value) throws Throwable {
+    handle.invokeExact(target, value);
+  }
+
+  public void setByte(Object target, byte value) throws Throwable {
+    handle.invokeExact(target, value);
+  }
+
+  public void setShort(Object target, short value) throws Throwable {
+    handle.invokeExact(target, value);
+  }
+
+  public void setInt(Object target, int value) throws Throwable {
+    handle.invokeExact(target, value);
+  }
+
+  public void setLong(Object target, long value) throws Throwable {
+    handle.invokeExact(target, value);
+  }
+
+  public void setFloat(Object target, float value) throws Throwable {
+    handle.invokeExact(target, value);
+  }
+
+  public void setDouble(Object target, double value) throws Throwable {
+    handle.invokeExact(target, value);
+  }
+
+}
@@ -72,41 +72,56 @@ public class DefaultParameterHandler implements ParameterHandler {
     public void setParameters(PreparedStatement ps) {
         ErrorContext.instance().activity("setting parameters").object(mappedStatement.getParameterMap().getId());
         List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
-        if (parameterMappings != null) {
-            for (int i = 0; i < parameterMappings.size(); i++) {
-                ParameterMapping parameterMapping = parameterMappings.get(i);
-                // 只处理参数类型位 IN | INOUT
-                if (parameterMapping.getMode() != ParameterMode.OUT) {
-                    Object value;
-                    String propertyName = parameterMapping.getProperty();
-                    if (boundSql.hasAdditionalParameter(propertyName)) { // issue #448 ask first for additional params
-                        value = boundSql.getAdditionalParameter(propertyName);
-                    } else if (parameterObject == null) {
-                        value = null;
-                    } else if (typeHandlerRegistry.hasTypeHandler(parameterObject.getClass())) {
-                        // 如果存在此参数类型的处理器，直接交给类型处理器来完成参数插入的过程。
-                        value = parameterObject;
-                    } else {
-                        // 代表parameterObject是一个对象，直接通过反射，使用属性名来获取属性值
-                        MetaObject metaObject = configuration.newMetaObject(parameterObject);
-                        value = metaObject.getValue(propertyName);
-                    }
-                    TypeHandler typeHandler = parameterMapping.getTypeHandler();
-                    JdbcType jdbcType = parameterMapping.getJdbcType();
-                    if (value == null && jdbcType == null) {
-                        jdbcType = configuration.getJdbcTypeForNull();
-                    }
-                    try {
-                        //注意参数设置index 是从1开始
-                        typeHandler.setParameter(ps, i + 1, value, jdbcType);
-                    } catch (TypeException e) {
-                        throw new TypeException("Could not set parameters for mapping: " + parameterMapping + ". Cause: " + e, e);
-                    } catch (SQLException e) {
-                        throw new TypeException("Could not set parameters for mapping: " + parameterMapping + ". Cause: " + e, e);
-                    }
+        if (parameterMappings == null) {
+            return;
+        }
+        // 静态SQL直接使用预编译的参数设置计划，只做取值和设置
+        ParameterSetterPlan plan = getParameterSetterPlan();
+        if (plan != null) {
+            plan.setParameters(ps, parameterObject, configuration.getJdbcTypeForNull());
+            return;
+        }
+        for (int i = 0; i < parameterMappings.size(); i++) {
+            ParameterMapping parameterMapping = parameterMappings.get(i);
+            // 只处理参数类型位 IN | INOUT
+            if (parameterMapping.getMode() != ParameterMode.OUT) {
+                Object value;
+                String propertyName = parameterMapping.getProperty();
+                if (boundSql.hasAdditionalParameter(propertyName)) { // issue #448 ask first for additional params
+                    value = boundSql.getAdditionalParameter(propertyName);
+                } else if (parameterObject == null) {
+                    value = null;
+                } else if (typeHandlerRegistry.hasTypeHandler(parameterObject.getClass())) {
+                    // 如果存在此参数类型的处理器，直接交给类型处理器来完成参数插入的过程。
+                    value = parameterObject;
+                } else {
+                    // 代表parameterObject是一个对象，直接通过反射，使用属性名来获取属性值
+                    MetaObject metaObject = configuration.newMetaObject(parameterObject);
+                    value = metaObject.getValue(propertyName);
+                }
+                TypeHandler typeHandler = parameterMapping.getTypeHandler();
+                JdbcType jdbcType = parameterMapping.getJdbcType();
+                if (value == null && jdbcType == null) {
+                    jdbcType = configuration.getJdbcTypeForNull();
+                }
+                try {
+                    //注意参数设置index 是从1开始
+                    typeHandler.setParameter(ps, i + 1, value, jdbcType);
+                } catch (TypeException e) {
+                    throw new TypeException("Could not set parameters for mapping: " + parameterMapping + ". Cause: " + e, e);
+                } catch (SQLException e) {
+                    throw new TypeException("Could not set parameters for mapping: " + parameterMapping + ". Cause: " + e, e);
                 }
             }
         }
     }
 
+    private ParameterSetterPlan getParameterSetterPlan() {
+        if (parameterObject == null || boundSql.hasAdditionalParameters()
+                || !(mappedStatement.getSqlSource() instanceof RawSqlSource)) {
+            return null;
+        }
+        return ((RawSqlSource) mappedStatement.getSqlSource()).getParameterSetterPlan(boundSql, parameterObject.getClass());
+    }
+
 }
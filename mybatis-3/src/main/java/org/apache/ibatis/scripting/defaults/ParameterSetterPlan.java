@@ -0,0 +1,204 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.defaults;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.reflection.ReflectionException;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.reflection.wrapper.DefaultObjectWrapperFactory;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.TypeException;
+import org.apache.ibatis.type.TypeHandler;
+
+/**
+ * 预编译的参数设置计划
+ * <p>
+ * 针对 (静态SQL, 参数类型) 预先解析出每个参数映射的取值方式和类型处理器，
+ * 之后的每次执行只需要"取值 + 设置"，不再重复判断类型处理器、创建MetaObject。
+ * 只用于没有额外参数(additionalParameters)且参数对象非空的场景，其余情况仍然走{@link DefaultParameterHandler}的通用逻辑。
+ */
+final class ParameterSetterPlan {
+
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
+    private final ParameterMapping[] parameterMappings;
+    // 取值器，OUT参数对应位置为null
+    private final ValueExtractor[] extractors;
+    private final TypeHandler[] typeHandlers;
+    private final JdbcType[] jdbcTypes;
+
+    private ParameterSetterPlan(ParameterMapping[] parameterMappings, ValueExtractor[] extractors) {
+        this.parameterMappings = parameterMappings;
+        this.extractors = extractors;
+        this.typeHandlers = new TypeHandler[parameterMappings.length];
+        this.jdbcTypes = new JdbcType[parameterMappings.length];
+        for (int i = 0; i < parameterMappings.length; i++) {
+            typeHandlers[i] = parameterMappings[i].getTypeHandler();
+            jdbcTypes[i] = parameterMappings[i].getJdbcType();
+        }
+    }
+
+    /**
+     * 根据参数映射列表和参数类型编译出参数设置计划
+     */
+    static ParameterSetterPlan compile(Configuration configuration, List<ParameterMapping> parameterMappings, Class<?> parameterType) {
+        ParameterMapping[] mappings = parameterMappings.toArray(new ParameterMapping[0]);
+        ValueExtractor[] extractors = new ValueExtractor[mappings.length];
+        // 参数对象本身就有类型处理器，直接使用参数对象
+        boolean self = configuration.getTypeHandlerRegistry().hasTypeHandler(parameterType);
+        // 自定义了ObjectWrapperFactory时，属性访问可能被改写，只能交给MetaObject
+        boolean defaultWrapper = configuration.getObjectWrapperFactory() instanceof DefaultObjectWrapperFactory;
+        Reflector reflector = null;
+        for (int i = 0; i < mappings.length; i++) {
+            ParameterMapping parameterMapping = mappings[i];
+            if (parameterMapping.getMode() == ParameterMode.OUT) {
+                continue;
+            }
+            String propertyName = parameterMapping.getProperty();
+            if (self) {
+                extractors[i] = SelfValueExtractor.INSTANCE;
+            } else if (!defaultWrapper || !isSimpleProperty(propertyName)) {
+                extractors[i] = new MetaObjectValueExtractor(configuration, propertyName);
+            } else if (Map.class.isAssignableFrom(parameterType)) {
+                extractors[i] = new MapValueExtractor(propertyName);
+            } else if (Collection.class.isAssignableFrom(parameterType)) {
+                extractors[i] = new MetaObjectValueExtractor(configuration, propertyName);
+            } else {
+                if (reflector == null) {
+                    reflector = configuration.getReflectorFactory().findForClass(parameterType);
+                }
+                if (reflector.hasGetter(propertyName)) {
+                    extractors[i] = new InvokerValueExtractor(reflector.getGetInvoker(propertyName), propertyName);
+                } else {
+                    // 交给MetaObject抛出与原来一致的异常
+                    extractors[i] = new MetaObjectValueExtractor(configuration, propertyName);
+                }
+            }
+        }
+        return new ParameterSetterPlan(mappings, extractors);
+    }
+
+    private static boolean isSimpleProperty(String propertyName) {
+        return propertyName.indexOf('.') < 0 && propertyName.indexOf('[') < 0;
+    }
+
+    /**
+     * 对预处理SQL插入参数，parameterObject不能为null
+     */
+    @SuppressWarnings("unchecked")
+    void setParameters(PreparedStatement ps, Object parameterObject, JdbcType jdbcTypeForNull) {
+        for (int i = 0; i < extractors.length; i++) {
+            ValueExtractor extractor = extractors[i];
+            if (extractor == null) {
+                continue;
+            }
+            Object value = extractor.extract(parameterObject);
+            JdbcType jdbcType = jdbcTypes[i];
+            if (value == null && jdbcType == null) {
+                jdbcType = jdbcTypeForNull;
+            }
+            try {
+                typeHandlers[i].setParameter(ps, i + 1, value, jdbcType);
+            } catch (TypeException | SQLException e) {
+                throw new TypeException("Could not set parameters for mapping: " + parameterMappings[i] + ". Cause: " + e, e);
+            }
+        }
+    }
+
+    /**
+     * 参数值提取器
+     */
+    interface ValueExtractor {
+        Object extract(Object parameterObject);
+    }
+
+    static final class SelfValueExtractor implements ValueExtractor {
+
+        static final SelfValueExtractor INSTANCE = new SelfValueExtractor();
+
+        @Override
+        public Object extract(Object parameterObject) {
+            return parameterObject;
+        }
+    }
+
+    static final class MapValueExtractor implements ValueExtractor {
+
+        private final String propertyName;
+
+        MapValueExtractor(String propertyName) {
+            this.propertyName = propertyName;
+        }
+
+        @Override
+        public Object extract(Object parameterObject) {
+            return ((Map<?, ?>) parameterObject).get(propertyName);
+        }
+    }
+
+    static final class InvokerValueExtractor implements ValueExtractor {
+
+        private final Invoker invoker;
+        private final String propertyName;
+
+        InvokerValueExtractor(Invoker invoker, String propertyName) {
+            this.invoker = invoker;
+            this.propertyName = propertyName;
+        }
+
+        @Override
+        public Object extract(Object parameterObject) {
+            try {
+                try {
+                    return invoker.invoke(parameterObject, NO_ARGUMENTS);
+                } catch (Throwable t) {
+                    throw ExceptionUtil.unwrapThrowable(t);
+                }
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new ReflectionException("Could not get property '" + propertyName + "' from " + parameterObject.getClass() + ".  Cause: " + t.toString(), t);
+            }
+        }
+    }
+
+    static final class MetaObjectValueExtractor implements ValueExtractor {
+
+        private final Configuration configuration;
+        private final String propertyName;
+
+        MetaObjectValueExtractor(Configuration configuration, String propertyName) {
+            this.configuration = configuration;
+            this.propertyName = propertyName;
+        }
+
+        @Override
+        public Object extract(Object parameterObject) {
+            return configuration.newMetaObject(parameterObject).getValue(propertyName);
+        }
+    }
+
+}
@@ -16,9 +16,14 @@
 package org.apache.ibatis.scripting.defaults;
 
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.ibatis.builder.SqlSourceBuilder;
+import org.apache.ibatis.builder.StaticSqlSource;
 import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.SqlSource;
 import org.apache.ibatis.scripting.xmltags.DynamicContext;
 import org.apache.ibatis.scripting.xmltags.DynamicSqlSource;
@@ -37,7 +42,12 @@ import org.apache.ibatis.session.Configuration;
  */
 public class RawSqlSource implements SqlSource {
 
+    private final Configuration configuration;
     private final SqlSource sqlSource;
+    // 启动期间解析出的参数映射，BoundSql持有的是同一个实例
+    private final List<ParameterMapping> parameterMappings;
+    // 参数类型 -> 预编译的参数设置计划
+    private final ConcurrentMap<Class<?>, ParameterSetterPlan> parameterSetterPlans = new ConcurrentHashMap<>();
 
     public RawSqlSource(Configuration configuration, SqlNode rootSqlNode, Class<?> parameterType) {
         this(configuration, getSql(configuration, rootSqlNode), parameterType);
@@ -46,7 +56,9 @@ public class RawSqlSource implements SqlSource {
     public RawSqlSource(Configuration configuration, String sql, Class<?> parameterType) {
         SqlSourceBuilder sqlSourceParser = new SqlSourceBuilder(configuration);
         Class<?> clazz = parameterType == null ? Object.class : parameterType;
-        sqlSource = sqlSourceParser.parse(sql, clazz, new HashMap<String, Object>());
+        this.configuration = configuration;
+        this.sqlSource = sqlSourceParser.parse(sql, clazz, new HashMap<String, Object>());
+        this.parameterMappings = sqlSource instanceof StaticSqlSource ? ((StaticSqlSource) sqlSource).getParameterMappings() : null;
     }
 
     private static String getSql(Configuration configuration, SqlNode rootSqlNode) {
@@ -60,4 +72,18 @@ public class RawSqlSource implements SqlSource {
         return sqlSource.getBoundSql(parameterObject);
     }
 
+    /**
+     * 获取预编译的参数设置计划，BoundSql被插件等替换过(参数映射不是启动期间解析出的那一份)时返回null
+     */
+    ParameterSetterPlan getParameterSetterPlan(BoundSql boundSql, Class<?> parameterType) {
+        if (parameterMappings == null || boundSql.getParameterMappings() != parameterMappings) {
+            return null;
+        }
+        ParameterSetterPlan plan = parameterSetterPlans.get(parameterType);
+        if (plan == null) {
+            plan = parameterSetterPlans.computeIfAbsent(parameterType, k -> ParameterSetterPlan.compile(configuration, parameterMappings, k));
+        }
+        return plan;
+    }
+
 }
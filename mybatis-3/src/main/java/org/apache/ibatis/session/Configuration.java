@@ -17,6 +17,7 @@ package org.apache.ibatis.session;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -24,6 +25,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.ibatis.binding.MapperRegistry;
 import org.apache.ibatis.builder.CacheRefResolver;
@@ -31,18 +34,32 @@ import org.apache.ibatis.builder.ResultMapResolver;
 import org.apache.ibatis.builder.annotation.MethodResolver;
 import org.apache.ibatis.builder.xml.XMLStatementBuilder;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheStatistics;
+import org.apache.ibatis.cache.TableVersions;
+import org.apache.ibatis.cache.copy.NoCopyStrategy;
+import org.apache.ibatis.cache.copy.ResultMapCopyStrategy;
+import org.apache.ibatis.cache.copy.SerializationCopyStrategy;
 import org.apache.ibatis.cache.decorators.FifoCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.SoftCache;
 import org.apache.ibatis.cache.decorators.WeakCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.invalidation.CacheInvalidationPublisher;
+import org.apache.ibatis.cache.invalidation.LoopbackTransport;
+import org.apache.ibatis.cache.invalidation.TcpTransport;
+import org.apache.ibatis.cache.invalidation.UdpMulticastTransport;
 import org.apache.ibatis.datasource.jndi.JndiDataSourceFactory;
 import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
+import org.apache.ibatis.datasource.readwrite.ReadWriteDataSourceFactory;
+import org.apache.ibatis.datasource.sharding.ShardedDataSource;
+import org.apache.ibatis.datasource.sharding.ShardedDataSourceFactory;
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSourceFactory;
+import org.apache.ibatis.executor.BaseExecutor;
 import org.apache.ibatis.executor.BatchExecutor;
 import org.apache.ibatis.executor.CachingExecutor;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ReuseExecutor;
+import org.apache.ibatis.executor.ShardingExecutor;
 import org.apache.ibatis.executor.SimpleExecutor;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.executor.loader.ProxyFactory;
@@ -87,6 +104,8 @@ import org.apache.ibatis.transaction.Transaction;
 import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
 import org.apache.ibatis.transaction.managed.ManagedTransactionFactory;
 import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.SpooledBlobTypeHandler;
+import org.apache.ibatis.type.SpooledClobTypeHandler;
 import org.apache.ibatis.type.TypeAliasRegistry;
 import org.apache.ibatis.type.TypeHandler;
 import org.apache.ibatis.type.TypeHandlerRegistry;
@@ -118,6 +137,11 @@ public class Configuration {
     protected boolean useColumnLabel = true;
     // 开启缓存
     protected boolean cacheEnabled = true;
+    // 按修改的表失效二级缓存，而不是清空写操作所在命名空间的缓存
+    protected boolean tableCacheInvalidation;
+    // 记录二级缓存的统计信息，以及是否导出到JMX
+    protected boolean cacheStatisticsEnabled;
+    protected boolean cacheStatisticsJmxEnabled;
     protected boolean callSettersOnNulls;
     // 使用真实的参数名称，形式参数名，而不是内置的"param1"..
     protected boolean useActualParamName = true;
@@ -131,6 +155,12 @@ public class Configuration {
     protected Class<? extends VFS> vfsImpl;
     // 本地局部缓存，默认是session范围
     protected LocalCacheScope localCacheScope = LocalCacheScope.SESSION;
+    // 本地缓存的最大条目数和估算的最大字节数，0表示不限制
+    protected int localCacheSize;
+    protected long localCacheMaxBytes;
+    protected final LongAdder localCacheEvictions = new LongAdder();
+    // 二级缓存保存映射好的对象还是结果行
+    protected SecondLevelCacheMode secondLevelCacheMode = SecondLevelCacheMode.OBJECTS;
     // jdbcType为Null的映射关系为Other
     protected JdbcType jdbcTypeForNull = JdbcType.OTHER;
     // 懒加载的触发方法
@@ -174,7 +204,12 @@ public class Configuration {
     protected final LanguageDriverRegistry languageRegistry = new LanguageDriverRegistry();
 
     protected final Map<String, MappedStatement> mappedStatements = new StrictMap<>("Mapped Statements collection");
+    // 按表失效二级缓存时各个表的版本号
+    protected final TableVersions tableVersions = new TableVersions();
+    // 将二级缓存的失效通知给其他节点
+    protected CacheInvalidationPublisher cacheInvalidationPublisher;
     protected final Map<String, Cache> caches = new StrictMap<>("Caches collection");
+    protected final Map<String, CacheStatistics> cacheStatistics = new ConcurrentHashMap<>();
     protected final Map<String, ResultMap> resultMaps = new StrictMap<>("Result Maps collection");
     protected final Map<String, ParameterMap> parameterMaps = new StrictMap<>("Parameter Maps collection");
     protected final Map<String, KeyGenerator> keyGenerators = new StrictMap<>("Key Generators collection");
@@ -206,6 +241,8 @@ public class Configuration {
         typeAliasRegistry.registerAlias("JNDI", JndiDataSourceFactory.class);
         typeAliasRegistry.registerAlias("POOLED", PooledDataSourceFactory.class);
         typeAliasRegistry.registerAlias("UNPOOLED", UnpooledDataSourceFactory.class);
+        typeAliasRegistry.registerAlias("READ_WRITE", ReadWriteDataSourceFactory.class);
+        typeAliasRegistry.registerAlias("SHARDED", ShardedDataSourceFactory.class);
 
         typeAliasRegistry.registerAlias("PERPETUAL", PerpetualCache.class);
         typeAliasRegistry.registerAlias("FIFO", FifoCache.class);
@@ -213,6 +250,14 @@ public class Configuration {
         typeAliasRegistry.registerAlias("SOFT", SoftCache.class);
         typeAliasRegistry.registerAlias("WEAK", WeakCache.class);
 
+        typeAliasRegistry.registerAlias("SERIALIZATION", SerializationCopyStrategy.class);
+        typeAliasRegistry.registerAlias("RESULT_MAP", ResultMapCopyStrategy.class);
+        typeAliasRegistry.registerAlias("NO_COPY", NoCopyStrategy.class);
+
+        typeAliasRegistry.registerAlias("UDP", UdpMulticastTransport.class);
+        typeAliasRegistry.registerAlias("TCP", TcpTransport.class);
+        typeAliasRegistry.registerAlias("LOOPBACK", LoopbackTransport.class);
+
         typeAliasRegistry.registerAlias("DB_VENDOR", VendorDatabaseIdProvider.class);
 
         typeAliasRegistry.registerAlias("XML", XMLLanguageDriver.class);
@@ -432,6 +477,119 @@ public class Configuration {
         this.cacheEnabled = cacheEnabled;
     }
 
+    /**
+     * @since 3.5.0
+     */
+    public boolean isTableCacheInvalidation() {
+        return tableCacheInvalidation;
+    }
+
+    /**
+     * Invalidate second level cache entries by the tables that committed statements modified,
+     * instead of clearing the cache of the statement's namespace.
+     *
+     * @since 3.5.0
+     */
+    public void setTableCacheInvalidation(boolean tableCacheInvalidation) {
+        this.tableCacheInvalidation = tableCacheInvalidation;
+    }
+
+    /**
+     * @since 3.5.0
+     */
+    public boolean isCacheStatisticsEnabled() {
+        return cacheStatisticsEnabled;
+    }
+
+    /**
+     * Record hits, misses, puts, evictions, load times and sampled entry sizes and keys of the second level caches
+     * created after this call.
+     *
+     * @since 3.5.0
+     */
+    public void setCacheStatisticsEnabled(boolean cacheStatisticsEnabled) {
+        this.cacheStatisticsEnabled = cacheStatisticsEnabled;
+    }
+
+    /**
+     * @since 3.5.0
+     */
+    public boolean isCacheStatisticsJmxEnabled() {
+        return cacheStatisticsJmxEnabled;
+    }
+
+    /**
+     * Register the statistics of each second level cache with the platform MBean server.
+     *
+     * @since 3.5.0
+     */
+    public void setCacheStatisticsJmxEnabled(boolean cacheStatisticsJmxEnabled) {
+        this.cacheStatisticsJmxEnabled = cacheStatisticsJmxEnabled;
+    }
+
+    /**
+     * 创建并登记缓存的统计信息，开启了JMX时注册MBean
+     *
+     * @since 3.5.0
+     */
+    public CacheStatistics newCacheStatistics(String cacheId) {
+        CacheStatistics statistics = new CacheStatistics(cacheId);
+        CacheStatistics previous = cacheStatistics.put(cacheId, statistics);
+        if (previous != null) {
+            previous.unregisterMBean();
+        }
+        if (cacheStatisticsJmxEnabled) {
+            statistics.registerMBean(getCacheStatisticsScope());
+        }
+        return statistics;
+    }
+
+    // 同一个JVM中可能有多个Configuration
+    private String getCacheStatisticsScope() {
+        String scope = Integer.toHexString(System.identityHashCode(this));
+        return environment == null ? scope : environment.getId() + "@" + scope;
+    }
+
+    /**
+     * @return 缓存的统计信息，没有开启统计时返回null
+     * @since 3.5.0
+     */
+    public CacheStatistics getCacheStatistics(String cacheId) {
+        return cacheStatistics.get(cacheId);
+    }
+
+    /**
+     * @since 3.5.0
+     */
+    public Collection<CacheStatistics> getCacheStatistics() {
+        return Collections.unmodifiableCollection(cacheStatistics.values());
+    }
+
+    /**
+     * @since 3.5.0
+     */
+    public TableVersions getTableVersions() {
+        return tableVersions;
+    }
+
+    /**
+     * @since 3.5.0
+     */
+    public CacheInvalidationPublisher getCacheInvalidationPublisher() {
+        return cacheInvalidationPublisher;
+    }
+
+    /**
+     * Publish the second level cache invalidations committed by sessions of this configuration to other nodes.
+     * A {@link org.apache.ibatis.cache.invalidation.CacheInvalidationBus} is started by
+     * {@link SqlSessionFactoryBuilder#build(Configuration)}.
+     *
+     * @since 3.5.0
+     */
+    public void setCacheInvalidationPublisher(CacheInvalidationPublisher cacheInvalidationPublisher) {
+        this.cacheInvalidationPublisher = cacheInvalidationPublisher;
+    }
+
     public Integer getDefaultStatementTimeout() {
         return defaultStatementTimeout;
     }
@@ -470,6 +628,69 @@ public class Configuration {
         this.localCacheScope = localCacheScope;
     }
 
+    /**
+     * @since 3.5.0
+     */
+    public int getLocalCacheSize() {
+        return localCacheSize;
+    }
+
+    /**
+     * Limit the number of entries in the local (session) cache, evicting the least recently used ones.
+     *
+     * @since 3.5.0
+     */
+    public void setLocalCacheSize(int localCacheSize) {
+        this.localCacheSize = localCacheSize;
+    }
+
+    /**
+     * @since 3.5.0
+     */
+    public long getLocalCacheMaxBytes() {
+        return localCacheMaxBytes;
+    }
+
+    /**
+     * Limit the estimated heap retained by the local (session) cache, evicting the least recently used entries.
+     *
+     * @since 3.5.0
+     */
+    public void setLocalCacheMaxBytes(long localCacheMaxBytes) {
+        this.localCacheMaxBytes = localCacheMaxBytes;
+    }
+
+    /**
+     * @return 所有会话的本地缓存淘汰的条目数
+     * @since 3.5.0
+     */
+    public long getLocalCacheEvictionCount() {
+        return localCacheEvictions.sum();
+    }
+
+    /**
+     * @since 3.5.0
+     */
+    public void recordLocalCacheEviction() {
+        localCacheEvictions.increment();
+    }
+
+    /**
+     * @since 3.5.0
+     */
+    public SecondLevelCacheMode getSecondLevelCacheMode() {
+        return secondLevelCacheMode;
+    }
+
+    /**
+     * Choose whether the second level cache stores mapped objects or compact result rows that are re-mapped on each hit.
+     *
+     * @since 3.5.0
+     */
+    public void setSecondLevelCacheMode(SecondLevelCacheMode secondLevelCacheMode) {
+        this.secondLevelCacheMode = secondLevelCacheMode;
+    }
+
     public JdbcType getJdbcTypeForNull() {
         return jdbcTypeForNull;
     }
@@ -503,6 +724,25 @@ public class Configuration {
         }
     }
 
+    /**
+     * @since 3.5.0
+     */
+    public long getLobSpoolThreshold() {
+        return typeHandlerRegistry.getLobSpoolThreshold();
+    }
+
+    /**
+     * Set the maximum number of bytes that {@link SpooledBlobTypeHandler} and
+     * {@link SpooledClobTypeHandler} keep in memory, larger LOBs are spooled to a temporary file.
+     * Only the default handlers read it, handlers registered by the user are kept.
+     *
+     * @since 3.5.0
+     */
+    public void setLobSpoolThreshold(long lobSpoolThreshold) {
+        // 默认注册的处理器在读取时取得阈值，不替换已经注册的处理器
+        typeHandlerRegistry.setLobSpoolThreshold(lobSpoolThreshold);
+    }
+
     public TypeAliasRegistry getTypeAliasRegistry() {
         return typeAliasRegistry;
     }
@@ -596,18 +836,32 @@ public class Configuration {
     }
 
     public Executor newExecutor(Transaction transaction, ExecutorType executorType) {
+        return newExecutor(transaction, executorType, null);
+    }
+
+    /**
+     * @param connectionPartition 获取连接时使用的连接池分区，映射语句声明的分区优先
+     * @since 3.5.0
+     */
+    public Executor newExecutor(Transaction transaction, ExecutorType executorType, String connectionPartition) {
         executorType = executorType == null ? defaultExecutorType : executorType;
         executorType = executorType == null ? ExecutorType.SIMPLE : executorType;
-        Executor executor;
+        BaseExecutor baseExecutor;
         if (ExecutorType.BATCH == executorType) {
-            executor = new BatchExecutor(this, transaction);
+            baseExecutor = new BatchExecutor(this, transaction);
         } else if (ExecutorType.REUSE == executorType) {
-            executor = new ReuseExecutor(this, transaction);
+            baseExecutor = new ReuseExecutor(this, transaction);
         } else {
-            executor = new SimpleExecutor(this, transaction);
+            baseExecutor = new SimpleExecutor(this, transaction);
+        }
+        baseExecutor.setConnectionPartition(connectionPartition);
+        Executor executor = baseExecutor;
+        // 分片数据源需要在执行器层面分发没有分片键的查询
+        if (environment != null && environment.getDataSource() instanceof ShardedDataSource) {
+            executor = new ShardingExecutor(executor, (ShardedDataSource) environment.getDataSource());
         }
         if (cacheEnabled) {
-            executor = new CachingExecutor(executor);
+            executor = new CachingExecutor(executor, cacheInvalidationPublisher);
         }
         executor = (Executor) interceptorChain.pluginAll(executor);
         return executor;
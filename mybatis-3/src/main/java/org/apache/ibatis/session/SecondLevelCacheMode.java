@@ -0,0 +1,28 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+/**
+ * 二级缓存保存的内容
+ * <p>
+ * OBJECTS: 缓存映射好的结果对象(默认)；
+ * ROWS: 缓存紧凑的列式结果行，命中时重新映射成对象，对象图复杂时占用的内存和序列化开销更小
+ *
+ * @since 3.5.0
+ */
+public enum SecondLevelCacheMode {
+  OBJECTS, ROWS
+}
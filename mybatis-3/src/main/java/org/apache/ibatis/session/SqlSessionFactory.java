@@ -76,6 +76,18 @@ public interface SqlSessionFactory {
      * @return
      */
     SqlSession openSession(ExecutorType execType, Connection connection);
+    /**
+     * 指定SQL执行方式、提交方式以及获取连接时使用的连接池分区
+     * 默认实现忽略分区，以兼容已有的实现类
+     * @param execType
+     * @param autoCommit
+     * @param connectionPartition 连接池分区，映射语句声明的分区优先
+     * @return
+     * @since 3.5.0
+     */
+    default SqlSession openSession(ExecutorType execType, boolean autoCommit, String connectionPartition) {
+        return openSession(execType, autoCommit);
+    }
 
     Configuration getConfiguration();
 
@@ -21,6 +21,8 @@ import java.io.Reader;
 import java.util.Properties;
 
 import org.apache.ibatis.builder.xml.XMLConfigBuilder;
+import org.apache.ibatis.cache.invalidation.CacheInvalidationBus;
+import org.apache.ibatis.cache.invalidation.CacheInvalidationPublisher;
 import org.apache.ibatis.exceptions.ExceptionFactory;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.session.defaults.DefaultSqlSessionFactory;
@@ -89,6 +91,17 @@ public class SqlSessionFactoryBuilder {
   }
     
   public SqlSessionFactory build(Configuration config) {
+    // 配置已经解析完成，冻结类型处理器注册表，之后按Class查找类型处理器走只读解析表
+    config.getTypeHandlerRegistry().freeze();
+    // 配置解析成功之后才启动失效总线
+    CacheInvalidationPublisher publisher = config.getCacheInvalidationPublisher();
+    if (publisher instanceof CacheInvalidationBus) {
+      try {
+        ((CacheInvalidationBus) publisher).start();
+      } catch (IOException e) {
+        throw ExceptionFactory.wrapException("Error starting the cache invalidation bus.", e);
+      }
+    }
     return new DefaultSqlSessionFactory(config);
   }
 
@@ -124,6 +124,11 @@ public class SqlSessionManager implements SqlSessionFactory, SqlSession {
         return sqlSessionFactory.openSession(autoCommit);
     }
 
+    @Override
+    public SqlSession openSession(ExecutorType execType, boolean autoCommit, String connectionPartition) {
+        return sqlSessionFactory.openSession(execType, autoCommit, connectionPartition);
+    }
+
     @Override
     public SqlSession openSession(Connection connection) {
         return sqlSessionFactory.openSession(connection);
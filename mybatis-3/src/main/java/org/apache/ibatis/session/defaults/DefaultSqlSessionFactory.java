@@ -72,6 +72,11 @@ public class DefaultSqlSessionFactory implements SqlSessionFactory {
         return openSessionFromDataSource(execType, null, autoCommit);
     }
 
+    @Override
+    public SqlSession openSession(ExecutorType execType, boolean autoCommit, String connectionPartition) {
+        return openSessionFromDataSource(execType, null, autoCommit, connectionPartition);
+    }
+
     @Override
     public SqlSession openSession(Connection connection) {
         return openSessionFromConnection(configuration.getDefaultExecutorType(), connection);
@@ -96,12 +101,17 @@ public class DefaultSqlSessionFactory implements SqlSessionFactory {
      * @return
      */
     private SqlSession openSessionFromDataSource(ExecutorType execType, TransactionIsolationLevel level, boolean autoCommit) {
+        return openSessionFromDataSource(execType, level, autoCommit, null);
+    }
+
+    private SqlSession openSessionFromDataSource(ExecutorType execType, TransactionIsolationLevel level, boolean autoCommit,
+                                                 String connectionPartition) {
         Transaction tx = null;
         try {
             final Environment environment = configuration.getEnvironment();
             final TransactionFactory transactionFactory = getTransactionFactoryFromEnvironment(environment);
             tx = transactionFactory.newTransaction(environment.getDataSource(), level, autoCommit);
-            final Executor executor = configuration.newExecutor(tx, execType);
+            final Executor executor = configuration.newExecutor(tx, execType, connectionPartition);
             return new DefaultSqlSession(configuration, executor, autoCommit);
         } catch (Exception e) {
             closeTransaction(tx); // may have fetched a connection so lets call close()
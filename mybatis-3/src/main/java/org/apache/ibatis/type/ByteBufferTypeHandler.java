@@ -0,0 +1,62 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.type;
+
+import java.nio.ByteBuffer;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * The {@link TypeHandler} for {@link ByteBuffer}.
+ * <p>
+ * 设置参数时以流的方式绑定缓冲区的剩余内容(position到limit)，不会复制成byte[]，
+ * 对堆外缓冲区和内存映射的缓冲区同样适用。缓冲区的position不会改变。
+ *
+ * @since 3.5.0
+ */
+public class ByteBufferTypeHandler extends BaseTypeHandler<ByteBuffer> {
+
+  @Override
+  public void setNonNullParameter(PreparedStatement ps, int i, ByteBuffer parameter, JdbcType jdbcType)
+      throws SQLException {
+    ps.setBinaryStream(i, new ByteBufferInputStream(parameter), (long) parameter.remaining());
+  }
+
+  @Override
+  public ByteBuffer getNullableResult(ResultSet rs, String columnName)
+      throws SQLException {
+    return toByteBuffer(rs.getBytes(columnName));
+  }
+
+  @Override
+  public ByteBuffer getNullableResult(ResultSet rs, int columnIndex)
+      throws SQLException {
+    return toByteBuffer(rs.getBytes(columnIndex));
+  }
+
+  @Override
+  public ByteBuffer getNullableResult(CallableStatement cs, int columnIndex)
+      throws SQLException {
+    return toByteBuffer(cs.getBytes(columnIndex));
+  }
+
+  private ByteBuffer toByteBuffer(byte[] bytes) {
+    return bytes == null ? null : ByteBuffer.wrap(bytes);
+  }
+
+}
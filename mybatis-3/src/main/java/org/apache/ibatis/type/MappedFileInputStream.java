@@ -0,0 +1,113 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.type;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 通过内存映射读取文件的输入流
+ * <p>
+ * 文件按窗口逐段映射，映射完成后立即关闭文件通道(映射在通道关闭后依然有效)，
+ * 所以驱动读取完之后即使没有关闭此输入流，也不会占用文件句柄。
+ */
+final class MappedFileInputStream extends InputStream {
+
+  // 每次映射的最大字节数
+  private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+  private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+  // 读取期间LOB不能被回收，否则临时文件会被删除，读取普通文件时为null
+  private final SpooledLob owner;
+  private final Path file;
+  private final long length;
+  // 已经映射过的字节数(包含当前窗口)
+  private long mapped;
+  private ByteBuffer window = EMPTY;
+
+  MappedFileInputStream(Path file, long length) {
+    this(null, file, length);
+  }
+
+  MappedFileInputStream(SpooledLob owner, Path file, long length) {
+    this.owner = owner;
+    this.file = file;
+    this.length = length;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!ensureWindow()) {
+      return -1;
+    }
+    return window.get() & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!ensureWindow()) {
+      return -1;
+    }
+    int n = Math.min(len, window.remaining());
+    window.get(b, off, n);
+    return n;
+  }
+
+  @Override
+  public long skip(long n) {
+    if (n <= 0) {
+      return 0;
+    }
+    if (n <= window.remaining()) {
+      window.position(window.position() + (int) n);
+      return n;
+    }
+    // 跳出当前窗口，下次读取时从新的位置开始映射
+    long position = mapped - window.remaining();
+    long skipped = Math.min(n, length - position);
+    mapped = position + skipped;
+    window = EMPTY;
+    return skipped;
+  }
+
+  @Override
+  public int available() {
+    return window.remaining();
+  }
+
+  private boolean ensureWindow() throws IOException {
+    if (window.hasRemaining()) {
+      return true;
+    }
+    if (mapped >= length) {
+      return false;
+    }
+    long size = Math.min(WINDOW_SIZE, length - mapped);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      window = channel.map(FileChannel.MapMode.READ_ONLY, mapped, size);
+    }
+    mapped += size;
+    return true;
+  }
+
+}
@@ -0,0 +1,143 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.type;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * The {@link TypeHandler} for binary content stored in a file.
+ * <p>
+ * 设置参数时通过内存映射读取文件，并以已知长度调用{@link PreparedStatement#setBinaryStream(int, InputStream, long)}，
+ * 文件内容不会整体读入堆内存。参数的jdbcType是字符类型(例如CLOB、VARCHAR)时，文件按UTF-8解码，
+ * 先流式统计字符数，再以已知长度调用{@link PreparedStatement#setCharacterStream(int, Reader, long)}。
+ * <p>
+ * 读取结果时把列的二进制内容写入一个临时文件并返回它的路径，<b>临时文件属于调用方</b>，使用完之后需要删除；
+ * 没有删除的文件在JVM退出时删除。
+ *
+ * @since 3.5.0
+ */
+public class PathTypeHandler extends BaseTypeHandler<Path> {
+
+  @Override
+  public void setNonNullParameter(PreparedStatement ps, int i, Path parameter, JdbcType jdbcType)
+      throws SQLException {
+    long length;
+    try {
+      length = Files.size(parameter);
+      if (isCharacterType(jdbcType)) {
+        long charLength = countChars(parameter, length);
+        ps.setCharacterStream(i, openReader(parameter, length), charLength);
+        return;
+      }
+    } catch (IOException e) {
+      throw new SQLException("Error reading file '" + parameter + "'.  Cause: " + e, e);
+    }
+    ps.setBinaryStream(i, new MappedFileInputStream(parameter, length), length);
+  }
+
+  private static boolean isCharacterType(JdbcType jdbcType) {
+    if (jdbcType == null) {
+      return false;
+    }
+    switch (jdbcType) {
+      case CHAR:
+      case VARCHAR:
+      case LONGVARCHAR:
+      case NCHAR:
+      case NVARCHAR:
+      case LONGNVARCHAR:
+      case CLOB:
+      case NCLOB:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static Reader openReader(Path file, long length) {
+    return new InputStreamReader(new MappedFileInputStream(file, length), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * 驱动需要的是字符数而不是字节数，分块解码统计，不会把文件内容整体读入内存
+   */
+  private static long countChars(Path file, long length) throws IOException {
+    char[] chunk = new char[8192];
+    long count = 0;
+    try (Reader reader = openReader(file, length)) {
+      int n;
+      while ((n = reader.read(chunk)) != -1) {
+        count += n;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public Path getNullableResult(ResultSet rs, String columnName)
+      throws SQLException {
+    return toPath(rs.getBinaryStream(columnName));
+  }
+
+  @Override
+  public Path getNullableResult(ResultSet rs, int columnIndex)
+      throws SQLException {
+    return toPath(rs.getBinaryStream(columnIndex));
+  }
+
+  @Override
+  public Path getNullableResult(CallableStatement cs, int columnIndex)
+      throws SQLException {
+    Blob blob = cs.getBlob(columnIndex);
+    return blob == null ? null : toPath(blob.getBinaryStream());
+  }
+
+  private Path toPath(InputStream in) throws SQLException {
+    if (in == null) {
+      return null;
+    }
+    Path file = null;
+    try (InputStream input = in) {
+      file = Files.createTempFile("mybatis-lob-", ".tmp");
+      // 调用方没有删除的文件
+      file.toFile().deleteOnExit();
+      Files.copy(input, file, StandardCopyOption.REPLACE_EXISTING);
+      return file;
+    } catch (IOException e) {
+      if (file != null) {
+        try {
+          Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+          // ignore
+        }
+      }
+      throw new SQLException("Error copying binary content to a file.  Cause: " + e, e);
+    }
+  }
+
+}
@@ -0,0 +1,67 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.type;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 原始类型的类型处理器扩展
+ * <p>
+ * 结果映射时，如果列的类型处理器是实现了此接口的内置类型处理器(例如{@link IntegerTypeHandler}本身，不包括子类)，
+ * 并且目标属性正好是{@link #getPrimitiveType()}，则直接以原始类型读取列值并设置到属性上，整个过程不会装箱。
+ * 子类可能覆盖了{@link BaseTypeHandler#getNullableResult(ResultSet, String)}，因此总是使用普通的映射方式。
+ * 与{@link ResultSet}一样，SQL {@code NULL}返回的是{@code 0}/{@code false}，
+ * 调用方需要通过{@link ResultSet#wasNull()}来区分。
+ *
+ * @since 3.5.0
+ */
+public interface PrimitiveTypeHandler<T> extends TypeHandler<T> {
+
+  /**
+   * @return 处理的原始类型，例如 {@code int.class}
+   */
+  Class<?> getPrimitiveType();
+
+  default boolean getBoolean(ResultSet rs, String columnName) throws SQLException {
+    return rs.getBoolean(columnName);
+  }
+
+  default byte getByte(ResultSet rs, String columnName) throws SQLException {
+    return rs.getByte(columnName);
+  }
+
+  default short getShort(ResultSet rs, String columnName) throws SQLException {
+    return rs.getShort(columnName);
+  }
+
+  default int getInt(ResultSet rs, String columnName) throws SQLException {
+    return rs.getInt(columnName);
+  }
+
+  default long getLong(ResultSet rs, String columnName) throws SQLException {
+    return rs.getLong(columnName);
+  }
+
+  default float getFloat(ResultSet rs, String columnName) throws SQLException {
+    return rs.getFloat(columnName);
+  }
+
+  default double getDouble(ResultSet rs, String columnName) throws SQLException {
+    return rs.getDouble(columnName);
+  }
+
+}
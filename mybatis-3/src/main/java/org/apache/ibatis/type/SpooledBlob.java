@@ -0,0 +1,87 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.type;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 已经从结果集中完整读出的BLOB内容，详见{@link SpooledLob}
+ *
+ * @since 3.5.0
+ */
+public final class SpooledBlob extends SpooledLob {
+
+  private SpooledBlob(Spool spool) {
+    super(spool);
+  }
+
+  /**
+   * 读取输入流的全部内容，超过阈值的部分写入临时文件
+   *
+   * @param in 输入流，由调用方关闭
+   * @param expectedLength 预计的字节数，未知时传0
+   * @param threshold 内存阈值(字节)
+   */
+  public static SpooledBlob spool(InputStream in, long expectedLength, long threshold) throws IOException {
+    Spool spool = new Spool(expectedLength, threshold);
+    try {
+      spool.writeFrom(in);
+      return new SpooledBlob(spool.finish());
+    } catch (IOException | RuntimeException e) {
+      spool.discard();
+      throw e;
+    }
+  }
+
+  /**
+   * @return 字节数
+   */
+  public long length() {
+    return byteLength();
+  }
+
+  /**
+   * 每次调用都返回一个从头开始读取的新输入流
+   */
+  public InputStream getInputStream() throws IOException {
+    return openByteStream();
+  }
+
+  /**
+   * 获取只读的内容视图，临时文件通过内存映射读取
+   *
+   * @return 超过2GB时返回null，只能通过{@link #getInputStream()}读取
+   */
+  public ByteBuffer asByteBuffer() throws IOException {
+    return byteBuffer();
+  }
+
+  /**
+   * 复制出全部内容
+   */
+  public byte[] getBytes() throws IOException {
+    ByteBuffer buffer = byteBuffer();
+    if (buffer != null) {
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      return bytes;
+    }
+    throw new IOException("The BLOB content is too large to be copied into a byte array (" + length() + " bytes).");
+  }
+
+}
@@ -0,0 +1,112 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.type;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * The {@link TypeHandler} for {@link Blob}/{@link SpooledBlob}.
+ * <p>
+ * 读取时把BLOB的全部内容转存到内存或临时文件中，之后不再依赖结果集和连接，
+ * 避免大字段像{@link BlobTypeHandler}那样整体读入堆内的byte[]。
+ *
+ * @since 3.5.0
+ */
+public class SpooledBlobTypeHandler extends BaseTypeHandler<SpooledBlob> {
+
+  /**
+   * 默认的内存阈值: 1MB
+   */
+  public static final long DEFAULT_THRESHOLD = 1024 * 1024;
+
+  private final long threshold;
+  // 默认注册的处理器在读取时从注册器取得阈值(Configuration的lobSpoolThreshold)
+  private final TypeHandlerRegistry registry;
+
+  public SpooledBlobTypeHandler() {
+    this(DEFAULT_THRESHOLD);
+  }
+
+  /**
+   * @param threshold 内存阈值(字节)，超过的内容写入临时文件
+   */
+  public SpooledBlobTypeHandler(long threshold) {
+    this.threshold = checkThreshold(threshold);
+    this.registry = null;
+  }
+
+  SpooledBlobTypeHandler(TypeHandlerRegistry registry) {
+    this.threshold = DEFAULT_THRESHOLD;
+    this.registry = registry;
+  }
+
+  static long checkThreshold(long threshold) {
+    if (threshold < 0) {
+      throw new IllegalArgumentException("The LOB spool threshold must not be negative.");
+    }
+    return threshold;
+  }
+
+  public long getThreshold() {
+    return Math.min(registry == null ? threshold : registry.getLobSpoolThreshold(), Integer.MAX_VALUE);
+  }
+
+  @Override
+  public void setNonNullParameter(PreparedStatement ps, int i, SpooledBlob parameter, JdbcType jdbcType)
+      throws SQLException {
+    try {
+      ps.setBinaryStream(i, parameter.getInputStream(), parameter.length());
+    } catch (IOException e) {
+      throw new SQLException("Error reading spooled BLOB.  Cause: " + e, e);
+    }
+  }
+
+  @Override
+  public SpooledBlob getNullableResult(ResultSet rs, String columnName)
+      throws SQLException {
+    return toSpooledBlob(rs.getBlob(columnName));
+  }
+
+  @Override
+  public SpooledBlob getNullableResult(ResultSet rs, int columnIndex)
+      throws SQLException {
+    return toSpooledBlob(rs.getBlob(columnIndex));
+  }
+
+  @Override
+  public SpooledBlob getNullableResult(CallableStatement cs, int columnIndex)
+      throws SQLException {
+    return toSpooledBlob(cs.getBlob(columnIndex));
+  }
+
+  private SpooledBlob toSpooledBlob(Blob blob) throws SQLException {
+    if (blob == null) {
+      return null;
+    }
+    try (InputStream in = blob.getBinaryStream()) {
+      return SpooledBlob.spool(in, blob.length(), getThreshold());
+    } catch (IOException e) {
+      throw new SQLException("Error spooling BLOB.  Cause: " + e, e);
+    }
+  }
+
+}
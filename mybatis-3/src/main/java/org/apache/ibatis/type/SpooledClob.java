@@ -0,0 +1,136 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.type;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 已经从结果集中完整读出的CLOB内容，详见{@link SpooledLob}
+ * <p>
+ * 字符按UTF-16BE存放，内存占用以及阈值均按字节(每个字符2字节)计算。
+ *
+ * @since 3.5.0
+ */
+public final class SpooledClob extends SpooledLob {
+
+  private static final int CHUNK_SIZE = 4096;
+
+  private SpooledClob(Spool spool) {
+    super(spool);
+  }
+
+  /**
+   * 读取字符流的全部内容，超过阈值的部分写入临时文件
+   *
+   * @param reader 字符流，由调用方关闭
+   * @param expectedLength 预计的字符数，未知时传0
+   * @param threshold 内存阈值(字节)
+   */
+  public static SpooledClob spool(Reader reader, long expectedLength, long threshold) throws IOException {
+    Spool spool = new Spool(expectedLength * 2, threshold);
+    try {
+      char[] chunk = new char[CHUNK_SIZE];
+      ByteBuffer bytes = ByteBuffer.allocate(CHUNK_SIZE * 2);
+      CharBuffer chars = bytes.asCharBuffer();
+      int n;
+      while ((n = reader.read(chunk)) != -1) {
+        chars.clear();
+        chars.put(chunk, 0, n);
+        bytes.clear();
+        bytes.limit(n * 2);
+        spool.write(bytes);
+      }
+      return new SpooledClob(spool.finish());
+    } catch (IOException | RuntimeException e) {
+      spool.discard();
+      throw e;
+    }
+  }
+
+  /**
+   * @return 字符数
+   */
+  public long length() {
+    return byteLength() / 2;
+  }
+
+  /**
+   * 每次调用都返回一个从头开始读取的新字符流
+   */
+  public Reader getReader() throws IOException {
+    ByteBuffer buffer = byteBuffer();
+    if (buffer == null) {
+      return new InputStreamReader(openByteStream(), StandardCharsets.UTF_16BE);
+    }
+    return new CharBufferReader(buffer.asCharBuffer());
+  }
+
+  /**
+   * 复制出全部内容
+   */
+  public String getString() throws IOException {
+    ByteBuffer buffer = byteBuffer();
+    if (buffer != null) {
+      return buffer.asCharBuffer().toString();
+    }
+    throw new IOException("The CLOB content is too large to be copied into a String (" + length() + " characters).");
+  }
+
+  private static final class CharBufferReader extends Reader {
+
+    private final CharBuffer buffer;
+
+    CharBufferReader(CharBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int n = Math.min(len, buffer.remaining());
+      buffer.get(cbuf, off, n);
+      return n;
+    }
+
+    @Override
+    public long skip(long n) {
+      int skipped = (int) Math.min(Math.max(n, 0), buffer.remaining());
+      buffer.position(buffer.position() + skipped);
+      return skipped;
+    }
+
+    @Override
+    public boolean ready() {
+      return true;
+    }
+
+    @Override
+    public void close() {
+      // 内容由SpooledClob管理
+    }
+  }
+
+}
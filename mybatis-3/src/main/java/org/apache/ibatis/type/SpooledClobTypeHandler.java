@@ -0,0 +1,100 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.type;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * The {@link TypeHandler} for {@link Clob}/{@link SpooledClob}.
+ * <p>
+ * 读取时把CLOB的全部内容转存到内存或临时文件中，之后不再依赖结果集和连接，
+ * 避免大字段像{@link ClobTypeHandler}那样整体读入堆内的String。
+ *
+ * @since 3.5.0
+ */
+public class SpooledClobTypeHandler extends BaseTypeHandler<SpooledClob> {
+
+  private final long threshold;
+  // 默认注册的处理器在读取时从注册器取得阈值(Configuration的lobSpoolThreshold)
+  private final TypeHandlerRegistry registry;
+
+  public SpooledClobTypeHandler() {
+    this(SpooledBlobTypeHandler.DEFAULT_THRESHOLD);
+  }
+
+  /**
+   * @param threshold 内存阈值(字节)，超过的内容写入临时文件
+   */
+  public SpooledClobTypeHandler(long threshold) {
+    this.threshold = SpooledBlobTypeHandler.checkThreshold(threshold);
+    this.registry = null;
+  }
+
+  SpooledClobTypeHandler(TypeHandlerRegistry registry) {
+    this.threshold = SpooledBlobTypeHandler.DEFAULT_THRESHOLD;
+    this.registry = registry;
+  }
+
+  public long getThreshold() {
+    return Math.min(registry == null ? threshold : registry.getLobSpoolThreshold(), Integer.MAX_VALUE);
+  }
+
+  @Override
+  public void setNonNullParameter(PreparedStatement ps, int i, SpooledClob parameter, JdbcType jdbcType)
+      throws SQLException {
+    try {
+      ps.setCharacterStream(i, parameter.getReader(), parameter.length());
+    } catch (IOException e) {
+      throw new SQLException("Error reading spooled CLOB.  Cause: " + e, e);
+    }
+  }
+
+  @Override
+  public SpooledClob getNullableResult(ResultSet rs, String columnName)
+      throws SQLException {
+    return toSpooledClob(rs.getClob(columnName));
+  }
+
+  @Override
+  public SpooledClob getNullableResult(ResultSet rs, int columnIndex)
+      throws SQLException {
+    return toSpooledClob(rs.getClob(columnIndex));
+  }
+
+  @Override
+  public SpooledClob getNullableResult(CallableStatement cs, int columnIndex)
+      throws SQLException {
+    return toSpooledClob(cs.getClob(columnIndex));
+  }
+
+  private SpooledClob toSpooledClob(Clob clob) throws SQLException {
+    if (clob == null) {
+      return null;
+    }
+    try (Reader reader = clob.getCharacterStream()) {
+      return SpooledClob.spool(reader, clob.length(), getThreshold());
+    } catch (IOException e) {
+      throw new SQLException("Error spooling CLOB.  Cause: " + e, e);
+    }
+  }
+
+}
@@ -0,0 +1,262 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.type;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 已经从结果集中完整读出的LOB内容
+ * <p>
+ * 不超过内存阈值的内容存放在堆内存(ByteBuffer)中，超过阈值的内容写入临时文件，读取时使用内存映射。
+ * 内容与{@link java.sql.ResultSet}以及连接无关，会话关闭之后依然可以读取。
+ * 临时文件在调用{@link #free()}(或{@link #close()})时删除；结果映射得到的LOB通常不会被显式释放，
+ * 这时临时文件在LOB对象被回收之后、下一次写入临时文件时删除，JVM退出时删除剩余的文件。
+ *
+ * @since 3.5.0
+ */
+public abstract class SpooledLob implements Closeable {
+
+  private static final int CHUNK_SIZE = 8192;
+
+  // 已经被回收的LOB的临时文件
+  private static final ReferenceQueue<SpooledLob> collected = new ReferenceQueue<>();
+  // 保证引用在LOB被回收之前不会被回收
+  private static final Set<TempFile> tempFiles = ConcurrentHashMap.newKeySet();
+
+  // 内存中的内容，写入临时文件时为null
+  private final ByteBuffer memory;
+  // 临时文件，内容在内存中时为null
+  private final Path file;
+  private final long byteLength;
+  // LOB被回收之后删除临时文件，内容在内存中时为null
+  private final TempFile tempFile;
+  private volatile boolean freed;
+
+  protected SpooledLob(Spool spool) {
+    this.memory = spool.memory;
+    this.file = spool.file;
+    this.byteLength = spool.position;
+    this.tempFile = file == null ? null : new TempFile(this, file);
+  }
+
+  /**
+   * @return 内容是否在内存中
+   */
+  public boolean isInMemory() {
+    return memory != null;
+  }
+
+  /**
+   * @return 内容占用的字节数
+   */
+  protected long byteLength() {
+    return byteLength;
+  }
+
+  /**
+   * 获取内容的只读视图，临时文件通过内存映射读取
+   *
+   * @return 超过2GB的临时文件无法映射，返回null
+   */
+  protected ByteBuffer byteBuffer() throws IOException {
+    checkNotFreed();
+    if (memory != null) {
+      return memory.asReadOnlyBuffer();
+    }
+    if (byteLength > Integer.MAX_VALUE) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, byteLength);
+    }
+  }
+
+  protected InputStream openByteStream() throws IOException {
+    ByteBuffer buffer = byteBuffer();
+    if (buffer == null) {
+      return new MappedFileInputStream(this, file, byteLength);
+    }
+    return new ByteBufferInputStream(buffer);
+  }
+
+  /**
+   * 释放内容，删除临时文件
+   */
+  public void free() throws IOException {
+    freed = true;
+    if (tempFile != null) {
+      tempFile.delete();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    free();
+  }
+
+  private void checkNotFreed() throws IOException {
+    if (freed) {
+      throw new IOException("The LOB content has already been freed.");
+    }
+  }
+
+  /**
+   * 删除已经被回收的LOB的临时文件
+   */
+  static void deleteCollectedFiles() {
+    Reference<? extends SpooledLob> reference;
+    while ((reference = collected.poll()) != null) {
+      try {
+        ((TempFile) reference).delete();
+      } catch (IOException e) {
+        // JVM退出时删除
+      }
+    }
+  }
+
+  Path tempFile() {
+    return file;
+  }
+
+  private static final class TempFile extends PhantomReference<SpooledLob> {
+
+    private final Path path;
+
+    TempFile(SpooledLob lob, Path path) {
+      super(lob, collected);
+      this.path = path;
+      tempFiles.add(this);
+    }
+
+    void delete() throws IOException {
+      tempFiles.remove(this);
+      clear();
+      Files.deleteIfExists(path);
+    }
+  }
+
+  /**
+   * 写入LOB内容，超过阈值时从内存转移到临时文件
+   */
+  protected static final class Spool {
+
+    private final long threshold;
+    private ByteBuffer memory;
+    private Path file;
+    private FileChannel channel;
+    private long position;
+
+    /**
+     * @param expectedBytes 预计写入的字节数，用来决定是否直接写入临时文件
+     * @param threshold 内存阈值(字节)
+     */
+    Spool(long expectedBytes, long threshold) throws IOException {
+      this.threshold = threshold;
+      if (expectedBytes <= threshold) {
+        memory = ByteBuffer.allocate((int) expectedBytes);
+      } else {
+        spill();
+      }
+    }
+
+    void write(ByteBuffer src) throws IOException {
+      if (memory != null && src.remaining() > memory.remaining()) {
+        // 实际内容比预计的长
+        long required = position + src.remaining();
+        if (required <= threshold) {
+          ByteBuffer grown = ByteBuffer.allocate((int) Math.min(threshold, Math.max(required, memory.capacity() * 2L)));
+          memory.flip();
+          grown.put(memory);
+          memory = grown;
+        } else {
+          spill();
+        }
+      }
+      position += src.remaining();
+      if (memory != null) {
+        memory.put(src);
+      } else {
+        while (src.hasRemaining()) {
+          channel.write(src);
+        }
+      }
+    }
+
+    void writeFrom(InputStream in) throws IOException {
+      byte[] chunk = new byte[CHUNK_SIZE];
+      int n;
+      while ((n = in.read(chunk)) != -1) {
+        write(ByteBuffer.wrap(chunk, 0, n));
+      }
+    }
+
+    private void spill() throws IOException {
+      deleteCollectedFiles();
+      file = Files.createTempFile("mybatis-lob-", ".tmp");
+      // 没有被释放也没有被回收的文件
+      file.toFile().deleteOnExit();
+      channel = FileChannel.open(file, StandardOpenOption.WRITE);
+      if (memory != null) {
+        memory.flip();
+        while (memory.hasRemaining()) {
+          channel.write(memory);
+        }
+        memory = null;
+      }
+    }
+
+    /**
+     * 写入完成
+     */
+    Spool finish() throws IOException {
+      if (memory != null) {
+        memory.flip();
+      } else {
+        channel.close();
+      }
+      return this;
+    }
+
+    /**
+     * 写入失败时删除临时文件
+     */
+    void discard() {
+      try {
+        if (channel != null) {
+          channel.close();
+        }
+        if (file != null) {
+          Files.deleteIfExists(file);
+        }
+      } catch (IOException e) {
+        // ignore
+      }
+    }
+  }
+
+}
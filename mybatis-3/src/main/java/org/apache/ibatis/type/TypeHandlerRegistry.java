@@ -22,6 +22,8 @@ import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -38,10 +40,12 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.ibatis.binding.MapperMethod.ParamMap;
 import org.apache.ibatis.io.ResolverUtil;
@@ -61,6 +65,13 @@ public final class TypeHandlerRegistry {
   private static final Map<JdbcType, TypeHandler<?>> NULL_TYPE_HANDLER_MAP = Collections.emptyMap();
 
   private Class<? extends TypeHandler> defaultEnumTypeHandler = EnumTypeHandler.class;
+  // 默认注册的SpooledBlob/SpooledClob处理器在读取时使用的内存阈值
+  private volatile long lobSpoolThreshold = SpooledBlobTypeHandler.DEFAULT_THRESHOLD;
+
+  // freeze()之后的只读解析表，注册新的类型处理器后失效，下次查找时重新生成
+  private volatile ResolutionTable resolutionTable;
+  private volatile boolean frozen;
+  private final AtomicInteger registrationCount = new AtomicInteger();
 
   public TypeHandlerRegistry() {
     register(Boolean.class, new BooleanTypeHandler());
@@ -128,6 +139,10 @@ public final class TypeHandlerRegistry {
     register(byte[].class, JdbcType.LONGVARBINARY, new BlobTypeHandler());
     register(JdbcType.LONGVARBINARY, new BlobTypeHandler());
     register(JdbcType.BLOB, new BlobTypeHandler());
+    register(SpooledBlob.class, new SpooledBlobTypeHandler(this));
+    register(SpooledClob.class, new SpooledClobTypeHandler(this));
+    register(ByteBuffer.class, new ByteBufferTypeHandler());
+    register(Path.class, new PathTypeHandler());
 
     register(Object.class, UNKNOWN_TYPE_HANDLER);
     register(Object.class, JdbcType.OTHER, UNKNOWN_TYPE_HANDLER);
@@ -173,6 +188,24 @@ public final class TypeHandlerRegistry {
     this.defaultEnumTypeHandler = typeHandler;
   }
 
+  /**
+   * @return 默认注册的{@link SpooledBlobTypeHandler}和{@link SpooledClobTypeHandler}使用的内存阈值
+   * @since 3.5.0
+   */
+  public long getLobSpoolThreshold() {
+    return lobSpoolThreshold;
+  }
+
+  /**
+   * 只影响默认注册的处理器，不替换已经注册的处理器
+   *
+   * @param lobSpoolThreshold 内存阈值(字节)，超过的内容写入临时文件
+   * @since 3.5.0
+   */
+  public void setLobSpoolThreshold(long lobSpoolThreshold) {
+    this.lobSpoolThreshold = SpooledBlobTypeHandler.checkThreshold(lobSpoolThreshold);
+  }
+
   public boolean hasTypeHandler(Class<?> javaType) {
     return hasTypeHandler(javaType, null);
   }
@@ -218,6 +251,18 @@ public final class TypeHandlerRegistry {
     if (ParamMap.class.equals(type)) {
       return null;
     }
+    if (frozen && type instanceof Class) {
+      ResolutionTable table = resolutionTable;
+      if (table == null) {
+        table = refreeze();
+      }
+      if (table != null) {
+        TypeHandler<?>[] handlers = table.get((Class<?>) type);
+        if (handlers != null) {
+          return (TypeHandler<T>) handlers[ResolutionTable.slot(jdbcType)];
+        }
+      }
+    }
     Map<JdbcType, TypeHandler<?>> jdbcHandlerMap = getJdbcHandlerMap(type);
     TypeHandler<?> handler = null;
     if (jdbcHandlerMap != null) {
@@ -249,6 +294,10 @@ public final class TypeHandlerRegistry {
         }
       } else {
         jdbcHandlerMap = getJdbcHandlerMapForSuperclass(clazz);
+        if (jdbcHandlerMap == null && Path.class.isAssignableFrom(clazz)) {
+          // Path的实现类(UnixPath等)不是公开类型，按接口查找
+          jdbcHandlerMap = TYPE_HANDLER_MAP.get(Path.class);
+        }
       }
     }
     TYPE_HANDLER_MAP.put(type, jdbcHandlerMap == null ? NULL_TYPE_HANDLER_MAP : jdbcHandlerMap);
@@ -300,6 +349,65 @@ public final class TypeHandlerRegistry {
     return soleHandler;
   }
 
+  /**
+   * 将当前已注册的类型处理器编译成只读的解析表(Class -> 按JdbcType序号索引的处理器数组)，
+   * 之后按Class查找类型处理器时优先使用解析表。
+   * 冻结后仍然可以注册新的类型处理器，注册会使解析表失效，并在下一次查找时重新生成。
+   *
+   * @since 3.5.0
+   */
+  public void freeze() {
+    frozen = true;
+    refreeze();
+  }
+
+  public boolean isFrozen() {
+    return frozen;
+  }
+
+  private synchronized ResolutionTable refreeze() {
+    ResolutionTable table = resolutionTable;
+    if (table != null) {
+      return table;
+    }
+    int count = registrationCount.get();
+    table = new ResolutionTable();
+    for (Entry<Type, Map<JdbcType, TypeHandler<?>>> entry : TYPE_HANDLER_MAP.entrySet()) {
+      if (entry.getKey() instanceof Class && !ParamMap.class.equals(entry.getKey())) {
+        table.put((Class<?>) entry.getKey(), resolveAll(entry.getValue()));
+      }
+    }
+    // 生成期间有新的注册，本次结果可能不完整，不发布
+    if (count != registrationCount.get()) {
+      return null;
+    }
+    resolutionTable = table;
+    return table;
+  }
+
+  private TypeHandler<?>[] resolveAll(Map<JdbcType, TypeHandler<?>> jdbcHandlerMap) {
+    TypeHandler<?>[] handlers = new TypeHandler<?>[ResolutionTable.SLOTS];
+    if (NULL_TYPE_HANDLER_MAP.equals(jdbcHandlerMap)) {
+      return handlers;
+    }
+    TypeHandler<?> defaultHandler = jdbcHandlerMap.get(null);
+    if (defaultHandler == null) {
+      // #591
+      defaultHandler = pickSoleHandler(jdbcHandlerMap);
+    }
+    handlers[ResolutionTable.slot(null)] = defaultHandler;
+    for (JdbcType jdbcType : JdbcType.values()) {
+      TypeHandler<?> handler = jdbcHandlerMap.get(jdbcType);
+      handlers[ResolutionTable.slot(jdbcType)] = handler == null ? defaultHandler : handler;
+    }
+    return handlers;
+  }
+
+  private void registrationChanged() {
+    registrationCount.incrementAndGet();
+    resolutionTable = null;
+  }
+
   public TypeHandler<Object> getUnknownTypeHandler() {
     return UNKNOWN_TYPE_HANDLER;
   }
@@ -377,6 +485,7 @@ public final class TypeHandlerRegistry {
         TYPE_HANDLER_MAP.put(javaType, map);
       }
       map.put(jdbcType, handler);
+      registrationChanged();
     }
     ALL_TYPE_HANDLERS_MAP.put(handler.getClass(), handler);
   }
@@ -462,4 +571,27 @@ public final class TypeHandlerRegistry {
     return Collections.unmodifiableCollection(ALL_TYPE_HANDLERS_MAP.values());
   }
   
+  /**
+   * 只读的类型处理器解析表，按Class的引用查找，每个Class对应一个按JdbcType序号索引的处理器数组，
+   * 0号位置对应jdbcType为null的情况，数组中已经预先处理好了回退到默认处理器的逻辑
+   */
+  private static final class ResolutionTable {
+
+    static final int SLOTS = JdbcType.values().length + 1;
+
+    private final Map<Class<?>, TypeHandler<?>[]> handlers = new IdentityHashMap<>();
+
+    static int slot(JdbcType jdbcType) {
+      return jdbcType == null ? 0 : jdbcType.ordinal() + 1;
+    }
+
+    void put(Class<?> type, TypeHandler<?>[] typeHandlers) {
+      handlers.put(type, typeHandlers);
+    }
+
+    TypeHandler<?>[] get(Class<?> type) {
+      return handlers.get(type);
+    }
+  }
+
 }
@@ -0,0 +1,127 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.StatisticsCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.Test;
+
+public class CacheStatisticsTest {
+
+  @Test
+  public void shouldCountCacheOperations() {
+    CacheStatistics statistics = new CacheStatistics("default");
+    LruCache lru = new LruCache(new PerpetualCache("default"));
+    lru.setSize(3);
+    Cache cache = new StatisticsCache(lru, statistics);
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, "value" + i);
+    }
+    cache.getObject(4);
+    cache.getObject(3);
+    cache.getObject(0);
+    cache.removeObject(4);
+    cache.removeObject(4);
+    cache.clear();
+
+    assertEquals(5, statistics.getPuts());
+    assertEquals(2, statistics.getEvictions());
+    assertEquals(2, statistics.getHits());
+    assertEquals(1, statistics.getMisses());
+    assertEquals(3, statistics.getRequests());
+    assertEquals(2.0 / 3, statistics.getHitRatio(), 0.0001);
+    assertEquals(1, statistics.getRemovals());
+    assertEquals(1, statistics.getClears());
+    assertEquals(0, statistics.getSize());
+  }
+
+  @Test
+  public void shouldNotCountOverwritesAsEvictions() {
+    CacheStatistics statistics = new CacheStatistics("default");
+    LruCache lru = new LruCache(new PerpetualCache("default"));
+    lru.setSize(2);
+    Cache cache = new StatisticsCache(lru, statistics);
+    cache.putObject(1, "value");
+    cache.putObject(1, "changed");
+    cache.putObject(2, "value");
+    cache.putObject(2, "changed");
+    assertEquals(0, statistics.getEvictions());
+    cache.putObject(3, "value");
+    assertEquals(1, statistics.getEvictions());
+    assertEquals(0, statistics.getHits() + statistics.getMisses());
+  }
+
+  @Test
+  public void shouldEstimateEntrySizes() {
+    CacheStatistics statistics = new CacheStatistics("default");
+    Cache cache = new StatisticsCache(new PerpetualCache("default"), statistics);
+    for (int i = 0; i < 100; i++) {
+      cache.putObject(i, new byte[1000]);
+    }
+    assertEquals(100, statistics.getSize());
+    assertTrue(statistics.getAverageEntryBytes() >= 1000);
+    assertTrue(statistics.getAverageEntryBytes() < 1100);
+    assertEquals(statistics.getAverageEntryBytes() * 100, statistics.getEstimatedBytes());
+  }
+
+  @Test
+  public void shouldFindTheMostFrequentKeys() {
+    CacheStatistics statistics = new CacheStatistics("default");
+    Cache cache = new StatisticsCache(new PerpetualCache("default"), statistics);
+    for (int i = 0; i < 4000; i++) {
+      cache.getObject("hot");
+      if (i % 2 == 0) {
+        cache.getObject("warm");
+      }
+      cache.getObject("cold" + i);
+    }
+    Map<String, Long> top = statistics.getTopKeys(2);
+    assertEquals(2, top.size());
+    String[] keys = top.keySet().toArray(new String[0]);
+    assertEquals("hot", keys[0]);
+    assertEquals("warm", keys[1]);
+    // 按采样间隔放大的估算次数
+    assertEquals(4000, top.get("hot"), 1000);
+  }
+
+  @Test
+  public void shouldRecordStatementLoadsAndHits() {
+    CacheStatistics statistics = new CacheStatistics("default");
+    statistics.recordStatementLoad("select", 2_000_000);
+    statistics.recordStatementHit("select");
+    statistics.recordStatementHit("select");
+    statistics.recordStatementHit("other");
+
+    CacheStatistics.StatementStatistics select = statistics.getStatementStatistics("select");
+    assertEquals(2, select.getHits());
+    assertEquals(1, select.getMisses());
+    assertEquals(2_000_000, select.getLoadTimeNanos());
+    assertEquals(1, statistics.getLoads());
+    assertEquals(2.0, statistics.getAverageLoadTimeMillis(), 0.0001);
+    assertEquals("select", statistics.getStatementStatistics().get(0).getStatementId());
+
+    statistics.reset();
+    assertEquals(0, statistics.getLoads());
+    assertTrue(statistics.getStatementStatistics().isEmpty());
+  }
+
+}
@@ -0,0 +1,229 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.ibatis.cache.impl.DiskCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DiskCacheTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final List<DiskCache> caches = new ArrayList<>();
+  private long now = 1000000;
+
+  @Before
+  public void setUp() {
+    now = 1000000;
+  }
+
+  @After
+  public void tearDown() {
+    for (DiskCache cache : caches) {
+      cache.close();
+    }
+  }
+
+  private DiskCache open(String fingerprint) {
+    DiskCache cache = new DiskCache("org.example.PersonMapper") {
+      @Override
+      protected long now() {
+        return now;
+      }
+    };
+    cache.setDirectory(folder.getRoot().getPath());
+    cache.setMaxFileSize(64 * 1024);
+    cache.setMemorySize(4);
+    cache.setFingerprint(fingerprint);
+    cache.initialize();
+    caches.add(cache);
+    return cache;
+  }
+
+  private DiskCache restart(DiskCache cache, String fingerprint) {
+    cache.close();
+    return open(fingerprint);
+  }
+
+  @Test
+  public void shouldReturnCopies() {
+    DiskCache cache = open("v1");
+    List<String> value = new ArrayList<>(Arrays.asList("a", "b"));
+    cache.putObject("key", value);
+    assertEquals(value, cache.getObject("key"));
+    assertNotSame(value, cache.getObject("key"));
+    assertEquals(1, cache.getSize());
+  }
+
+  @Test
+  public void shouldSurviveRestart() {
+    DiskCache cache = open("v1");
+    for (int i = 0; i < 100; i++) {
+      cache.putObject(i, "value" + i);
+    }
+    cache.putObject(1, "changed");
+    cache.removeObject(2);
+    cache = restart(cache, "v1");
+    assertEquals(99, cache.getSize());
+    assertEquals("changed", cache.getObject(1));
+    assertNull(cache.getObject(2));
+    assertEquals("value99", cache.getObject(99));
+    assertEquals(0, cache.getMemoryHitCount());
+    assertEquals("value99", cache.getObject(99));
+    // 第二次从内存层读取
+    assertEquals(1, cache.getMemoryHitCount());
+    assertEquals(2, cache.getDiskHitCount());
+  }
+
+  @Test
+  public void shouldDiscardContentWhenFingerprintChanges() {
+    DiskCache cache = open("v1");
+    cache.putObject("key", "value");
+    cache = restart(cache, "v2");
+    assertEquals(0, cache.getSize());
+    assertNull(cache.getObject("key"));
+  }
+
+  @Test
+  public void shouldIgnoreTornWrites() throws IOException {
+    DiskCache cache = open("v1");
+    cache.putObject("first", "value1");
+    long end = cache.getUsedBytes();
+    cache.putObject("second", "value2");
+    cache.close();
+    // 模拟写入途中退出: 破坏第二条记录的内容
+    try (RandomAccessFile file = new RandomAccessFile(cache.getFile().toFile(), "rw")) {
+      file.seek(end + 10);
+      file.write(0x7F);
+    }
+    cache = open("v1");
+    assertEquals("value1", cache.getObject("first"));
+    assertNull(cache.getObject("second"));
+    cache.putObject("third", "value3");
+    cache = restart(cache, "v1");
+    assertEquals("value3", cache.getObject("third"));
+  }
+
+  @Test
+  public void shouldExpireEntries() {
+    DiskCache cache = open("v1");
+    cache.setMaxAge(1000);
+    cache.putObject("key", "value");
+    now += 500;
+    assertEquals("value", cache.getObject("key"));
+    now += 600;
+    assertNull(cache.getObject("key"));
+    cache.putObject("other", "value");
+    now += 2000;
+    cache = restart(cache, "v1");
+    cache.setMaxAge(1000);
+    cache.initialize();
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void shouldCompactWhenFull() {
+    DiskCache cache = open("v1");
+    char[] chars = new char[1000];
+    Arrays.fill(chars, 'x');
+    String payload = new String(chars);
+    for (int i = 0; i < 1000; i++) {
+      cache.putObject(i % 10, payload + i);
+    }
+    assertTrue(cache.getCompactionCount() > 0);
+    assertTrue(cache.getUsedBytes() <= 64 * 1024);
+    cache = restart(cache, "v1");
+    assertEquals(10, cache.getSize());
+    for (int i = 0; i < 10; i++) {
+      assertEquals(payload + (990 + i), cache.getObject(i));
+    }
+  }
+
+  @Test
+  public void shouldNotResurrectOldValueWhenNewValueDoesNotFit() {
+    DiskCache cache = open("v1");
+    cache.putObject("key", "old");
+    char[] chars = new char[70 * 1024];
+    Arrays.fill(chars, 'x');
+    String large = new String(chars);
+    cache.putObject("key", large);
+    assertEquals(large, cache.getObject("key"));
+    // 放不下的条目不会触发压缩
+    assertEquals(0, cache.getCompactionCount());
+    cache = restart(cache, "v1");
+    assertNull(cache.getObject("key"));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void shouldClearPersistently() {
+    DiskCache cache = open("v1");
+    cache.putObject("key", "value");
+    cache.clear();
+    cache = restart(cache, "v1");
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void shouldKeepUnserializableKeysInMemory() {
+    DiskCache cache = open("v1");
+    Object key = new Object();
+    cache.putObject(key, "value");
+    assertEquals("value", cache.getObject(key));
+  }
+
+  @Test
+  public void shouldFallBackToMemoryWhenFileIsInUse() {
+    DiskCache first = open("v1");
+    DiskCache second = open("v1");
+    second.putObject("key", "value");
+    assertEquals("value", second.getObject("key"));
+    assertEquals(0, second.getUsedBytes());
+    assertEquals(0, first.getSize());
+  }
+
+  @Test
+  public void shouldBeConfiguredByCacheBuilder() {
+    Properties properties = new Properties();
+    properties.setProperty("directory", folder.getRoot().getPath());
+    properties.setProperty("maxFileSize", "65536");
+    properties.setProperty("fingerprint", "v1");
+    Cache cache = new CacheBuilder("org.example.BlogMapper").implementation(DiskCache.class).properties(properties).build();
+    cache.putObject("key", "value");
+    assertEquals("value", cache.getObject("key"));
+    assertTrue(new File(folder.getRoot(), "org.example.BlogMapper.log").exists());
+  }
+
+}
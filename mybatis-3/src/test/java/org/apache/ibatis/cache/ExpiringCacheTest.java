@@ -0,0 +1,182 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.apache.ibatis.cache.decorators.ExpiringCache;
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.Test;
+
+public class ExpiringCacheTest {
+
+  private long now = 1_000_000L;
+
+  private ExpiringCache newCache() {
+    ExpiringCache cache = new ExpiringCache(new PerpetualCache("default")) {
+      @Override
+      protected long now() {
+        return now;
+      }
+    };
+    cache.setTickDuration(10);
+    return cache;
+  }
+
+  @Test
+  public void shouldExpireAfterWrite() {
+    ExpiringCache cache = newCache();
+    cache.setExpireAfterWrite(100);
+    cache.putObject("key", "value");
+    cache.putObject("other", "value");
+    now += 50;
+    assertEquals("value", cache.getObject("key"));
+    now += 60;
+    // 没有被访问的条目由时间轮移除
+    assertEquals(0, cache.getSize());
+    assertNull(cache.getObject("key"));
+    assertEquals(0, cache.getExpiringSize());
+  }
+
+  @Test
+  public void shouldExpireAfterAccess() {
+    ExpiringCache cache = newCache();
+    cache.setExpireAfterAccess(100);
+    cache.putObject("key", "value");
+    for (int i = 0; i < 10; i++) {
+      now += 80;
+      assertEquals("value", cache.getObject("key"));
+    }
+    now += 120;
+    assertNull(cache.getObject("key"));
+  }
+
+  @Test
+  public void shouldNotExpireWithoutTimeToLive() {
+    ExpiringCache cache = newCache();
+    cache.putObject("key", "value");
+    now += 1_000_000_000L;
+    assertEquals("value", cache.getObject("key"));
+    assertEquals(0, cache.getExpiringSize());
+  }
+
+  @Test
+  public void shouldUsePerEntryExpiry() {
+    ExpiringCache cache = newCache();
+    cache.setExpireAfterWrite(1000);
+    CacheExpiry.putObject(cache, "short", "value", CacheExpiry.of(100L, null));
+    CacheExpiry.putObject(cache, "eternal", "value", CacheExpiry.of(0L, null));
+    cache.putObject("default", "value");
+    now += 200;
+    assertNull(cache.getObject("short"));
+    assertEquals("value", cache.getObject("default"));
+    now += 1000;
+    assertNull(cache.getObject("default"));
+    assertEquals("value", cache.getObject("eternal"));
+  }
+
+  @Test
+  public void shouldExpireEntriesOnHigherWheelLevels() {
+    ExpiringCache cache = newCache();
+    for (int i = 0; i < 100; i++) {
+      CacheExpiry.putObject(cache, i, i, CacheExpiry.of(i * 1000L + 1, null));
+    }
+    for (int i = 0; i < 100; i++) {
+      now += 1000;
+      cache.getObject("nothing");
+      assertEquals(99 - i, cache.getSize());
+    }
+  }
+
+  @Test
+  public void shouldSurviveLongIdlePeriods() {
+    ExpiringCache cache = newCache();
+    cache.setExpireAfterWrite(100);
+    cache.putObject("key", "value");
+    now += 365L * 24 * 60 * 60 * 1000;
+    assertEquals(0, cache.getSize());
+    cache.putObject("key", "value");
+    now += 50;
+    assertEquals("value", cache.getObject("key"));
+  }
+
+  @Test
+  public void shouldRefreshAheadOnce() {
+    ExpiringCache cache = newCache();
+    cache.setExpireAfterWrite(100);
+    cache.setRefreshAhead(0.8);
+    cache.putObject("key", "value");
+    now += 50;
+    assertEquals("value", cache.getObject("key"));
+    now += 40;
+    // 第一个读取者重新加载，其他读取者继续使用旧值
+    assertNull(cache.getObject("key"));
+    assertEquals("value", cache.getObject("key"));
+    cache.putObject("key", "refreshed");
+    now += 50;
+    assertEquals("refreshed", cache.getObject("key"));
+  }
+
+  @Test
+  public void shouldRetryRefreshThatWasNotWrittenBack() {
+    ExpiringCache cache = newCache();
+    cache.setExpireAfterWrite(100);
+    cache.setRefreshAhead(0.6);
+    cache.putObject("key", "value");
+    now += 60;
+    assertNull(cache.getObject("key"));
+    assertEquals("value", cache.getObject("key"));
+    // 重新加载失败，剩余存活时间过半后再让一个读取者重新加载
+    now += 20;
+    assertNull(cache.getObject("key"));
+    assertEquals("value", cache.getObject("key"));
+  }
+
+  @Test
+  public void shouldPurgeEntriesEvictedByDelegate() {
+    LruCache lru = new LruCache(new PerpetualCache("default"));
+    lru.setSize(2);
+    ExpiringCache cache = new ExpiringCache(lru);
+    cache.setExpireAfterWrite(100_000);
+    for (int i = 0; i < 10; i++) {
+      cache.putObject(i, i);
+    }
+    assertEquals(2, cache.getExpiringSize());
+    assertEquals(8, cache.getObject(8));
+    assertEquals(9, cache.getObject(9));
+  }
+
+  @Test
+  public void shouldRemoveAndClear() {
+    ExpiringCache cache = newCache();
+    cache.setExpireAfterWrite(100);
+    cache.putObject("key", "value");
+    cache.putObject("other", "value");
+    assertEquals("value", cache.removeObject("key"));
+    assertEquals(1, cache.getExpiringSize());
+    cache.clear();
+    assertEquals(0, cache.getExpiringSize());
+    assertNull(cache.getObject("other"));
+  }
+
+  @Test(expected = CacheException.class)
+  public void shouldRejectInvalidRefreshAhead() {
+    newCache().setRefreshAhead(1.5);
+  }
+
+}
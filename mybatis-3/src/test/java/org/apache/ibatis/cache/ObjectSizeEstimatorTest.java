@@ -0,0 +1,75 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ObjectSizeEstimatorTest {
+
+  @Test
+  public void shouldEstimateStringsAndArrays() {
+    assertThat(ObjectSizeEstimator.estimate(null)).isZero();
+    assertThat(ObjectSizeEstimator.estimate("")).isEqualTo(40);
+    assertThat(ObjectSizeEstimator.estimate(new long[10])).isEqualTo(96);
+    assertThat(ObjectSizeEstimator.estimate("0123456789")).isGreaterThan(ObjectSizeEstimator.estimate("0"));
+  }
+
+  @Test
+  public void shouldGrowWithTheNumberOfRows() {
+    List<Row> small = rows(10);
+    List<Row> large = rows(1000);
+    long smallSize = ObjectSizeEstimator.estimate(small);
+    long largeSize = ObjectSizeEstimator.estimate(large);
+    assertThat(largeSize).isBetween(smallSize * 50, smallSize * 200);
+  }
+
+  @Test
+  public void shouldCountSharedAndCyclicReferencesOnce() {
+    Row row = new Row(1);
+    row.self = row;
+    Map<String, Row> map = new HashMap<>();
+    map.put("a", row);
+    map.put("b", row);
+    assertThat(ObjectSizeEstimator.estimate(map)).isLessThan(ObjectSizeEstimator.estimate(row) * 2 + 200);
+  }
+
+  private static List<Row> rows(int count) {
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      rows.add(new Row(i));
+    }
+    return rows;
+  }
+
+  private static class Row {
+    private final int id;
+    private final String name;
+    private Row self;
+
+    Row(int id) {
+      this.id = id;
+      this.name = "name " + id;
+    }
+  }
+
+}
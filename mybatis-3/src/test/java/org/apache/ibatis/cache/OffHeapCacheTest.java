@@ -0,0 +1,144 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.ibatis.cache.impl.OffHeapCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.Test;
+
+public class OffHeapCacheTest {
+
+  @Test
+  public void shouldDemonstrateCopiesAreEqual() {
+    OffHeapCache cache = new OffHeapCache("default");
+    for (int i = 0; i < 1000; i++) {
+      List<String> value = new ArrayList<>(Arrays.asList("row" + i, "value" + i));
+      cache.putObject(i, value);
+      Object copy = cache.getObject(i);
+      assertEquals(value, copy);
+      assertNotSame(value, copy);
+    }
+    assertEquals(1000, cache.getSize());
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedWhenFull() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setCapacity(8192);
+    cache.setPageSize(4096);
+    cache.initialize();
+    cache.putObject("first", payload(100));
+    for (int i = 0; i < 200; i++) {
+      cache.putObject(i, payload(100));
+      // 保持first为最近使用
+      assertNotNull(cache.getObject("first"));
+    }
+    assertTrue(cache.getSize() < 201);
+    assertTrue(cache.getEvictionCount() > 0);
+    assertTrue(cache.getAllocatedBytes() <= 8192);
+    assertNotNull(cache.getObject("first"));
+    assertNotNull(cache.getObject(199));
+    assertNull(cache.getObject(0));
+  }
+
+  @Test
+  public void shouldReassignPagesBetweenSizeClasses() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setCapacity(8192);
+    cache.setPageSize(4096);
+    cache.initialize();
+    for (int i = 0; i < 200; i++) {
+      cache.putObject(i, payload(100));
+    }
+    // 所有页都被小条目占用，大条目需要其他级别让出一页
+    cache.putObject("large", payload(3000));
+    assertNotNull(cache.getObject("large"));
+    assertTrue(cache.getAllocatedBytes() <= 8192);
+  }
+
+  @Test
+  public void shouldNotCacheValuesLargerThanPage() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setCapacity(8192);
+    cache.setPageSize(4096);
+    cache.initialize();
+    cache.putObject("huge", payload(5000));
+    assertNull(cache.getObject("huge"));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void shouldRemoveItemOnDemand() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.putObject(0, 0);
+    assertNotNull(cache.getObject(0));
+    assertEquals(0, cache.removeObject(0));
+    assertNull(cache.getObject(0));
+    assertEquals(0, cache.getUsedBytes());
+  }
+
+  @Test
+  public void shouldFlushAllItemsOnDemand() {
+    OffHeapCache cache = new OffHeapCache("default");
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    assertNotNull(cache.getObject(0));
+    assertNotNull(cache.getObject(4));
+    cache.clear();
+    assertNull(cache.getObject(0));
+    assertNull(cache.getObject(4));
+    cache.putObject(0, 0);
+    assertEquals(0, cache.getObject(0));
+  }
+
+  @Test
+  public void shouldBeConfiguredWithCacheProperties() {
+    Properties props = new Properties();
+    props.setProperty("capacity", "16384");
+    props.setProperty("pageSize", "8192");
+    props.setProperty("growthFactor", "1.5");
+    Cache cache = new CacheBuilder("default").implementation(OffHeapCache.class).properties(props).build();
+    cache.putObject("key", "value");
+    assertEquals("value", cache.getObject("key"));
+  }
+
+  @Test(expected = CacheException.class)
+  public void shouldRejectInvalidConfiguration() {
+    Properties props = new Properties();
+    props.setProperty("capacity", "1024");
+    props.setProperty("pageSize", "8192");
+    new CacheBuilder("default").implementation(OffHeapCache.class).properties(props).build();
+  }
+
+  private static byte[] payload(int size) {
+    byte[] bytes = new byte[size];
+    Arrays.fill(bytes, (byte) 1);
+    return bytes;
+  }
+
+}
@@ -0,0 +1,122 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.cache.copy.ResultMapCopyStrategy;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.domain.blog.Blog;
+import org.apache.ibatis.domain.blog.Section;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ResultMapCopyStrategyTest {
+
+  private static SqlSessionFactory sqlSessionFactory;
+
+  @BeforeClass
+  public static void setup() throws Exception {
+    BaseDataTest.createBlogDataSource();
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/builder/MapperConfig.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void shouldCopyNestedResultsWithoutJavaSerialization() {
+    List<Blog> blogs;
+    try (SqlSession session = sqlSessionFactory.openSession()) {
+      blogs = session.selectList("org.apache.ibatis.domain.blog.mappers.BlogMapper.selectBlogJoinedWithPostsAndAuthor", 1);
+    }
+    assertThat(blogs).hasSize(1);
+    assertThat(blogs.get(0).getPosts()).isNotEmpty();
+
+    CopyStrategy strategy = new ResultMapCopyStrategy(sqlSessionFactory.getConfiguration());
+    // Blog没有实现Serializable，只能按结构编码
+    byte[] stored = (byte[]) strategy.copyOnWrite(blogs);
+    assertThat(stored[0]).isEqualTo((byte) 1);
+
+    List<Blog> copy = (List<Blog>) strategy.copyOnRead(stored);
+    assertThat(copy).isNotSameAs(blogs);
+    assertThat(copy.get(0)).isNotSameAs(blogs.get(0));
+    assertThat(copy.get(0).getPosts().get(0)).isNotSameAs(blogs.get(0).getPosts().get(0));
+    assertThat(copy.get(0)).isEqualToComparingFieldByFieldRecursively(blogs.get(0));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void shouldPreserveSharedReferences() {
+    Author author = new Author(101, "jim", "********", "jim@ibatis.apache.org", "Something...", Section.NEWS);
+    List<Object> value = new ArrayList<>();
+    value.add(author);
+    value.add(author);
+    value.add(value);
+
+    CopyStrategy strategy = new ResultMapCopyStrategy(sqlSessionFactory.getConfiguration());
+    List<Object> copy = (List<Object>) strategy.copyOnRead(strategy.copyOnWrite(value));
+    assertThat(copy.get(0)).isNotSameAs(author).isEqualTo(author);
+    assertThat(copy.get(1)).isSameAs(copy.get(0));
+    assertThat(copy.get(2)).isSameAs(copy);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void shouldCopyMapResults() {
+    Map<String, Object> row = new HashMap<>();
+    row.put("ID", 1);
+    row.put("NAME", "jim");
+    row.put("AMOUNT", new BigDecimal("12.50"));
+    row.put("CREATED", new Timestamp(123456789L));
+    row.put("DATA", null);
+    List<Map<String, Object>> value = new ArrayList<>();
+    value.add(row);
+
+    CopyStrategy strategy = new ResultMapCopyStrategy(sqlSessionFactory.getConfiguration());
+    byte[] stored = (byte[]) strategy.copyOnWrite(value);
+    assertThat(stored[0]).isEqualTo((byte) 1);
+    List<Map<String, Object>> copy = (List<Map<String, Object>>) strategy.copyOnRead(stored);
+    assertThat(copy).isEqualTo(value);
+    assertThat(copy.get(0)).isNotSameAs(row);
+  }
+
+  @Test
+  public void shouldFallBackToJavaSerializationForUnknownTypes() {
+    Map<String, Object> value = new TreeMap<>();
+    value.put("id", 1);
+
+    CopyStrategy strategy = new ResultMapCopyStrategy(sqlSessionFactory.getConfiguration());
+    byte[] stored = (byte[]) strategy.copyOnWrite(value);
+    assertThat(stored[0]).isEqualTo((byte) 0xAC);
+    assertThat(strategy.copyOnRead(stored)).isEqualTo(value).isNotSameAs(value);
+  }
+
+}
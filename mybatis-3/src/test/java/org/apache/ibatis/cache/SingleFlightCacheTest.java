@@ -0,0 +1,213 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.decorators.SingleFlightCache;
+import org.apache.ibatis.cache.decorators.TransactionalCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.Test;
+
+public class SingleFlightCacheTest {
+
+  @Test
+  public void shouldCoalesceConcurrentLoads() throws Exception {
+    SingleFlightCache cache = new SingleFlightCache(new SerializedCache(new PerpetualCache("default")));
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Object>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        results.add(executor.submit(() -> {
+          TransactionalCache tx = new TransactionalCache(cache);
+          Object value = tx.getObject("key", () -> {
+            loads.incrementAndGet();
+            release.await();
+            return new ArrayList<>(Arrays.asList("a", "b"));
+          });
+          tx.commit();
+          return value;
+        }));
+      }
+      // 等待所有线程都到达之后再结束加载
+      Thread.sleep(200);
+      release.countDown();
+      Set<Object> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+      for (Future<Object> result : results) {
+        Object value = result.get(5, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("a", "b"), value);
+        distinct.add(value);
+      }
+      assertEquals(1, loads.get());
+      // 每个线程得到各自的副本
+      assertEquals(8, distinct.size());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldKeepLoadInFlightUntilReleased() {
+    SingleFlightCache cache = new SingleFlightCache(new PerpetualCache("default"));
+    cache.getObject("key", Object::new);
+    assertEquals(1, cache.getInFlightCount());
+    cache.removeObject("key");
+    assertEquals(0, cache.getInFlightCount());
+    cache.getObject("key", () -> "value");
+    cache.putObject("key", "value");
+    assertEquals(0, cache.getInFlightCount());
+    assertEquals("value", cache.getObject("key"));
+  }
+
+  @Test
+  public void shouldNotCoalesceBeyondMaxInFlight() {
+    SingleFlightCache cache = new SingleFlightCache(new PerpetualCache("default"));
+    cache.setMaxInFlight(1);
+    cache.getObject("key1", Object::new);
+    Object value = cache.getObject("key2", Object::new);
+    assertEquals(1, cache.getInFlightCount());
+    // 未登记的加载不会被复用
+    Object other = cache.getObject("key2", Object::new);
+    assertEquals(false, value == other);
+  }
+
+  @Test
+  public void shouldLoadItselfWhenWaitTimesOut() throws Exception {
+    SingleFlightCache cache = new SingleFlightCache(new PerpetualCache("default"));
+    cache.setTimeout(50);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread leader = new Thread(() -> {
+      try {
+        cache.getObject("key", () -> {
+          started.countDown();
+          release.await();
+          return "leader";
+        });
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    leader.start();
+    try {
+      started.await();
+      assertEquals("waiter", cache.getObject("key", () -> "waiter"));
+    } finally {
+      release.countDown();
+      leader.join();
+    }
+    cache.putObject("key", "leader");
+    assertEquals("leader", cache.getObject("key", () -> "other"));
+  }
+
+  @Test
+  public void shouldReleaseFailedLoad() {
+    SingleFlightCache cache = new SingleFlightCache(new PerpetualCache("default"));
+    try {
+      cache.getObject("key", () -> {
+        throw new SQLException("failed");
+      });
+      fail();
+    } catch (SQLException e) {
+      assertEquals("failed", e.getMessage());
+    }
+    assertEquals(0, cache.getInFlightCount());
+    assertEquals("value", cache.getObject("key", () -> "value"));
+  }
+
+  @Test
+  public void shouldNotWaitForItselfOnNestedLoad() {
+    SingleFlightCache cache = new SingleFlightCache(new PerpetualCache("default"));
+    Object value = cache.getObject("key", () -> cache.getObject("key", () -> "nested"));
+    assertEquals("nested", value);
+  }
+
+  @Test
+  public void shouldShareLoadsBetweenTransactions() throws Exception {
+    SingleFlightCache cache = new SingleFlightCache(new PerpetualCache("default"));
+    TransactionalCache tx1 = new TransactionalCache(cache);
+    TransactionalCache tx2 = new TransactionalCache(cache);
+    AtomicInteger loads = new AtomicInteger();
+    assertEquals("value1", tx1.getObject("key", () -> "value" + loads.incrementAndGet()));
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Object> waiter = executor.submit(() -> tx2.getObject("key", () -> "value" + loads.incrementAndGet()));
+      Thread.sleep(100);
+      // 提交之前不会读到加载的结果
+      assertFalse(waiter.isDone());
+      tx1.commit();
+      assertEquals("value1", waiter.get(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(1, loads.get());
+    assertEquals(0, cache.getInFlightCount());
+    assertEquals("value1", cache.getObject("key"));
+  }
+
+  @Test
+  public void shouldReloadInWaiterAfterRollback() throws Exception {
+    SingleFlightCache cache = new SingleFlightCache(new PerpetualCache("default"));
+    TransactionalCache tx1 = new TransactionalCache(cache);
+    TransactionalCache tx2 = new TransactionalCache(cache);
+    tx1.getObject("key", () -> "uncommitted");
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Object> waiter = executor.submit(() -> tx2.getObject("key", () -> "reloaded"));
+      Thread.sleep(100);
+      assertFalse(waiter.isDone());
+      tx1.rollback();
+      assertEquals("reloaded", waiter.get(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+    // 重新加载的线程成为新的加载者，直到它的会话结束
+    assertEquals(1, cache.getInFlightCount());
+    tx2.commit();
+    assertEquals(0, cache.getInFlightCount());
+    assertEquals("reloaded", cache.getObject("key"));
+  }
+
+  @Test
+  public void shouldReleaseLoadOnRollback() {
+    SingleFlightCache cache = new SingleFlightCache(new PerpetualCache("default"));
+    TransactionalCache tx = new TransactionalCache(cache);
+    tx.getObject("key", () -> "value");
+    tx.rollback();
+    assertEquals(0, cache.getInFlightCount());
+    assertEquals(null, cache.getObject("key"));
+  }
+
+}
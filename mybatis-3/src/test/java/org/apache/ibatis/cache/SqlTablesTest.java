@@ -0,0 +1,71 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class SqlTablesTest {
+
+  @Test
+  public void shouldFindReadTables() {
+    assertThat(SqlTables.readTables("select * from Person")).containsExactly("person");
+    assertThat(SqlTables.readTables("SELECT p.id, b.title FROM app.person p JOIN blog AS b ON b.author_id = p.id"))
+        .containsExactly("blog", "person");
+    assertThat(SqlTables.readTables("select * from a x, b, c as z where x.id = z.id")).containsExactly("a", "b", "c");
+    assertThat(SqlTables.readTables("select * from (select id from post) t left outer join \"Comment\" c on c.post_id = t.id"))
+        .containsExactly("comment", "post");
+    assertThat(SqlTables.readTables("select * from a where id in (select a_id from b) union select * from c"))
+        .containsExactly("a", "b", "c");
+  }
+
+  @Test
+  public void shouldIgnoreCommentsAndLiterals() {
+    assertThat(SqlTables.readTables("select 'from x' -- from y\n from /* join z */ person")).containsExactly("person");
+  }
+
+  @Test
+  public void shouldReturnNullWhenNoTableIsFound() {
+    assertThat(SqlTables.readTables("call find_people(?)")).isNull();
+    assertThat(SqlTables.readTables("values (1)")).isNull();
+    assertThat(SqlTables.writtenTables("{call update_people(?)}")).isNull();
+  }
+
+  @Test
+  public void shouldFindWrittenTables() {
+    assertThat(SqlTables.writtenTables("insert into person (id, name) values (?, ?)")).containsExactly("person");
+    assertThat(SqlTables.writtenTables("INSERT INTO archive SELECT * FROM person")).containsExactly("archive");
+    assertThat(SqlTables.writtenTables("update app.Person set name = ? where id = ?")).containsExactly("person");
+    assertThat(SqlTables.writtenTables("delete from person where id = ?")).containsExactly("person");
+    assertThat(SqlTables.writtenTables("merge into person using dual on (id = ?) when matched then update set name = ?"))
+        .containsExactly("person");
+    assertThat(SqlTables.writtenTables("insert into person values (?) on duplicate key update name = ?"))
+        .containsExactly("person");
+    assertThat(SqlTables.writtenTables("truncate table person")).containsExactly("person");
+    assertThat(SqlTables.writtenTables("update a set x = 1; delete from b")).containsExactly("a", "b");
+  }
+
+  @Test
+  public void shouldNormalizeDeclaredTables() {
+    assertThat(SqlTables.normalize("person")).isEqualTo("person");
+    assertThat(SqlTables.normalize(" App.Person ")).isEqualTo("person");
+    assertThat(SqlTables.normalize("\"app\".\"Person\"")).isEqualTo("person");
+    assertThat(SqlTables.normalize("`app`.`person`")).isEqualTo("person");
+    assertThat(SqlTables.normalize("[dbo].[Person]")).isEqualTo("person");
+  }
+
+}
@@ -0,0 +1,270 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.Consumer;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.TransactionalCacheManager;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.session.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CacheInvalidationBusTest {
+
+  private Configuration nodeA;
+  private Configuration nodeB;
+  private CacheInvalidationBus busA;
+  private CacheInvalidationBus busB;
+
+  @Before
+  public void setUp() throws Exception {
+    nodeA = newNode();
+    nodeB = newNode();
+    busA = newBus(nodeA, "bus-test");
+    busB = newBus(nodeB, "bus-test");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    busA.close();
+    busB.close();
+  }
+
+  private static Configuration newNode() {
+    Configuration configuration = new Configuration();
+    configuration.addCache(new PerpetualCache("people"));
+    configuration.addCache(new PerpetualCache("blogs"));
+    return configuration;
+  }
+
+  private static CacheInvalidationBus newBus(Configuration configuration, String channel) throws Exception {
+    LoopbackTransport transport = new LoopbackTransport();
+    transport.setChannel(channel);
+    CacheInvalidationBus bus = new CacheInvalidationBus(configuration, transport);
+    bus.setBatchDelay(0);
+    bus.start();
+    configuration.setCacheInvalidationPublisher(bus);
+    return bus;
+  }
+
+  @Test
+  public void shouldClearNamespaceOnOtherNode() {
+    Cache people = nodeB.getCache("people");
+    people.putObject("k1", "v1");
+    nodeB.getCache("blogs").putObject("k1", "v1");
+    busA.publish(Collections.singletonList(Invalidation.namespace("people")));
+    assertThat(people.getSize()).isZero();
+    assertThat(nodeB.getCache("blogs").getSize()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldDiscardMessagesWithInvalidSignature() throws Exception {
+    RecordingTransport transport = new RecordingTransport(64 * 1024);
+    CacheInvalidationBus signed = new CacheInvalidationBus(nodeA, transport);
+    signed.setSecret("secret");
+    CacheInvalidationBus receiver = new CacheInvalidationBus(nodeB, new RecordingTransport(64 * 1024));
+    receiver.setSecret("secret");
+    CacheInvalidationBus forger = new CacheInvalidationBus(nodeA, transport);
+    forger.setSecret("other");
+    Cache people = nodeB.getCache("people");
+    people.putObject("k1", "v1");
+
+    List<Invalidation> batch = Collections.singletonList(Invalidation.namespace("people"));
+    byte[] tampered = signed.encode(batch).get(0);
+    tampered[tampered.length - 1] ^= 1;
+    receiver.receive(tampered);
+    receiver.receive(forger.encode(batch).get(0));
+    receiver.receive(busA.encode(batch).get(0));
+    assertThat(people.getSize()).isEqualTo(1);
+
+    receiver.receive(signed.encode(batch).get(0));
+    assertThat(people.getSize()).isZero();
+  }
+
+  @Test
+  public void shouldDiscardMalformedMessages() throws Exception {
+    Cache people = nodeB.getCache("people");
+    people.putObject("k1", "v1");
+    byte[] message = busA.encode(Collections.singletonList(Invalidation.namespace("people"))).get(0);
+    // 未知的失效类型
+    message[24] = 9;
+    busB.receive(message);
+    // 失效数量超过消息长度
+    ByteBuffer.wrap(message, 20, 4).putInt(Integer.MAX_VALUE);
+    busB.receive(message);
+    assertThat(people.getSize()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldBumpTableVersionOnOtherNode() {
+    long before = nodeB.getTableVersions().getVersion("person");
+    busA.publish(Collections.singletonList(Invalidation.table("person")));
+    assertThat(nodeB.getTableVersions().getVersion("person")).isGreaterThan(before);
+    assertThat(nodeA.getTableVersions().getVersion("person")).isEqualTo(before);
+  }
+
+  @Test
+  public void shouldIgnoreUnknownCachesAndOwnMessages() throws Exception {
+    busA.publish(Collections.singletonList(Invalidation.namespace("unknown")));
+    Cache people = nodeA.getCache("people");
+    people.putObject("k1", "v1");
+    for (byte[] message : busA.encode(Collections.singletonList(Invalidation.namespace("people")))) {
+      busA.receive(message);
+    }
+    assertThat(people.getSize()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldCoalesceDuplicateInvalidations() throws Exception {
+    RecordingTransport transport = new RecordingTransport(64 * 1024);
+    CacheInvalidationBus bus = new CacheInvalidationBus(nodeA, transport);
+    bus.setBatchDelay(60000);
+    bus.start();
+    bus.publish(Arrays.asList(Invalidation.namespace("people"), Invalidation.table("person")));
+    bus.publish(Arrays.asList(Invalidation.namespace("people"), Invalidation.table("person")));
+    assertThat(transport.messages).isEmpty();
+    bus.flush();
+    assertThat(transport.messages).hasSize(1);
+    // 重复的命名空间和表只保留一条
+    assertThat(ByteBuffer.wrap(transport.messages.get(0), 20, 4).getInt()).isEqualTo(2);
+
+    nodeB.getCache("people").putObject("k3", "v3");
+    busB.receive(transport.messages.get(0));
+    assertThat(nodeB.getCache("people").getSize()).isZero();
+    assertThat(nodeB.getTableVersions().getVersion("person")).isEqualTo(1);
+    bus.close();
+  }
+
+  @Test
+  public void shouldSplitBatchesLargerThanTheMessageSize() throws Exception {
+    RecordingTransport transport = new RecordingTransport(100);
+    CacheInvalidationBus bus = new CacheInvalidationBus(nodeA, transport);
+    bus.setBatchDelay(0);
+    bus.start();
+    List<Invalidation> invalidations = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      invalidations.add(Invalidation.table("table_" + i));
+    }
+    bus.publish(invalidations);
+    assertThat(transport.messages.size()).isGreaterThan(1);
+    for (byte[] message : transport.messages) {
+      assertThat(message.length).isLessThanOrEqualTo(100);
+      busB.receive(message);
+    }
+    for (int i = 0; i < 20; i++) {
+      assertThat(nodeB.getTableVersions().getVersion("table_" + i)).isEqualTo(1);
+    }
+    bus.close();
+  }
+
+  @Test
+  public void shouldPublishClearedCachesOnCommit() {
+    Cache people = nodeB.getCache("people");
+    people.putObject("k1", "v1");
+    TransactionalCacheManager tcm = new TransactionalCacheManager(busA);
+    tcm.clear(nodeA.getCache("people"));
+    assertThat(people.getSize()).isEqualTo(1);
+    tcm.commit();
+    assertThat(people.getSize()).isZero();
+  }
+
+  @Test
+  public void shouldNotPublishOnRollback() {
+    Cache people = nodeB.getCache("people");
+    people.putObject("k1", "v1");
+    TransactionalCacheManager tcm = new TransactionalCacheManager(busA);
+    tcm.clear(nodeA.getCache("people"));
+    tcm.rollback();
+    tcm.commit();
+    assertThat(people.getSize()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldDeliverOverTcp() throws Exception {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    TcpTransport receiver = new TcpTransport();
+    Properties receiverProperties = new Properties();
+    receiverProperties.setProperty("port", String.valueOf(port));
+    receiverProperties.setProperty("bindAddress", "127.0.0.1");
+    receiver.setProperties(receiverProperties);
+    CacheInvalidationBus busC = new CacheInvalidationBus(nodeB, receiver);
+    busC.start();
+
+    TcpTransport sender = new TcpTransport();
+    Properties senderProperties = new Properties();
+    senderProperties.setProperty("peers", "127.0.0.1:" + port);
+    sender.setProperties(senderProperties);
+    CacheInvalidationBus busD = new CacheInvalidationBus(nodeA, sender);
+    busD.setBatchDelay(0);
+    busD.start();
+    try {
+      Cache people = nodeB.getCache("people");
+      people.putObject("k1", "v1");
+      busD.publish(Collections.singletonList(Invalidation.namespace("people")));
+      for (int i = 0; i < 100 && people.getSize() > 0; i++) {
+        Thread.sleep(20);
+      }
+      assertThat(people.getSize()).isZero();
+    } finally {
+      busD.close();
+      busC.close();
+    }
+  }
+
+  private static class RecordingTransport implements InvalidationTransport {
+
+    private final int maxMessageSize;
+    private final List<byte[]> messages = new ArrayList<>();
+
+    RecordingTransport(int maxMessageSize) {
+      this.maxMessageSize = maxMessageSize;
+    }
+
+    @Override
+    public void start(Consumer<byte[]> receiver) {
+    }
+
+    @Override
+    public void send(byte[] message) {
+      messages.add(message);
+    }
+
+    @Override
+    public int getMaxMessageSize() {
+      return maxMessageSize;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+}
@@ -0,0 +1,91 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AdaptiveConnectionLimitTest {
+
+  @Test
+  public void shouldStartWithinConfiguredRange() {
+    assertEquals(4, new AdaptiveConnectionLimit(1, 4, 4).getLimit());
+    assertEquals(2, new AdaptiveConnectionLimit(2, 4, 1).getLimit());
+    assertEquals(4, new AdaptiveConnectionLimit(1, 4, 10).getLimit());
+  }
+
+  @Test
+  public void shouldAdjustOncePerWindow() {
+    AdaptiveConnectionLimit limit = new AdaptiveConnectionLimit(1, 4, 1);
+    limit.onWait();
+    for (int i = 1; i < AdaptiveConnectionLimit.WINDOW; i++) {
+      assertFalse(limit.onSample(10));
+    }
+    assertEquals(1, limit.getLimit());
+    assertTrue(limit.onSample(10));
+    assertEquals(2, limit.getLimit());
+  }
+
+  @Test
+  public void shouldGrowWhileRequestsWaitAtStableLatency() {
+    AdaptiveConnectionLimit limit = new AdaptiveConnectionLimit(1, 4, 1);
+    for (int expected = 2; expected <= 4; expected++) {
+      assertTrue(window(limit, 10, true));
+      assertEquals(expected, limit.getLimit());
+    }
+    // 不超过最大值
+    assertFalse(window(limit, 10, true));
+    assertEquals(4, limit.getLimit());
+  }
+
+  @Test
+  public void shouldNotGrowWithoutWaits() {
+    AdaptiveConnectionLimit limit = new AdaptiveConnectionLimit(1, 4, 1);
+    assertFalse(window(limit, 10, false));
+    assertFalse(window(limit, 10, false));
+    assertEquals(1, limit.getLimit());
+  }
+
+  @Test
+  public void shouldShrinkWhenLatencyRises() {
+    AdaptiveConnectionLimit limit = new AdaptiveConnectionLimit(1, 4, 4);
+    window(limit, 10, false);
+    assertEquals(4, limit.getLimit());
+    // 延迟突然变长，即使有请求等待也减小上限，一次最多减小一半
+    assertFalse(window(limit, 100, true));
+    assertEquals(2, limit.getLimit());
+    assertFalse(window(limit, 100, true));
+    assertEquals(1, limit.getLimit());
+    // 不低于最小值
+    assertFalse(window(limit, 100, true));
+    assertEquals(1, limit.getLimit());
+  }
+
+  private static boolean window(AdaptiveConnectionLimit limit, long latency, boolean wait) {
+    if (wait) {
+      limit.onWait();
+    }
+    boolean grown = false;
+    for (int i = 0; i < AdaptiveConnectionLimit.WINDOW; i++) {
+      grown = limit.onSample(latency);
+    }
+    return grown;
+  }
+
+}
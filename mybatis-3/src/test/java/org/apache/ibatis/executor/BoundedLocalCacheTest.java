@@ -0,0 +1,73 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.apache.ibatis.executor.ExecutionPlaceholder.EXECUTION_PLACEHOLDER;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BoundedLocalCacheTest {
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedEntries() {
+    List<Object> evicted = new ArrayList<>();
+    BoundedLocalCache cache = new BoundedLocalCache("test", 2, 0, evicted::add);
+    cache.putObject("a", "1");
+    cache.putObject("b", "2");
+    cache.getObject("a");
+    cache.putObject("c", "3");
+    assertThat(evicted).containsExactly("b");
+    assertThat(cache.getSize()).isEqualTo(2);
+    assertThat(cache.getObject("a")).isEqualTo("1");
+    assertThat(cache.getEvictionCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotEvictPlaceholdersOrPinnedEntries() {
+    BoundedLocalCache cache = new BoundedLocalCache("test", 1, 0);
+    cache.putObject("running", EXECUTION_PLACEHOLDER);
+    cache.pin("pinned");
+    cache.putObject("pinned", "1");
+    cache.putObject("other", "2");
+    assertThat(cache.getObject("running")).isSameAs(EXECUTION_PLACEHOLDER);
+    assertThat(cache.getObject("pinned")).isEqualTo("1");
+    assertThat(cache.getObject("other")).isNull();
+    cache.unpinAll();
+    assertThat(cache.getObject("pinned")).isNull();
+    assertThat(cache.getSize()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldEvictByEstimatedSize() {
+    BoundedLocalCache cache = new BoundedLocalCache("test", 0, 1000);
+    cache.putObject("small", Arrays.asList("a", "b"));
+    assertThat(cache.getEstimatedBytes()).isPositive().isLessThan(1000);
+    List<String> large = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      large.add("value " + i);
+    }
+    cache.putObject("large", large);
+    assertThat(cache.getSize()).isZero();
+    assertThat(cache.getEstimatedBytes()).isZero();
+    assertThat(cache.getEvictionCount()).isEqualTo(2);
+  }
+
+}
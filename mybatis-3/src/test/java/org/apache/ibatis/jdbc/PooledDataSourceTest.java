@@ -17,17 +17,29 @@ package org.apache.ibatis.jdbc;
 
 import static org.junit.Assert.*;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.datasource.ConnectionPartition;
 import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.io.Resources;
 import org.hsqldb.jdbc.JDBCConnection;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -91,6 +103,583 @@ public class PooledDataSourceTest extends BaseDataTest {
     c.close();
   }
 
+  @Test
+  public void shouldRestoreConnectionStateWhenReturned() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolMaximumIdleConnections(1);
+      Connection c = ds.getConnection();
+      boolean autoCommit = c.getAutoCommit();
+      int isolation = c.getTransactionIsolation();
+      c.setAutoCommit(!autoCommit);
+      c.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+      c.setReadOnly(true);
+      c.close();
+
+      c = ds.getConnection();
+      assertEquals(autoCommit, c.getAutoCommit());
+      Connection realConnection = PooledDataSource.unwrapConnection(c);
+      assertEquals(autoCommit, realConnection.getAutoCommit());
+      assertEquals(isolation, realConnection.getTransactionIsolation());
+      assertFalse(realConnection.isReadOnly());
+      c.close();
+      assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+      assertEquals(0, ds.getPoolState().getBadConnectionCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldRollBackUncommittedWorkWhenReturned() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      runScript(ds, JPETSTORE_DDL);
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolMaximumIdleConnections(1);
+      Connection c = ds.getConnection();
+      c.setAutoCommit(false);
+      try (PreparedStatement st = c.prepareStatement("insert into sequence (name, nextid) values ('pooled', 1)")) {
+        st.executeUpdate();
+      }
+      c.close();
+
+      c = ds.getConnection();
+      try (PreparedStatement st = c.prepareStatement("select count(*) from sequence where name = 'pooled'");
+           ResultSet rs = st.executeQuery()) {
+        assertTrue(rs.next());
+        assertEquals(0, rs.getInt(1));
+      }
+      c.close();
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldRollBackWorkOfStatementsCreatedBeforeDisablingAutoCommit() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      runScript(ds, JPETSTORE_DDL);
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolMaximumIdleConnections(1);
+      Connection c = ds.getConnection();
+      c.setAutoCommit(true);
+      try (PreparedStatement st = c.prepareStatement("insert into sequence (name, nextid) values (?, 1)")) {
+        c.setAutoCommit(false);
+        st.setString(1, "first");
+        st.executeUpdate();
+        c.commit();
+        // 提交之后通过同一个语句开始的事务
+        st.setString(1, "second");
+        st.executeUpdate();
+      }
+      c.close();
+
+      c = ds.getConnection();
+      try (PreparedStatement st = c.prepareStatement("select name from sequence where name in ('first', 'second')");
+           ResultSet rs = st.executeQuery()) {
+        assertTrue(rs.next());
+        assertEquals("first", rs.getString(1));
+        assertFalse(rs.next());
+      }
+      c.close();
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldRollBackWorkDoneThroughMetaDataConnection() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      runScript(ds, JPETSTORE_DDL);
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolMaximumIdleConnections(1);
+      Connection c = ds.getConnection();
+      c.setAutoCommit(false);
+      // 元数据返回的是真实连接，通过它创建的语句无法跟踪
+      try (PreparedStatement st = c.getMetaData().getConnection()
+          .prepareStatement("insert into sequence (name, nextid) values ('metadata', 1)")) {
+        st.executeUpdate();
+      }
+      c.close();
+
+      c = ds.getConnection();
+      try (PreparedStatement st = c.prepareStatement("select name from sequence where name = 'metadata'");
+           ResultSet rs = st.executeQuery()) {
+        assertFalse(rs.next());
+      }
+      c.close();
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldKeepPoolConsistentUnderConcurrentCheckouts() throws Exception {
+    final PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumActiveConnections(4);
+      ds.setPoolMaximumIdleConnections(2);
+      ds.setPoolTimeToWait(100);
+      final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+      List<Thread> threads = new ArrayList<Thread>();
+      for (int i = 0; i < 8; i++) {
+        threads.add(new Thread(() -> {
+          try {
+            for (int j = 0; j < 50; j++) {
+              try (Connection c = ds.getConnection()) {
+                c.setAutoCommit(false);
+                try (PreparedStatement st = c.prepareStatement("values (1)");
+                     ResultSet rs = st.executeQuery()) {
+                  assertTrue(rs.next());
+                }
+              }
+            }
+          } catch (Throwable t) {
+            errors.add(t);
+          }
+        }));
+      }
+      for (Thread thread : threads) {
+        thread.start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      assertTrue(errors.toString(), errors.isEmpty());
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+      assertEquals(0, ds.getPoolState().getPendingConnectionCount());
+      assertEquals(400, ds.getPoolState().getRequestCount());
+      assertEquals(0, ds.getPoolState().getBadConnectionCount());
+      assertTrue(ds.getPoolState().getIdleConnectionCount() <= 2);
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldPrewarmMinimumIdleConnections() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumIdleConnections(3);
+      ds.setPoolMinimumIdleConnections(2);
+      ds.startHousekeeper();
+      waitUntilIdle(ds, 2);
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+      assertEquals(0, ds.getPoolState().getRequestCount());
+
+      Connection c = ds.getConnection();
+      assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+      c.close();
+      assertEquals(2, ds.getPoolState().getIdleConnectionCount());
+    } finally {
+      ds.shutdown();
+    }
+  }
+
+  @Test
+  public void shouldRetireConnectionsPastMaximumLifetime() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumLifetime(200);
+      ds.setPoolHousekeepingPeriod(50);
+      Connection c = ds.getConnection();
+      Connection realConnection = PooledDataSource.unwrapConnection(c);
+      Thread.sleep(250);
+      c.close();
+      assertTrue(realConnection.isClosed());
+      assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+
+      ds.setPoolMinimumIdleConnections(1);
+      ds.startHousekeeper();
+      waitUntilIdle(ds, 1);
+      c = ds.getConnection();
+      realConnection = PooledDataSource.unwrapConnection(c);
+      c.close();
+      // 空闲连接过期之后由后台维护任务关闭并补充新的连接
+      long deadline = System.currentTimeMillis() + 5000;
+      while (!realConnection.isClosed() && System.currentTimeMillis() < deadline) {
+        Thread.sleep(20);
+      }
+      assertTrue(realConnection.isClosed());
+      waitUntilIdle(ds, 1);
+    } finally {
+      ds.shutdown();
+    }
+  }
+
+  @Test
+  public void shouldReportLeakedConnections() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolLeakDetectionThreshold(100);
+      ds.setPoolLeakDetectionSampleRate(1);
+      ds.setPoolHousekeepingPeriod(20);
+      Connection leaked = ds.getConnection();
+      ds.getConnection().close();
+      long deadline = System.currentTimeMillis() + 5000;
+      while (ds.getPoolState().getLeakedConnectionCount() == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(20);
+      }
+      assertEquals(1, ds.getPoolState().getLeakedConnectionCount());
+      String dump = ds.dumpActiveConnections();
+      assertTrue(dump.startsWith("1 active connection(s)"));
+      assertTrue(dump.contains(Thread.currentThread().getName()));
+      // 借出位置从调用方开始
+      assertTrue(dump.contains("\tat " + PooledDataSourceTest.class.getName() + ".shouldReportLeakedConnections"));
+      Thread.sleep(100);
+      // 同一次借出只报告一次
+      assertEquals(1, ds.getPoolState().getLeakedConnectionCount());
+      leaked.close();
+      assertEquals("0 active connection(s)", ds.dumpActiveConnections());
+    } finally {
+      ds.shutdown();
+    }
+  }
+
+  @Test
+  public void shouldAdaptActiveConnectionLimit() throws Exception {
+    final PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumActiveConnections(4);
+      ds.setPoolMaximumIdleConnections(4);
+      assertEquals(4, ds.getPoolState().getActiveConnectionLimit());
+      ds.setPoolAdaptiveSizingEnabled(true);
+      ds.setPoolMinimumActiveConnections(1);
+      // 默认从最大值开始
+      assertEquals(4, ds.getPoolState().getActiveConnectionLimit());
+      ds.setPoolInitialActiveConnections(1);
+      assertEquals(1, ds.getPoolState().getActiveConnectionLimit());
+      // 上限的调整由AdaptiveConnectionLimitTest验证，这里只检查达到上限的连接可以正常归还
+      Connection c = ds.getConnection();
+      c.close();
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+      assertEquals(1, ds.getPoolState().getActiveConnectionLimit());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldKeepReservedConnectionsForTheirPartition() throws Exception {
+    final PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumActiveConnections(3);
+      ds.setPoolPartitions("interactive:1");
+      Connection first = ds.getConnection();
+      Connection second = ds.getConnection();
+      // 默认分区不能使用为interactive预留的连接
+      final List<Connection> acquired = Collections.synchronizedList(new ArrayList<Connection>());
+      Thread batch = new Thread(() -> {
+        try {
+          acquired.add(ds.getConnection());
+        } catch (SQLException e) {
+          throw new RuntimeException(e);
+        }
+      });
+      batch.start();
+      waitUntilWaiting(ds, 1);
+      assertTrue(acquired.isEmpty());
+      String previous = ConnectionPartition.enter("interactive");
+      Connection interactive;
+      try {
+        interactive = ds.getConnection();
+      } finally {
+        ConnectionPartition.restore(previous);
+      }
+      assertEquals(1, ds.getPoolState().getPartitionConnectionCount("interactive"));
+      assertEquals(2, ds.getPoolState().getPartitionConnectionCount(null));
+      first.close();
+      batch.join(5000);
+      assertEquals(1, acquired.size());
+      interactive.close();
+      second.close();
+      acquired.get(0).close();
+      assertEquals(0, ds.getPoolState().getPartitionConnectionCount("interactive"));
+      assertEquals(0, ds.getPoolState().getPartitionConnectionCount(null));
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldServeWaitingRequestsByPriority() throws Exception {
+    final PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolPartitions("interactive:0,reporting:0");
+      Connection held = ds.getConnection();
+      final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+      Thread reporting = checkoutInPartition(ds, "reporting", order);
+      waitUntilWaiting(ds, 1);
+      Thread interactive = checkoutInPartition(ds, "interactive", order);
+      waitUntilWaiting(ds, 2);
+      // 优先级高的interactive后开始等待，但是先获得连接
+      held.close();
+      interactive.join(5000);
+      reporting.join(5000);
+      assertEquals(Arrays.asList("interactive", "reporting"), order);
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldPreferConnectionLastReturnedByThread() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolThreadAffinityEnabled(true);
+      Connection c1 = ds.getConnection();
+      Connection c2 = ds.getConnection();
+      Connection c3 = ds.getConnection();
+      int returnedLast = PooledDataSource.unwrapConnection(c2).hashCode();
+      c1.close();
+      c3.close();
+      c2.close();
+      assertEquals(3, ds.getPoolState().getIdleConnectionCount());
+      Connection again = ds.getConnection();
+      assertEquals(returnedLast, PooledDataSource.unwrapConnection(again).hashCode());
+      assertEquals(1, ds.getPoolState().getAffinityHitCount());
+      // 已经被借出，其它连接按先进先出的顺序借出
+      Connection other = ds.getConnection();
+      assertEquals(PooledDataSource.unwrapConnection(c1).hashCode(), PooledDataSource.unwrapConnection(other).hashCode());
+      assertEquals(1, ds.getPoolState().getAffinityHitCount());
+      again.close();
+      other.close();
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldCreateConnectionsOnFillerThreads() throws Exception {
+    final List<String> creators = Collections.synchronizedList(new ArrayList<String>());
+    UnpooledDataSource unpooled = new UnpooledDataSource() {
+      @Override
+      public Connection getConnection() throws SQLException {
+        creators.add(Thread.currentThread().getName());
+        return super.getConnection();
+      }
+    };
+    Properties props = Resources.getResourceAsProperties(JPETSTORE_PROPERTIES);
+    unpooled.setDriver(props.getProperty("driver"));
+    unpooled.setUrl(props.getProperty("url"));
+    unpooled.setUsername(props.getProperty("username"));
+    unpooled.setPassword(props.getProperty("password"));
+    PooledDataSource ds = new PooledDataSource(unpooled);
+    try {
+      ds.setPoolConnectionCreationConcurrency(2);
+      ds.setPoolMaximumActiveConnections(3);
+      holdConnectionsConcurrently(ds, 6, 5, 5);
+      assertFalse(creators.isEmpty());
+      for (String creator : creators) {
+        assertTrue(creator, creator.startsWith("mybatis-pool-filler-"));
+      }
+      assertEquals(0, ds.getPoolState().getPendingConnectionCount());
+      assertEquals(30, ds.getPoolState().getRequestCount());
+    } finally {
+      ds.shutdown();
+    }
+  }
+
+  @Test
+  public void shouldAcquireConnectionAsynchronously() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumActiveConnections(1);
+      Connection held = ds.getConnection();
+      CompletableFuture<Connection> cancelled = ds.getConnectionAsync();
+      CompletableFuture<Connection> future = ds.getConnectionAsync();
+      waitUntilWaiting(ds, 1);
+      assertFalse(future.isDone());
+      cancelled.cancel(false);
+      held.close();
+      Connection conn = future.get(5, TimeUnit.SECONDS);
+      try (PreparedStatement st = conn.prepareStatement("values (1)");
+           ResultSet rs = st.executeQuery()) {
+        assertTrue(rs.next());
+      }
+      conn.close();
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+      assertEquals(2, ds.getPoolState().getRequestCount());
+    } finally {
+      ds.shutdown();
+    }
+  }
+
+  @Test
+  public void shouldFailAsynchronousAcquisitionWhenConnectionCannotBeCreated() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setUrl("jdbc:hsqldb:file:/nonexistent/dir/db;ifexists=true");
+      ds.setPoolConnectionCreationConcurrency(1);
+      try {
+        ds.getConnectionAsync().get(5, TimeUnit.SECONDS);
+        fail();
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof SQLException);
+      }
+      try {
+        ds.getConnection();
+        fail();
+      } catch (SQLException e) {
+        // expected
+      }
+      assertEquals(0, ds.getPoolState().getPendingConnectionCount());
+    } finally {
+      ds.shutdown();
+    }
+  }
+
+  @Test
+  public void shouldNotWaitOnMonitorsUnderContention() throws Exception {
+    final PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumActiveConnections(4);
+      ds.setPoolTimeToWait(100);
+      // 先占用所有连接，保证每个线程都要等待
+      List<Connection> held = new ArrayList<Connection>();
+      for (int i = 0; i < 4; i++) {
+        held.add(ds.getConnection());
+      }
+      final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+      List<Thread> threads = new ArrayList<Thread>();
+      for (int i = 0; i < 200; i++) {
+        threads.add(new Thread(() -> {
+          try {
+            for (int j = 0; j < 10; j++) {
+              try (Connection c = ds.getConnection();
+                   PreparedStatement st = c.prepareStatement("values (1)");
+                   ResultSet rs = st.executeQuery()) {
+                assertTrue(rs.next());
+              }
+              ds.getPoolState().getActiveConnectionCount();
+            }
+          } catch (Throwable t) {
+            errors.add(t);
+          }
+        }));
+      }
+      for (Thread thread : threads) {
+        thread.start();
+      }
+      // 等待连接的线程只能停在j.u.c的锁/条件上，不能停在MyBatis对象的监视器上(虚拟线程会因此占用平台线程)
+      ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+      long[] ids = new long[threads.size()];
+      for (int i = 0; i < ids.length; i++) {
+        ids[i] = threads.get(i).getId();
+      }
+      List<String> monitorWaits = new ArrayList<String>();
+      Set<Long> parked = new HashSet<Long>();
+      // 连接都被占用时，直到观察到每个线程都停在j.u.c的锁/条件上
+      long deadline = System.currentTimeMillis() + 10000;
+      while (parked.size() < ids.length && System.currentTimeMillis() < deadline) {
+        sampleLocks(threadMXBean, ids, monitorWaits, parked);
+      }
+      int parkedWhileHeld = parked.size();
+      for (Connection c : held) {
+        c.close();
+      }
+      while (isAnyAlive(threads)) {
+        sampleLocks(threadMXBean, ids, monitorWaits, parked);
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      assertTrue(errors.toString(), errors.isEmpty());
+      assertTrue(monitorWaits.toString(), monitorWaits.isEmpty());
+      assertEquals(ids.length, parkedWhileHeld);
+      assertEquals(2004, ds.getPoolState().getRequestCount());
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  private void sampleLocks(ThreadMXBean threadMXBean, long[] ids, List<String> monitorWaits, Set<Long> parked) {
+    for (ThreadInfo info : threadMXBean.getThreadInfo(ids)) {
+      if (info == null || info.getLockInfo() == null) {
+        continue;
+      }
+      String lockClass = info.getLockInfo().getClassName();
+      if (lockClass.startsWith("org.apache.ibatis")) {
+        monitorWaits.add(info.getThreadState() + " on " + lockClass);
+      } else if (lockClass.startsWith("java.util.concurrent")) {
+        parked.add(info.getThreadId());
+      }
+    }
+  }
+
+  private boolean isAnyAlive(List<Thread> threads) {
+    for (Thread thread : threads) {
+      if (thread.isAlive()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private Thread checkoutInPartition(final PooledDataSource ds, final String partition, final List<String> order) {
+    Thread thread = new Thread(() -> {
+      String previous = ConnectionPartition.enter(partition);
+      try (Connection c = ds.getConnection()) {
+        order.add(partition);
+        Thread.sleep(50);
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      } finally {
+        ConnectionPartition.restore(previous);
+      }
+    });
+    thread.start();
+    return thread;
+  }
+
+  private void waitUntilWaiting(PooledDataSource ds, int expected) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (ds.getPoolState().getHadToWaitCount() < expected && System.currentTimeMillis() < deadline) {
+      Thread.sleep(20);
+    }
+    assertEquals(expected, ds.getPoolState().getHadToWaitCount());
+  }
+
+  private void holdConnectionsConcurrently(final PooledDataSource ds, int threadCount, final int checkouts, final long holdMillis)
+      throws Exception {
+    final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < threadCount; i++) {
+      threads.add(new Thread(() -> {
+        try {
+          for (int j = 0; j < checkouts; j++) {
+            try (Connection c = ds.getConnection()) {
+              Thread.sleep(holdMillis);
+            }
+          }
+        } catch (Throwable t) {
+          errors.add(t);
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertTrue(errors.toString(), errors.isEmpty());
+  }
+
+  private void waitUntilIdle(PooledDataSource ds, int expected) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (ds.getPoolState().getIdleConnectionCount() < expected && System.currentTimeMillis() < deadline) {
+      Thread.sleep(20);
+    }
+    assertEquals(expected, ds.getPoolState().getIdleConnectionCount());
+  }
+
   @Ignore("See the comments")
   @Test
   public void shouldReconnectWhenServerKilledLeakedConnection() throws Exception {
@@ -20,6 +20,7 @@ import static org.junit.Assert.*;
 import java.io.Serializable;
 import java.util.List;
 
+import org.apache.ibatis.reflection.invoker.PrimitiveSetter;
 import org.junit.Assert;
 import org.junit.Test;
 import static com.googlecode.catchexception.apis.BDDCatchException.*;
@@ -210,4 +211,47 @@ public class ReflectorTest {
     Reflector reflector = reflectorFactory.findForClass(Bean.class);
     assertTrue((Boolean)reflector.getGetInvoker("bool").invoke(new Bean(), new Byte[0]));
   }
+
+  @Test
+  public void shouldResolvePrimitiveSetters() throws Throwable {
+    ReflectorFactory reflectorFactory = new DefaultReflectorFactory();
+    Reflector reflector = reflectorFactory.findForClass(PrimitiveBean.class);
+    PrimitiveBean bean = new PrimitiveBean();
+
+    PrimitiveSetter countSetter = reflector.getPrimitiveSetter("count");
+    assertEquals(int.class, countSetter.getType());
+    countSetter.setInt(bean, 5);
+    assertEquals(5, bean.getCount());
+    assertSame(countSetter, reflector.getPrimitiveSetter("count"));
+
+    PrimitiveSetter amountSetter = reflector.getPrimitiveSetter("amount");
+    assertEquals(double.class, amountSetter.getType());
+    amountSetter.setDouble(bean, 1.5d);
+    assertEquals(1.5d, bean.amount, 0d);
+
+    assertNull(reflector.getPrimitiveSetter("name"));
+    assertNull(reflector.getPrimitiveSetter("unknown"));
+  }
+
+  static class PrimitiveBean {
+    private int count;
+    private double amount;
+    private String name;
+
+    public int getCount() {
+      return count;
+    }
+
+    public void setCount(int count) {
+      this.count = count;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+  }
 }
@@ -23,6 +23,8 @@ import java.util.HashMap;
 import java.util.List;
 
 import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.domain.blog.Section;
 import org.apache.ibatis.mapping.*;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.type.JdbcType;
@@ -36,6 +38,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -70,6 +73,60 @@ public class DefaultParameterHandlerTest {
 
   }
 
+  @Test
+  public void setParametersWithPrecompiledPlanForBean() throws SQLException {
+    Configuration config = new Configuration();
+    RawSqlSource sqlSource = new RawSqlSource(config, "insert into author values (#{id}, #{username}, #{email,jdbcType=VARCHAR}, #{bio})", Author.class);
+    MappedStatement mappedStatement = new MappedStatement.Builder(config, "testInsert", sqlSource, SqlCommandType.INSERT).build();
+    Author author = new Author(101, "jim", "***", "jim@ibatis.apache.org", null, Section.NEWS);
+
+    for (int i = 0; i < 2; i++) {
+      PreparedStatement ps = mock(PreparedStatement.class);
+      BoundSql boundSql = mappedStatement.getBoundSql(author);
+      new DefaultParameterHandler(mappedStatement, author, boundSql).setParameters(ps);
+      verify(ps).setInt(1, 101);
+      verify(ps).setString(2, "jim");
+      verify(ps).setString(3, "jim@ibatis.apache.org");
+      verify(ps).setNull(4, JdbcType.OTHER.TYPE_CODE);
+    }
+    Assert.assertSame(sqlSource.getParameterSetterPlan(mappedStatement.getBoundSql(author), Author.class),
+        sqlSource.getParameterSetterPlan(mappedStatement.getBoundSql(author), Author.class));
+  }
+
+  @Test
+  public void setParametersWithPrecompiledPlanForMapAndSimpleType() throws SQLException {
+    Configuration config = new Configuration();
+    RawSqlSource sqlSource = new RawSqlSource(config, "select * from author where id = #{id} and username = #{username}", null);
+    MappedStatement mappedStatement = new MappedStatement.Builder(config, "testSelect", sqlSource, SqlCommandType.SELECT).build();
+
+    HashMap<String, Object> param = new HashMap<>();
+    param.put("id", 101);
+    param.put("username", "jim");
+    PreparedStatement ps = mock(PreparedStatement.class);
+    new DefaultParameterHandler(mappedStatement, param, mappedStatement.getBoundSql(param)).setParameters(ps);
+    verify(ps).setInt(1, 101);
+    verify(ps).setString(2, "jim");
+
+    ps = mock(PreparedStatement.class);
+    new DefaultParameterHandler(mappedStatement, "jim", mappedStatement.getBoundSql("jim")).setParameters(ps);
+    verify(ps).setString(1, "jim");
+    verify(ps).setString(2, "jim");
+  }
+
+  @Test
+  public void setParametersIgnoresPlanWhenAdditionalParametersPresent() throws SQLException {
+    Configuration config = new Configuration();
+    RawSqlSource sqlSource = new RawSqlSource(config, "select * from author where id = #{id}", Author.class);
+    MappedStatement mappedStatement = new MappedStatement.Builder(config, "testSelect", sqlSource, SqlCommandType.SELECT).build();
+    Author author = new Author(101);
+
+    BoundSql boundSql = mappedStatement.getBoundSql(author);
+    boundSql.setAdditionalParameter("id", 202);
+    PreparedStatement ps = mock(PreparedStatement.class);
+    new DefaultParameterHandler(mappedStatement, author, boundSql).setParameters(ps);
+    verify(ps).setInt(1, 202);
+  }
+
   MappedStatement getMappedStatement() {
     final Configuration config = new Configuration();
     final TypeHandlerRegistry registry = config.getTypeHandlerRegistry();
@@ -170,4 +170,35 @@ public class AutomappingTest {
       Assert.assertTrue("should update version in mapping", article.version > 0);
     }
   }
+
+  @Test
+  public void shouldMapPrimitiveProperties() {
+    sqlSessionFactory.getConfiguration().setAutoMappingBehavior(AutoMappingBehavior.PARTIAL);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertPrimitivePets(mapper.getPrimitivePets());
+      assertPrimitivePets(mapper.getPrimitivePetsWithResultMap());
+    }
+  }
+
+  @Test
+  public void shouldUseSubclassedPrimitiveTypeHandler() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<PrimitivePet> pets = mapper.getPrimitivePetsWithCustomHandler();
+      // the subclass overrides getNullableResult, so the primitive fast path must not bypass it
+      Assert.assertEquals(-1, pets.get(0).getBreeder());
+      Assert.assertEquals(1101, pets.get(1).getBreeder());
+    }
+  }
+
+  private void assertPrimitivePets(List<PrimitivePet> pets) {
+    Assert.assertEquals(3, pets.size());
+    Assert.assertEquals(11, pets.get(0).getPetId());
+    Assert.assertEquals(1L, pets.get(0).getOwner());
+    // null column leaves the primitive property untouched
+    Assert.assertEquals(-1, pets.get(0).getBreeder());
+    Assert.assertEquals(12, pets.get(1).getPetId());
+    Assert.assertEquals(101, pets.get(1).getBreeder());
+  }
 }
@@ -30,4 +30,10 @@ public interface Mapper {
   List<Book> getBooks();
 
   Article getArticle();
+
+  List<PrimitivePet> getPrimitivePets();
+
+  List<PrimitivePet> getPrimitivePetsWithResultMap();
+
+  List<PrimitivePet> getPrimitivePetsWithCustomHandler();
 }
@@ -0,0 +1,44 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.automapping;
+
+public class PrimitivePet {
+  private int petId;
+  // no setter, mapped through the field
+  private long owner;
+  private int breeder = -1;
+
+  public int getPetId() {
+    return petId;
+  }
+
+  public void setPetId(int petId) {
+    this.petId = petId;
+  }
+
+  public long getOwner() {
+    return owner;
+  }
+
+  public int getBreeder() {
+    return breeder;
+  }
+
+  public void setBreeder(int breeder) {
+    this.breeder = breeder;
+  }
+
+}
@@ -0,0 +1,76 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.bounded_local_cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.Reader;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BoundedLocalCacheTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @Before
+  public void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/bounded_local_cache/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/bounded_local_cache/CreateDB.sql");
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedResults() {
+    long evictions = sqlSessionFactory.getConfiguration().getLocalCacheEvictionCount();
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      Employee first = mapper.getEmployee(1);
+      Employee second = mapper.getEmployee(2);
+      assertSame(first, mapper.getEmployee(1));
+      mapper.getEmployee(3);
+      // 2是最久未使用的
+      assertSame(first, mapper.getEmployee(1));
+      assertNotSame(second, mapper.getEmployee(2));
+    }
+    assertEquals(evictions + 2, sqlSessionFactory.getConfiguration().getLocalCacheEvictionCount());
+  }
+
+  @Test
+  public void shouldResolveCircularReferencesWhenEverythingIsOverTheLimit() {
+    sqlSessionFactory.getConfiguration().setLocalCacheMaxBytes(1);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Department department = sqlSession.getMapper(Mapper.class).getDepartment(1);
+      assertEquals(5, department.getEmployees().size());
+      for (Employee employee : department.getEmployees()) {
+        // 延迟加载的部门在加载前没有被淘汰
+        assertSame(department, employee.getDepartment());
+      }
+    } finally {
+      sqlSessionFactory.getConfiguration().setLocalCacheMaxBytes(0);
+    }
+  }
+
+}
@@ -0,0 +1,36 @@
+--
+--    Copyright 2009-2018 the original author or authors.
+--
+--    Licensed under the Apache License, Version 2.0 (the "License");
+--    you may not use this file except in compliance with the License.
+--    You may obtain a copy of the License at
+--
+--       http://www.apache.org/licenses/LICENSE-2.0
+--
+--    Unless required by applicable law or agreed to in writing, software
+--    distributed under the License is distributed on an "AS IS" BASIS,
+--    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--    See the License for the specific language governing permissions and
+--    limitations under the License.
+--
+
+drop table employee if exists;
+drop table department if exists;
+
+create table department(
+	id int,
+	name varchar(20)
+);
+
+create table employee(
+	id int,
+	name varchar(20),
+	department_id int
+);
+
+insert into department(id, name) values (1, 'Sales');
+insert into employee(id, name, department_id) values (1, 'Jane', 1);
+insert into employee(id, name, department_id) values (2, 'John', 1);
+insert into employee(id, name, department_id) values (3, 'Mary', 1);
+insert into employee(id, name, department_id) values (4, 'Paul', 1);
+insert into employee(id, name, department_id) values (5, 'Anna', 1);
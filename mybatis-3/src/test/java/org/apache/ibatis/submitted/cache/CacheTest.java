@@ -17,12 +17,15 @@ package org.apache.ibatis.submitted.cache;
 
 import java.io.Reader;
 import java.lang.reflect.Field;
+import java.util.List;
 
 import org.apache.ibatis.BaseDataTest;
 import org.apache.ibatis.annotations.CacheNamespace;
 import org.apache.ibatis.annotations.Property;
+import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.copy.ResultMapCopyStrategy;
 import org.apache.ibatis.annotations.CacheNamespaceRef;
 import org.apache.ibatis.builder.BuilderException;
 import org.apache.ibatis.io.Resources;
@@ -270,6 +273,25 @@ public class CacheTest {
     Assert.assertEquals(true, customCache.isBooleanValue());
   }
 
+  @Test
+  public void shouldCopyCachedResultsWithCopyStrategy() {
+    sqlSessionFactory.getConfiguration().addMapper(ResultMapCopyPersonMapper.class);
+    List<Person> first;
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      first = sqlSession.getMapper(ResultMapCopyPersonMapper.class).findAll();
+    }
+    first.get(0).setFirstname("Changed");
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Person> second = sqlSession.getMapper(ResultMapCopyPersonMapper.class).findAll();
+      List<Person> third = sqlSession.getMapper(ResultMapCopyPersonMapper.class).findAll();
+      // 修改第一次的结果不影响缓存，每次命中都返回新的副本
+      Assert.assertEquals(2, second.size());
+      Assert.assertEquals("Jane", second.get(0).getFirstname());
+      Assert.assertNotSame(second.get(0), third.get(0));
+      Assert.assertEquals("John", third.get(1).getFirstname());
+    }
+  }
+
   @Test
   public void shouldErrorUnsupportedProperties() {
     when(sqlSessionFactory.getConfiguration()).addMapper(CustomCacheUnsupportedPropertyMapper.class);
@@ -324,4 +346,10 @@ public class CacheTest {
   private interface InvalidCacheNamespaceRefEmptyMapper {
   }
 
+  @CacheNamespace(copyStrategy = ResultMapCopyStrategy.class)
+  private interface ResultMapCopyPersonMapper {
+    @Select("select id, firstname, lastname from person order by id")
+    List<Person> findAll();
+  }
+
 }
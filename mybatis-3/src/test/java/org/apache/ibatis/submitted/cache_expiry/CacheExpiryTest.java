@@ -0,0 +1,88 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.cache_expiry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.Reader;
+import java.util.List;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class CacheExpiryTest {
+
+  private static SqlSessionFactory sqlSessionFactory;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/cache_expiry/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/cache_expiry/CreateDB.sql");
+  }
+
+  @Test
+  public void shouldParseExpiryFromXmlAndAnnotations() {
+    MappedStatement xml = sqlSessionFactory.getConfiguration().getMappedStatement("org.apache.ibatis.submitted.cache_expiry.PersonXmlMapper.findAll");
+    assertEquals(Long.valueOf(200), xml.getCacheExpiry().getExpireAfterWrite());
+    assertNull(xml.getCacheExpiry().getExpireAfterAccess());
+    assertNull(sqlSessionFactory.getConfiguration().getMappedStatement("org.apache.ibatis.submitted.cache_expiry.PersonXmlMapper.findAllEternal").getCacheExpiry());
+    MappedStatement annotated = sqlSessionFactory.getConfiguration().getMappedStatement("org.apache.ibatis.submitted.cache_expiry.PersonMapper.findAll");
+    assertNull(annotated.getCacheExpiry().getExpireAfterWrite());
+    assertEquals(Long.valueOf(200), annotated.getCacheExpiry().getExpireAfterAccess());
+  }
+
+  @Test
+  public void shouldExpireStatementEntries() throws Exception {
+    List<Person> first = selectList("findAll");
+    List<Person> eternal = selectList("findAllEternal");
+    assertSame(first, selectList("findAll"));
+    Thread.sleep(300);
+    assertNotSame(first, selectList("findAll"));
+    // 同一个缓存中未指定过期时间的语句不受影响
+    assertSame(eternal, selectList("findAllEternal"));
+  }
+
+  @Test
+  public void shouldExpireAfterAccessFromAnnotation() throws Exception {
+    List<Person> first;
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      first = sqlSession.getMapper(PersonMapper.class).findAll();
+    }
+    Thread.sleep(300);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertNotSame(first, sqlSession.getMapper(PersonMapper.class).findAll());
+    }
+  }
+
+  private List<Person> selectList(String id) {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      return sqlSession.selectList("org.apache.ibatis.submitted.cache_expiry.PersonXmlMapper." + id);
+    }
+  }
+
+}
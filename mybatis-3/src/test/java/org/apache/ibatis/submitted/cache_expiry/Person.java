@@ -0,0 +1,67 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.cache_expiry;
+
+import java.io.Serializable;
+
+public class Person implements Serializable {
+  
+  private int id;
+  private String firstname;
+  private String lastname;
+  
+  public Person() {}
+  
+  public Person(int id, String firstname, String lastname) {
+    setId(id);
+    setFirstname(firstname);
+    setLastname(lastname);
+  }
+  
+  public int getId() {
+    return id;
+  }
+  
+  public void setId(int id) {
+    this.id = id;
+  }
+  
+  public String getFirstname() {
+    return firstname;
+  }
+  
+  public void setFirstname(String firstname) {
+    this.firstname = firstname;
+  }
+  
+  public String getLastname() {
+    return lastname;
+  }
+  
+  public void setLastname(String lastname) {
+    this.lastname = lastname;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("id=" + id);
+    sb.append(", lastname=" + lastname);
+    sb.append(", firstname=" + firstname);
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,138 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.cache_invalidation_bus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Closeable;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.builder.xml.XMLConfigBuilder;
+import org.apache.ibatis.cache.invalidation.CacheInvalidationBus;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 两个SqlSessionFactory模拟两个节点，通过LOOPBACK传输失效
+ */
+public class CacheInvalidationBusTest {
+
+  private SqlSessionFactory nodeA;
+  private SqlSessionFactory nodeB;
+
+  @Before
+  public void setUp() throws Exception {
+    nodeA = build();
+    nodeB = build();
+    BaseDataTest.runScript(nodeA.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/cache_invalidation_bus/CreateDB.sql");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    ((Closeable) nodeA.getConfiguration().getCacheInvalidationPublisher()).close();
+    ((Closeable) nodeB.getConfiguration().getCacheInvalidationPublisher()).close();
+  }
+
+  private static SqlSessionFactory build() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/cache_invalidation_bus/mybatis-config.xml")) {
+      return new SqlSessionFactoryBuilder().build(reader);
+    }
+  }
+
+  @Test
+  public void shouldInvalidateCacheOfOtherNodeOnCommit() {
+    List<Person> cached = findAll(nodeB);
+    assertSame(cached, findAll(nodeB));
+    try (SqlSession sqlSession = nodeA.openSession()) {
+      sqlSession.getMapper(PersonMapper.class).updateLastname(new Person(1, "Jane", "Brown"));
+      // 提交前其他节点仍然命中缓存
+      assertSame(cached, findAll(nodeB));
+      sqlSession.commit();
+    }
+    assertEquals("Brown", findAll(nodeB).get(0).getLastname());
+  }
+
+  @Test
+  public void shouldNotInvalidateOnRollback() {
+    List<Person> cached = findAll(nodeB);
+    try (SqlSession sqlSession = nodeA.openSession()) {
+      sqlSession.getMapper(PersonMapper.class).updateLastname(new Person(1, "Jane", "Brown"));
+      sqlSession.rollback();
+    }
+    assertSame(cached, findAll(nodeB));
+  }
+
+  @Test
+  public void shouldStartBusWhenFactoryIsBuilt() throws Exception {
+    Configuration configuration;
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/cache_invalidation_bus/mybatis-config.xml")) {
+      configuration = new XMLConfigBuilder(reader).parse();
+    }
+    CacheInvalidationBus bus = (CacheInvalidationBus) configuration.getCacheInvalidationPublisher();
+    try {
+      // 解析配置不启动总线
+      assertFalse(bus.isStarted());
+      new SqlSessionFactoryBuilder().build(configuration);
+      assertTrue(bus.isStarted());
+    } finally {
+      bus.close();
+    }
+  }
+
+  @Test
+  public void shouldNotBindPortWhenParsingFails() throws Exception {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+      port = socket.getLocalPort();
+    }
+    Properties properties = new Properties();
+    properties.setProperty("port", String.valueOf(port));
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/cache_invalidation_bus/mybatis-config-invalid-mapper.xml")) {
+      new SqlSessionFactoryBuilder().build(reader, properties);
+      fail("Should have failed to load the missing mapper");
+    } catch (PersistenceException e) {
+      // expected
+    }
+    // 映射文件解析失败之后端口依然可用
+    try (ServerSocket socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+      assertEquals(port, socket.getLocalPort());
+    }
+  }
+
+  private static List<Person> findAll(SqlSessionFactory node) {
+    try (SqlSession sqlSession = node.openSession()) {
+      return sqlSession.getMapper(PersonMapper.class).findAll();
+    }
+  }
+
+}
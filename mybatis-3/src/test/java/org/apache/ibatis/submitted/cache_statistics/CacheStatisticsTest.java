@@ -0,0 +1,104 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.cache_statistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.cache.CacheStatistics;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CacheStatisticsTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+  private CacheStatistics statistics;
+
+  @Before
+  public void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/cache_statistics/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/cache_statistics/CreateDB.sql");
+    statistics = sqlSessionFactory.getConfiguration().getCacheStatistics(PersonMapper.class.getName());
+  }
+
+  @After
+  public void tearDown() {
+    statistics.unregisterMBean();
+  }
+
+  @Test
+  public void shouldRecordStatisticsPerStatement() {
+    for (int i = 0; i < 3; i++) {
+      try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+        PersonMapper mapper = sqlSession.getMapper(PersonMapper.class);
+        mapper.findAll();
+        mapper.findById(1);
+        mapper.findById(2);
+      }
+    }
+    assertEquals(3, statistics.getPuts());
+    assertEquals(3, statistics.getSize());
+    assertEquals(3, statistics.getLoads());
+    assertTrue(statistics.getAverageEntryBytes() > 0);
+
+    CacheStatistics.StatementStatistics findAll = statistics.getStatementStatistics(PersonMapper.class.getName() + ".findAll");
+    assertEquals(2, findAll.getHits());
+    assertEquals(1, findAll.getMisses());
+    assertTrue(findAll.getLoadTimeNanos() > 0);
+    CacheStatistics.StatementStatistics findById = statistics.getStatementStatistics(PersonMapper.class.getName() + ".findById");
+    assertEquals(4, findById.getHits());
+    assertEquals(2, findById.getMisses());
+  }
+
+  @Test
+  public void shouldExportStatisticsOverJmx() throws Exception {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(PersonMapper.class).findAll();
+    }
+    ObjectName name = statistics.getObjectName();
+    assertNotNull(name);
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    assertEquals(PersonMapper.class.getName(), server.getAttribute(name, "CacheId"));
+    assertEquals(1L, server.getAttribute(name, "Loads"));
+    assertNotNull(server.getAttribute(name, "StatementStatistics"));
+    assertNotNull(server.getAttribute(name, "TopKeys"));
+
+    server.invoke(name, "reset", null, null);
+    assertEquals(0L, server.getAttribute(name, "Loads"));
+
+    statistics.unregisterMBean();
+    assertNull(statistics.getObjectName());
+    assertTrue(!server.isRegistered(name));
+  }
+
+}
@@ -0,0 +1,84 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.pool_partitions;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.Reader;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.datasource.pooled.PoolState;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PoolPartitionsTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+  private PooledDataSource dataSource;
+
+  @Before
+  public void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/pool_partitions/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    dataSource = (PooledDataSource) sqlSessionFactory.getConfiguration().getEnvironment().getDataSource();
+    BaseDataTest.runScript(dataSource, "org/apache/ibatis/submitted/pool_partitions/CreateDB.sql");
+  }
+
+  @After
+  public void tearDown() {
+    dataSource.forceCloseAll();
+  }
+
+  @Test
+  public void shouldUseThePartitionOfTheSession() {
+    PoolState state = dataSource.getPoolState();
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.SIMPLE, false, "reporting")) {
+      assertEquals(1, sqlSession.getMapper(Mapper.class).countPersons());
+      assertEquals(1, state.getPartitionConnectionCount("reporting"));
+    }
+    assertEquals(0, state.getPartitionConnectionCount("reporting"));
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals(1, sqlSession.getMapper(Mapper.class).countPersons());
+      assertEquals(1, state.getPartitionConnectionCount(null));
+      assertEquals(0, state.getPartitionConnectionCount("reporting"));
+    }
+  }
+
+  @Test
+  public void shouldPreferThePartitionOfTheStatement() {
+    PoolState state = dataSource.getPoolState();
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.REUSE, false, "reporting")) {
+      assertEquals("John", sqlSession.getMapper(Mapper.class).getName(1));
+      assertEquals(1, state.getPartitionConnectionCount("interactive"));
+      assertEquals(0, state.getPartitionConnectionCount("reporting"));
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals(1, sqlSession.getMapper(Mapper.class).countPersonsForReport());
+      assertEquals(1, state.getPartitionConnectionCount("reporting"));
+    }
+    assertEquals(0, state.getPartitionConnectionCount("interactive"));
+    assertEquals(0, state.getPartitionConnectionCount("reporting"));
+  }
+
+}
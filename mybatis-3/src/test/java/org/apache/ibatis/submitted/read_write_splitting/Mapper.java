@@ -0,0 +1,40 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.read_write_splitting;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.mapping.DataSourceRoute;
+
+public interface Mapper {
+
+  @Select("select name from node")
+  String getNode();
+
+  @Select("select name from node")
+  @Options(dataSourceRoute = DataSourceRoute.PRIMARY)
+  String getNodeFromPrimary();
+
+  String getNodeFromReplica();
+
+  @Insert("insert into person (id, name) values (#{id}, #{name})")
+  int insertPerson(@Param("id") int id, @Param("name") String name);
+
+  @Select("select count(*) from person")
+  int countPersons();
+}
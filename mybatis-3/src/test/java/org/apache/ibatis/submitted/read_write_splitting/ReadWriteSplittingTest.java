@@ -0,0 +1,165 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.read_write_splitting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.datasource.readwrite.ReadWriteDataSource;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReadWriteSplittingTest {
+
+  private static final List<String> REPLICAS = Arrays.asList("replica_a", "replica_b");
+
+  private SqlSessionFactory sqlSessionFactory;
+  private ReadWriteDataSource dataSource;
+
+  @Before
+  public void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/read_write_splitting/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    dataSource = (ReadWriteDataSource) sqlSessionFactory.getConfiguration().getEnvironment().getDataSource();
+    initDatabase(dataSource.getPrimary(), "primary");
+    initDatabase(dataSource.getReplicas().get(0), "replica_a");
+    initDatabase(dataSource.getReplicas().get(1), "replica_b");
+  }
+
+  @After
+  public void tearDown() {
+    dataSource.forceCloseAll();
+  }
+
+  private static void initDatabase(DataSource ds, String node) throws Exception {
+    BaseDataTest.runScript(ds, "org/apache/ibatis/submitted/read_write_splitting/CreateDB.sql");
+    try (Connection connection = ds.getConnection();
+         Statement statement = connection.createStatement()) {
+      statement.executeUpdate("insert into node (name) values ('" + node + "')");
+    }
+  }
+
+  @Test
+  public void shouldReadFromReplicaAndWriteToPrimary() throws Exception {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertTrue(REPLICAS.contains(mapper.getNode()));
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+      sqlSession.getMapper(Mapper.class).insertPerson(1, "John");
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      // 从库没有复制，只有主库能看到写入
+      assertEquals(0, mapper.countPersons());
+      assertEquals("primary", mapper.getNodeFromPrimary());
+    }
+    assertEquals(0, dataSource.getReplicaOutstandingRequests(0) + dataSource.getReplicaOutstandingRequests(1));
+  }
+
+  @Test
+  public void shouldReadOwnWritesWithinSession() throws Exception {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertTrue(REPLICAS.contains(mapper.getNode()));
+      mapper.insertPerson(1, "John");
+      assertEquals(1, mapper.countPersons());
+      assertEquals("primary", mapper.getNode());
+      // 明确指定使用从库的语句不受影响
+      assertTrue(REPLICAS.contains(mapper.getNodeFromReplica()));
+    }
+  }
+
+  @Test
+  public void shouldReadFromPrimaryInsideTransaction() throws Exception {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      // 写入之前的查询也使用主库
+      assertEquals("primary", mapper.getNode());
+      assertTrue(REPLICAS.contains(mapper.getNodeFromReplica()));
+      sqlSession.rollback();
+    }
+  }
+
+  @Test
+  public void shouldReadFromReplicaInsideReadOnlyTransaction() throws Exception {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getConnection().setReadOnly(true);
+      assertTrue(REPLICAS.contains(sqlSession.getMapper(Mapper.class).getNode()));
+    }
+  }
+
+  @Test
+  public void shouldBalanceByOutstandingRequests() throws Exception {
+    try (SqlSession first = sqlSessionFactory.openSession(true);
+         SqlSession second = sqlSessionFactory.openSession(true)) {
+      String firstNode = first.getMapper(Mapper.class).getNode();
+      assertEquals(1, dataSource.getReplicaOutstandingRequests(REPLICAS.indexOf(firstNode)));
+      // 第一个会话一直持有从库连接，第二个会话选择另一个从库
+      String secondNode = second.getMapper(Mapper.class).getNode();
+      assertNotEquals(firstNode, secondNode);
+      assertTrue(REPLICAS.contains(secondNode));
+    }
+    assertEquals(0, dataSource.getReplicaOutstandingRequests(0));
+    assertEquals(0, dataSource.getReplicaOutstandingRequests(1));
+  }
+
+  @Test
+  public void shouldEjectFailingReplica() throws Exception {
+    PooledDataSource good = new PooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:rw_replica_a", "sa", "");
+    PooledDataSource bad = new PooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:rw_missing;ifexists=true", "sa", "");
+    ReadWriteDataSource ds = new ReadWriteDataSource(dataSource.getPrimary(), Arrays.asList(bad, good));
+    ds.setReplicaFailureThreshold(2);
+    Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), ds));
+    configuration.addMapper(Mapper.class);
+    SqlSessionFactory factory = new SqlSessionFactoryBuilder().build(configuration);
+    try {
+      for (int i = 0; i < 4; i++) {
+        try (SqlSession sqlSession = factory.openSession(true)) {
+          // 获取失败的从库被跳过
+          assertEquals("replica_a", sqlSession.getMapper(Mapper.class).getNode());
+        }
+      }
+      assertFalse(ds.isReplicaAvailable(0));
+      assertTrue(ds.isReplicaAvailable(1));
+    } finally {
+      good.forceCloseAll();
+      bad.forceCloseAll();
+    }
+  }
+
+}
@@ -0,0 +1,44 @@
+--
+--    Copyright 2009-2018 the original author or authors.
+--
+--    Licensed under the Apache License, Version 2.0 (the "License");
+--    you may not use this file except in compliance with the License.
+--    You may obtain a copy of the License at
+--
+--       http://www.apache.org/licenses/LICENSE-2.0
+--
+--    Unless required by applicable law or agreed to in writing, software
+--    distributed under the License is distributed on an "AS IS" BASIS,
+--    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--    See the License for the specific language governing permissions and
+--    limitations under the License.
+--
+
+drop table pet if exists;
+drop table person if exists;
+
+create table person(
+	id int,
+	name varchar(20),
+	nickname varchar(20),
+	score decimal(10, 2),
+	rating double,
+	visits bigint,
+	active boolean,
+	born timestamp,
+	avatar varbinary(16)
+);
+
+create table pet(
+	id int,
+	owner_id int,
+	name varchar(20)
+);
+
+insert into person values (1, 'Jane', 'JJ', 12.50, 4.5, 10000000000, true, '2018-01-02 03:04:05.123456', x'0102');
+insert into person values (2, 'John', null, null, null, 0, null, null, null);
+insert into person values (3, 'Mary', 'JJ', 7.25, 3.0, 3, false, '2018-05-06 07:08:09', x'03');
+insert into person values (4, 'Paul', null, 1.00, 1.0, 4, true, '2018-07-08 09:10:11', null);
+insert into pet values (1, 1, 'Rex');
+insert into pet values (2, 1, 'Tom');
+insert into pet values (3, 3, 'Kitty');
@@ -0,0 +1,179 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.row_cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RowCacheTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @Before
+  public void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/row_cache/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/row_cache/CreateDB.sql");
+  }
+
+  @Test
+  public void shouldMapCachedRowsToNewObjectsOnEveryHit() throws Exception {
+    Person first = getPerson(1);
+    // 不经过MyBatis修改数据，命中缓存时看不到修改
+    execute("update person set name = 'Changed' where id = 1");
+    Person second = getPerson(1);
+    Person third = getPerson(1);
+    assertEquals("Jane", second.getName());
+    assertNotSame(first, second);
+    assertNotSame(second, third);
+    assertPerson1(first);
+    assertPerson1(second);
+    assertPerson1(third);
+  }
+
+  @Test
+  public void shouldNotShareMutableValuesBetweenHits() throws Exception {
+    getPerson(1);
+    Person hit = getPerson(1);
+    hit.getBorn().setTime(0);
+    hit.getAvatar()[0] = 9;
+    assertPerson1(getPerson(1));
+  }
+
+  @Test
+  public void shouldKeepNullsOfCachedRows() throws Exception {
+    getPerson(2);
+    execute("update person set name = 'Changed' where id = 2");
+    Person person = getPerson(2);
+    assertEquals("John", person.getName());
+    assertNull(person.getNickname());
+    assertNull(person.getScore());
+    assertNull(person.getRating());
+    assertEquals(0L, person.getVisits());
+    assertNull(person.getActive());
+    assertNull(person.getBorn());
+    assertNull(person.getAvatar());
+  }
+
+  @Test
+  public void shouldMapNestedResultMapsFromCachedRows() throws Exception {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(Mapper.class).getPersonWithPets(1);
+    }
+    execute("delete from pet");
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Person person = sqlSession.getMapper(Mapper.class).getPersonWithPets(1);
+      assertPerson1(person);
+      assertEquals(2, person.getPets().size());
+      assertEquals("Rex", person.getPets().get(0).getName());
+      assertEquals("Tom", person.getPets().get(1).getName());
+    }
+  }
+
+  @Test
+  public void shouldCacheObjectsOfStatementsWithNestedSelects() {
+    Person first;
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      first = sqlSession.getMapper(Mapper.class).getPersonWithLazyPets(1);
+      assertEquals(2, first.getPets().size());
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertSame(first, sqlSession.getMapper(Mapper.class).getPersonWithLazyPets(1));
+    }
+  }
+
+  @Test
+  public void shouldApplyRowBoundsToCachedRows() throws Exception {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals(2, sqlSession.getMapper(Mapper.class).getPeople(new RowBounds(1, 2)).size());
+    }
+    execute("delete from person");
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<Person> people = mapper.getPeople(new RowBounds(1, 2));
+      assertEquals(2, people.size());
+      assertEquals(Integer.valueOf(2), people.get(0).getId());
+      assertEquals(Integer.valueOf(3), people.get(1).getId());
+      assertTrue(mapper.getPeople(new RowBounds(0, 2)).isEmpty());
+    }
+  }
+
+  @Test
+  public void shouldReadAllRowsForNestedResultMapsWithRowBounds() throws Exception {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      // 分页按父对象计数，Jane有两行
+      List<Person> people = sqlSession.getMapper(Mapper.class).getPeopleWithPets(new RowBounds(0, 2));
+      assertEquals(2, people.size());
+    }
+    execute("delete from pet");
+    execute("delete from person");
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Person> people = sqlSession.getMapper(Mapper.class).getPeopleWithPets(new RowBounds(0, 2));
+      assertEquals(2, people.size());
+      assertEquals("Jane", people.get(0).getName());
+      assertEquals(2, people.get(0).getPets().size());
+      assertEquals("John", people.get(1).getName());
+    }
+  }
+
+  private Person getPerson(Integer id) {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      return sqlSession.getMapper(Mapper.class).getPerson(id);
+    }
+  }
+
+  private void execute(String sql) throws Exception {
+    try (Connection connection = sqlSessionFactory.getConfiguration().getEnvironment().getDataSource().getConnection();
+         Statement statement = connection.createStatement()) {
+      statement.executeUpdate(sql);
+    }
+  }
+
+  private void assertPerson1(Person person) {
+    assertEquals(Integer.valueOf(1), person.getId());
+    assertEquals("Jane", person.getName());
+    assertEquals("JJ", person.getNickname());
+    assertEquals(new BigDecimal("12.50"), person.getScore());
+    assertEquals(Double.valueOf(4.5), person.getRating());
+    assertEquals(10000000000L, person.getVisits());
+    assertEquals(Boolean.TRUE, person.getActive());
+    assertEquals(Timestamp.valueOf("2018-01-02 03:04:05.123").getTime(), person.getBorn().getTime());
+    assertArrayEquals(new byte[]{1, 2}, person.getAvatar());
+  }
+
+}
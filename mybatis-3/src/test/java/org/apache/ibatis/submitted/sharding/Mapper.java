@@ -0,0 +1,53 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.sharding;
+
+import java.util.List;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.ResultType;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+public interface Mapper {
+
+  @Insert("insert into person (id, name) values (#{id}, #{name})")
+  @Options(shardKey = "id")
+  int insertPerson(Person person);
+
+  @Select("select id, name from person where id = #{id}")
+  @Options(shardKey = "id")
+  Person getPerson(@Param("id") int id);
+
+  @Select("select id, name from person")
+  List<Person> getPersons();
+
+  @Select("select id, name from person order by id")
+  @Options(shardComparator = PersonIdComparator.class)
+  List<Person> getPersonsOrderedById(RowBounds rowBounds);
+
+  @Select("select id, name from person order by id")
+  @Options(shardComparator = PersonIdComparator.class)
+  @ResultType(Person.class)
+  void handlePersonsOrderedById(ResultHandler<Person> handler);
+
+  List<Person> getPersonsOrdered();
+
+  int updatePerson(Person person);
+}
@@ -0,0 +1,170 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.sharding;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.datasource.sharding.ShardedDataSource;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShardingTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+  private ShardedDataSource dataSource;
+
+  @Before
+  public void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/sharding/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    dataSource = (ShardedDataSource) sqlSessionFactory.getConfiguration().getEnvironment().getDataSource();
+    for (DataSource shard : dataSource.getShards()) {
+      BaseDataTest.runScript(shard, "org/apache/ibatis/submitted/sharding/CreateDB.sql");
+    }
+  }
+
+  @After
+  public void tearDown() {
+    dataSource.forceCloseAll();
+  }
+
+  private void insertPersons(ExecutorType executorType) {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(executorType)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int id = 1; id <= 6; id++) {
+        mapper.insertPerson(new Person(id, "person" + id));
+      }
+      sqlSession.commit();
+    }
+  }
+
+  private List<Integer> idsOnShard(int shard) throws Exception {
+    List<Integer> ids = new ArrayList<>();
+    try (Connection connection = dataSource.getShards().get(shard).getConnection();
+         Statement statement = connection.createStatement();
+         ResultSet rs = statement.executeQuery("select id from person order by id")) {
+      while (rs.next()) {
+        ids.add(rs.getInt(1));
+      }
+    }
+    return ids;
+  }
+
+  private static List<Integer> ids(List<Person> persons) {
+    List<Integer> ids = new ArrayList<>();
+    for (Person person : persons) {
+      ids.add(person.getId());
+    }
+    return ids;
+  }
+
+  @Test
+  public void shouldRouteByShardKey() throws Exception {
+    insertPersons(ExecutorType.SIMPLE);
+    assertEquals(Arrays.asList(3, 6), idsOnShard(0));
+    assertEquals(Arrays.asList(1, 4), idsOnShard(1));
+    assertEquals(Arrays.asList(2, 5), idsOnShard(2));
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertEquals("person4", mapper.getPerson(4).getName());
+      assertEquals(1, mapper.updatePerson(new Person(5, "updated")));
+      assertEquals("updated", mapper.getPerson(5).getName());
+      assertNull(mapper.getPerson(7));
+      sqlSession.commit();
+    }
+  }
+
+  @Test
+  public void shouldRouteBatchesByShardKey() throws Exception {
+    insertPersons(ExecutorType.BATCH);
+    assertEquals(Arrays.asList(3, 6), idsOnShard(0));
+    assertEquals(Arrays.asList(1, 4), idsOnShard(1));
+    assertEquals(Arrays.asList(2, 5), idsOnShard(2));
+  }
+
+  @Test
+  public void shouldQueryAllShardsWithoutShardKey() throws Exception {
+    insertPersons(ExecutorType.REUSE);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      // 按分片顺序拼接
+      List<Integer> ids = ids(mapper.getPersons());
+      assertEquals(6, ids.size());
+      assertTrue(ids.containsAll(Arrays.asList(1, 2, 3, 4, 5, 6)));
+      assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), ids(mapper.getPersonsOrdered()));
+    }
+  }
+
+  @Test
+  public void shouldMergeAndPageOrderedResults() throws Exception {
+    insertPersons(ExecutorType.SIMPLE);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), ids(mapper.getPersonsOrderedById(RowBounds.DEFAULT)));
+      assertEquals(Arrays.asList(2, 3, 4), ids(mapper.getPersonsOrderedById(new RowBounds(1, 3))));
+      assertEquals(Arrays.asList(6), ids(mapper.getPersonsOrderedById(new RowBounds(5, 3))));
+      List<Integer> handled = new ArrayList<>();
+      mapper.handlePersonsOrderedById(context -> handled.add(context.getResultObject().getId()));
+      assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), handled);
+    }
+  }
+
+  @Test
+  public void shouldRejectWritesWithoutShardKey() throws Exception {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(Mapper.class).insertPerson(new Person(null, "nobody"));
+      fail("Should have failed without a shard key value");
+    } catch (PersistenceException e) {
+      assertTrue(e.getMessage().contains("Could not determine the shard"));
+    }
+  }
+
+  @Test
+  public void shouldReleaseShardConnections() throws Exception {
+    insertPersons(ExecutorType.SIMPLE);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals(6, sqlSession.getMapper(Mapper.class).getPersons().size());
+    }
+    for (DataSource shard : dataSource.getShards()) {
+      assertEquals(0, ((PooledDataSource) shard).getPoolState().getActiveConnectionCount());
+    }
+  }
+
+}
@@ -0,0 +1,81 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.single_flight_cache;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SingleFlightCacheTest {
+
+  private static SqlSessionFactory sqlSessionFactory;
+
+  @Before
+  public void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/single_flight_cache/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/single_flight_cache/CreateDB.sql");
+    QueryCountingInterceptor.QUERIES.set(0);
+  }
+
+  @Test
+  public void shouldQueryDatabaseOnceForConcurrentMisses() throws Exception {
+    int sessions = 4;
+    CyclicBarrier barrier = new CyclicBarrier(sessions);
+    ExecutorService executor = Executors.newFixedThreadPool(sessions);
+    try {
+      List<Future<List<Person>>> results = new ArrayList<>();
+      for (int i = 0; i < sessions; i++) {
+        results.add(executor.submit(() -> {
+          barrier.await();
+          try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+            return sqlSession.getMapper(PersonMapper.class).findAll();
+          }
+        }));
+      }
+      for (Future<List<Person>> result : results) {
+        assertEquals(2, result.get(10, TimeUnit.SECONDS).size());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(1, QueryCountingInterceptor.QUERIES.get());
+
+    // 结果已在会话关闭时写入缓存
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals(2, sqlSession.getMapper(PersonMapper.class).findAll().size());
+    }
+    assertEquals(1, QueryCountingInterceptor.QUERIES.get());
+  }
+
+}
@@ -0,0 +1,134 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.table_cache_invalidation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TableCacheInvalidationTest {
+
+  private static final String NAMESPACE = "org.apache.ibatis.submitted.table_cache_invalidation.ReadMapper.";
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @Before
+  public void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/table_cache_invalidation/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/table_cache_invalidation/CreateDB.sql");
+  }
+
+  @Test
+  public void shouldKeepEntriesOfUnmodifiedTables() {
+    List<Person> persons = selectList("findPersons");
+    Integer pets = selectOne("countPets");
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Map<String, Object> pet = new HashMap<>();
+      pet.put("id", 2);
+      pet.put("name", "Tom");
+      sqlSession.insert(NAMESPACE + "insertPet", pet);
+      sqlSession.commit();
+    }
+    // 同一命名空间的写操作只使读取pet表的条目失效
+    assertSame(persons, selectList("findPersons"));
+    assertEquals(Integer.valueOf(pets + 1), selectOne("countPets"));
+  }
+
+  @Test
+  public void shouldInvalidateEntriesAcrossNamespaces() {
+    List<Person> persons = selectList("findPersons");
+    List<Person> fromView = selectList("findPersonsFromView");
+    assertSame(persons, selectList("findPersons"));
+    updateLastname(true);
+    List<Person> updated = selectList("findPersons");
+    assertNotSame(persons, updated);
+    assertEquals("Brown", updated.get(0).getLastname());
+    // 通过声明的表失效
+    assertEquals("Brown", selectList("findPersonsFromView").get(0).getLastname());
+    assertNotSame(fromView, selectList("findPersonsFromView"));
+  }
+
+  @Test
+  public void shouldMatchDeclaredQualifiedTableWithParsedTable() {
+    List<Person> persons = selectList("findPersons");
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.update(NAMESPACE + "renameSecondPerson");
+      sqlSession.commit();
+    }
+    // 声明的 PUBLIC.Person 与从SQL中识别出的 person 是同一个表
+    List<Person> updated = selectList("findPersons");
+    assertNotSame(persons, updated);
+    assertEquals("Brown", updated.get(1).getLastname());
+  }
+
+  @Test
+  public void shouldNotInvalidateBeforeCommit() {
+    List<Person> persons = selectList("findPersons");
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Person person = new Person();
+      person.setId(1);
+      person.setLastname("Brown");
+      sqlSession.getMapper(PersonMapper.class).updateLastname(person);
+      // 当前事务读取到自己的修改
+      List<Person> own = sqlSession.selectList(NAMESPACE + "findPersons");
+      assertEquals("Brown", own.get(0).getLastname());
+      // 其他会话在提交前仍然命中缓存
+      assertSame(persons, selectList("findPersons"));
+      sqlSession.rollback();
+    }
+  }
+
+  private void updateLastname(boolean commit) {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Person person = new Person();
+      person.setId(1);
+      person.setLastname("Brown");
+      sqlSession.getMapper(PersonMapper.class).updateLastname(person);
+      if (commit) {
+        sqlSession.commit();
+      }
+    }
+  }
+
+  private List<Person> selectList(String id) {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      return sqlSession.selectList(NAMESPACE + id);
+    }
+  }
+
+  private <T> T selectOne(String id) {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      return sqlSession.selectOne(NAMESPACE + id);
+    }
+  }
+
+}
@@ -0,0 +1,93 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.type;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class ByteBufferTypeHandlerTest extends BaseTypeHandlerTest {
+
+  private static final TypeHandler<ByteBuffer> TYPE_HANDLER = new ByteBufferTypeHandler();
+
+  @Override
+  @Test
+  public void shouldSetParameter() throws Exception {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(8);
+    buffer.put(new byte[] { 1, 2, 3, 4, 5 });
+    buffer.flip();
+    buffer.position(1);
+    TYPE_HANDLER.setParameter(ps, 1, buffer, null);
+    ArgumentCaptor<InputStream> captor = ArgumentCaptor.forClass(InputStream.class);
+    verify(ps).setBinaryStream(eq(1), captor.capture(), eq(4L));
+    byte[] bytes = new byte[4];
+    assertThat(captor.getValue().read(bytes)).isEqualTo(4);
+    assertThat(bytes).isEqualTo(new byte[] { 2, 3, 4, 5 });
+    assertThat(captor.getValue().read()).isEqualTo(-1);
+    // 原缓冲区的position不变
+    assertThat(buffer.position()).isEqualTo(1);
+  }
+
+  @Override
+  @Test
+  public void shouldGetResultFromResultSetByName() throws Exception {
+    when(rs.getBytes("column")).thenReturn(new byte[] { 1, 2, 3 });
+    assertThat(TYPE_HANDLER.getResult(rs, "column")).isEqualTo(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+  }
+
+  @Override
+  @Test
+  public void shouldGetResultNullFromResultSetByName() throws Exception {
+    when(rs.getBytes("column")).thenReturn(null);
+    assertThat(TYPE_HANDLER.getResult(rs, "column")).isNull();
+  }
+
+  @Override
+  @Test
+  public void shouldGetResultFromResultSetByPosition() throws Exception {
+    when(rs.getBytes(1)).thenReturn(new byte[] { 1, 2, 3 });
+    assertThat(TYPE_HANDLER.getResult(rs, 1)).isEqualTo(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+  }
+
+  @Override
+  @Test
+  public void shouldGetResultNullFromResultSetByPosition() throws Exception {
+    when(rs.getBytes(1)).thenReturn(null);
+    assertThat(TYPE_HANDLER.getResult(rs, 1)).isNull();
+  }
+
+  @Override
+  @Test
+  public void shouldGetResultFromCallableStatement() throws Exception {
+    when(cs.getBytes(1)).thenReturn(new byte[] { 1, 2, 3 });
+    assertThat(TYPE_HANDLER.getResult(cs, 1)).isEqualTo(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+  }
+
+  @Override
+  @Test
+  public void shouldGetResultNullFromCallableStatement() throws Exception {
+    when(cs.getBytes(1)).thenReturn(null);
+    assertThat(TYPE_HANDLER.getResult(cs, 1)).isNull();
+  }
+
+}
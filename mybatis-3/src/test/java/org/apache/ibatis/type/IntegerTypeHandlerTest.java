@@ -87,4 +87,12 @@ public class IntegerTypeHandlerTest extends BaseTypeHandlerTest {
     assertNull(TYPE_HANDLER.getResult(cs, 1));
   }
 
-}
\ No newline at end of file
+  @Test
+  public void shouldGetPrimitiveResultFromResultSetByName() throws Exception {
+    PrimitiveTypeHandler<Integer> handler = new IntegerTypeHandler();
+    assertEquals(int.class, handler.getPrimitiveType());
+    when(rs.getInt("column")).thenReturn(100);
+    assertEquals(100, handler.getInt(rs, "column"));
+  }
+
+}
@@ -0,0 +1,207 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.type;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Blob;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.TransactionFactory;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+
+public class PathTypeHandlerTest extends BaseTypeHandlerTest {
+
+  private static final TypeHandler<Path> TYPE_HANDLER = new PathTypeHandler();
+
+  private static SqlSessionFactory sqlSessionFactory;
+
+  @Mock
+  protected Blob blob;
+
+  @BeforeClass
+  public static void setupSqlSessionFactory() throws Exception {
+    DataSource dataSource = BaseDataTest.createUnpooledDataSource("org/apache/ibatis/type/jdbc.properties");
+    TransactionFactory transactionFactory = new JdbcTransactionFactory();
+    Environment environment = new Environment("Production", transactionFactory, dataSource);
+    Configuration configuration = new Configuration(environment);
+    configuration.addMapper(Mapper.class);
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+            "org/apache/ibatis/type/PathTypeHandlerTest.sql");
+  }
+
+  @Override
+  @Test
+  public void shouldSetParameter() throws Exception {
+    Path file = createFile("Hello".getBytes());
+    try {
+      TYPE_HANDLER.setParameter(ps, 1, file, null);
+      ArgumentCaptor<InputStream> captor = ArgumentCaptor.forClass(InputStream.class);
+      verify(ps).setBinaryStream(eq(1), captor.capture(), eq(5L));
+      byte[] bytes = new byte[5];
+      assertThat(captor.getValue().read(bytes)).isEqualTo(5);
+      assertThat(bytes).isEqualTo("Hello".getBytes());
+      assertThat(captor.getValue().read()).isEqualTo(-1);
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void shouldSetCharacterParameterWithCharLength() throws Exception {
+    String text = "h\u00e9llo";
+    Path file = createFile(text.getBytes(StandardCharsets.UTF_8));
+    try {
+      TYPE_HANDLER.setParameter(ps, 1, file, JdbcType.CLOB);
+      ArgumentCaptor<Reader> captor = ArgumentCaptor.forClass(Reader.class);
+      // 6个字节，5个字符
+      verify(ps).setCharacterStream(eq(1), captor.capture(), eq(5L));
+      char[] chars = new char[10];
+      assertThat(captor.getValue().read(chars)).isEqualTo(5);
+      assertThat(new String(chars, 0, 5)).isEqualTo(text);
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Override
+  @Test
+  public void shouldGetResultFromResultSetByName() throws Exception {
+    when(rs.getBinaryStream("column")).thenReturn(new ByteArrayInputStream("Hello".getBytes()));
+    assertContent(TYPE_HANDLER.getResult(rs, "column"), "Hello".getBytes());
+  }
+
+  @Override
+  @Test
+  public void shouldGetResultNullFromResultSetByName() throws Exception {
+    when(rs.getBinaryStream("column")).thenReturn(null);
+    assertThat(TYPE_HANDLER.getResult(rs, "column")).isNull();
+  }
+
+  @Override
+  @Test
+  public void shouldGetResultFromResultSetByPosition() throws Exception {
+    when(rs.getBinaryStream(1)).thenReturn(new ByteArrayInputStream("Hello".getBytes()));
+    assertContent(TYPE_HANDLER.getResult(rs, 1), "Hello".getBytes());
+  }
+
+  @Override
+  @Test
+  public void shouldGetResultNullFromResultSetByPosition() throws Exception {
+    when(rs.getBinaryStream(1)).thenReturn(null);
+    assertThat(TYPE_HANDLER.getResult(rs, 1)).isNull();
+  }
+
+  @Override
+  @Test
+  public void shouldGetResultFromCallableStatement() throws Exception {
+    when(cs.getBlob(1)).thenReturn(blob);
+    when(blob.getBinaryStream()).thenReturn(new ByteArrayInputStream("Hello".getBytes()));
+    assertContent(TYPE_HANDLER.getResult(cs, 1), "Hello".getBytes());
+  }
+
+  @Override
+  @Test
+  public void shouldGetResultNullFromCallableStatement() throws Exception {
+    when(cs.getBlob(1)).thenReturn(null);
+    assertThat(TYPE_HANDLER.getResult(cs, 1)).isNull();
+  }
+
+  @Test
+  public void shouldResolveHandlerForPathImplementation() {
+    TypeHandlerRegistry registry = new TypeHandlerRegistry();
+    Path file = new File("test").toPath();
+    assertThat(registry.hasTypeHandler(file.getClass())).isTrue();
+    assertThat(registry.getTypeHandler(file.getClass())).isInstanceOf(PathTypeHandler.class);
+  }
+
+  @Test
+  public void integrationTest() throws Exception {
+    byte[] content = new byte[1000];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) i;
+    }
+    Path file = createFile(content);
+    try (SqlSession session = sqlSessionFactory.openSession()) {
+      Mapper mapper = session.getMapper(Mapper.class);
+      // Path作为参数对象
+      mapper.insertFile(file);
+      // Path作为Map中的值(Object类型，运行时解析类型处理器)
+      Map<String, Object> param = new HashMap<>();
+      param.put("id", 2);
+      param.put("content", file);
+      mapper.insertMap(param);
+      session.commit();
+      assertContent(mapper.findOne(1), content);
+      assertContent(mapper.findOne(2), content);
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  private static Path createFile(byte[] content) throws Exception {
+    Path file = Files.createTempFile("mybatis-test-", ".tmp");
+    Files.write(file, content);
+    return file;
+  }
+
+  private static void assertContent(Path file, byte[] expected) throws Exception {
+    try {
+      assertThat(Files.readAllBytes(file)).isEqualTo(expected);
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  interface Mapper {
+    @Select("SELECT CONTENT FROM TEST_PATH WHERE ID = #{id}")
+    Path findOne(int id);
+
+    @Insert("INSERT INTO TEST_PATH (ID, CONTENT) VALUES(1, #{content})")
+    void insertFile(Path content);
+
+    @Insert("INSERT INTO TEST_PATH (ID, CONTENT) VALUES(#{id}, #{content})")
+    void insertMap(Map<String, Object> param);
+  }
+
+}
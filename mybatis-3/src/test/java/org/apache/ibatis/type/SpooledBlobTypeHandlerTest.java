@@ -0,0 +1,233 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.type;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Blob;
+import java.util.Arrays;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.TransactionFactory;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+
+public class SpooledBlobTypeHandlerTest extends BaseTypeHandlerTest {
+
+  private static final TypeHandler<SpooledBlob> TYPE_HANDLER = new SpooledBlobTypeHandler();
+
+  private static SqlSessionFactory sqlSessionFactory;
+
+  @Mock
+  protected Blob blob;
+
+  @BeforeClass
+  public static void setupSqlSessionFactory() throws Exception {
+    DataSource dataSource = BaseDataTest.createUnpooledDataSource("org/apache/ibatis/type/jdbc.properties");
+    TransactionFactory transactionFactory = new JdbcTransactionFactory();
+    Environment environment = new Environment("Production", transactionFactory, dataSource);
+    Configuration configuration = new Configuration(environment);
+    configuration.setLobSpoolThreshold(16);
+    configuration.addMapper(Mapper.class);
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+            "org/apache/ibatis/type/SpooledBlobTypeHandlerTest.sql");
+  }
+
+  @Override
+  @Test
+  public void shouldSetParameter() throws Exception {
+    SpooledBlob content = SpooledBlob.spool(new ByteArrayInputStream("Hello".getBytes()), 5, 1024);
+    TYPE_HANDLER.setParameter(ps, 1, content, null);
+    verify(ps).setBinaryStream(Mockito.eq(1), Mockito.any(InputStream.class), Mockito.eq(5L));
+  }
+
+  @Override
+  @Test
+  public void shouldGetResultFromResultSetByName() throws Exception {
+    when(rs.getBlob("column")).thenReturn(blob);
+    when(blob.length()).thenReturn(5L);
+    when(blob.getBinaryStream()).thenReturn(new ByteArrayInputStream("Hello".getBytes()));
+    assertThat(TYPE_HANDLER.getResult(rs, "column").getBytes()).isEqualTo("Hello".getBytes());
+  }
+
+  @Override
+  @Test
+  public void shouldGetResultNullFromResultSetByName() throws Exception {
+    when(rs.getBlob("column")).thenReturn(null);
+    assertThat(TYPE_HANDLER.getResult(rs, "column")).isNull();
+  }
+
+  @Override
+  @Test
+  public void shouldGetResultFromResultSetByPosition() throws Exception {
+    when(rs.getBlob(1)).thenReturn(blob);
+    when(blob.length()).thenReturn(5L);
+    when(blob.getBinaryStream()).thenReturn(new ByteArrayInputStream("Hello".getBytes()));
+    assertThat(TYPE_HANDLER.getResult(rs, 1).getBytes()).isEqualTo("Hello".getBytes());
+  }
+
+  @Override
+  @Test
+  public void shouldGetResultNullFromResultSetByPosition() throws Exception {
+    when(rs.getBlob(1)).thenReturn(null);
+    assertThat(TYPE_HANDLER.getResult(rs, 1)).isNull();
+  }
+
+  @Override
+  @Test
+  public void shouldGetResultFromCallableStatement() throws Exception {
+    when(cs.getBlob(1)).thenReturn(blob);
+    when(blob.length()).thenReturn(5L);
+    when(blob.getBinaryStream()).thenReturn(new ByteArrayInputStream("Hello".getBytes()));
+    assertThat(TYPE_HANDLER.getResult(cs, 1).getBytes()).isEqualTo("Hello".getBytes());
+  }
+
+  @Override
+  @Test
+  public void shouldGetResultNullFromCallableStatement() throws Exception {
+    when(cs.getBlob(1)).thenReturn(null);
+    assertThat(TYPE_HANDLER.getResult(cs, 1)).isNull();
+  }
+
+  @Test
+  public void shouldSpoolToFileWhenThresholdExceeded() throws Exception {
+    byte[] bytes = new byte[100];
+    Arrays.fill(bytes, (byte) 7);
+    when(rs.getBlob("column")).thenReturn(blob);
+    when(blob.length()).thenReturn(100L);
+    when(blob.getBinaryStream()).thenReturn(new ByteArrayInputStream(bytes));
+    try (SpooledBlob content = new SpooledBlobTypeHandler(10).getResult(rs, "column")) {
+      assertThat(content.isInMemory()).isFalse();
+      assertThat(content.length()).isEqualTo(100L);
+      assertThat(content.getBytes()).isEqualTo(bytes);
+    }
+  }
+
+  @Test
+  public void shouldKeepRegisteredHandlerWhenThresholdChanges() throws Exception {
+    Configuration configuration = new Configuration();
+    TypeHandlerRegistry registry = configuration.getTypeHandlerRegistry();
+    TypeHandler<SpooledBlob> defaultHandler = registry.getTypeHandler(SpooledBlob.class);
+    byte[] bytes = new byte[100];
+    when(rs.getBlob("column")).thenReturn(blob);
+    when(blob.length()).thenReturn(100L);
+    when(blob.getBinaryStream()).thenReturn(new ByteArrayInputStream(bytes));
+    // 默认处理器在读取时使用配置的阈值
+    configuration.setLobSpoolThreshold(10);
+    assertThat(registry.getTypeHandler(SpooledBlob.class)).isSameAs(defaultHandler);
+    try (SpooledBlob content = defaultHandler.getResult(rs, "column")) {
+      assertThat(content.isInMemory()).isFalse();
+    }
+    // 用户注册的处理器不被替换
+    SpooledBlobTypeHandler custom = new SpooledBlobTypeHandler(1000);
+    registry.register(SpooledBlob.class, custom);
+    configuration.setLobSpoolThreshold(20);
+    assertThat(registry.getTypeHandler(SpooledBlob.class)).isSameAs(custom);
+    assertThat(custom.getThreshold()).isEqualTo(1000L);
+    assertThat(((SpooledBlobTypeHandler) defaultHandler).getThreshold()).isEqualTo(20L);
+  }
+
+  @Test
+  public void shouldSpillWhenActualLengthExceedsThreshold() throws Exception {
+    byte[] bytes = new byte[100];
+    Arrays.fill(bytes, (byte) 3);
+    // 驱动报告的长度不准确时，写入过程中转移到临时文件
+    try (SpooledBlob content = SpooledBlob.spool(new ByteArrayInputStream(bytes), 0, 10)) {
+      assertThat(content.isInMemory()).isFalse();
+      assertThat(content.getBytes()).isEqualTo(bytes);
+    }
+    try (SpooledBlob content = SpooledBlob.spool(new ByteArrayInputStream(bytes), 0, 1000)) {
+      assertThat(content.isInMemory()).isTrue();
+      assertThat(content.getBytes()).isEqualTo(bytes);
+    }
+  }
+
+  @Test
+  public void shouldDeleteTempFileOfCollectedLob() throws Exception {
+    Path file = spoolToFile().tempFile();
+    assertThat(Files.exists(file)).isTrue();
+    // 结果映射得到的LOB没有被释放，被回收之后由下一次写入临时文件时删除
+    long deadline = System.currentTimeMillis() + 10000;
+    while (Files.exists(file) && System.currentTimeMillis() < deadline) {
+      System.gc();
+      Thread.sleep(10);
+      spoolToFile().free();
+    }
+    assertThat(Files.exists(file)).isFalse();
+  }
+
+  private SpooledBlob spoolToFile() throws IOException {
+    return SpooledBlob.spool(new ByteArrayInputStream(new byte[100]), 100, 10);
+  }
+
+  @Test
+  public void integrationTest() throws Exception {
+    byte[] large = new byte[1000];
+    for (int i = 0; i < large.length; i++) {
+      large[i] = (byte) i;
+    }
+    try (SqlSession session = sqlSessionFactory.openSession()) {
+      Mapper mapper = session.getMapper(Mapper.class);
+      mapper.insert(1, SpooledBlob.spool(new ByteArrayInputStream("Hello".getBytes()), 5, 1024));
+      mapper.insert(2, SpooledBlob.spool(new ByteArrayInputStream(large), large.length, 16));
+      session.commit();
+    }
+    SpooledBlob small;
+    SpooledBlob spooled;
+    try (SqlSession session = sqlSessionFactory.openSession()) {
+      Mapper mapper = session.getMapper(Mapper.class);
+      small = mapper.findOne(1);
+      spooled = mapper.findOne(2);
+    }
+    // 会话关闭之后依然可以读取
+    assertThat(small.isInMemory()).isTrue();
+    assertThat(small.getBytes()).isEqualTo("Hello".getBytes());
+    assertThat(spooled.isInMemory()).isFalse();
+    assertThat(spooled.getBytes()).isEqualTo(large);
+    spooled.free();
+  }
+
+  interface Mapper {
+    @Select("SELECT CONTENT FROM TEST_SPOOLED_BLOB WHERE ID = #{id}")
+    SpooledBlob findOne(int id);
+
+    @Insert("INSERT INTO TEST_SPOOLED_BLOB (ID, CONTENT) VALUES(#{id}, #{content})")
+    void insert(@Param("id") int id, @Param("content") SpooledBlob content);
+  }
+
+}
@@ -0,0 +1,113 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.type;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.BufferedReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.sql.Clob;
+
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+
+public class SpooledClobTypeHandlerTest extends BaseTypeHandlerTest {
+
+  private static final TypeHandler<SpooledClob> TYPE_HANDLER = new SpooledClobTypeHandler();
+
+  @Mock
+  protected Clob clob;
+
+  @Override
+  @Test
+  public void shouldSetParameter() throws Exception {
+    SpooledClob content = SpooledClob.spool(new StringReader("Hello"), 5, 1024);
+    TYPE_HANDLER.setParameter(ps, 1, content, null);
+    verify(ps).setCharacterStream(Mockito.eq(1), Mockito.any(Reader.class), Mockito.eq(5L));
+  }
+
+  @Override
+  @Test
+  public void shouldGetResultFromResultSetByName() throws Exception {
+    when(rs.getClob("column")).thenReturn(clob);
+    when(clob.length()).thenReturn(5L);
+    when(clob.getCharacterStream()).thenReturn(new StringReader("Hello"));
+    assertThat(TYPE_HANDLER.getResult(rs, "column").getString()).isEqualTo("Hello");
+  }
+
+  @Override
+  @Test
+  public void shouldGetResultNullFromResultSetByName() throws Exception {
+    when(rs.getClob("column")).thenReturn(null);
+    assertThat(TYPE_HANDLER.getResult(rs, "column")).isNull();
+  }
+
+  @Override
+  @Test
+  public void shouldGetResultFromResultSetByPosition() throws Exception {
+    when(rs.getClob(1)).thenReturn(clob);
+    when(clob.length()).thenReturn(5L);
+    when(clob.getCharacterStream()).thenReturn(new StringReader("Hello"));
+    assertThat(TYPE_HANDLER.getResult(rs, 1).getString()).isEqualTo("Hello");
+  }
+
+  @Override
+  @Test
+  public void shouldGetResultNullFromResultSetByPosition() throws Exception {
+    when(rs.getClob(1)).thenReturn(null);
+    assertThat(TYPE_HANDLER.getResult(rs, 1)).isNull();
+  }
+
+  @Override
+  @Test
+  public void shouldGetResultFromCallableStatement() throws Exception {
+    when(cs.getClob(1)).thenReturn(clob);
+    when(clob.length()).thenReturn(5L);
+    when(clob.getCharacterStream()).thenReturn(new StringReader("Hello"));
+    assertThat(TYPE_HANDLER.getResult(cs, 1).getString()).isEqualTo("Hello");
+  }
+
+  @Override
+  @Test
+  public void shouldGetResultNullFromCallableStatement() throws Exception {
+    when(cs.getClob(1)).thenReturn(null);
+    assertThat(TYPE_HANDLER.getResult(cs, 1)).isNull();
+  }
+
+  @Test
+  public void shouldSpoolToFileWhenThresholdExceeded() throws Exception {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      text.append("行").append(i).append('\n');
+    }
+    when(rs.getClob("column")).thenReturn(clob);
+    when(clob.length()).thenReturn((long) text.length());
+    when(clob.getCharacterStream()).thenReturn(new StringReader(text.toString()));
+    try (SpooledClob content = new SpooledClobTypeHandler(64).getResult(rs, "column")) {
+      assertThat(content.isInMemory()).isFalse();
+      assertThat(content.length()).isEqualTo(text.length());
+      assertThat(content.getString()).isEqualTo(text.toString());
+      try (BufferedReader reader = new BufferedReader(content.getReader())) {
+        assertThat(reader.readLine()).isEqualTo("行0");
+      }
+    }
+  }
+
+}
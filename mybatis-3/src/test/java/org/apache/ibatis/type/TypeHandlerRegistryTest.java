@@ -214,4 +214,40 @@ public class TypeHandlerRegistryTest {
     typeHandlerRegistry.register(Address.class, StringTypeHandler.class);
     assertTrue(typeHandlerRegistry.hasTypeHandler(Address.class));
   }
+
+  @Test
+  public void shouldResolveSameHandlersWhenFrozen() {
+    TypeHandlerRegistry frozenRegistry = new TypeHandlerRegistry();
+    frozenRegistry.freeze();
+    assertTrue(frozenRegistry.isFrozen());
+    Class<?>[] types = { String.class, int.class, Integer.class, Date.class, java.sql.Date.class, Object.class, byte[].class, RichType.class };
+    for (Class<?> type : types) {
+      for (JdbcType jdbcType : JdbcType.values()) {
+        assertSameHandler(typeHandlerRegistry.getTypeHandler(type, jdbcType), frozenRegistry.getTypeHandler(type, jdbcType));
+      }
+      assertSameHandler(typeHandlerRegistry.getTypeHandler(type), frozenRegistry.getTypeHandler(type));
+    }
+  }
+
+  private void assertSameHandler(TypeHandler<?> expected, TypeHandler<?> actual) {
+    assertEquals(expected == null ? null : expected.getClass(), actual == null ? null : actual.getClass());
+  }
+
+  @Test
+  public void shouldSeeLateRegistrationsWhenFrozen() {
+    class Address {}
+    typeHandlerRegistry.freeze();
+    assertFalse(typeHandlerRegistry.hasTypeHandler(Address.class));
+    typeHandlerRegistry.register(Address.class, StringTypeHandler.class);
+    assertTrue(typeHandlerRegistry.hasTypeHandler(Address.class));
+
+    TypeHandler<String> clobHandler = new ClobTypeHandler();
+    typeHandlerRegistry.register(String.class, JdbcType.LONGVARCHAR, clobHandler);
+    assertSame(clobHandler, typeHandlerRegistry.getTypeHandler(String.class, JdbcType.LONGVARCHAR));
+    assertSame(StringTypeHandler.class, typeHandlerRegistry.getTypeHandler(String.class).getClass());
+
+    typeHandlerRegistry.register(SomeInterfaceTypeHandler.class);
+    assertSame(SomeInterfaceTypeHandler.class, typeHandlerRegistry.getTypeHandler(SomeEnum.class).getClass());
+    assertSame(EnumTypeHandler.class, typeHandlerRegistry.getTypeHandler(NoTypeHandlerInterfaceEnum.class).getClass());
+  }
 }